@@ -0,0 +1,29 @@
+package com.javacook.classpathchecker.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.javacook.classpathchecker.ArchiveListing;
+
+/**
+ * Misst das Lesen der Inhaltsverzeichnisse aller Jars (so wie es
+ * <code>ClassPathChecker.unpackArchiveAndCollect</code> ohne Scan-Cache tut).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ArchiveListingBenchmark {
+
+	@Benchmark
+	public void readListings(SyntheticClassPathState state, Blackhole blackhole) throws Exception {
+		for (File jar : state.jarFiles) {
+			blackhole.consume(ArchiveListing.read(jar));
+		}
+	}
+
+}
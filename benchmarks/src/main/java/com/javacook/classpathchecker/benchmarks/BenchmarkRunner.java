@@ -0,0 +1,39 @@
+package com.javacook.classpathchecker.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Startet die JMH-Benchmarks mit den ueblichen JMH-Kommandozeilen-Optionen. Falls nicht anders
+ * angegeben (<tt>-rf</tt>, <tt>-rff</tt>), werden die Ergebnisse als JSON nach
+ * <tt>jmh-result.json</tt> geschrieben, sodass Laeufe verschiedener Staende verglichen werden koennen.
+ * <p>
+ * Beispiel: <tt>java -jar benchmarks.jar ArchiveListing -p jars=100 -rff listing.json</tt>
+ */
+public class BenchmarkRunner {
+
+	public final static String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if (!commandLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLine.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT_FILE);
+		}
+		if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()
+				|| commandLine.shouldListResultFormats() || commandLine.shouldListWithParams()) {
+			// Listen und Hilfe uebernimmt der JMH-eigene Einstiegspunkt
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		new Runner(options.build()).run();
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.javacook.classpathchecker.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.javacook.util.FileUtils;
+
+/**
+ * Misst das Durchwandern des Klassenverzeichnisses mit <code>FileUtils.browseDirTree</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DirectoryWalkBenchmark {
+
+	@Benchmark
+	public void browseDirTree(SyntheticClassPathState state, final Blackhole blackhole) throws Exception {
+		new FileUtils().browseDirTree(state.classPath.getClassesDir().getAbsolutePath(), new FileUtils.CallBack() {
+			public void action(String actualPath) {
+				blackhole.consume(actualPath);
+			}
+		});
+	}
+
+}
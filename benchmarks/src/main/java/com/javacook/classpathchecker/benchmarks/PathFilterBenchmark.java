@@ -0,0 +1,61 @@
+package com.javacook.classpathchecker.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.javacook.classpathchecker.PathFilter;
+import com.javacook.classpathchecker.PathFilterInterface;
+import com.javacook.classpathchecker.PropertyHolderInterface;
+
+/**
+ * Misst <code>PathFilter.isValid</code> fuer alle Pfade des Klassenpfads bei einigen
+ * Ausschluss-Pfaden und einem zusaetzlichen Artefakt.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathFilterBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class FilterState {
+
+		@Param("8")
+		public int excludes;
+
+		public PathFilterInterface pathFilter;
+
+		@Setup(Level.Trial)
+		public void setUp(SyntheticClassPathState classPathState) throws Exception {
+			PropertyHolderInterface propertyHolder = classPathState.propertyHolder(1);
+			File classesDir = classPathState.classPath.getClassesDir();
+			for (int i = 0; i < excludes; i++) {
+				propertyHolder.getExcludeArtifacts().add(new File(classesDir, "com/synthetic/p" + i).getAbsolutePath());
+			}
+			if (classPathState.jarFiles.length > 0) {
+				propertyHolder.getExcludeArtifacts().add(classPathState.jarFiles[0].getAbsolutePath());
+				propertyHolder.getAdditionalArtifacts().add(classPathState.jarFiles[classPathState.jarFiles.length - 1].getAbsolutePath());
+			}
+			pathFilter = new PathFilter(propertyHolder);
+		}
+	}
+
+
+	@Benchmark
+	public int isValid(SyntheticClassPathState state, FilterState filterState) {
+		int valid = 0;
+		for (String path : state.paths) {
+			if (filterState.pathFilter.isValid(path)) valid++;
+		}
+		return valid;
+	}
+
+}
@@ -0,0 +1,423 @@
+package com.javacook.classpathchecker.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.javacook.classpathchecker.ArchiveListing;
+import com.javacook.classpathchecker.ClassPathChecker;
+import com.javacook.classpathchecker.ConflictEvent;
+import com.javacook.classpathchecker.ConflictListener;
+import com.javacook.classpathchecker.IndexSnapshot;
+import com.javacook.classpathchecker.PathFilter;
+import com.javacook.classpathchecker.PropertyHolder;
+import com.javacook.classpathchecker.PropertyHolderInterface;
+import com.javacook.classpathchecker.SharedArtifacts;
+import com.javacook.util.GlobMatcher;
+import com.javacook.util.JavaCookLogger;
+import com.javacook.util.ResourceIndex;
+
+/**
+ * Kleine Regressions-Pruefungen fuer Faelle, die sich mit <code>SyntheticClassPath</code> nicht
+ * abbilden lassen. Jede Pruefung baut sich ihren Klassenpfad in einem temporaeren Verzeichnis;
+ * schlaegt eine fehl, endet das Programm mit Status 1.
+ * <p>
+ * Aufruf: <tt>java -cp benchmarks.jar com.javacook.classpathchecker.benchmarks.RegressionChecks</tt>
+ */
+public class RegressionChecks {
+
+	private static int failures;
+
+
+	public static void main(String[] args) throws Exception {
+		sharedDuplicateOnlyInLocalDirectories();
+		loggerKeepsAllLinesAndStopsOnClose();
+		conflictListenerFailsFast();
+		removeAllOnlyBelowPrefix();
+		truncatedNestedArchiveStaysResource();
+		deflatedNonArchiveStaysResource();
+		globMatcherLikeRegex();
+		snapshotSkippedOrRejected();
+		digestNeverNoDigest();
+		symlinkedJarFollowsExcludes();
+		System.out.println(failures == 0? "All checks passed." : failures + " check(s) failed.");
+		if (failures > 0) System.exit(1);
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * checks                                                                *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Eine Resource kommt im gemeinsamen Index nur in Jars einer anderen Anwendung mehrfach vor,
+	 * in der eigenen Anwendung aber in zwei Verzeichnissen: Das ist ein Duplikat der Anwendung.
+	 */
+	private static void sharedDuplicateOnlyInLocalDirectories() throws Exception {
+		File root = Files.createTempDirectory("cpc-check").toFile();
+		String resource = "x/Y.class";
+		File jarA = writeJar(new File(root, "a.jar"), resource, new byte[] {1});
+		File jarB = writeJar(new File(root, "b.jar"), resource, new byte[] {2});
+		File dir1 = writeFile(new File(root, "d1"), resource, new byte[] {3});
+		File dir2 = writeFile(new File(root, "d2"), resource, new byte[] {4});
+
+		SharedArtifacts shared = SharedArtifacts.getInstance();
+		shared.clear();
+		run(shared, jarA, jarB);
+		String report = run(shared, dir1, dir2);
+		check("shared: duplicate in local directories only",
+				report.contains("<resource path=\"" + resource + "\">") && report.contains(dir1.getPath()) && report.contains(dir2.getPath()));
+		shared.clear();
+	}
+
+
+	/**
+	 * Auch bei voller Warteschlange geht keine Zeile der Log-Datei verloren, und nach
+	 * <code>ClassPathChecker.close()</code> laeuft kein Schreib-Thread des Loggers mehr.
+	 */
+	private static void loggerKeepsAllLinesAndStopsOnClose() throws Exception {
+		File logFile = new File(Files.createTempDirectory("cpc-check").toFile(), "cpc.log");
+		int lines = 100000;
+		JavaCookLogger logger = new JavaCookLogger(false, logFile.getPath(), 10);
+		for (int i = 0; i < lines; i++) {
+			logger.log("line " + i);
+		}
+		logger.close();
+		check("logger: no lines dropped", Files.readAllLines(logFile.toPath(), Charset.defaultCharset()).size() == lines);
+
+		File dir = writeFile(new File(logFile.getParentFile(), "d"), "x/Y.class", new byte[] {1});
+		PropertyHolderInterface propertyHolder = PropertyHolder.getInstance();
+		String logFileName = propertyHolder.getLogFileName();
+		propertyHolder.setLogFileName(logFile.getPath());
+		try {
+			for (int i = 0; i < 5; i++) {
+				run(null, dir);
+			}
+		}
+		finally {
+			propertyHolder.setLogFileName(logFileName);
+		}
+		Thread.sleep(200);
+		int writerThreads = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals("JavaCookLogger")) writerThreads++;
+		}
+		check("logger: writer threads end with close()", writerThreads == 0);
+	}
+
+
+	/**
+	 * Eine Exception des <code>ConflictListener</code> kommt beim Aufrufer von <code>run()</code> an.
+	 */
+	private static void conflictListenerFailsFast() throws Exception {
+		File root = Files.createTempDirectory("cpc-check").toFile();
+		File dir1 = writeFile(new File(root, "d1"), "x/Y.class", new byte[] {1});
+		File dir2 = writeFile(new File(root, "d2"), "x/Y.class", new byte[] {2});
+		final IllegalStateException failure = new IllegalStateException("critical conflict");
+		ClassPathChecker checker = checker(dir1, dir2);
+		try {
+			checker.setConflictListener(new ConflictListener() {
+				public boolean conflictsFound(List<ConflictEvent> events) {
+					throw failure;
+				}
+			});
+			Exception thrown = null;
+			try {
+				checker.run();
+			}
+			catch (Exception e) {
+				thrown = e;
+			}
+			check("listener: exception reaches the caller of run()", thrown == failure && checker.isScanStopped());
+		}
+		finally {
+			checker.close();
+		}
+	}
+
+
+	/**
+	 * <code>ResourceIndex.removeAll</code> entfernt nur die Vorkommen des Artefakts unterhalb des
+	 * Praefixes, auch nachdem einzelne Vorkommen entfernt und wieder eingefuegt wurden.
+	 */
+	private static void removeAllOnlyBelowPrefix() {
+		ResourceIndex index = new ResourceIndex();
+		index.put("a/b/X.class", 0);
+		index.put("a/b/c/Y.class", 0);
+		index.put("a/bc/Z.class", 0);
+		index.put("a/b/X.class", 1);
+		index.remove("a/b/X.class", 0);
+		index.put("a/b/X.class", 0);
+		Set<String> removed = new HashSet<String>();
+		int count = index.removeAll(0, "a/b/", removed);
+		check("index: removeAll below a directory",
+				count == 2 && removed.size() == 2 && index.count("a/bc/Z.class") == 1 && index.count("a/b/X.class") == 1
+				&& index.removeAll(0, null, null) == 1 && index.size() == 1);
+	}
+
+
+	/**
+	 * Ein verschachteltes Archiv mit abgeschnittenen Daten (EOFException statt ZipException)
+	 * bleibt eine gewoehnliche Resource und kostet nicht das ganze aeussere Archiv.
+	 */
+	private static void truncatedNestedArchiveStaysResource() throws Exception {
+		byte[] content = new byte[100000];
+		new Random(1).nextBytes(content);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ZipOutputStream nested = new ZipOutputStream(bytes);
+		nested.putNextEntry(new ZipEntry("x/Y.class"));
+		nested.write(content);
+		nested.close();
+		byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() / 2);
+
+		File jar = new File(Files.createTempDirectory("cpc-check").toFile(), "outer.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			out.putNextEntry(new ZipEntry("lib/nested.jar"));
+			out.write(truncated);
+			out.putNextEntry(new ZipEntry("x/Z.class"));
+			out.write(1);
+		}
+		finally {
+			out.close();
+		}
+
+		PropertyHolderInterface propertyHolder = PropertyHolder.getInstance();
+		int depth = propertyHolder.getNestedArchiveDepth();
+		propertyHolder.setNestedArchiveDepth(1);
+		String report;
+		try {
+			report = run(null, jar);
+		}
+		finally {
+			propertyHolder.setNestedArchiveDepth(depth);
+		}
+		ArchiveListing listing = ArchiveListing.read(jar, 1, Arrays.asList("jar"));
+		check("nested: truncated archive is a resource with a warning",
+				listing.size() == 2 && listing.getNestedCount() == 0 && listing.getUnreadableNestedCount() == 1
+				&& report.contains("WARNING: '" + jar.getPath() + "!/lib/nested.jar' could not be read"));
+	}
+
+
+	/**
+	 * Ein komprimiert abgelegter Eintrag mit Archiv-Endung, der kein Archiv ist, bleibt wie
+	 * ein unkomprimiert abgelegter eine gewoehnliche Resource; ein leeres Archiv bleibt ein Archiv.
+	 */
+	private static void deflatedNonArchiveStaysResource() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new ZipOutputStream(bytes).close();
+		File jar = new File(Files.createTempDirectory("cpc-check").toFile(), "outer.jar");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			out.putNextEntry(new ZipEntry("lib/fake.jar"));
+			out.write("not a zip archive".getBytes("US-ASCII"));
+			out.putNextEntry(new ZipEntry("lib/empty.jar"));
+			out.write(bytes.toByteArray());
+		}
+		finally {
+			out.close();
+		}
+		ArchiveListing listing = ArchiveListing.read(jar, 1, Arrays.asList("jar"));
+		check("nested: deflated non-archive is a resource",
+				listing.size() == 2 && listing.getNestedCount() == 1 && listing.getNestedName(0).equals("lib/empty.jar")
+				&& listing.getUnreadableNestedCount() == 0);
+	}
+
+
+	/**
+	 * Der DFA des <code>GlobMatcher</code> entscheidet wie die regulaeren Ausdruecke, die
+	 * <code>PathFilter</code> frueher aus den Globs erzeugt hat, auch bei vielen Mustern der Form
+	 * <tt>xyz/**</tt>.
+	 */
+	private static void globMatcherLikeRegex() {
+		List<String> globs = new ArrayList<String>(Arrays.asList("**/test-classes/**", "*-sources.jar", "/opt/a/**/b", "x?z"));
+		for (int i = 0; i < 200; i++) {
+			globs.add("module" + i + "/target/**");
+		}
+		GlobMatcher matcher = GlobMatcher.compile(globs);
+		check("glob: one automaton for all patterns",
+				matcher != null
+				&& matcher.matches("/p/test-classes/x/Y.class") && matcher.matches("C:\\p\\test-classes\\")
+				&& !matcher.matches("/p/test-classes") && !matcher.matches("/p/my-test-classes/Y.class")
+				&& matcher.matches("lib/a-sources.jar") && !matcher.matches("lib/a/b-sources.jar/c")
+				&& matcher.matches("/opt/a/b") && matcher.matches("/opt/a/c/d/b") && !matcher.matches("/x/opt/a/b")
+				&& matcher.matches("/x/xyz") && !matcher.matches("/x/x/z")
+				&& matcher.matches("/p/module17/target/") && !matcher.matches("/p/module17/targets/Y.class"));
+	}
+
+
+	/**
+	 * Im speichersparenden Modus wird der Schnappschuss mit einer Warnung ausgelassen, statt den
+	 * Lauf am Ende scheitern zu lassen; ein Schnappschuss mit kaputtem Block-Index wird mit einer
+	 * IOException abgelehnt.
+	 */
+	private static void snapshotSkippedOrRejected() throws Exception {
+		File root = Files.createTempDirectory("cpc-check").toFile();
+		File dir = writeFile(new File(root, "d"), "x/Y.class", new byte[] {1});
+		File snapshot = new File(root, "cpc.snapshot");
+		PropertyHolderInterface propertyHolder = PropertyHolder.getInstance();
+		String snapshotFile = propertyHolder.getSnapshotFile();
+		boolean lowMemory = propertyHolder.isLowMemory();
+		propertyHolder.setSnapshotFile(snapshot.getPath());
+		String report;
+		try {
+			propertyHolder.setLowMemory(true);
+			report = run(null, dir);
+			propertyHolder.setLowMemory(false);
+			run(null, dir);
+		}
+		finally {
+			propertyHolder.setSnapshotFile(snapshotFile);
+			propertyHolder.setLowMemory(lowMemory);
+		}
+		check("snapshot: skipped with a warning in low memory mode",
+				report.contains("WARNING: Snapshot file is not supported") && report.contains("...Success.") && snapshot.isFile());
+
+		RandomAccessFile raf = new RandomAccessFile(snapshot, "rw");
+		try {
+			raf.seek(raf.length() - 4);
+			raf.writeInt(Integer.MAX_VALUE); // Position des (einzigen) Blocks
+		}
+		finally {
+			raf.close();
+		}
+		Exception thrown = null;
+		try {
+			IndexSnapshot.open(snapshot).providersOf("x/Y.class");
+		}
+		catch (Exception e) {
+			thrown = e;
+		}
+		check("snapshot: corrupt block index is an IOException", thrown instanceof IOException);
+	}
+
+
+	/**
+	 * Auch Resourcen ab 2 GiB bekommen einen nicht-negativen Digest, der sich nicht mit
+	 * <code>NO_DIGEST</code> verwechseln laesst; kleinere behalten ihren bisherigen Digest.
+	 */
+	private static void digestNeverNoDigest() {
+		long maxCrc = 0xFFFFFFFFL;
+		check("index: digest of large resources is not NO_DIGEST",
+				ResourceIndex.digest(maxCrc, 0xFFFFFFFFL) != ResourceIndex.NO_DIGEST
+				&& ResourceIndex.digest(maxCrc, 1L << 31) >= 0 && ResourceIndex.digest(maxCrc, Long.MAX_VALUE) >= 0
+				&& ResourceIndex.digest(maxCrc, 1L << 31) != ResourceIndex.digest(maxCrc, 0)
+				&& ResourceIndex.digest(0x1234, 100) == ((100L << 32) | 0x1234));
+	}
+
+
+	/**
+	 * Ein per symbolischem Link eingebundenes Jar wird wie bei <code>getCanonicalPath()</code>
+	 * ueber sein Ziel gefiltert, sowohl fuer <tt>excludeArtifacts</tt> als auch fuer
+	 * <tt>additionalArtifacts</tt>.
+	 */
+	private static void symlinkedJarFollowsExcludes() throws Exception {
+		File root = Files.createTempDirectory("cpc-check").toFile();
+		File excluded = new File(root, "excluded");
+		excluded.mkdirs();
+		File real = writeJar(new File(excluded, "real.jar"), "x/Y.class", new byte[] {1});
+		File lib = new File(root, "lib");
+		lib.mkdirs();
+		File link = Files.createSymbolicLink(new File(lib, "link.jar").toPath(), real.toPath()).toFile();
+		File includedLink = Files.createSymbolicLink(new File(lib, "included.jar").toPath(), real.toPath()).toFile();
+
+		PropertyHolderInterface propertyHolder = PropertyHolder.getInstance();
+		List<String> excludeArtifacts = new ArrayList<String>(propertyHolder.getExcludeArtifacts());
+		List<String> additionalArtifacts = new ArrayList<String>(propertyHolder.getAdditionalArtifacts());
+		try {
+			propertyHolder.getExcludeArtifacts().clear();
+			propertyHolder.getExcludeArtifacts().add(excluded.getPath());
+			PathFilter excluding = new PathFilter(propertyHolder);
+			propertyHolder.getAdditionalArtifacts().clear();
+			propertyHolder.getAdditionalArtifacts().add(includedLink.getPath());
+			PathFilter including = new PathFilter(propertyHolder);
+			check("filter: symlinked jar is filtered by its target",
+					!excluding.isValid(link.getPath()) && including.isValid(includedLink.getPath()));
+		}
+		finally {
+			propertyHolder.getExcludeArtifacts().clear();
+			propertyHolder.getExcludeArtifacts().addAll(excludeArtifacts);
+			propertyHolder.getAdditionalArtifacts().clear();
+			propertyHolder.getAdditionalArtifacts().addAll(additionalArtifacts);
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * helpers                                                               *
+	\*-----------------------------------------------------------------------*/
+
+	private static String run(SharedArtifacts shared, File... artifacts) throws Exception {
+		ClassPathChecker checker = checker(artifacts);
+		try {
+			checker.setSharedArtifacts(shared);
+			return checker.run().xmlReport().toString();
+		}
+		finally {
+			checker.close();
+		}
+	}
+
+
+	/**
+	 * Ein Checker, dessen Klassenpfad genau aus <code>artifacts</code> besteht
+	 */
+	private static ClassPathChecker checker(File... artifacts) throws Exception {
+		PropertyHolderInterface propertyHolder = PropertyHolder.getInstance();
+		propertyHolder.setLogToConsole(false);
+		propertyHolder.getClassPathKeys().clear();
+		propertyHolder.getAdditionalArtifacts().clear();
+		for (File artifact : artifacts) {
+			propertyHolder.getAdditionalArtifacts().add(artifact.getPath());
+		}
+		return new ClassPathChecker(propertyHolder);
+	}
+
+
+	private static void check(String name, boolean passed) {
+		System.out.println((passed? "OK      " : "FAILED  ") + name);
+		if (!passed) failures++;
+	}
+
+
+	private static File writeJar(File jar, String resource, byte[] content) throws IOException {
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			out.putNextEntry(new ZipEntry(resource));
+			out.write(content);
+			out.closeEntry();
+		}
+		finally {
+			out.close();
+		}
+		return jar;
+	}
+
+
+	private static File writeFile(File dir, String resource, byte[] content) throws IOException {
+		File file = new File(dir, resource);
+		file.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+		return dir;
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.javacook.classpathchecker.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.javacook.classpathchecker.ClassPathChecker;
+
+/**
+ * Misst das Rendern des XML-Reports (<code>ClassPathChecker.xmlReport()</code>) fuer einen
+ * einmal vorab gescannten Klassenpfad. Der Report wird in einen Writer geschrieben, der alles
+ * verwirft, sodass nur das Erzeugen gemessen wird.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReportBenchmark {
+
+	@State(Scope.Benchmark)
+	public static class ScannedState {
+
+		public ClassPathChecker checker;
+
+		@Setup(Level.Trial)
+		public void setUp(SyntheticClassPathState classPathState) throws Exception {
+			checker = new ClassPathChecker(classPathState.propertyHolder(1)).run();
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			checker.close();
+		}
+	}
+
+
+	@Benchmark
+	public long xmlReport(ScannedState state) throws IOException {
+		CountingWriter writer = new CountingWriter();
+		state.checker.xmlReport().writeTo(writer);
+		return writer.count;
+	}
+
+
+	/**
+	 * Verwirft alle Zeichen und zaehlt sie nur.
+	 */
+	private static class CountingWriter extends Writer {
+		long count;
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			count += len;
+		}
+
+		@Override
+		public void write(String str, int off, int len) {
+			count += len;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
@@ -0,0 +1,30 @@
+package com.javacook.classpathchecker.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import com.javacook.util.ResourceIndex;
+
+/**
+ * Misst das Einfuegen aller Resource-Namen der Jars in einen leeren <code>ResourceIndex</code>.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResourceIndexBenchmark {
+
+	@Benchmark
+	public ResourceIndex insert(SyntheticClassPathState state) {
+		ResourceIndex index = new ResourceIndex();
+		String[] names = state.resourceNames;
+		int[] ids = state.artifactIds;
+		for (int i = 0; i < names.length; i++) {
+			index.put(names[i], ids[i]);
+		}
+		return index;
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.javacook.classpathchecker.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.javacook.classpathchecker.ClassPathChecker;
+
+/**
+ * Misst einen kompletten Lauf von <code>ClassPathChecker.run()</code> (Verzeichnisse durchwandern,
+ * Jars lesen, Index aufbauen) ueber den erzeugten Klassenpfad, sequentiell und parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ScanBenchmark {
+
+	@Param({"1", "4"})
+	public int scanThreads;
+
+
+	@Benchmark
+	public ClassPathChecker run(SyntheticClassPathState state) throws Exception {
+		ClassPathChecker checker = new ClassPathChecker(state.propertyHolder(scanThreads)).run();
+		checker.close();
+		return checker;
+	}
+
+}
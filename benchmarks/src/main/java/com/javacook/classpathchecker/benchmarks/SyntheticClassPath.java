@@ -0,0 +1,271 @@
+package com.javacook.classpathchecker.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Erzeugt einen reproduzierbaren, kuenstlichen Klassenpfad fuer Benchmarks:
+ * <pre>
+ * targetDir/lib/synthetic-0.jar ... synthetic-(N-1).jar
+ * targetDir/classes/com/synthetic/p3/p0/.../C17.class
+ * </pre>
+ * Jedes Jar und das Verzeichnis <tt>classes</tt> enthalten <code>entriesPerArtifact</code>
+ * Resourcen in <code>dirDepth</code> verschachtelten Package-Verzeichnissen. Der Anteil
+ * <code>duplicateRatio</code> der Resourcen traegt einen Namen, der schon in einem anderen Artefakt
+ * vorkommt. Der Inhalt einer Resource haengt zur Haelfte nur von ihrem Namen ab, sodass es unter
+ * den Duplikaten sowohl byte-gleiche als auch abweichende Kopien gibt.
+ * Gerade Jars werden unkomprimiert (STORED), ungerade komprimiert (DEFLATED) abgelegt.
+ * <p>
+ * Bei gleichen Parametern und gleichem <code>seed</code> sind alle Dateien byte-gleich
+ * (inklusive Zeitstempel), sodass Messungen verschiedener Staende vergleichbar sind.
+ */
+public class SyntheticClassPath {
+
+	/**
+	 * Fester Zeitstempel fuer alle Eintraege und Dateien (2010-01-01)
+	 */
+	private final static long FIXED_TIME = 1262304000000L;
+
+	/**
+	 * Anzahl der Unterverzeichnisse pro Package-Ebene
+	 */
+	private final static int FANOUT = 8;
+
+	private final int jarCount;
+	private final int entriesPerArtifact;
+	private final double duplicateRatio;
+	private final int dirDepth;
+	private final long seed;
+
+	private File libDir;
+	private File classesDir;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	public SyntheticClassPath(int jarCount, int entriesPerArtifact, double duplicateRatio, int dirDepth, long seed) {
+		if (jarCount < 0) throw new IllegalArgumentException("Argument 'jarCount' is negative.");
+		if (entriesPerArtifact < 0) throw new IllegalArgumentException("Argument 'entriesPerArtifact' is negative.");
+		if (duplicateRatio < 0 || duplicateRatio > 1) throw new IllegalArgumentException("Argument 'duplicateRatio' must be in [0, 1].");
+		if (dirDepth < 0) throw new IllegalArgumentException("Argument 'dirDepth' is negative.");
+		this.jarCount = jarCount;
+		this.entriesPerArtifact = entriesPerArtifact;
+		this.duplicateRatio = duplicateRatio;
+		this.dirDepth = dirDepth;
+		this.seed = seed;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Erzeugt die Jars und das Klassenverzeichnis unterhalb von <code>targetDir</code>.
+	 * Bereits vorhandene Dateien gleichen Namens werden ueberschrieben.
+	 */
+	public SyntheticClassPath generate(File targetDir) throws IOException {
+		Random random = new Random(seed);
+		List<String> usedNames = new ArrayList<String>();
+
+		libDir = new File(targetDir, "lib");
+		classesDir = new File(targetDir, "classes");
+		mkdirs(libDir);
+		mkdirs(classesDir);
+
+		for (int j = 0; j < jarCount; j++) {
+			File jar = new File(libDir, "synthetic-" + j + ".jar");
+			writeJar(jar, j % 2 == 0, nextArtifactNames(random, usedNames), random);
+		}
+		for (String name : nextArtifactNames(random, usedNames)) {
+			File file = new File(classesDir, name);
+			mkdirs(file.getParentFile());
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write(content(name, random));
+			}
+			finally {
+				out.close();
+			}
+			file.setLastModified(FIXED_TIME);
+		}
+		return this;
+	}
+
+
+	public File getLibDir() {
+		return libDir;
+	}
+
+	public File getClassesDir() {
+		return classesDir;
+	}
+
+
+	/**
+	 * Liefert den erzeugten Klassenpfad (das Verzeichnis der Jars und das Klassenverzeichnis)
+	 * im Format von <tt>java.class.path</tt>.
+	 */
+	public String getClassPath() {
+		return libDir.getAbsolutePath() + File.pathSeparator + classesDir.getAbsolutePath();
+	}
+
+
+	/**
+	 * Loescht <code>file</code> samt Inhalt.
+	 */
+	public static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liefert die Resource-Namen eines Artefakts. Mit Wahrscheinlichkeit <code>duplicateRatio</code>
+	 * wird ein schon in einem anderen Artefakt verwendeter Name wiederverwendet.
+	 */
+	private List<String> nextArtifactNames(Random random, List<String> usedNames) {
+		Set<String> names = new HashSet<String>();
+		List<String> result = new ArrayList<String>(entriesPerArtifact);
+		int previouslyUsed = usedNames.size();
+		while (result.size() < entriesPerArtifact) {
+			String name = null;
+			if (previouslyUsed > 0 && random.nextDouble() < duplicateRatio) {
+				name = usedNames.get(random.nextInt(previouslyUsed));
+			}
+			// Neue Namen sind durch die fortlaufende Nummer eindeutig:
+			if (name == null || names.contains(name)) {
+				name = newName(random, usedNames.size() + result.size());
+			}
+			names.add(name);
+			result.add(name);
+		}
+		usedNames.addAll(result);
+		return result;
+	}
+
+
+	private String newName(Random random, int number) {
+		StringBuilder name = new StringBuilder("com/synthetic/");
+		for (int d = 0; d < dirDepth; d++) {
+			name.append('p').append(random.nextInt(FANOUT)).append('/');
+		}
+		return name.append('C').append(number).append(".class").toString();
+	}
+
+
+	/**
+	 * Inhalt einer Resource: Die Haelfte der Resourcen haengt nur vom Namen ab (und ist damit
+	 * in allen Artefakten identisch), die andere Haelfte ist zufaellig.
+	 */
+	private byte[] content(String name, Random random) {
+		Random contentRandom = random.nextBoolean()? new Random(name.hashCode()) : random;
+		byte[] content = new byte[64 + contentRandom.nextInt(960)];
+		contentRandom.nextBytes(content);
+		return content;
+	}
+
+
+	private void writeJar(File jar, boolean stored, List<String> names, Random random) throws IOException {
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar));
+		try {
+			Set<String> directories = new HashSet<String>();
+			for (String name : names) {
+				addDirectories(out, name, directories);
+				byte[] content = content(name, random);
+				ZipEntry entry = new ZipEntry(name);
+				entry.setTime(FIXED_TIME);
+				if (stored) {
+					CRC32 crc = new CRC32();
+					crc.update(content);
+					entry.setMethod(ZipEntry.STORED);
+					entry.setSize(content.length);
+					entry.setCompressedSize(content.length);
+					entry.setCrc(crc.getValue());
+				}
+				out.putNextEntry(entry);
+				out.write(content);
+				out.closeEntry();
+			}
+		}
+		finally {
+			out.close();
+		}
+		jar.setLastModified(FIXED_TIME);
+	}
+
+
+	/**
+	 * Legt die Verzeichniseintraege zu <code>name</code> an, wie es auch das jar-Tool tut.
+	 */
+	private void addDirectories(ZipOutputStream out, String name, Set<String> directories) throws IOException {
+		int slash = name.indexOf('/');
+		while (slash >= 0) {
+			String directory = name.substring(0, slash + 1);
+			if (directories.add(directory)) {
+				ZipEntry entry = new ZipEntry(directory);
+				entry.setTime(FIXED_TIME);
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(0);
+				entry.setCompressedSize(0);
+				entry.setCrc(0);
+				out.putNextEntry(entry);
+				out.closeEntry();
+			}
+			slash = name.indexOf('/', slash + 1);
+		}
+	}
+
+
+	private static void mkdirs(File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create directory '" + dir + "'.");
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * Test                                                                  *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Aufruf: <tt>SyntheticClassPath targetDir [jars] [entriesPerArtifact] [duplicateRatio] [dirDepth] [seed]</tt>
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: SyntheticClassPath targetDir [jars=20] [entriesPerArtifact=2000] [duplicateRatio=0.05] [dirDepth=4] [seed=42]");
+			System.exit(1);
+		}
+		int jars 				= (args.length > 1)? Integer.parseInt(args[1]) : 20;
+		int entries 			= (args.length > 2)? Integer.parseInt(args[2]) : 2000;
+		double duplicateRatio 	= (args.length > 3)? Double.parseDouble(args[3]) : 0.05;
+		int dirDepth 			= (args.length > 4)? Integer.parseInt(args[4]) : 4;
+		long seed 				= (args.length > 5)? Long.parseLong(args[5]) : 42L;
+
+		SyntheticClassPath classPath = new SyntheticClassPath(jars, entries, duplicateRatio, dirDepth, seed);
+		classPath.generate(new File(args[0]));
+		System.out.println(classPath.getClassPath());
+	}
+
+}
@@ -0,0 +1,137 @@
+package com.javacook.classpathchecker.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.javacook.classpathchecker.ArchiveListing;
+import com.javacook.classpathchecker.PropertyHolder;
+import com.javacook.classpathchecker.PropertyHolderInterface;
+
+/**
+ * Gemeinsamer Zustand der Benchmarks: ein mit <code>SyntheticClassPath</code> erzeugter Klassenpfad
+ * in einem temporaeren Verzeichnis, das nach dem Lauf wieder geloescht wird. Die Parameter koennen
+ * per <tt>-p jars=100</tt> usw. ueberschrieben werden.
+ * <p>
+ * Zusaetzlich werden die Pfade aller Artefakte und Dateien sowie die Resource-Namen aller Jars
+ * vorab ermittelt, damit z.B. <code>ResourceIndexBenchmark</code> nur das Einfuegen misst.
+ */
+@State(Scope.Benchmark)
+public class SyntheticClassPathState {
+
+	/**
+	 * Key, unter dem der erzeugte Klassenpfad in den System-Properties abgelegt wird
+	 */
+	public final static String CLASS_PATH_KEY = "synthetic.class.path";
+
+	@Param("20")
+	public int jars;
+
+	@Param("2000")
+	public int entriesPerArtifact;
+
+	@Param("0.05")
+	public double duplicateRatio;
+
+	@Param("4")
+	public int dirDepth;
+
+	@Param("42")
+	public long seed;
+
+	public File baseDir;
+	public SyntheticClassPath classPath;
+
+	public File[] jarFiles;
+
+	/**
+	 * Pfade aller Jars, Verzeichnisse und Dateien des Klassenpfads
+	 */
+	public String[] paths;
+
+	/**
+	 * Resource-Namen aller Jars hintereinander; <code>artifactIds[i]</code> ist die Nummer des Jars von <code>resourceNames[i]</code>
+	 */
+	public String[] resourceNames;
+	public int[] artifactIds;
+
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		baseDir = File.createTempFile("cpc-bench", "");
+		if (!baseDir.delete() || !baseDir.mkdir()) {
+			throw new IOException("Could not create directory '" + baseDir + "'.");
+		}
+		classPath = new SyntheticClassPath(jars, entriesPerArtifact, duplicateRatio, dirDepth, seed).generate(baseDir);
+
+		jarFiles = classPath.getLibDir().listFiles();
+		Arrays.sort(jarFiles);
+
+		List<String> pathList = new ArrayList<String>();
+		collectPaths(classPath.getLibDir(), pathList);
+		collectPaths(classPath.getClassesDir(), pathList);
+		paths = pathList.toArray(new String[pathList.size()]);
+
+		List<String> names = new ArrayList<String>();
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int j = 0; j < jarFiles.length; j++) {
+			ArchiveListing listing = ArchiveListing.read(jarFiles[j]);
+			for (int i = 0; i < listing.size(); i++) {
+				names.add(listing.getName(i));
+				ids.add(j);
+			}
+		}
+		resourceNames = names.toArray(new String[names.size()]);
+		artifactIds = new int[ids.size()];
+		for (int i = 0; i < artifactIds.length; i++) {
+			artifactIds[i] = ids.get(i);
+		}
+	}
+
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		SyntheticClassPath.delete(baseDir);
+	}
+
+
+	/**
+	 * Liefert die (einzige) <code>PropertyHolder</code>-Instanz, eingestellt auf den erzeugten
+	 * Klassenpfad, ohne Konsolen-Ausgabe und ohne Scan-Cache.
+	 */
+	public PropertyHolderInterface propertyHolder(int scanThreads) throws Exception {
+		System.setProperty(CLASS_PATH_KEY, classPath.getClassPath());
+		PropertyHolderInterface propertyHolder = PropertyHolder.getInstance();
+		propertyHolder.getClassPathKeys().clear();
+		propertyHolder.getClassPathKeys().add(CLASS_PATH_KEY);
+		propertyHolder.getAdditionalArtifacts().clear();
+		propertyHolder.getExcludeArtifacts().clear();
+		propertyHolder.setLogToConsole(false);
+		propertyHolder.setLogFileName(null);
+		propertyHolder.setScanCacheFile(null);
+		propertyHolder.setScanThreads(scanThreads);
+		return propertyHolder;
+	}
+
+
+	private static void collectPaths(File file, List<String> result) {
+		result.add(file.getAbsolutePath());
+		File[] children = file.listFiles();
+		if (children != null) {
+			Arrays.sort(children);
+			for (File child : children) {
+				collectPaths(child, result);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,218 @@
+package com.javacook.classpathchecker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.javacook.util.ArtifactTable;
+import com.javacook.util.FileUtils;
+import com.javacook.util.ResourceIndex;
+
+/**
+ * Sicht einer Anwendung auf die <code>SharedArtifacts</code>: Sie kennt nur die Reihenfolge
+ * der Artefakte der Anwendung (Archive aus dem gemeinsamen Index, Verzeichnisse aus dem lokalen
+ * Index des <code>ClassPathChecker</code>) und berechnet daraus die Konflikte der Anwendung.
+ * <p>
+ * Die Vorkommen einer Resource stehen in der Reihenfolge, in der die Anwendung die Artefakte
+ * zum ersten Mal gesehen hat (Archive bei <code>addArchive</code>, Verzeichnisse bei ihrer
+ * ersten Resource), die Resourcen selbst sind nach Namen sortiert.
+ * <p>
+ * Die Klasse ist nicht thread-sicher.
+ */
+class ApplicationView {
+
+	private final SharedArtifacts shared;
+	private final ArtifactTable localTable;
+	private final ResourceIndex localIndex;
+
+	/** Rang + 1 je ID im gemeinsamen Index (0 = gehoert nicht zur Anwendung) */
+	private int[] sharedRanks = new int[64];
+	/** Rang + 1 je ID im lokalen Index */
+	private int[] localRanks = new int[16];
+	private int artifactCount;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	ApplicationView(SharedArtifacts shared, ArtifactTable localTable, ResourceIndex localIndex) {
+		this.shared = shared;
+		this.localTable = localTable;
+		this.localIndex = localIndex;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * package methods                                                       *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Nimmt das (bei <code>shared</code> bereits registrierte) Archiv <code>archivePath</code> auf.
+	 */
+	void addArchive(String archivePath) {
+		int id;
+		synchronized (shared) {
+			id = shared.getArtifactTable().getId(archivePath);
+		}
+		if (id < 0) throw new IllegalStateException("Archive '" + archivePath + "' is not registered.");
+		if (id >= sharedRanks.length) sharedRanks = Arrays.copyOf(sharedRanks, Math.max(id + 1, sharedRanks.length * 2));
+		if (sharedRanks[id] == 0) sharedRanks[id] = ++artifactCount;
+	}
+
+
+	/**
+	 * Nimmt das Verzeichnis mit der ID <code>localId</code> aus dem lokalen Index auf.
+	 */
+	void addDirectory(int localId) {
+		if (localId >= localRanks.length) localRanks = Arrays.copyOf(localRanks, Math.max(localId + 1, localRanks.length * 2));
+		if (localRanks[localId] == 0) localRanks[localId] = ++artifactCount;
+	}
+
+
+	int getArtifactCount() {
+		return artifactCount;
+	}
+
+
+	/**
+	 * Berechnet alle mehrfach vorkommenden Resourcen der Anwendung, sortiert nach Namen.
+	 * Betrachtet werden nur die mehrfachen Vorkommen des gemeinsamen Index sowie die Resourcen
+	 * der Verzeichnisse; der Aufwand haengt also nicht von der Groesse der Archive ab.
+	 */
+	List<Duplicate> duplicates() {
+		List<Duplicate> result = new ArrayList<Duplicate>();
+		List<Occurrence> occurrences = new ArrayList<Occurrence>();
+		synchronized (shared) {
+			ResourceIndex sharedIndex = shared.getIndex();
+			ArtifactTable sharedTable = shared.getArtifactTable();
+
+			// Resourcen, die im gemeinsamen Index mehrfach vorkommen (ggf. auch in Verzeichnissen).
+			// Die Verzeichnisse zaehlen auch dann, wenn keins der Archive zur Anwendung gehoert:
+			ResourceIndex.Cursor cursor = sharedIndex.duplicateCursor();
+			while (cursor.next()) {
+				occurrences.clear();
+				addShared(cursor, sharedTable, occurrences);
+				String name = cursor.name();
+				addLocal(localIndex.cursor(name), occurrences);
+				if (occurrences.size() > 1) result.add(new Duplicate(name, occurrences));
+			}
+
+			// Resourcen der Verzeichnisse, die im gemeinsamen Index hoechstens einmal vorkommen
+			// (alle anderen hat die Schleife oben vollstaendig erfasst):
+			ResourceIndex.Cursor local = localIndex.cursor();
+			while (local.next()) {
+				String name = local.name();
+				ResourceIndex.Cursor sharedCursor = sharedIndex.cursor(name);
+				if (sharedCursor != null && sharedCursor.count() > 1) continue; // schon oben erfasst
+				occurrences.clear();
+				addLocal(local, occurrences);
+				if (sharedCursor != null) addShared(sharedCursor, sharedTable, occurrences);
+				if (occurrences.size() > 1) result.add(new Duplicate(name, occurrences));
+			}
+		}
+		Collections.sort(result, new Comparator<Duplicate>() {
+			public int compare(Duplicate d1, Duplicate d2) {
+				return d1.name.compareTo(d2.name);
+			}
+		});
+		return result;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	private void addShared(ResourceIndex.Cursor cursor, ArtifactTable sharedTable, List<Occurrence> occurrences) {
+		for (int i = 0; i < cursor.count(); i++) {
+			int id = cursor.occurrence(i);
+			if (id < sharedRanks.length && sharedRanks[id] != 0) {
+				occurrences.add(new Occurrence(sharedRanks[id], sharedTable.getPath(id), cursor.digest(i)));
+			}
+		}
+	}
+
+
+	private void addLocal(ResourceIndex.Cursor cursor, List<Occurrence> occurrences) {
+		if (cursor == null) return;
+		for (int i = 0; i < cursor.count(); i++) {
+			int id = cursor.occurrence(i);
+			int rank = (id < localRanks.length)? localRanks[id] : 0;
+			occurrences.add(new Occurrence(rank, localTable.getPath(id), cursor.digest(i)));
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	private static class Occurrence implements Comparable<Occurrence> {
+		final int rank;
+		final String path;
+		final long digest;
+
+		Occurrence(int rank, String path, long digest) {
+			this.rank = rank;
+			this.path = path;
+			this.digest = digest;
+		}
+
+		public int compareTo(Occurrence other) {
+			return (rank < other.rank)? -1 : (rank == other.rank)? 0 : 1;
+		}
+	}
+
+
+	/**
+	 * Eine mehrfach vorkommende Resource der Anwendung
+	 */
+	static class Duplicate {
+		private final String name;
+		private final String[] paths;
+		private final long[] digests;
+		private Boolean identical;
+
+		private Duplicate(String name, List<Occurrence> occurrences) {
+			Collections.sort(occurrences);
+			this.name = name;
+			this.paths = new String[occurrences.size()];
+			this.digests = new long[occurrences.size()];
+			for (int i = 0; i < paths.length; i++) {
+				paths[i] = occurrences.get(i).path;
+				digests[i] = occurrences.get(i).digest;
+			}
+		}
+
+		String getName() {
+			return name;
+		}
+
+		int count() {
+			return paths.length;
+		}
+
+		String getPath(int i) {
+			return paths[i];
+		}
+
+		long getDigest(int i) {
+			return digests[i];
+		}
+
+		/**
+		 * Siehe <code>FileUtils.isIdentical</code>: Dateien in Verzeichnissen werden erst hier gelesen.
+		 */
+		boolean isIdentical() throws IOException {
+			if (identical == null) {
+				identical = Boolean.valueOf(FileUtils.isIdentical(name, paths, digests, paths.length));
+			}
+			return identical.booleanValue();
+		}
+	}
+
+}
@@ -0,0 +1,412 @@
+package com.javacook.classpathchecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+import com.javacook.util.ResourceClassifier;
+import com.javacook.util.ZipCentralDirectory;
+
+/**
+ * Inhaltsverzeichnis eines Archivs: die Namen aller Resourcen (ohne Verzeichnisse) in der
+ * Reihenfolge des Central Directory, jeweils mit CRC-32 und unkomprimierter Groesse.
+ * Ein solches Listing kann gecacht werden, sodass das Archiv nicht erneut geoeffnet werden muss.
+ * <p>
+ * Enthaelt das Archiv selbst wieder Archive (z.B. <tt>BOOT-INF/lib/*.jar</tt> in einem Fat-Jar oder
+ * <tt>WEB-INF/lib/*.jar</tt> in einem War), werden deren Listings bis zur gewuenschten Tiefe als
+ * verschachtelte Listings mitgeliefert. Unkomprimiert abgelegte Archive werden dabei direkt an
+ * ihrem Offset in der aeusseren Datei gelesen, komprimierte werden gestreamt (ohne temporaere Dateien).
+ * Laesst sich ein verschachteltes Archiv nicht lesen, bleibt es eine gewoehnliche Resource; der
+ * Fehler wird vermerkt (siehe <code>getUnreadableNestedCount()</code>), bricht das Lesen des
+ * aeusseren Archivs aber nicht ab.
+ */
+public class ArchiveListing {
+
+	private String[] names;
+	private long[] crcs;
+	private long[] sizes;
+	private int size;
+
+	/** Index des Eintrags, in dem das jeweilige verschachtelte Archiv liegt */
+	private int[] nestedEntries;
+	private List<ArchiveListing> nestedListings;
+
+	/** Beim Lesen angefasste Bytes (inkl. verschachtelter Archive), 0 bei gecachten Listings */
+	private long bytesRead;
+
+	/** Verschachtelte Archive, die nicht gelesen werden konnten (werden nicht gecacht) */
+	private List<String> unreadableNames;
+	private List<IOException> unreadableCauses;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	public ArchiveListing(int capacity) {
+		names 	= new String[Math.max(capacity, 1)];
+		crcs 	= new long[names.length];
+		sizes 	= new long[names.length];
+	}
+
+
+	/**
+	 * Liest das Inhaltsverzeichnis des Archivs <code>archive</code>. Es wird nur das Central
+	 * Directory gelesen, nicht die Daten.
+	 */
+	public static ArchiveListing read(File archive) throws IOException {
+		return read(archive, 0, null);
+	}
+
+
+	/**
+	 * Liest das Inhaltsverzeichnis des Archivs <code>archive</code> inklusive der darin enthaltenen
+	 * Archive bis zur Tiefe <code>nestedDepth</code>.
+	 * @param nestedDepth 0 = verschachtelte Archive werden nicht untersucht
+	 * @param archiveExtensions Endungen, an denen verschachtelte Archive erkannt werden (z.B. "jar")
+	 */
+	public static ArchiveListing read(File archive, int nestedDepth, Collection<String> archiveExtensions) throws IOException {
+		ResourceClassifier archives = (archiveExtensions == null)? null : new ResourceClassifier(archiveExtensions, null);
+		return read(archive, nestedDepth, archives, ResourceClassifier.ALL);
+	}
+
+
+	/**
+	 * Wie <code>read(File, int, Collection)</code>, nur dass lediglich die Eintraege aufgenommen
+	 * werden, die <code>resources</code> annimmt. Die Entscheidung faellt auf den Bytes des
+	 * Central Directory, abgelehnte Namen werden also gar nicht erst dekodiert. Verschachtelte
+	 * Archive werden unabhaengig davon untersucht und aufgenommen.
+	 * @param archives erkennt verschachtelte Archive (null = keine)
+	 * @param resources Filter fuer die aufgenommenen Eintraege
+	 */
+	public static ArchiveListing read(File archive, int nestedDepth, ResourceClassifier archives, ResourceClassifier resources) throws IOException {
+		if (resources == null) throw new IllegalArgumentException("Argument 'resources' is null.");
+		RandomAccessFile raf = new RandomAccessFile(archive, "r");
+		try {
+			return read(raf.getChannel(), 0, raf.length(), nestedDepth, archives, resources);
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+
+	private static ArchiveListing read(FileChannel channel, long offset, long length,
+			int nestedDepth, ResourceClassifier archives, ResourceClassifier resources) throws IOException {
+
+		ZipCentralDirectory centralDirectory = ZipCentralDirectory.open(channel, offset, length);
+		try {
+			ArchiveListing listing = new ArchiveListing((int)Math.min(centralDirectory.getEntryCount(), 1 << 20));
+			while (centralDirectory.next()) {
+				// Directories sollen nicht gesammelt werden - erkennbar am Suffix '/' (auch bei Windows)
+				if (centralDirectory.nameEndsWith('/')) continue;
+
+				boolean nestedArchive = nestedDepth > 0 && archives != null && archives.accepts(centralDirectory);
+				if (!nestedArchive && !resources.accepts(centralDirectory)) continue;
+
+				String name = centralDirectory.name();
+				int entry = listing.size();
+				listing.add(name, centralDirectory.crc(), centralDirectory.uncompressedSize());
+
+				if (nestedArchive) {
+					ArchiveListing nested = null;
+					try {
+						long dataOffset = centralDirectory.dataOffset();
+						if (centralDirectory.method() == ZipCentralDirectory.STORED) {
+							nested = read(channel, dataOffset, centralDirectory.compressedSize(), nestedDepth - 1, archives, resources);
+						}
+						else if (centralDirectory.method() == ZipCentralDirectory.DEFLATED) {
+							Inflater inflater = new Inflater(true);
+							try {
+								InputStream in = new InflaterInputStream(
+										new ChannelInputStream(channel, dataOffset, centralDirectory.compressedSize()), inflater, 8192);
+								nested = readStream(in, nestedDepth - 1, archives, resources);
+							}
+							finally {
+								inflater.end();
+							}
+						}
+					}
+					catch (ZipException e) {
+						// kein gueltiges Archiv => bleibt eine gewoehnliche Resource
+					}
+					catch (IOException e) {
+						// z.B. abgeschnittene Daten => ebenso, aber vermerken
+						listing.addUnreadable(name, e);
+					}
+					if (nested != null) {
+						listing.addNested(entry, nested);
+						listing.bytesRead += (centralDirectory.method() == ZipCentralDirectory.STORED)?
+								nested.bytesRead : centralDirectory.compressedSize();
+					}
+				}
+			}
+			listing.bytesRead += centralDirectory.getBytesRead();
+			return listing;
+		}
+		finally {
+			centralDirectory.close();
+		}
+	}
+
+
+	/**
+	 * Liest ein (verschachteltes) Archiv streamend ueber die Local Header. CRC und Groesse stehen
+	 * erst nach dem Lesen eines Eintrags sicher fest (Data Descriptor), daher wird jeder Eintrag
+	 * vor dem Hinzufuegen geschlossen.
+	 * <p>
+	 * Ohne gueltige Signatur am Anfang ist es kein Archiv (<code>ZipInputStream</code> liefert dann
+	 * einfach keinen Eintrag, das saehe wie ein leeres Archiv aus); es bleibt eine gewoehnliche
+	 * Resource wie beim unkomprimiert abgelegten Archiv.
+	 * @param in die Daten des Archivs; wird nicht geschlossen
+	 * @throws ZipException falls <code>in</code> kein Archiv ist
+	 */
+	private static ArchiveListing readStream(InputStream in, int nestedDepth,
+			ResourceClassifier archives, ResourceClassifier resources) throws IOException {
+		PushbackInputStream pushback = new PushbackInputStream(in, 4);
+		byte[] signature = new byte[4];
+		int read = 0;
+		for (int n; read < signature.length && (n = pushback.read(signature, read, signature.length - read)) >= 0; ) {
+			read += n;
+		}
+		if (read < signature.length || signature[0] != 'P' || signature[1] != 'K'
+				|| !((signature[2] == 3 && signature[3] == 4) || (signature[2] == 5 && signature[3] == 6))) {
+			throw new ZipException("not a zip archive (no local or end header signature)");
+		}
+		pushback.unread(signature);
+		ZipInputStream zipStream = new ZipInputStream(pushback);
+
+		ArchiveListing listing = new ArchiveListing(64);
+		ZipEntry entry;
+		while ((entry = zipStream.getNextEntry()) != null) {
+			if (entry.isDirectory()) continue;
+
+			String name = entry.getName();
+			boolean nestedArchive = nestedDepth > 0 && archives != null && archives.accepts(name);
+			if (!nestedArchive && !resources.accepts(name)) continue;
+
+			ArchiveListing nested = null;
+			if (nestedArchive) {
+				try {
+					// Der innere Stream liest die Daten des aktuellen Eintrags; nicht schliessen!
+					nested = readStream(zipStream, nestedDepth - 1, archives, resources);
+				}
+				catch (ZipException e) {
+					// kein gueltiges Archiv => bleibt eine gewoehnliche Resource
+				}
+				catch (IOException e) {
+					listing.addUnreadable(name, e);
+				}
+			}
+			zipStream.closeEntry();
+			int index = listing.size();
+			listing.add(name, entry.getCrc(), entry.getSize());
+			if (nested != null) {
+				listing.addNested(index, nested);
+			}
+		}
+		return listing;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	public void add(String name, long crc, long uncompressedSize) {
+		if (name == null) throw new IllegalArgumentException("Argument 'name' is null.");
+		if (size == names.length) {
+			int newLength = names.length * 2;
+			names 	= Arrays.copyOf(names, newLength);
+			crcs 	= Arrays.copyOf(crcs, newLength);
+			sizes 	= Arrays.copyOf(sizes, newLength);
+		}
+		names[size] = name;
+		crcs[size] 	= crc;
+		sizes[size] = uncompressedSize;
+		size++;
+	}
+
+
+	public int size() {
+		return size;
+	}
+
+	public String getName(int index) {
+		checkIndex(index);
+		return names[index];
+	}
+
+	public long getCrc(int index) {
+		checkIndex(index);
+		return crcs[index];
+	}
+
+	public long getSize(int index) {
+		checkIndex(index);
+		return sizes[index];
+	}
+
+
+	/**
+	 * Anzahl der Resourcen inklusive derer in verschachtelten Archiven
+	 */
+	public int getTotalSize() {
+		int result = size;
+		for (int n = 0; n < getNestedCount(); n++) {
+			result += getNested(n).getTotalSize();
+		}
+		return result;
+	}
+
+
+	/**
+	 * Anzahl der Bytes, die beim Lesen des Archivs angefasst wurden (Central Directory, Local
+	 * Header und komprimierte verschachtelte Archive). Bei Listings aus dem Cache 0.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+
+	/**
+	 * Fuegt das Listing des im Eintrag <code>entry</code> enthaltenen Archivs hinzu. Dessen
+	 * uebersprungene Archive werden (mit vorangestelltem Namen des Eintrags) uebernommen.
+	 */
+	public void addNested(int entry, ArchiveListing listing) {
+		checkIndex(entry);
+		if (listing == null) throw new IllegalArgumentException("Argument 'listing' is null.");
+		if (nestedListings == null) {
+			nestedEntries = new int[4];
+			nestedListings = new ArrayList<ArchiveListing>();
+		}
+		else if (nestedListings.size() == nestedEntries.length) {
+			nestedEntries = Arrays.copyOf(nestedEntries, nestedEntries.length * 2);
+		}
+		nestedEntries[nestedListings.size()] = entry;
+		nestedListings.add(listing);
+		String name = names[entry];
+		for (int i = 0; i < listing.getUnreadableNestedCount(); i++) {
+			addUnreadable(name + ClassPathChecker.NESTED_SEPARATOR + listing.getUnreadableNestedName(i), listing.getUnreadableNestedCause(i));
+		}
+	}
+
+
+	/**
+	 * Anzahl der verschachtelten Archive (auch tiefer verschachtelter), die beim Lesen wegen eines
+	 * Fehlers uebersprungen wurden. Bei Listings aus dem Cache 0.
+	 */
+	public int getUnreadableNestedCount() {
+		return (unreadableNames == null)? 0 : unreadableNames.size();
+	}
+
+	/**
+	 * Pfad des <code>index</code>-ten uebersprungenen Archivs relativ zu diesem (z.B. <tt>lib/a.jar!/lib/b.jar</tt>)
+	 */
+	public String getUnreadableNestedName(int index) {
+		return unreadableNames.get(index);
+	}
+
+	public IOException getUnreadableNestedCause(int index) {
+		return unreadableCauses.get(index);
+	}
+
+
+	/**
+	 * Anzahl der verschachtelten Archive, deren Listing mitgeliefert wird
+	 */
+	public int getNestedCount() {
+		return (nestedListings == null)? 0 : nestedListings.size();
+	}
+
+	/**
+	 * Index des Eintrags, in dem das <code>index</code>-te verschachtelte Archiv liegt
+	 */
+	public int getNestedEntry(int index) {
+		if (index < 0 || index >= getNestedCount()) throw new IndexOutOfBoundsException("index = " + index + ", nested = " + getNestedCount());
+		return nestedEntries[index];
+	}
+
+	/**
+	 * Name des Eintrags, in dem das <code>index</code>-te verschachtelte Archiv liegt (z.B. <tt>BOOT-INF/lib/x.jar</tt>)
+	 */
+	public String getNestedName(int index) {
+		return names[getNestedEntry(index)];
+	}
+
+	public ArchiveListing getNested(int index) {
+		return nestedListings.get(index);
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Vermerkt, dass das verschachtelte Archiv <code>name</code> nicht gelesen werden konnte.
+	 */
+	private void addUnreadable(String name, IOException cause) {
+		if (unreadableNames == null) {
+			unreadableNames = new ArrayList<String>();
+			unreadableCauses = new ArrayList<IOException>();
+		}
+		unreadableNames.add(name);
+		unreadableCauses.add(cause);
+	}
+
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException("index = " + index + ", size = " + size);
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liest einen Ausschnitt eines Channels (mit positionierten Zugriffen, d.h. ohne die
+	 * Position des Channels zu veraendern).
+	 */
+	private static class ChannelInputStream extends InputStream {
+		private final FileChannel channel;
+		private long position;
+		private final long end;
+
+		ChannelInputStream(FileChannel channel, long offset, long length) {
+			this.channel = channel;
+			this.position = offset;
+			this.end = offset + length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return (read(b, 0, 1) < 0)? -1 : (b[0] & 0xFF);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (position >= end) return -1;
+			int toRead = (int)Math.min(len, end - position);
+			int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+			if (read > 0) position += read;
+			return read;
+		}
+	}
+
+}
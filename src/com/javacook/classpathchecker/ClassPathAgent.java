@@ -0,0 +1,401 @@
+package com.javacook.classpathchecker;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.javacook.util.ConcurrentLog;
+import com.javacook.util.FileUtils;
+
+/**
+ * Agent-Modus (<tt>-javaagent:cpchecker.jar[=reportFile]</tt>): Statt alle mehrfach vorhandenen
+ * Resourcen zu melden, werden nur die Konflikte der Klassen gemeldet, die zur Laufzeit tatsaechlich
+ * geladen werden, zusammen mit dem Artefakt, aus dem sie geladen wurden.
+ * <p>
+ * Ein <code>ClassFileTransformer</code> zeichnet fuer jede geladene Klasse nur deren Namen und
+ * <code>CodeSource</code> in einem <code>ConcurrentLog</code> auf (ohne Sperren, eine kleine
+ * Allokation, der Bytecode wird nicht angefasst). Der Klassenpfad wird parallel dazu in einem
+ * Daemon-Thread durchstoebert; erst beim Report werden die aufgezeichneten Klassen gegen den
+ * Index geprueft.
+ * <p>
+ * Ist beim Start eine Report-Datei angegeben, wird der Report beim Beenden der JVM geschrieben.
+ * Ist der Scan dann nach <code>REPORT_TIMEOUT_MILLIS</code> noch nicht fertig, enthaelt der Report
+ * keine Konflikte, sondern nur eine Warnung und die bisherigen Log-Eintraege. Fehler landen im
+ * Logger des Checkers.
+ */
+public class ClassPathAgent {
+
+	private final static String CLASS_SUFFIX = ".class";
+	private final static String CRLF = System.getProperty("line.separator");
+
+	/** So lange wartet der Shutdown-Hook hoechstens auf das Ende des Scans */
+	private final static long REPORT_TIMEOUT_MILLIS = 10000;
+
+	private static Instrumentation instrumentation;
+
+	private final static ConcurrentLog<LoadedClass> loadedClasses = new ConcurrentLog<LoadedClass>();
+
+	/**
+	 * Der Checker des Hintergrund-Scans (gesetzt, sobald <code>scanned</code> auf 0 steht)
+	 */
+	private static volatile ClassPathChecker checker;
+	private final static CountDownLatch scanned = new CountDownLatch(1);
+
+	/** Der Checker des Hintergrund-Scans schon waehrend er laeuft (fuer seinen Logger) */
+	private static volatile ClassPathChecker runningChecker;
+
+
+	private ClassPathAgent() {
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * agent entry points                                                    *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Wird bei <tt>-javaagent</tt> vor <code>main</code> aufgerufen.
+	 * @param agentArgs Datei, in die beim Beenden der JVM der Report geschrieben wird (optional)
+	 */
+	public static void premain(String agentArgs, Instrumentation inst) {
+		start(agentArgs, inst);
+	}
+
+
+	/**
+	 * Wird beim nachtraeglichen Laden des Agenten in eine laufende JVM aufgerufen.
+	 */
+	public static void agentmain(String agentArgs, Instrumentation inst) {
+		start(agentArgs, inst);
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	public static synchronized Instrumentation getInstrumentation() {
+		return instrumentation;
+	}
+
+
+	/**
+	 * Anzahl der bisher aufgezeichneten Klassen
+	 */
+	public static int getLoadedClassCount() {
+		return loadedClasses.size();
+	}
+
+
+	/**
+	 * Erzeugt den Report der geladenen Klassen (siehe <code>writeXmlReport</code>).
+	 */
+	public static XMLReport xmlReport() {
+		return new XMLReport(new XMLReport.Source() {
+			public void writeTo(Writer writer) throws IOException {
+				writeXmlReport(writer);
+			}
+		});
+	}
+
+
+	/**
+	 * Schreibt fuer alle bisher geladenen Klassen, die mehrfach im Klassenpfad vorkommen, den
+	 * Konflikt samt dem Artefakt, aus dem sie tatsaechlich geladen wurden (<tt>loadedFrom</tt>).
+	 * Wartet ggf. auf das Ende des Scans.
+	 */
+	public static void writeXmlReport(Writer writer) throws IOException {
+		writeXmlReport(writer, awaitChecker(0));
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Wie oben fuer den Checker <code>checker</code>; bei null (Scan noch nicht fertig) nur mit
+	 * einer Warnung und den bisherigen Log-Eintraegen.
+	 */
+	private static void writeXmlReport(Writer writer, ClassPathChecker checker) throws IOException {
+		Map<String, Set<String>> loadedFrom = loadedFrom();
+
+		List<ClassPathWatcher.Conflict> conflicts = new ArrayList<ClassPathWatcher.Conflict>();
+		if (checker != null) {
+			for (String resourceName : loadedFrom.keySet()) {
+				ClassPathWatcher.Conflict conflict = checker.conflictOf(resourceName);
+				if (conflict != null) {
+					conflicts.add(conflict);
+				}
+			}
+		}
+
+		XMLReportWriter report = new XMLReportWriter(writer);
+		report.startReport();
+		report.startSection("loadedProblems");
+		writeConflicts(report, conflicts, loadedFrom, false);
+		report.endSection("loadedProblems");
+		report.startSection("loadedIdenticalDuplicates");
+		writeConflicts(report, conflicts, loadedFrom, true);
+		report.endSection("loadedIdenticalDuplicates");
+		report.endReport();
+
+		ClassPathChecker logSource = (checker != null)? checker : runningChecker;
+		report.startLogs();
+		if (checker != null) {
+			report.logEntry(loadedFrom.size() + " loaded classes checked, " + conflicts.size() + " of them have duplicates.");
+		}
+		else if (logSource != null) {
+			// die Warnung dazu steht in den Log-Eintraegen des Checkers
+			report.logEntry(loadedFrom.size() + " loaded classes recorded, not checked.");
+		}
+		else {
+			report.logEntry("WARNING: The class path scan did not start within " + (REPORT_TIMEOUT_MILLIS / 1000)
+					+ " seconds => " + loadedFrom.size() + " loaded classes not checked.");
+		}
+		if (loadedClasses.getDroppedCount() > 0) {
+			report.logEntry("WARNING: " + loadedClasses.getDroppedCount() + " loaded classes could not be recorded.");
+		}
+		if (logSource != null) {
+			for (String logEntry : logSource.getLogger().getLogEntries()) {
+				report.logEntry(logEntry);
+			}
+		}
+		report.endLogs();
+		report.flush();
+	}
+
+
+	private static synchronized void start(final String agentArgs, Instrumentation inst) {
+		if (instrumentation != null) return;
+		instrumentation = inst;
+
+		// Alles, was der Recorder braucht, vor dem Registrieren laden; sonst loest das Laden dieser
+		// Klassen den Recorder rekursiv aus.
+		record(ClassPathAgent.class);
+		inst.addTransformer(new Recorder());
+
+		// Klassen, die schon vor dem Agenten geladen wurden:
+		for (Class<?> clazz : inst.getAllLoadedClasses()) {
+			if (!clazz.isArray() && !clazz.isPrimitive()) {
+				record(clazz);
+			}
+		}
+
+		Thread scanner = new Thread(new Runnable() {
+			public void run() {
+				try {
+					runningChecker = new ClassPathChecker();
+					checker = runningChecker.run();
+				}
+				catch (Exception e) {
+					logFailure("The class path scan failed", e);
+				}
+				finally {
+					scanned.countDown();
+				}
+			}
+		}, "ClassPathAgent-Scanner");
+		scanner.setDaemon(true);
+		scanner.setPriority(Thread.MIN_PRIORITY);
+		scanner.start();
+
+		if (agentArgs != null && agentArgs.trim().length() > 0) {
+			final String reportFile = agentArgs.trim();
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				public void run() {
+					try {
+						final ClassPathChecker finished = awaitChecker(REPORT_TIMEOUT_MILLIS);
+						if (finished == null && runningChecker != null) {
+							runningChecker.getLogger().log("WARNING: The class path scan did not finish within "
+									+ (REPORT_TIMEOUT_MILLIS / 1000) + " seconds => writing the agent report without conflicts.");
+						}
+						new XMLReport(new XMLReport.Source() {
+							public void writeTo(Writer writer) throws IOException {
+								writeXmlReport(writer, finished);
+							}
+						}).save(reportFile);
+					}
+					catch (IOException e) {
+						logFailure("The agent report could not be written to '" + reportFile + "'", e);
+					}
+				}
+			}, "ClassPathAgent-Report"));
+		}
+	}
+
+
+	private static void record(Class<?> clazz) {
+		CodeSource codeSource = null;
+		try {
+			ProtectionDomain protectionDomain = clazz.getProtectionDomain();
+			if (protectionDomain != null) codeSource = protectionDomain.getCodeSource();
+		}
+		catch (SecurityException e) {
+			// unbekannte Herkunft
+		}
+		loadedClasses.add(new LoadedClass(clazz.getName().replace('.', '/'), codeSource));
+	}
+
+
+	/**
+	 * Wartet auf das Ende des Scans.
+	 * @param timeoutMillis 0 = unbegrenzt
+	 * @return null, falls der Scan nach <code>timeoutMillis</code> noch nicht fertig ist
+	 */
+	private static ClassPathChecker awaitChecker(long timeoutMillis) throws IOException {
+		try {
+			if (timeoutMillis <= 0) {
+				scanned.await();
+			}
+			else if (!scanned.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				return null;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the class path scan.", e);
+		}
+		if (checker == null) throw new IOException("The class path scan failed.");
+		return checker;
+	}
+
+
+	/**
+	 * Loggt <code>e</code> samt Stacktrace mit dem Logger des Checkers. Scheiterte schon dessen
+	 * Konstruktor, gibt es keinen Logger; dann bleibt nur <tt>System.err</tt>.
+	 */
+	private static void logFailure(String message, Exception e) {
+		ClassPathChecker logSource = runningChecker;
+		if (logSource == null) {
+			System.err.println("ClassPathAgent: " + message + ": " + e);
+			return;
+		}
+		StringBuilder sb = new StringBuilder("WARNING: ").append(message).append(": ").append(e);
+		for (StackTraceElement stackTraceElement : e.getStackTrace()) {
+			sb.append(CRLF).append(stackTraceElement);
+		}
+		logSource.getLogger().log(sb.toString());
+	}
+
+
+	/**
+	 * Ordnet die aufgezeichneten Klassen (als Resource-Namen) den Artefakten zu, aus denen sie
+	 * geladen wurden. Dieselbe Klasse kann von mehreren Class-Loadern aus verschiedenen
+	 * Artefakten geladen worden sein.
+	 */
+	private static Map<String, Set<String>> loadedFrom() {
+		Map<String, Set<String>> result = new LinkedHashMap<String, Set<String>>();
+		// Die meisten Klassen teilen sich wenige CodeSource-Objekte => Pfad nur einmal ermitteln
+		Map<CodeSource, String> paths = new IdentityHashMap<CodeSource, String>();
+		int count = loadedClasses.size();
+		for (int i = 0; i < count; i++) {
+			LoadedClass loadedClass = loadedClasses.get(i);
+			if (loadedClass == null) continue; // wird gerade noch geschrieben
+			String resourceName = loadedClass.name + CLASS_SUFFIX;
+			Set<String> artifacts = result.get(resourceName);
+			if (artifacts == null) {
+				artifacts = new LinkedHashSet<String>(2);
+				result.put(resourceName, artifacts);
+			}
+			if (loadedClass.codeSource != null) {
+				String path = paths.get(loadedClass.codeSource);
+				if (path == null) {
+					path = artifactPath(loadedClass.codeSource.getLocation());
+					paths.put(loadedClass.codeSource, path);
+				}
+				if (path.length() > 0) artifacts.add(path);
+			}
+		}
+		return result;
+	}
+
+
+	/**
+	 * Wandelt die Location einer <code>CodeSource</code> in einen Artefakt-Pfad wie im Report um,
+	 * z.B. <tt>jar:file:/app.jar!/BOOT-INF/lib/x.jar!/</tt> in <tt>/app.jar!/BOOT-INF/lib/x.jar</tt>.
+	 * @return "", falls die Location nicht auf eine Datei verweist
+	 */
+	static String artifactPath(URL location) {
+		if (location == null) return "";
+		String path = location.toString();
+		if (path.startsWith("jar:")) path = path.substring("jar:".length());
+		if (!path.startsWith("file:")) return "";
+		path = path.substring("file:".length());
+		while (path.endsWith(ClassPathChecker.NESTED_SEPARATOR)) {
+			path = path.substring(0, path.length() - ClassPathChecker.NESTED_SEPARATOR.length());
+		}
+		try {
+			path = URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+		}
+		catch (IOException e) {
+			// bleibt kodiert
+		}
+		int nested = path.indexOf(ClassPathChecker.NESTED_SEPARATOR);
+		if (nested < 0) return FileUtils.normalizePath(path);
+		return FileUtils.normalizePath(path.substring(0, nested)) + path.substring(nested);
+	}
+
+
+	private static void writeConflicts(XMLReportWriter report, List<ClassPathWatcher.Conflict> conflicts,
+			Map<String, Set<String>> loadedFrom, boolean identical) throws IOException {
+		for (ClassPathWatcher.Conflict conflict : conflicts) {
+			if (conflict.isIdentical() != identical) continue;
+			report.startResource(conflict.getResource());
+			for (String path : loadedFrom.get(conflict.getResource())) {
+				report.loadedFrom(path);
+			}
+			for (String path : conflict.getOccurences()) {
+				report.occurence(path);
+			}
+			report.endResource();
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Zeichnet jede geladene Klasse auf und laesst den Bytecode unveraendert (Rueckgabe null).
+	 */
+	private static class Recorder implements ClassFileTransformer {
+		public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+				ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+			if (className != null && classBeingRedefined == null) {
+				loadedClasses.add(new LoadedClass(className, (protectionDomain == null)? null : protectionDomain.getCodeSource()));
+			}
+			return null;
+		}
+	}
+
+
+	/**
+	 * Name (mit Slashes, wie im Klassenpfad) und Herkunft einer geladenen Klasse
+	 */
+	private static class LoadedClass {
+		private final String name;
+		private final CodeSource codeSource;
+
+		LoadedClass(String name, CodeSource codeSource) {
+			this.name = name;
+			this.codeSource = codeSource;
+		}
+	}
+
+}
@@ -2,27 +2,38 @@ package com.javacook.classpathchecker;
 
 import static com.javacook.util.StringUtils.truncPrefix;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.CodeSource;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipEntry;
+import java.util.Set;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 
+import com.javacook.util.ArtifactTable;
+import com.javacook.util.CountingBloomFilter;
+import com.javacook.util.DirectoryWalker;
 import com.javacook.util.FileUtils;
 import com.javacook.util.JavaCookLogger;
-import com.javacook.util.KeyToSetHashMap;
-import com.javacook.util.StringUtils;
+import com.javacook.util.ResourceClassifier;
+import com.javacook.util.ResourceIndex;
 
-public class ClassPathChecker {
+public class ClassPathChecker implements AutoCloseable {
 
 	public final static String VERSION = "0.1.0";
 	
@@ -51,9 +62,16 @@ public class ClassPathChecker {
 
 
 	/**
-	 * Hier werden alle Resourcen mit ihrem Vorkommen gesammelt
+	 * Hier werden alle Resourcen mit ihrem Vorkommen gesammelt. Die Namen werden als Trie
+	 * ueber ihre Pfad-Segmente abgelegt, die Vorkommen als IDs aus <code>artifactTable</code>.
 	 */
-	private final KeyToSetHashMap<String, String> resourceToOccurence = new KeyToSetHashMap<String, String>();
+	private final ResourceIndex resourceToOccurence = new ResourceIndex();
+
+
+	/**
+	 * Vergibt die IDs der Artefakte (Jars bzw. Basis-Verzeichnisse), in denen Resourcen vorkommen
+	 */
+	private final ArtifactTable artifactTable = new ArtifactTable();
 
 
 	/**
@@ -61,6 +79,14 @@ public class ClassPathChecker {
 	 * Trennsymvbolen zerlegt (Bei Unix Doppelpunkt, bei Windows Semikolon)
 	 */
 	private final static String PATH_SEPARATOR = System.getProperty("path.separator");
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+
+	/**
+	 * Trennt im Pfad eines verschachtelten Archivs das aeussere Archiv vom Eintrag, z.B.
+	 * <tt>app.jar!/BOOT-INF/lib/x.jar</tt> (wie in jar-URLs)
+	 */
+	public final static String NESTED_SEPARATOR = "!/";
 
 
 	/**
@@ -70,7 +96,111 @@ public class ClassPathChecker {
 
 	private PathFilterInterface pathFilter;
 
-	private FileUtils fileUtils = new FileUtils();
+	/**
+	 * Cache fuer die Inhaltsverzeichnisse der Archive (null, falls keiner konfiguriert ist)
+	 */
+	private ScanCache scanCache;
+
+	/**
+	 * Index des lokalen Maven-Repositories (null = keiner). Er steht in der Kette der
+	 * <code>ListingProvider</code> vor dem <code>scanCache</code>.
+	 */
+	private MavenRepositoryIndex mavenIndex;
+
+	/**
+	 * Kennzahlen des letzten Laufs (null, falls abgeschaltet)
+	 */
+	private ScanMetrics metrics;
+
+	/**
+	 * Gemeinsamer Index der Archive (null = jede Instanz liest ihre Archive selbst). Ist er
+	 * gesetzt, enthalten <code>resourceToOccurence</code> und <code>artifactTable</code> nur die
+	 * Verzeichnisse; die Konflikte liefert dann <code>applicationView</code>.
+	 */
+	private SharedArtifacts sharedArtifacts;
+
+	private ApplicationView applicationView;
+
+	/**
+	 * Die Duplikate von <code>applicationView</code>, einmal berechnet fuer Metriken und Report
+	 * (null = noch nicht berechnet, siehe <code>sharedDuplicates()</code>)
+	 */
+	private List<ApplicationView.Duplicate> sharedDuplicates;
+
+	/**
+	 * Zwei Durchlaeufe mit Bloom-Filter, danach stehen in <code>resourceToOccurence</code> nur die
+	 * Kandidaten fuer Duplikate (siehe <code>scanTwoPass</code>)
+	 */
+	private boolean lowMemory;
+
+	/**
+	 * Ist er gesetzt, landen die Vorkommen statt in <code>resourceToOccurence</code> in sortierten
+	 * Laeufen auf der Platte; die Duplikate entstehen erst beim Report durch Mischen der Laeufe
+	 * (siehe <code>ExternalSortIndex</code>).
+	 */
+	private ExternalSortIndex externalIndex;
+
+	/**
+	 * Erhaelt die Konflikte schon beim Durchstoebern (null = keiner), ueber <code>conflictPublisher</code>
+	 * in Stapeln. <code>conflictsOfArtifact</code> verhindert, dass doppelte Eintraege eines
+	 * Artefakts erneut gemeldet werden.
+	 */
+	private ConflictListener conflictListener;
+	private ConflictPublisher conflictPublisher;
+	private final Set<String> conflictsOfArtifact = new HashSet<String>();
+	private boolean scanStopped;
+
+	/**
+	 * Vorkompilierte Filter: welche Resourcen indiziert werden (Scan-Profil), welche Dateien
+	 * Archive sind und welche Resourcen im Report erscheinen
+	 */
+	private ResourceClassifier resourceClassifier = ResourceClassifier.ALL;
+	private ResourceClassifier archiveClassifier;
+	private ResourceClassifier outputClassifier;
+
+
+	/**
+	 * Nimmt die Funde beim Durchstoebern der Artefakte entgegen. Die Standard-Implementierung
+	 * legt sie direkt in <code>archives</code> bzw. <code>resourceToOccurence</code> ab.
+	 * Der <code>digest</code> (siehe <code>ResourceIndex.digest</code>) stammt bei Archiven aus dem
+	 * Central Directory, bei Dateien in Verzeichnissen ist er <code>ResourceIndex.NO_DIGEST</code>.
+	 */
+	public interface Collector {
+		void addArchive(String archivePath);
+		void put(String resource, String occurence, long digest);
+	}
+
+	private final Collector directCollector = new Collector() {
+		// Die Resourcen eines Artefakts kommen am Stueck => ID merken statt jedesmal nachschlagen
+		private String lastOccurence;
+		private int lastArtifactId;
+
+		public void addArchive(String archivePath) {
+			archives.add(archivePath);
+			if (applicationView != null) applicationView.addArchive(archivePath);
+		}
+		public void put(String resource, String occurence, long digest) {
+			if (occurence != lastOccurence) {
+				lastArtifactId = artifactTable.register(occurence);
+				lastOccurence = occurence;
+				if (applicationView != null) applicationView.addDirectory(lastArtifactId);
+				conflictsOfArtifact.clear();
+			}
+			if (externalIndex == null) {
+				// Ab dem zweiten Vorkommen ist es ein Konflikt:
+				if (resourceToOccurence.put(resource, lastArtifactId, digest) > 1 && conflictPublisher != null) {
+					publishConflict(resource);
+				}
+				return;
+			}
+			try {
+				externalIndex.put(resource, lastArtifactId, digest);
+			}
+			catch (IOException e) {
+				throw new RuntimeException("Fehler beim Schreiben eines Sortier-Laufs nach '" + externalIndex.getDirectory() + "'", e);
+			}
+		}
+	};
 
 
 	/*-----------------------------------------------------------------------*\
@@ -90,7 +220,7 @@ public class ClassPathChecker {
 				logger = new JavaCookLogger();
 				throw new IllegalArgumentException("Argument 'propertyHolder' is null.");
 			}
-			logger = new JavaCookLogger(propertyHolder.logToConsole(), propertyHolder.getLogFileName());
+			logger = new JavaCookLogger(propertyHolder.logToConsole(), propertyHolder.getLogFileName(), propertyHolder.getMaxLogEntries());
 			logger.log("Welcome to ClassPathCecker-"+ VERSION + "!");
 			if (propertyHolder.usingDefaults()) {
 				logger.log("No property file found at '"  + propertyHolder.getPropFileName() + "' => using defaults.");
@@ -119,81 +249,446 @@ public class ClassPathChecker {
 	public PropertyHolderInterface getPropertyHolder() {
 		return propertyHolder;
 	}
+
+
+	/**
+	 * Setzt den gemeinsamen Index der Archive, den diese Instanz statt eines eigenen verwendet
+	 * (null = eigener Index). Ohne Aufruf entscheidet beim <code>run()</code> die Property
+	 * <tt>sharedArtifacts</tt>, ob <code>SharedArtifacts.getInstance()</code> verwendet wird.
+	 * Im Report stehen die Duplikate dann nach Namen sortiert.
+	 */
+	public void setSharedArtifacts(SharedArtifacts sharedArtifacts) {
+		this.sharedArtifacts = sharedArtifacts;
+	}
+
+	public SharedArtifacts getSharedArtifacts() {
+		return sharedArtifacts;
+	}
+
+
+	/**
+	 * Setzt den Listener, der die Konflikte schon waehrend <code>run()</code> erhaelt (null = keiner).
+	 * Wirft er eine RuntimeException, bricht <code>run()</code> ab, loggt wie bei jedem Fehler
+	 * "...Failed!" und wirft sie dann unveraendert weiter; der Report bleibt unvollstaendig abrufbar.
+	 * Mit gemeinsamen Archiven bzw. externer Sortierung stehen die Konflikte erst beim Report fest,
+	 * dann wird er nicht aufgerufen.
+	 */
+	public void setConflictListener(ConflictListener conflictListener) {
+		this.conflictListener = conflictListener;
+	}
+
+	public ConflictListener getConflictListener() {
+		return conflictListener;
+	}
+
+
+	/**
+	 * Liefert true, falls der <code>ConflictListener</code> den letzten <code>run()</code>
+	 * abgebrochen hat (per Rueckgabewert oder Exception); der Report ist dann unvollstaendig.
+	 */
+	public boolean isScanStopped() {
+		return scanStopped;
+	}
 	
 
+	/**
+	 * Beendet den Schreib-Thread des Loggers und entfernt dessen Shutdown-Hook, der sonst z.B.
+	 * den Class-Loader einer Webanwendung bis zum Ende der JVM festhaelt. Report und Log-Eintraege
+	 * bleiben abrufbar, weitere Meldungen landen aber nur noch im Report.
+	 */
+	public void close() {
+		if (logger != null) logger.close();
+	}
+
+
 	/**
 	 * Hier geht los...
 	 * @throws ZipException
 	 * @throws IOException
 	 */
 	public ClassPathChecker run() {
+		RuntimeException listenerFailure = null;
 		try {
 			validatePropertyHolder();
 			logger.log("Start searching for duplicate class path entries...");
 			archives 	= new ArrayList<String>();
 			pathFilter 	= new PathFilter(propertyHolder);
-			handleClassPaths();
+			resourceClassifier 	= resourceClassifierOf(propertyHolder);
+			archiveClassifier 	= new ResourceClassifier(propertyHolder.getArchiveExtensions(), null);
+			outputClassifier 	= new ResourceClassifier(propertyHolder.getOutputExtensions(), null);
+			if (!resourceClassifier.isAll()) {
+				logger.log("Scan profile: " + resourceClassifier);
+			}
+			scanCache 	= createScanCache();
+			mavenIndex 	= createMavenIndex();
+			metrics 	= createMetrics();
+			if (sharedArtifacts == null && propertyHolder.isSharedArtifacts()) {
+				sharedArtifacts = SharedArtifacts.getInstance();
+			}
+			applicationView = (sharedArtifacts == null)? null : new ApplicationView(sharedArtifacts, artifactTable, resourceToOccurence);
+			sharedDuplicates = null;
+			// Mit gemeinsamen Archiven landen ohnehin nur die Verzeichnisse im eigenen Index
+			lowMemory 		= propertyHolder.isLowMemory() && sharedArtifacts == null;
+			externalIndex 	= createExternalIndex();
+			conflictPublisher = createConflictPublisher();
+			File snapshotFile = snapshotFile();
+			scanStopped 	= false;
+			if (metrics != null) metrics.scanStarted();
+			try {
+				handleClassPaths();
+				if (conflictPublisher != null) conflictPublisher.flush();
+			}
+			catch (ScanStoppedException e) {
+				scanStopped = true;
+				logger.log("Scan stopped by the conflict listener after " + conflictPublisher.getPublishedCount() + " conflicts.");
+			}
+			if (scanCache != null) {
+				logger.log("Scan cache: " + scanCache.getHits() + " hits, " + scanCache.getMisses() + " misses.");
+				scanCache.save();
+			}
+			if (mavenIndex != null) {
+				logger.log("Maven repository index: " + mavenIndex.getHits() + " hits, " + mavenIndex.getMisses() + " misses.");
+				mavenIndex.save();
+			}
+			if (sharedArtifacts != null) {
+				logger.log("Shared artifacts: " + sharedArtifacts.getListingsRead() + " listings read, " + sharedArtifacts.getListingsShared() + " shared.");
+			}
+			if (externalIndex != null) {
+				logger.log("External sort: " + externalIndex.getOccurrenceCount() + " occurrences, " + externalIndex.getRunCount()
+						+ " runs in '" + externalIndex.getDirectory() + "'.");
+			}
+			if (metrics != null && applicationView != null) {
+				// Resourcen der Archive stehen im gemeinsamen Index und werden nicht je Anwendung gezaehlt
+				metrics.scanFinished(resourceToOccurence.size(), sharedDuplicates().size(), applicationView.getArtifactCount());
+			}
+			else if (metrics != null && externalIndex != null) {
+				// Die Duplikate stehen erst beim Mischen fest
+				metrics.scanFinished((int)Math.min(Integer.MAX_VALUE, externalIndex.getOccurrenceCount()), -1, artifactTable.size());
+			}
+			else if (metrics != null) {
+				metrics.scanFinished(resourceToOccurence.size(), resourceToOccurence.duplicateCount(), artifactTable.size());
+			}
+			if (snapshotFile != null) {
+				saveSnapshot(snapshotFile);
+			}
 			logger.log("...Success.");
 		}
 		catch (Exception e) {
+			Throwable failure = e;
+			if (e instanceof ConflictPublisher.ListenerException) {
+				listenerFailure = (RuntimeException)e.getCause();
+				failure = listenerFailure;
+				scanStopped = true;
+			}
 			logger.log("...Failed!");
 			StringBuilder sb = new StringBuilder();
-			sb.append(e).append(CRLF);
-			StackTraceElement[] stackTrace = e.getStackTrace();
+			sb.append(failure).append(CRLF);
+			StackTraceElement[] stackTrace = failure.getStackTrace();
 			for (StackTraceElement stackTraceElement : stackTrace) {
 				sb.append(stackTraceElement).append(CRLF);
 			}
 			logger.log(sb.toString());
 		}
+		// Die Ausgabe des Loggers laeuft asynchron => vor dem Report alles herausschreiben
+		logger.flush();
+		if (listenerFailure != null) {
+			// Fail fast: Anders als sonst soll der Aufrufer den Abbruch sehen
+			throw listenerFailure;
+		}
 		return this;
 	}
 
 
 	/**
-	 * Erzeugt eine Ausgabe in Form einer XML-Datei
+	 * Erzeugt eine Ausgabe in Form einer XML-Datei. Der Inhalt wird erst beim Speichern bzw.
+	 * Schreiben erzeugt und dabei direkt gestreamt.
 	 * @return
 	 */
 	public XMLReport xmlReport() {
-		StringBuilder output = new StringBuilder();
-		output.append("<report>").append(CRLF);
+		return new XMLReport(new XMLReport.Source() {
+			public void writeTo(Writer writer) throws IOException {
+				writeXmlReport(writer);
+			}
+		});
+	}
+
+
+	/**
+	 * Schreibt den Report direkt nach <code>writer</code>, ohne ihn im Speicher aufzubauen.
+	 * Im Watch-Modus wird der Index waehrenddessen nicht veraendert.
+	 */
+	public synchronized void writeXmlReport(Writer writer) throws IOException {
+		long start = System.nanoTime();
+		Object event = ScanEvents.begin(ScanEvents.REPORT);
+		XMLReportWriter report = new XMLReportWriter(writer);
+		report.startReport();
 
-		output.append("\t<artifacts>").append(CRLF);
+		report.startSection("artifacts");
 		for (String path : artifactPaths.keySet()) {
-			output.append("\t\t<path accessable=\"" + artifactPaths.get(path) + "\">").append(path).append("</path>").append(CRLF);
+			report.artifact(path, artifactPaths.get(path));
 		}
-		output.append("\t</artifacts>").append(CRLF);
+		report.endSection("artifacts");
 
 		Collections.sort(archives);
-		output.append("\t<archives>").append(CRLF);
+		report.startSection("archives");
 		for (String path : archives) {
-			output.append("\t\t<path>").append(path).append("</path>").append(CRLF);
+			report.archive(path);
+		}
+		report.endSection("archives");
+
+		// Zuerst die echten Konflikte (abweichende Kopien), dann die byte-gleichen Kopien:
+		List<ApplicationView.Duplicate> sharedDuplicates = (applicationView == null)? null : sharedDuplicates();
+		int externalDuplicates = 0;
+		File identicalFile = (externalIndex == null)? null : File.createTempFile("identical", ".xml", externalIndex.getDirectory());
+		try {
+			report.startSection("problems");
+			if (externalIndex != null) {
+				externalDuplicates = writeExternalDuplicates(report, identicalFile);
+			}
+			else {
+				writeDuplicates(report, false, sharedDuplicates);
+			}
+			report.endSection("problems");
+
+			report.startSection("identicalDuplicates");
+			if (externalIndex != null) {
+				appendFile(identicalFile, writer);
+			}
+			else {
+				writeDuplicates(report, true, sharedDuplicates);
+			}
+			report.endSection("identicalDuplicates");
+		}
+		finally {
+			if (identicalFile != null) identicalFile.delete();
+		}
+
+		if (metrics != null && propertyHolder.isMetricsInReport()) {
+			// reportMillis ist hier die Dauer des vorherigen Reports
+			writeMetrics(report, metrics.snapshot());
 		}
-		output.append("\t</archives>").append(CRLF);
+		report.endReport();
+
+		report.startLogs();
+		for (String logEntry : logger.getLogEntries()) {
+			report.logEntry(logEntry);
+		}
+		report.endLogs();
+		report.flush();
+		int duplicateCount = (externalIndex != null)? externalDuplicates
+				: (sharedDuplicates == null)? resourceToOccurence.duplicateCount() : sharedDuplicates.size();
+		ScanEvents.commit(event, null, duplicateCount, 0);
+		if (metrics != null) metrics.reportRendered(System.nanoTime() - start);
+	}
+
+
+	private void writeMetrics(XMLReportWriter report, ScanMetrics.Snapshot snapshot) throws IOException {
+		report.startSection("metrics");
+		for (Map.Entry<String, Object> entry : snapshot.asMap().entrySet()) {
+			report.metric(entry.getKey(), String.valueOf(entry.getValue()));
+		}
+		for (String slowest : snapshot.getSlowestArtifacts()) {
+			report.metric("slowestArtifact", slowest);
+		}
+		report.endSection("metrics");
+	}
+
+
+	/**
+	 * Berechnet die Duplikate von <code>applicationView</code> nur beim ersten Aufruf nach dem
+	 * Scan bzw. nach einer Aktualisierung.
+	 */
+	private List<ApplicationView.Duplicate> sharedDuplicates() {
+		if (sharedDuplicates == null) {
+			sharedDuplicates = applicationView.duplicates();
+		}
+		return sharedDuplicates;
+	}
+
+
+	/**
+	 * Schreibt alle mehrfach vorkommenden Resourcen, die identisch (<code>identical</code> = true)
+	 * bzw. nicht identisch sind.
+	 * @param sharedDuplicates die Duplikate aus dem gemeinsamen Index (null = eigener Index)
+	 */
+	private void writeDuplicates(XMLReportWriter report, boolean identical, List<ApplicationView.Duplicate> sharedDuplicates) throws IOException {
+		if (sharedDuplicates != null) {
+			for (ApplicationView.Duplicate duplicate : sharedDuplicates) {
+				if (!hasOutputExtension(duplicate.getName())) continue;
+				if (duplicate.isIdentical() != identical) continue;
+
+				report.startResource(duplicate.getName());
+				for (int i = 0; i < duplicate.count(); i++) {
+					report.occurence(duplicate.getPath(i), duplicate.getDigest(i));
+				}
+				report.endResource();
+			}
+			return;
+		}
+
+		ResourceIndex.Cursor cursor = resourceToOccurence.cursor();
+		while (cursor.next()) {
+			int occurenceCount = cursor.count();
+			if (occurenceCount < 2) continue;
 
-		output.append("\t<problems>").append(CRLF);
-		for (String qualifiedClassName : resourceToOccurence.keySet()) {
 			// Filtern:
+			String qualifiedClassName = cursor.name();
 			if (!hasOutputExtension(qualifiedClassName)) continue;
+			if (isIdentical(cursor, qualifiedClassName) != identical) continue;
+
+			report.startResource(qualifiedClassName);
+			for (int i = 0; i < occurenceCount; i++) {
+				report.occurence(artifactTable.getPath(cursor.occurrence(i)), cursor.digest(i));
+			}
+			report.endResource();
+		}
+	}
 
-			Collection<String> occurences = resourceToOccurence.get(qualifiedClassName);
-			if (occurences.size() > 1) {
-				output.append("\t\t<resource path=\""+qualifiedClassName+"\">").append(CRLF);
 
-				for (String occurence : occurences) {
-					output.append("\t\t\t<occurence>"+occurence+"</occurence>").append(CRLF);
+	/**
+	 * Wie <code>writeDuplicates</code>, nur dass die Duplikate beim (einmaligen) Mischen der Laeufe
+	 * von <code>externalIndex</code> nach Namen sortiert gestreamt werden: die abweichenden direkt
+	 * nach <code>report</code>, die identischen in die Datei <code>identicalFile</code>, die der
+	 * Aufrufer danach in den Abschnitt <tt>identicalDuplicates</tt> uebernimmt.
+	 * @return Anzahl aller mehrfach vorkommenden Resourcen (auch der nicht geschriebenen)
+	 */
+	private int writeExternalDuplicates(final XMLReportWriter report, File identicalFile) throws IOException {
+		Writer identicalWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(identicalFile), UTF_8));
+		try {
+			final XMLReportWriter identicalReport = new XMLReportWriter(identicalWriter);
+			return externalIndex.merge(new ExternalSortIndex.Handler() {
+				public void duplicate(String resourceName, int[] artifactIds, long[] digests, int count) throws IOException {
+					if (!hasOutputExtension(resourceName)) return;
+					XMLReportWriter section = isIdentical(resourceName, artifactIds, digests, count)? identicalReport : report;
+
+					section.startResource(resourceName);
+					for (int i = 0; i < count; i++) {
+						section.occurence(artifactTable.getPath(artifactIds[i]), digests[i]);
+					}
+					section.endResource();
 				}
-				output.append("\t\t</resource>").append(CRLF);
+			});
+		}
+		finally {
+			identicalWriter.close();
+		}
+	}
+
+
+	/**
+	 * Haengt den Inhalt von <code>file</code> (UTF-8) an <code>writer</code> an.
+	 */
+	private static void appendFile(File file, Writer writer) throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), UTF_8);
+		try {
+			char[] buffer = new char[8192];
+			int count;
+			while ((count = reader.read(buffer)) >= 0) {
+				writer.write(buffer, 0, count);
 			}
 		}
-		output.append("\t</problems>").append(CRLF);
-		output.append("</report>").append(CRLF).append(CRLF);
+		finally {
+			reader.close();
+		}
+	}
 
-		output.append("<logs>").append(CRLF);
-		for (String logEntry : logger.getLogEntries()) {
-			output.append("\t<entry>").append(logEntry).append("</entry>").append(CRLF);
+
+	/**
+	 * Meldet die gerade (erneut) mehrfach vorkommende Resource <code>resourceName</code> an
+	 * <code>conflictPublisher</code>; wie im Report nur mit passender Endung.
+	 * @throws ScanStoppedException falls der Listener abbrechen will
+	 */
+	private void publishConflict(String resourceName) {
+		if (!hasOutputExtension(resourceName) || !conflictsOfArtifact.add(resourceName)) return;
+
+		ResourceIndex.Cursor cursor = resourceToOccurence.cursor(resourceName);
+		List<String> occurences = new ArrayList<String>(cursor.count());
+		long[] digests = new long[cursor.count()];
+		for (int i = 0; i < digests.length; i++) {
+			occurences.add(artifactTable.getPath(cursor.occurrence(i)));
+			digests[i] = cursor.digest(i);
+		}
+		if (!conflictPublisher.publish(new ConflictEvent(resourceName, occurences, digests))) {
+			throw new ScanStoppedException();
 		}
-		output.append("</logs>");
-		return new XMLReport(output.toString());
+	}
+
+
+	/**
+	 * Liefert true, falls alle Vorkommen der aktuellen Resource von <code>cursor</code> den
+	 * gleichen Digest (CRC-32 und Groesse) haben. Bei Archiven stammt er aus dem Central Directory;
+	 * Dateien in Verzeichnissen werden erst hier (also nur bei Namensgleichheit) gelesen.
+	 */
+	private boolean isIdentical(ResourceIndex.Cursor cursor, String resourceName) throws IOException {
+		int count = cursor.count();
+		String[] paths = new String[count];
+		long[] digests = new long[count];
+		for (int i = 0; i < count; i++) {
+			paths[i] = artifactTable.getPath(cursor.occurrence(i));
+			digests[i] = cursor.digest(i);
+		}
+		try {
+			return FileUtils.isIdentical(resourceName, paths, digests, count);
+		}
+		finally {
+			// gelesene Digests merken:
+			for (int i = 0; i < count; i++) {
+				if (digests[i] != cursor.digest(i)) cursor.setDigest(i, digests[i]);
+			}
+		}
+	}
+
+
+	/**
+	 * Wie oben fuer die Vorkommen aus <code>ExternalSortIndex</code>; gelesene Digests werden
+	 * in <code>digests</code> eingetragen.
+	 */
+	private boolean isIdentical(String resourceName, int[] artifactIds, long[] digests, int count) throws IOException {
+		String[] paths = new String[count];
+		for (int i = 0; i < count; i++) {
+			paths[i] = artifactTable.getPath(artifactIds[i]);
+		}
+		return FileUtils.isIdentical(resourceName, paths, digests, count);
+	}
+
+
+	/**
+	 * Speichert den kompletten Index als binaeren Schnappschuss (siehe <code>IndexSnapshot</code>),
+	 * der spaeter gemappt und abgefragt werden kann, ohne den Report erneut zu parsen.
+	 */
+	public synchronized void saveSnapshot(File file) throws IOException {
+		checkNotShared("saveSnapshot()");
+		checkNotLowMemory("saveSnapshot()");
+		checkNotExternalSort("saveSnapshot()");
+		IndexSnapshot.write(file, artifactTable, resourceToOccurence);
+	}
+
+
+	/**
+	 * Liefert die Kennzahlen des letzten <code>run()</code> (live per JMX unter
+	 * <code>ScanMetrics.OBJECT_NAME</code>) bzw. null, falls sie abgeschaltet sind.
+	 */
+	public ScanMetrics getMetrics() {
+		return metrics;
+	}
+
+
+	/**
+	 * Startet den Watch-Modus (siehe <code>ClassPathWatcher</code>): Die mit <code>run()</code>
+	 * durchstoeberten Artefakte werden ueberwacht und Aenderungen einzeln in den Index uebernommen.
+	 * @param listener erhaelt die geaenderten Konflikte (null = nur loggen)
+	 */
+	public ClassPathWatcher watch(ClassPathWatcher.Listener listener) throws IOException {
+		validatePropertyHolder();
+		if (pathFilter == null) {
+			throw new IllegalStateException("Method 'run()' has to be called before 'watch()'.");
+		}
+		checkNotShared("watch()");
+		checkNotLowMemory("watch()");
+		checkNotExternalSort("watch()");
+		ClassPathWatcher watcher = new ClassPathWatcher(this, propertyHolder.getWatchDebounceMillis(), listener);
+		watcher.start();
+		return watcher;
 	}
 
 
@@ -204,6 +699,7 @@ public class ClassPathChecker {
 
 	protected void handleClassPaths() throws Exception {
 		validatePropertyHolder();
+		Object event = ScanEvents.begin(ScanEvents.CLASS_PATHS);
 
 		PathSet artifactPathSet = new PathSet(pathFilter);
 		// Es werden Keys geladen, ueber die in den System-Properties Klassenpfade gesammelt werden.
@@ -255,16 +751,89 @@ public class ClassPathChecker {
 		}
 
 		// Alle Pfade nach Zugriff bzw. Lesbarkeit untersuchen und dann durchstoebern...
-		for (String path : artifactPathSet.adjustedList()) {
+		List<String> adjustedPaths = artifactPathSet.adjustedList();
+		ScanEvents.commit(event, null, adjustedPaths.size(), 0);
+
+		int scanThreads = propertyHolder.getScanThreads();
+		List<String> existingPaths = new ArrayList<String>();
+		for (String path : adjustedPaths) {
 			if (new File(path).exists()) {
 				artifactPaths.put(path, true);
-				collect(path);
+				if (metrics != null) metrics.artifactScanned();
+				if (scanThreads == 1 && !lowMemory) {
+					long start = System.nanoTime();
+					collect(path);
+					if (metrics != null) metrics.collectFinished(path, System.nanoTime() - start);
+				}
+				else {
+					existingPaths.add(path);
+				}
 			}
 			else {
 				artifactPaths.put(path, false);
 				logger.log("WARNING: Class path entry '" + path + "' is not availiable.");
 			}
 		}
+		if (lowMemory) {
+			scanTwoPass(existingPaths, scanThreads);
+		}
+		else if (!existingPaths.isEmpty()) {
+			new ParallelScanner(this, scanThreads).scan(existingPaths, directCollector);
+		}
+	}
+
+
+	/**
+	 * Speichersparender Scan in zwei Durchlaeufen: Der erste zaehlt nur die Resource-Namen in
+	 * einem <code>CountingBloomFilter</code> (und sammelt die Archive fuer den Report), der zweite
+	 * durchstoebert die Artefakte erneut und uebernimmt nur die Namen, die laut Filter mehrfach
+	 * vorkommen koennen. Da der Filter keine Duplikate uebersieht, ist der Report derselbe;
+	 * falsche Kandidaten stehen mit einem Vorkommen im Index und werden nicht berichtet.
+	 * Die Archive werden dabei zweimal gelesen, mit <code>scanCache</code> nur einmal.
+	 * Mit <code>scanThreads</code> != 1 haelt der <code>ParallelScanner</code> je Thread die
+	 * Funde eines Artefakts vor, d.h. der Spitzen-Heap waechst mit der Anzahl der Threads.
+	 */
+	private void scanTwoPass(List<String> paths, int scanThreads) throws Exception {
+		final CountingBloomFilter filter = new CountingBloomFilter(Math.max(1, propertyHolder.getLowMemoryExpectedResources()));
+		scanAll(paths, scanThreads, new Collector() {
+			public void addArchive(String archivePath) {
+				directCollector.addArchive(archivePath);
+			}
+			public void put(String resource, String occurence, long digest) {
+				filter.add(resource);
+			}
+		});
+		scanAll(paths, scanThreads, new Collector() {
+			public void addArchive(String archivePath) {
+			}
+			public void put(String resource, String occurence, long digest) {
+				if (filter.count(resource) > 1) {
+					directCollector.put(resource, occurence, digest);
+				}
+			}
+		});
+		if (externalIndex != null) {
+			logger.log("Low memory mode: " + externalIndex.getOccurrenceCount() + " candidate occurrences (Bloom filter: "
+					+ (filter.getMemoryBytes() >> 10) + " KB).");
+		}
+		else {
+			logger.log("Low memory mode: " + resourceToOccurence.size() + " candidates, " + resourceToOccurence.duplicateCount()
+					+ " duplicates (Bloom filter: " + (filter.getMemoryBytes() >> 10) + " KB).");
+		}
+	}
+
+
+	private void scanAll(List<String> paths, int scanThreads, Collector collector) throws Exception {
+		if (paths.isEmpty()) return;
+		if (scanThreads != 1) {
+			new ParallelScanner(this, scanThreads, true).scan(paths, collector);
+			return;
+		}
+		for (String path : paths) {
+			long start = System.nanoTime();
+			collect(path, collector);
+			if (metrics != null) metrics.collectFinished(path, System.nanoTime() - start);
+		}
 	}
 
 
@@ -275,25 +844,94 @@ public class ClassPathChecker {
 	 * @param basePath kann ein Verzeichnis sein aber auch eine einzelne Datei sein (.jar, .class)
 	 */
 	protected void collect(final String basePath) throws Exception {
-		validatePropertyHolder();
+		collect(basePath, directCollector);
+	}
+
 
-		fileUtils.browseDirTree(basePath, new FileUtils.CallBack() {
-			public void action(String filePath) throws Exception {
+	/**
+	 * Wie <code>collect(String)</code>, nur dass die Funde an <code>collector</code> gehen.
+	 * Verzeichnisse, unter denen laut <code>pathFilter</code> alles ausgeschlossen ist, werden
+	 * gar nicht erst betreten.
+	 */
+	protected void collect(final String basePath, final Collector collector) throws Exception {
+		validatePropertyHolder();
+		walk(basePath, basePath, collector);
+	}// collect
 
-				if (!pathFilter.isValid(filePath)) return;
 
-				// z.B. actualPath = "/Volumes/Braeburn/Entwicklung/Software/Sonstiges/ClassPathChecker/bin/com/javacook/classpathchecker/ClassPathChecker.class"
-				if (hasArchiveExtension(filePath)) { // z.B. ".jar"
-					unpackArchiveAndCollect(filePath);
-				} else {
-					// Abschneiden des basePath ("/Volumes/Braeburn/Entwicklung/Software/Sonstiges/ClassPathChecker/bin") vorne:
-					String temp = truncPrefix(filePath, basePath, true);
-					temp = truncPrefix(temp, FILE_SEPARATOR	);
-					resourceToOccurence.put(temp, basePath);
+	/**
+	 * Durchwandert <code>dirPath</code> (<code>basePath</code> selbst oder ein Verzeichnis darunter).
+	 * Die Resource-Namen werden relativ zu <code>basePath</code> gebildet. Das DirectoryWalk-Event
+	 * umfasst auch das Lesen der Archive im Baum und wird auch bei einem Fehler abgeschlossen.
+	 */
+	private void walk(final String basePath, String dirPath, final Collector collector) throws Exception {
+		Object event = ScanEvents.begin(ScanEvents.DIRECTORY_WALK);
+		final int[] fileCount = new int[1];
+		try {
+			new DirectoryWalker().walk(dirPath, new DirectoryWalker.Visitor() {
+				public boolean preVisitDirectory(String dirPath, BasicFileAttributes attributes) {
+					return isValidSubtree(dirPath);
 				}
+				public void visitFile(String filePath, BasicFileAttributes attributes) throws Exception {
+					collectFile(basePath, filePath, collector);
+					if (!hasArchiveExtension(filePath)) fileCount[0]++;
+				}
+				public void visitFailed(String path, IOException e) {
+					warnUnreadable(path, e);
+				}
+			});
+		}
+		finally {
+			// Ein einzelnes Archiv als Artefakt hat nur sein ArchiveListing-Event
+			if (event != null && new File(dirPath).isDirectory()) {
+				ScanEvents.commit(event, dirPath, fileCount[0], 0);
 			}
-		});
-	}// collect
+		}
+	}
+
+
+	/**
+	 * Liefert false, falls das Verzeichnis <code>dirPath</code> laut <code>pathFilter</code> nicht
+	 * durchsucht werden muss.
+	 */
+	protected boolean isValidSubtree(String dirPath) {
+		return pathFilter.isValidSubtree(dirPath);
+	}
+
+
+	protected void warnUnreadable(String path, IOException e) {
+		logger.log("WARNING: '" + path + "' could not be read: " + e);
+	}
+
+
+	/**
+	 * Behandelt eine einzelne beim Durchstoebern von <code>basePath</code> gefundene Datei:
+	 * Archive werden zerlegt, alle anderen Dateien sind selbst Resourcen.
+	 */
+	protected void collectFile(String basePath, String filePath, Collector collector) throws Exception {
+
+		if (!pathFilter.isValid(filePath)) return;
+
+		// z.B. actualPath = "/Volumes/Braeburn/Entwicklung/Software/Sonstiges/ClassPathChecker/bin/com/javacook/classpathchecker/ClassPathChecker.class"
+		if (hasArchiveExtension(filePath)) { // z.B. ".jar"
+			unpackArchiveAndCollect(filePath, collector);
+		} else {
+			String resourceName = resourceNameOf(basePath, filePath);
+			if (!resourceClassifier.accepts(resourceName)) return;
+			collector.put(resourceName, basePath, ResourceIndex.NO_DIGEST);
+			if (metrics != null) metrics.fileScanned();
+		}
+	}
+
+
+	/**
+	 * Liefert den Namen der Resource <code>filePath</code> innerhalb des Verzeichnisses <code>basePath</code>.
+	 */
+	protected String resourceNameOf(String basePath, String filePath) {
+		// Abschneiden des basePath ("/Volumes/Braeburn/Entwicklung/Software/Sonstiges/ClassPathChecker/bin") vorne:
+		String temp = truncPrefix(filePath, basePath, true);
+		return truncPrefix(temp, FILE_SEPARATOR	);
+	}
 
 
 
@@ -303,27 +941,104 @@ public class ClassPathChecker {
 	 * @param archivePath absoluter Pfad eines jar-Files
 	 */
 	protected void unpackArchiveAndCollect(String archivePath) throws ZipException, IOException {
-		archives.add(archivePath);
-		ZipFile zipFile = new ZipFile(new File(archivePath));
-		Enumeration<? extends ZipEntry> resourceEntries = zipFile.entries();
-
-		while (resourceEntries.hasMoreElements()) {
-			ZipEntry resourceEntry = (ZipEntry) resourceEntries.nextElement();
-			String resourceName = resourceEntry.getName();
-			// Directories sollen nicht gesammelt werden - erkennbar am Suffix '/' (auch bei Windows)
-			if (!resourceName.endsWith("/")) {
-				if (isResourceAccessable(resourceName)) {
-					resourceToOccurence.put(resourceName, archivePath);
-				}
-				else {
-					logger.log("WARNING: Resource '" + resourceName + "' contained in '" + archivePath + "' is not accessable.");
-				}
-			}
-		}// while
+		unpackArchiveAndCollect(archivePath, directCollector);
+	}
+
+
+	/**
+	 * Wie <code>unpackArchiveAndCollect(String)</code>, nur dass die Funde an <code>collector</code> gehen.
+	 */
+	protected void unpackArchiveAndCollect(String archivePath, Collector collector) throws ZipException, IOException {
+		long start = System.nanoTime();
+		Object event = ScanEvents.begin(ScanEvents.ARCHIVE_LISTING);
+		if (sharedArtifacts != null) {
+			registerSharedArchive(archivePath, collector);
+			ScanEvents.commit(event, archivePath, 0, 0);
+			if (metrics != null) metrics.archiveFinished(archivePath, System.nanoTime() - start, 0, 0);
+			return;
+		}
+		collector.addArchive(archivePath);
+		ArchiveListing listing = listArchive(new File(archivePath));
+		collectListing(archivePath, listing, collector);
+		ScanEvents.commit(event, archivePath, listing.getTotalSize(), listing.getBytesRead());
+		if (metrics != null) {
+			metrics.archiveFinished(archivePath, System.nanoTime() - start, listing.getTotalSize(), listing.getBytesRead());
+		}
 
 	}// collect
 
 
+	/**
+	 * Registriert das Archiv (samt verschachtelter Archive) bei <code>sharedArtifacts</code>,
+	 * das es nur liest, falls es noch nicht bekannt ist, und meldet nur die Pfade an
+	 * <code>collector</code>. Die Resourcen bleiben im gemeinsamen Index.
+	 */
+	private void registerSharedArchive(String archivePath, Collector collector) throws IOException {
+		String[] paths = sharedArtifacts.register(new File(archivePath), propertyHolder.getNestedArchiveDepth(), resourceClassifier.toString(), new ListingProvider() {
+			public ArchiveListing list(File archive) throws IOException {
+				return listArchive(archive);
+			}
+		});
+		for (String path : paths) {
+			collector.addArchive(path);
+		}
+	}
+
+
+	/**
+	 * Sammelt die Resourcen aus <code>listing</code> und rekursiv aus den darin verschachtelten
+	 * Archiven. Diese erscheinen im Report als eigene Archive mit dem Pfad <tt>outer.jar!/inner.jar</tt>.
+	 */
+	protected void collectListing(String archivePath, ArchiveListing listing, Collector collector) {
+
+		for (int i = 0; i < listing.size(); i++) {
+			String resourceName = listing.getName(i);
+			if (isResourceAccessable(resourceName)) {
+				collector.put(resourceName, archivePath, ResourceIndex.digest(listing.getCrc(i), listing.getSize(i)));
+			}
+			else {
+				logger.log("WARNING: Resource '" + resourceName + "' contained in '" + archivePath + "' is not accessable.");
+			}
+		}// for
+
+		for (int n = 0; n < listing.getNestedCount(); n++) {
+			String nestedPath = archivePath + NESTED_SEPARATOR + listing.getNestedName(n);
+			collector.addArchive(nestedPath);
+			collectListing(nestedPath, listing.getNested(n), collector);
+		}
+
+	}// collectListing
+
+
+	/**
+	 * Liefert das Inhaltsverzeichnis des Archivs <code>archive</code>, moeglichst aus dem
+	 * <code>mavenIndex</code> oder dem <code>scanCache</code>. Ansonsten wird nur das Central
+	 * Directory des Archivs gelesen.
+	 */
+	protected ArchiveListing listArchive(File archive) throws IOException {
+		return (mavenIndex != null)? mavenIndex.list(archive) : readListing(archive);
+	}
+
+
+	/**
+	 * Das Ende der Kette: <code>scanCache</code> bzw. das Central Directory
+	 */
+	private ArchiveListing readListing(File archive) throws IOException {
+		ArchiveListing listing = (scanCache == null)? null : scanCache.get(archive);
+		if (listing == null) {
+			listing = ArchiveListing.read(archive, propertyHolder.getNestedArchiveDepth(), archiveClassifier, resourceClassifier);
+			for (int i = 0; i < listing.getUnreadableNestedCount(); i++) {
+				// bleibt eine gewoehnliche Resource des aeusseren Archivs:
+				warnUnreadable(archive.getPath() + NESTED_SEPARATOR + listing.getUnreadableNestedName(i), listing.getUnreadableNestedCause(i));
+			}
+			if (scanCache != null) {
+				scanCache.put(archive, listing);
+			}
+		}
+		return listing;
+	}
+
+
 	/**
 	 * Checkt, ob die Resource auch wiklich verfuegbar ist aus Sicht des System-Class-Loaders
 	 * TODO: ist das ueberhaupt sinnvoll in Anbetracht verschiedener Class-Loader? Ich glaube nicht.
@@ -341,8 +1056,10 @@ public class ClassPathChecker {
 	 * Bestimmt, welche Dateiendungen eine Datei als Archiv klassifizieren. Default sind "jar" und "zip".
 	 */
 	protected boolean hasArchiveExtension(String fileName) {
-		String extension = StringUtils.suffixOf(fileName, '.');
-		return (extension == null)? false : propertyHolder.getArchiveExtensions().contains(extension);
+		if (archiveClassifier == null) {
+			archiveClassifier = new ResourceClassifier(propertyHolder.getArchiveExtensions(), null);
+		}
+		return archiveClassifier.accepts(fileName);
 	}
 
 
@@ -351,8 +1068,10 @@ public class ClassPathChecker {
 	 * "class", "properties" und "xml".
 	 */
 	protected boolean hasOutputExtension(String fileName) {
-		String extension = StringUtils.suffixOf(fileName, '.');
-		return (extension == null)? false : propertyHolder.getOutputExtensions().contains(extension);
+		if (outputClassifier == null) {
+			outputClassifier = new ResourceClassifier(propertyHolder.getOutputExtensions(), null);
+		}
+		return outputClassifier.accepts(fileName);
 	}
 
 
@@ -371,10 +1090,285 @@ public class ClassPathChecker {
 	}
 
 
+	/*-----------------------------------------------------------------------*\
+	 * incremental updates (watch mode)                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liefert die Pfade aller untersuchten Artefakte (auch der nicht verfuegbaren).
+	 */
+	synchronized List<String> getArtifactPaths() {
+		return new ArrayList<String>(artifactPaths.keySet());
+	}
+
+
+	JavaCookLogger getLogger() {
+		return logger;
+	}
+
+
+	/**
+	 * Bringt den Index fuer <code>path</code> (<code>basePath</code> selbst, eine Datei oder ein
+	 * Verzeichnis darunter) auf den aktuellen Stand, egal ob <code>path</code> neu, geaendert oder
+	 * geloescht ist. Dazu werden die bisherigen Vorkommen unterhalb von <code>path</code> entfernt
+	 * und nur <code>path</code> selbst neu gelesen, nicht das ganze Artefakt.
+	 * @param directory true, falls <code>path</code> ein Verzeichnis ist bzw. war
+	 * @param affected nimmt die Namen aller Resourcen auf, deren Vorkommen sich geaendert haben koennen
+	 */
+	synchronized void update(String basePath, String path, boolean directory, Set<String> affected) throws Exception {
+		File file = new File(path);
+		if (path.equals(basePath)) {
+			artifactPaths.put(basePath, file.exists());
+		}
+		int baseId = artifactTable.getId(basePath);
+		Collector collector = updateCollector(affected);
+		sharedDuplicates = null;
+
+		if (directory) {
+			String prefix = path.equals(basePath)? null : resourceNameOf(basePath, path) + FILE_SEPARATOR;
+			if (baseId >= 0) {
+				resourceToOccurence.removeAll(baseId, prefix, affected);
+			}
+			removeArchives(path, true, affected);
+			if (file.isDirectory() && (path.equals(basePath) || isValidSubtree(path))) {
+				walk(basePath, path, collector);
+			}
+		}
+		else {
+			if (hasArchiveExtension(path)) {
+				removeArchives(path, false, affected);
+			}
+			else if (baseId >= 0) {
+				String resourceName = resourceNameOf(basePath, path);
+				if (resourceToOccurence.remove(resourceName, baseId) >= 0) {
+					affected.add(resourceName);
+				}
+			}
+			if (file.isFile()) {
+				collectFile(basePath, path, collector);
+			}
+		}
+	}
+
+
+	/**
+	 * Entfernt das Archiv <code>path</code> (bzw. bei <code>subtree</code> alle Archive unterhalb
+	 * des Verzeichnisses <code>path</code>) samt den darin verschachtelten Archiven aus dem Index.
+	 */
+	private void removeArchives(String path, boolean subtree, Set<String> affected) {
+		for (Iterator<String> iterator = archives.iterator(); iterator.hasNext(); ) {
+			String archive = iterator.next();
+			if (archive.equals(path) || archive.startsWith(path + NESTED_SEPARATOR)
+					|| (subtree && archive.startsWith(path + FILE_SEPARATOR))) {
+				iterator.remove();
+				int archiveId = artifactTable.getId(archive);
+				if (archiveId >= 0) {
+					resourceToOccurence.removeAll(archiveId, null, affected);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Wie <code>directCollector</code>, nur dass die Vorkommen nach Artefakt-ID einsortiert
+	 * (siehe <code>ResourceIndex.putSorted</code>) und die Namen in <code>affected</code> gesammelt werden.
+	 */
+	private Collector updateCollector(final Set<String> affected) {
+		return new Collector() {
+			public void addArchive(String archivePath) {
+				archives.add(archivePath);
+			}
+			public void put(String resource, String occurence, long digest) {
+				resourceToOccurence.putSorted(resource, artifactTable.register(occurence), digest);
+				affected.add(resource);
+			}
+		};
+	}
+
+
+	/**
+	 * Liefert alle aktuellen Konflikte (wie im Report), zugeordnet zum Resource-Namen.
+	 */
+	synchronized Map<String, ClassPathWatcher.Conflict> conflicts() throws IOException {
+		Map<String, ClassPathWatcher.Conflict> result = new LinkedHashMap<String, ClassPathWatcher.Conflict>();
+		ResourceIndex.Cursor cursor = resourceToOccurence.cursor();
+		while (cursor.next()) {
+			if (cursor.count() < 2) continue;
+			String resourceName = cursor.name();
+			if (hasOutputExtension(resourceName)) {
+				result.put(resourceName, conflictOf(cursor, resourceName));
+			}
+		}
+		return result;
+	}
+
+
+	/**
+	 * Liefert den aktuellen Konflikt zur Resource <code>resourceName</code> bzw. null, falls sie
+	 * nicht (mehr) mehrfach vorkommt oder nicht in den Report gehoert.
+	 */
+	synchronized ClassPathWatcher.Conflict conflictOf(String resourceName) throws IOException {
+		if (!hasOutputExtension(resourceName)) return null;
+		ResourceIndex.Cursor cursor = resourceToOccurence.cursor(resourceName);
+		if (cursor == null || cursor.count() < 2) return null;
+		return conflictOf(cursor, resourceName);
+	}
+
+
+	private ClassPathWatcher.Conflict conflictOf(ResourceIndex.Cursor cursor, String resourceName) throws IOException {
+		List<String> occurences = new ArrayList<String>(cursor.count());
+		for (int i = 0; i < cursor.count(); i++) {
+			occurences.add(artifactTable.getPath(cursor.occurrence(i)));
+		}
+		return new ClassPathWatcher.Conflict(resourceName, occurences, isIdentical(cursor, resourceName));
+	}
+
+
 	/*-----------------------------------------------------------------------*\
 	 * Utilities                                                             *
 	\*-----------------------------------------------------------------------*/
 
+	/**
+	 * Erzeugt die Kennzahlen fuer einen Lauf und registriert sie per JMX.
+	 */
+	private ScanMetrics createMetrics() {
+		if (!propertyHolder.isMetricsEnabled()) return null;
+
+		ScanMetrics result = new ScanMetrics(Math.max(0, propertyHolder.getMetricsSlowestArtifacts()));
+		try {
+			ScanMetrics.register(result);
+		}
+		catch (Exception e) {
+			logger.log("WARNING: Scan metrics could not be registered via JMX: " + e);
+		}
+		return result;
+	}
+
+
+	/**
+	 * Baut den Filter des Scan-Profils (Property <tt>scanProfile</tt>) samt der
+	 * <tt>resourceExcludePatterns</tt>.
+	 */
+	static ResourceClassifier resourceClassifierOf(PropertyHolderInterface propertyHolder) {
+		String profile = propertyHolder.getScanProfile();
+		List<String> extensions = null;
+		if (PropertyHolder.SCAN_PROFILE_OUTPUT.equals(profile)) {
+			extensions = propertyHolder.getOutputExtensions();
+		}
+		else if (profile != null && !PropertyHolder.SCAN_PROFILE_ALL.equals(profile)) {
+			throw new IllegalArgumentException("Unknown scan profile '" + profile + "'.");
+		}
+		List<String> excludes = propertyHolder.getResourceExcludePatterns();
+		if (extensions == null && (excludes == null || excludes.isEmpty())) return ResourceClassifier.ALL;
+		return new ResourceClassifier(extensions, excludes);
+	}
+
+
+	private ScanCache createScanCache() {
+		String cacheFileName = propertyHolder.getScanCacheFile();
+		if (cacheFileName == null || cacheFileName.length() == 0) return null;
+
+		ScanCache cache = new ScanCache(new File(cacheFileName), propertyHolder.getScanCacheMaxSize(),
+				propertyHolder.isScanCacheHash(), propertyHolder.getNestedArchiveDepth(), resourceClassifier.toString());
+		if (!cache.load()) {
+			logger.log("WARNING: Scan cache '" + cacheFileName + "' is not readable => starting with an empty cache.");
+		}
+		return cache;
+	}
+
+
+	private MavenRepositoryIndex createMavenIndex() throws IOException {
+		String indexFileName = propertyHolder.getMavenRepositoryIndex();
+		if (indexFileName == null || indexFileName.length() == 0) return null;
+
+		String repository = propertyHolder.getMavenRepository();
+		if (repository == null || repository.length() == 0) {
+			repository = System.getProperty("user.home") + FILE_SEPARATOR + ".m2" + FILE_SEPARATOR + "repository";
+		}
+		MavenRepositoryIndex index = new MavenRepositoryIndex(new File(repository), new File(indexFileName),
+				propertyHolder.getNestedArchiveDepth(), resourceClassifier.toString(), new ListingProvider() {
+					public ArchiveListing list(File archive) throws IOException {
+						return readListing(archive);
+					}
+				});
+		if (!index.load()) {
+			logger.log("WARNING: Maven repository index '" + indexFileName + "' is not readable => starting with an empty index.");
+		}
+		return index;
+	}
+
+
+	/**
+	 * Loescht die Laeufe eines vorherigen <code>run()</code> und legt ggf. einen neuen
+	 * <code>ExternalSortIndex</code> an (Property <tt>externalSortMemoryLimit</tt>). Mit gemeinsamen
+	 * Archiven wird er nicht verwendet.
+	 */
+	private ExternalSortIndex createExternalIndex() throws IOException {
+		if (externalIndex != null) {
+			externalIndex.delete();
+		}
+		long memoryLimit = propertyHolder.getExternalSortMemoryLimit();
+		if (memoryLimit <= 0 || sharedArtifacts != null) return null;
+
+		String directory = propertyHolder.getExternalSortDirectory();
+		return new ExternalSortIndex(memoryLimit, (directory == null || directory.length() == 0)? null : new File(directory));
+	}
+
+
+	private ConflictPublisher createConflictPublisher() {
+		if (conflictListener == null) return null;
+		if (sharedArtifacts != null || externalIndex != null) {
+			logger.log("WARNING: Conflict listener is not supported with shared artifacts or external sort => not called.");
+			return null;
+		}
+		return new ConflictPublisher(conflictListener, propertyHolder.getConflictBatchSize());
+	}
+
+
+	/**
+	 * Liefert die Datei fuer den Schnappschuss (Property <tt>snapshotFile</tt>), null ohne. Fehlt der
+	 * vollstaendige Index im Speicher, wird das schon vor dem Durchstoebern gemeldet, statt einen
+	 * erfolgreichen Lauf am Ende mit <code>saveSnapshot()</code> scheitern zu lassen.
+	 */
+	private File snapshotFile() {
+		String fileName = propertyHolder.getSnapshotFile();
+		if (fileName == null || fileName.length() == 0) return null;
+		if (sharedArtifacts != null || lowMemory || externalIndex != null) {
+			logger.log("WARNING: Snapshot file is not supported with shared artifacts, low memory mode or external sort => not written.");
+			return null;
+		}
+		return new File(fileName);
+	}
+
+
+	private void checkNotShared(String method) throws IllegalStateException {
+		if (sharedArtifacts != null) {
+			throw new IllegalStateException("Method '" + method + "' is not supported with shared artifacts.");
+		}
+	}
+
+
+	/**
+	 * Im speichersparenden Modus fehlen die einmaligen Resourcen im Index.
+	 */
+	private void checkNotLowMemory(String method) throws IllegalStateException {
+		if (lowMemory) {
+			throw new IllegalStateException("Method '" + method + "' is not supported in low memory mode.");
+		}
+	}
+
+
+	/**
+	 * Mit externer Sortierung gibt es keinen Index im Speicher.
+	 */
+	private void checkNotExternalSort(String method) throws IllegalStateException {
+		if (externalIndex != null) {
+			throw new IllegalStateException("Method '" + method + "' is not supported in external sort mode.");
+		}
+	}
+
+
 	private void validatePropertyHolder() throws IllegalStateException {
 		if (propertyHolder == null) {
 			throw new IllegalStateException("Value of 'propertyHolder' is null.");
@@ -382,23 +1376,27 @@ public class ClassPathChecker {
 	}
 
 
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Bricht das Durchstoebern ab, wenn der <code>ConflictListener</code> es verlangt.
+	 */
+	private static class ScanStoppedException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+
 	/*-----------------------------------------------------------------------*\
 	 * main                                                                  *
 	\*-----------------------------------------------------------------------*/
 
+	/**
+	 * Fuer einen Report nur ueber die tatsaechlich geladenen Klassen siehe <code>ClassPathAgent</code>.
+	 */
 	public static void main(String[] args) throws Exception {
 
-//		System.out.println(ClassPathChecker.class.getProtectionDomain().getCodeSource());
-//		System.out.println(System.getProperty("java.home"));
-//		System.out.println(System.class.getResource("/java/lang/System.class"));
-//		if (true) return;
-//        Class[] loadedClasses = SimpleJavaAgent.getInstrumentation().getAllLoadedClasses();
-//        for (Class clazz : loadedClasses) {
-//            System.out.println(clazz);
-//        }
-		
-		
-
 		PropertyHolderInterface propertyHolder = PropertyHolder.getInstance();
 		propertyHolder.getExcludeArtifacts().add("C:/Development/apache-tomcat-5.5.34/common/lib/");
 		propertyHolder.getExcludeArtifacts().add("C:/Development/Workspaces/INDIGO/Loans/lib");
@@ -406,7 +1404,15 @@ public class ClassPathChecker {
 		propertyHolder.getExcludeArtifacts().add("C:/Development/Workspaces/INDIGO/Loans/classes");	
 		propertyHolder.setLogFileName("C:/TEMP/ClassPathChecker/cpc.log");
 		
-		System.out.println(new ClassPathChecker(propertyHolder).run().xmlReport().save("C:/TEMP/ClassPathChecker/cpc.xml"));
+		ClassPathChecker checker = new ClassPathChecker(propertyHolder);
+		try {
+			String fileName = "C:/TEMP/ClassPathChecker/cpc.xml";
+			checker.run().xmlReport().save(fileName);
+			System.out.println("Report written to " + fileName);
+		}
+		finally {
+			checker.close();
+		}
 
 	}// main
 
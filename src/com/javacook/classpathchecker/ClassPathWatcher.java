@@ -0,0 +1,495 @@
+package com.javacook.classpathchecker;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.javacook.util.DirectoryWalker;
+import com.javacook.util.JavaCookLogger;
+
+/**
+ * Watch-Modus: Ueberwacht die Artefakte eines <code>ClassPathChecker</code> (nach <code>run()</code>)
+ * mit einem <code>WatchService</code> und haelt dessen Index aktuell, ohne alles neu zu durchstoebern:
+ * Ein neues, ersetztes oder geloeschtes Archiv bzw. eine geaenderte Datei wird einzeln nachgezogen
+ * (siehe <code>ClassPathChecker.update</code>). Der <code>Listener</code> erhaelt danach nur die
+ * Konflikte, die sich dadurch geaendert haben.
+ * <p>
+ * Ereignisse werden gesammelt, bis <code>debounceMillis</code> lang keins mehr kommt (hoechstens
+ * aber zehnmal so lange), und pro Pfad zusammengefasst. Ein Redeploy, der ein Jar loescht, neu
+ * schreibt und mehrfach aendert, fuehrt so zu genau einer Aktualisierung dieses Jars.
+ * <p>
+ * Ein <code>WatchService</code> arbeitet nicht rekursiv, daher wird jedes Verzeichnis eines Artefakts
+ * einzeln registriert, zusaetzlich das Vaterverzeichnis jedes Artefakts (damit auch das Anlegen
+ * und Loeschen des Artefakts selbst bemerkt wird). Gehen Ereignisse verloren (<tt>OVERFLOW</tt>),
+ * wird das betroffene Artefakt komplett neu eingelesen.
+ * <p>
+ * Ein erneut eingelesenes Artefakt behaelt seinen Platz in der Reihenfolge der Vorkommen; ein
+ * neu hinzugekommenes Jar wird dagegen hinter allen bisherigen Artefakten einsortiert.
+ */
+public class ClassPathWatcher {
+
+	/**
+	 * Erhaelt die geaenderten Konflikte. Wird im Thread des Watchers aufgerufen.
+	 */
+	public interface Listener {
+		void conflictsChanged(List<Change> changes);
+	}
+
+
+	private final ClassPathChecker checker;
+	private final long debounceMillis;
+	private final Listener listener;
+	private final JavaCookLogger logger;
+	private final WatchService watchService;
+
+	/**
+	 * Pfade der Artefakte (wie in <code>ClassPathChecker.artifactPaths</code>)
+	 */
+	private final Set<String> artifactPaths = new HashSet<String>();
+
+	/**
+	 * Registrierte Verzeichnisse innerhalb der Artefakte -&gt; Pfad des Artefakts
+	 */
+	private final Map<Path, String> treeDirs = new HashMap<Path, String>();
+
+	/**
+	 * Registrierte Vaterverzeichnisse der Artefakte
+	 */
+	private final Set<Path> parentDirs = new HashSet<Path>();
+
+	private final Map<Path, WatchKey> watchKeys = new HashMap<Path, WatchKey>();
+
+	/**
+	 * Die zuletzt gemeldeten Konflikte
+	 */
+	private Map<String, Conflict> knownConflicts;
+
+	private Thread thread;
+	private volatile boolean closed;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Konstruktor
+	 * @param listener null ist erlaubt =&gt; die Aenderungen werden nur geloggt
+	 */
+	ClassPathWatcher(ClassPathChecker checker, long debounceMillis, Listener listener) throws IOException {
+		if (checker == null) throw new IllegalArgumentException("Argument 'checker' is null.");
+		if (debounceMillis < 0) throw new IllegalArgumentException("Argument 'debounceMillis' is negative.");
+		this.checker 		= checker;
+		this.debounceMillis = debounceMillis;
+		this.listener 		= listener;
+		this.logger 		= checker.getLogger();
+		this.watchService 	= FileSystems.getDefault().newWatchService();
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Registriert alle Artefakte und startet den Thread des Watchers. Aenderungen zwischen
+	 * <code>ClassPathChecker.run()</code> und diesem Aufruf werden nicht bemerkt.
+	 */
+	synchronized void start() throws IOException {
+		if (thread != null) throw new IllegalStateException("Watcher is already started.");
+		for (String artifactPath : checker.getArtifactPaths()) {
+			artifactPaths.add(artifactPath);
+			Path path = Paths.get(artifactPath);
+			Path parent = path.getParent();
+			if (parent != null && Files.isDirectory(parent)) {
+				register(parent);
+				parentDirs.add(parent);
+			}
+			if (Files.isDirectory(path)) {
+				registerTree(artifactPath, path);
+			}
+		}
+		knownConflicts = checker.conflicts();
+		logger.log("Watching " + watchKeys.size() + " directories for changes (" + knownConflicts.size() + " conflicts).");
+
+		thread = new Thread(new Runnable() {
+			public void run() {
+				watch();
+			}
+		}, "ClassPathWatcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+
+	/**
+	 * Beendet den Watch-Modus. Eine gerade laufende Aktualisierung wird noch abgeschlossen.
+	 */
+	public void close() throws IOException {
+		closed = true;
+		watchService.close();
+		Thread thread;
+		synchronized (this) {
+			thread = this.thread;
+		}
+		if (thread != null && thread != Thread.currentThread()) {
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Die Schleife des Watcher-Threads: Ereignisse sammeln, bis es ruhig ist, dann verarbeiten.
+	 */
+	private void watch() {
+		Map<Path, Pending> pending = new LinkedHashMap<Path, Pending>();
+		long firstEvent = 0;
+		long lastEvent = 0;
+		try {
+			while (!closed) {
+				WatchKey key;
+				if (pending.isEmpty()) {
+					key = watchService.take();
+				}
+				else {
+					long deadline = Math.min(lastEvent + debounceMillis, firstEvent + 10 * debounceMillis);
+					long wait = deadline - System.currentTimeMillis();
+					if (wait <= 0) {
+						process(pending);
+						pending.clear();
+						continue;
+					}
+					key = watchService.poll(wait, TimeUnit.MILLISECONDS);
+					if (key == null) continue;
+				}
+
+				lastEvent = System.currentTimeMillis();
+				if (pending.isEmpty()) firstEvent = lastEvent;
+				Path dir = (Path)key.watchable();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == OVERFLOW) {
+						// Ereignisse verloren => das ganze Artefakt neu einlesen
+						String basePath = treeDirs.get(dir);
+						if (basePath != null) {
+							addPending(pending, Paths.get(basePath), basePath, true);
+						}
+						continue;
+					}
+					Path child = dir.resolve((Path)event.context());
+					String childPath = child.toString();
+					boolean structural = (event.kind() == ENTRY_CREATE || event.kind() == ENTRY_DELETE);
+					if (artifactPaths.contains(childPath)) {
+						addPending(pending, child, childPath, structural);
+					}
+					else if (treeDirs.containsKey(dir)) {
+						addPending(pending, child, treeDirs.get(dir), structural);
+					}
+				}
+				key.reset();
+			}
+		}
+		catch (ClosedWatchServiceException e) {
+			// close() wurde aufgerufen
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Fasst die Ereignisse zu <code>path</code> zusammen.
+	 */
+	private void addPending(Map<Path, Pending> pending, Path path, String basePath, boolean structural) {
+		Pending change = pending.get(path);
+		if (change == null) {
+			pending.put(path, new Pending(basePath, structural));
+		}
+		else {
+			change.structural |= structural;
+		}
+	}
+
+
+	/**
+	 * Uebernimmt die gesammelten Aenderungen in den Index und meldet die geaenderten Konflikte.
+	 */
+	private void process(Map<Path, Pending> pending) {
+		Set<String> affected = new HashSet<String>();
+		int updated = 0;
+		for (Map.Entry<Path, Pending> entry : pending.entrySet()) {
+			Path path = entry.getKey();
+			Pending change = entry.getValue();
+			try {
+				if (update(path, change.basePath, change.structural, affected)) updated++;
+			}
+			catch (Exception e) {
+				logger.log("WARNING: '" + path + "' could not be updated: " + e);
+			}
+		}
+
+		if (updated == 0) return;
+
+		List<Change> changes = new ArrayList<Change>();
+		for (String resourceName : new TreeSet<String>(affected)) {
+			Conflict before = knownConflicts.get(resourceName);
+			Conflict after;
+			try {
+				after = checker.conflictOf(resourceName);
+			}
+			catch (IOException e) {
+				logger.log("WARNING: Resource '" + resourceName + "' could not be compared: " + e);
+				continue;
+			}
+			if (before == null? after == null : before.equals(after)) continue;
+
+			if (after == null) {
+				knownConflicts.remove(resourceName);
+				changes.add(new Change(Change.Kind.RESOLVED, before));
+			}
+			else {
+				knownConflicts.put(resourceName, after);
+				changes.add(new Change((before == null)? Change.Kind.ADDED : Change.Kind.CHANGED, after));
+			}
+		}
+
+		logger.log("Watch: " + updated + " changed paths, " + changes.size() + " conflicts changed.");
+		if (changes.isEmpty()) return;
+		if (listener == null) {
+			for (Change change : changes) {
+				logger.log(change.toString());
+			}
+			return;
+		}
+		try {
+			listener.conflictsChanged(Collections.unmodifiableList(changes));
+		}
+		catch (RuntimeException e) {
+			logger.log("WARNING: Listener failed: " + e);
+		}
+	}
+
+
+	/**
+	 * Uebernimmt die Aenderung von <code>path</code> in den Index.
+	 * @param structural true, falls <code>path</code> angelegt oder geloescht wurde
+	 * @return false, falls nichts zu tun war
+	 */
+	private boolean update(Path path, String basePath, boolean structural, Set<String> affected) throws Exception {
+		boolean directory = Files.isDirectory(path);
+		boolean wasDirectory = treeDirs.containsKey(path);
+		if (directory || wasDirectory) {
+			// Bei einem bekannten Verzeichnis interessiert nur, ob es neu angelegt bzw. geloescht wurde
+			if (directory && wasDirectory && !structural) return false;
+			unregisterTree(path);
+			if (directory && (path.toString().equals(basePath) || checker.isValidSubtree(path.toString()))) {
+				// Zuerst registrieren, dann einlesen => es geht nichts verloren
+				registerTree(basePath, path);
+			}
+			checker.update(basePath, path.toString(), true, affected);
+		}
+		else {
+			checker.update(basePath, path.toString(), false, affected);
+		}
+		return true;
+	}
+
+
+	/**
+	 * Registriert <code>dir</code> und alle Verzeichnisse darunter, die laut <code>PathFilter</code>
+	 * durchsucht werden.
+	 */
+	private void registerTree(final String basePath, Path dir) throws IOException {
+		register(dir);
+		treeDirs.put(dir, basePath);
+		try {
+			new DirectoryWalker().walk(dir.toString(), new DirectoryWalker.Visitor() {
+				public boolean preVisitDirectory(String dirPath, BasicFileAttributes attributes) throws IOException {
+					if (!checker.isValidSubtree(dirPath)) return false;
+					Path subDir = Paths.get(dirPath);
+					register(subDir);
+					treeDirs.put(subDir, basePath);
+					return true;
+				}
+				public void visitFile(String filePath, BasicFileAttributes attributes) {
+				}
+				public void visitFailed(String path, IOException e) {
+					checker.warnUnreadable(path, e);
+				}
+			});
+		}
+		catch (IOException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new IOException(e);
+		}
+	}
+
+
+	private void register(Path dir) throws IOException {
+		if (!watchKeys.containsKey(dir)) {
+			watchKeys.put(dir, dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY));
+		}
+	}
+
+
+	/**
+	 * Meldet <code>dir</code> und alle Verzeichnisse darunter ab (ausser den Vaterverzeichnissen
+	 * der Artefakte).
+	 */
+	private void unregisterTree(Path dir) {
+		for (Iterator<Map.Entry<Path, String>> iterator = treeDirs.entrySet().iterator(); iterator.hasNext(); ) {
+			Path treeDir = iterator.next().getKey();
+			if (!treeDir.startsWith(dir)) continue;
+			iterator.remove();
+			if (!parentDirs.contains(treeDir)) {
+				WatchKey key = watchKeys.remove(treeDir);
+				if (key != null) key.cancel();
+			}
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Die zusammengefassten Ereignisse zu einem Pfad
+	 */
+	private static class Pending {
+		private final String basePath;
+		private boolean structural;
+
+		Pending(String basePath, boolean structural) {
+			this.basePath = basePath;
+			this.structural = structural;
+		}
+	}
+
+
+	/**
+	 * Eine Resource, die in mehreren Artefakten vorkommt (wie im Abschnitt <tt>problems</tt> bzw.
+	 * <tt>identicalDuplicates</tt> des Reports)
+	 */
+	public static class Conflict {
+		private final String resource;
+		private final List<String> occurences;
+		private final boolean identical;
+
+		Conflict(String resource, List<String> occurences, boolean identical) {
+			this.resource 	= resource;
+			this.occurences = Collections.unmodifiableList(occurences);
+			this.identical 	= identical;
+		}
+
+		public String getResource() {
+			return resource;
+		}
+
+		/**
+		 * Die Artefakte in der Reihenfolge des Klassenpfads
+		 */
+		public List<String> getOccurences() {
+			return occurences;
+		}
+
+		/**
+		 * true, falls alle Kopien byte-gleich sind
+		 */
+		public boolean isIdentical() {
+			return identical;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Conflict)) return false;
+			Conflict other = (Conflict)obj;
+			return resource.equals(other.resource) && occurences.equals(other.occurences) && identical == other.identical;
+		}
+
+		@Override
+		public int hashCode() {
+			return resource.hashCode() * 31 + occurences.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return resource + (identical? " (identical) " : " ") + occurences;
+		}
+	}
+
+
+	/**
+	 * Eine Aenderung an einem Konflikt
+	 */
+	public static class Change {
+
+		public enum Kind {
+			/** Die Resource kommt neu mehrfach vor */
+			ADDED,
+			/** Die Vorkommen haben sich geaendert */
+			CHANGED,
+			/** Die Resource kommt nicht mehr mehrfach vor */
+			RESOLVED
+		}
+
+		private final Kind kind;
+		private final Conflict conflict;
+
+		Change(Kind kind, Conflict conflict) {
+			this.kind = kind;
+			this.conflict = conflict;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * Der aktuelle Konflikt, bei <code>RESOLVED</code> der zuletzt gemeldete
+		 */
+		public Conflict getConflict() {
+			return conflict;
+		}
+
+		@Override
+		public String toString() {
+			return kind + ": " + conflict;
+		}
+	}
+
+}
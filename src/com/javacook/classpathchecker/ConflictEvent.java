@@ -0,0 +1,71 @@
+package com.javacook.classpathchecker;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import com.javacook.util.FileUtils;
+
+/**
+ * Eine Resource, die beim Durchstoebern ein weiteres Vorkommen bekommen hat: Die Vorkommen
+ * stehen in der Reihenfolge des Klassenpfads, das neue zuletzt. Beim ersten Ereignis einer
+ * Resource sind es genau zwei (<code>isFirst()</code>).
+ */
+public class ConflictEvent {
+
+	private final String resource;
+	private final List<String> occurences;
+	private final long[] digests;
+	private Boolean identical;
+
+
+	ConflictEvent(String resource, List<String> occurences, long[] digests) {
+		this.resource 	= resource;
+		this.occurences = Collections.unmodifiableList(occurences);
+		this.digests 	= digests;
+	}
+
+
+	public String getResource() {
+		return resource;
+	}
+
+	/**
+	 * Die Artefakte in der Reihenfolge des Klassenpfads
+	 */
+	public List<String> getOccurences() {
+		return occurences;
+	}
+
+	/**
+	 * Das Artefakt, das das Ereignis ausgeloest hat
+	 */
+	public String getAddedOccurence() {
+		return occurences.get(occurences.size() - 1);
+	}
+
+	/**
+	 * true, falls die Resource erst jetzt mehrfach vorkommt
+	 */
+	public boolean isFirst() {
+		return occurences.size() == 2;
+	}
+
+	/**
+	 * true, falls alle bisherigen Kopien byte-gleich sind. Wie im Report werden Dateien in
+	 * Verzeichnissen erst hier gelesen.
+	 */
+	public boolean isIdentical() throws IOException {
+		if (identical == null) {
+			String[] paths = occurences.toArray(new String[occurences.size()]);
+			identical = Boolean.valueOf(FileUtils.isIdentical(resource, paths, digests, digests.length));
+		}
+		return identical.booleanValue();
+	}
+
+	@Override
+	public String toString() {
+		return resource + (isFirst()? " (new) " : " ") + occurences;
+	}
+
+}
@@ -0,0 +1,24 @@
+package com.javacook.classpathchecker;
+
+import java.util.List;
+
+/**
+ * Erhaelt die Konflikte bereits waehrend <code>ClassPathChecker.run()</code>, sobald eine Resource
+ * ihr zweites Vorkommen bekommt, und erneut bei jedem weiteren (siehe <code>ConflictEvent</code>).
+ * Die Ereignisse werden in Stapeln zu <tt>conflictBatchSize</tt> Stueck geliefert, der letzte
+ * Stapel am Ende des Durchstoeberns.
+ * <p>
+ * Der Listener wird im Thread von <code>run()</code> aufgerufen, auch beim parallelen
+ * Durchstoebern. Eine RuntimeException bricht den Lauf ab (<i>fail fast</i>): Anders als bei
+ * sonstigen Fehlern wirft <code>run()</code> sie nach dem Loggen unveraendert weiter.
+ */
+public interface ConflictListener {
+
+	/**
+	 * @param events die neuen Ereignisse in der Reihenfolge ihrer Entdeckung
+	 * @return false, um das Durchstoebern abzubrechen; der Report enthaelt dann nur die
+	 * bis dahin gefundenen Resourcen
+	 */
+	boolean conflictsFound(List<ConflictEvent> events);
+
+}
@@ -0,0 +1,91 @@
+package com.javacook.classpathchecker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sammelt die <code>ConflictEvent</code>s eines Laufs und gibt sie stapelweise an den
+ * <code>ConflictListener</code> weiter, damit dieser das Durchstoebern nicht pro Resource aufhaelt.
+ * <p>
+ * Die Klasse ist nicht thread-sicher.
+ */
+class ConflictPublisher {
+
+	private final ConflictListener listener;
+	private final int batchSize;
+	private final List<ConflictEvent> batch;
+	private int publishedCount;
+	private boolean stopped;
+
+
+	/**
+	 * Konstruktor
+	 * @param batchSize Anzahl der Ereignisse je Aufruf des Listeners (1 = sofort)
+	 */
+	ConflictPublisher(ConflictListener listener, int batchSize) {
+		if (listener == null) throw new IllegalArgumentException("Argument 'listener' is null.");
+		this.listener = listener;
+		this.batchSize = Math.max(1, batchSize);
+		this.batch = new ArrayList<ConflictEvent>(Math.min(this.batchSize, 1024));
+	}
+
+
+	/**
+	 * Nimmt <code>event</code> auf und liefert den Stapel aus, sobald er voll ist.
+	 * @return false, falls der Listener das Durchstoebern abbrechen will
+	 */
+	boolean publish(ConflictEvent event) {
+		batch.add(event);
+		return (batch.size() < batchSize)? !stopped : flush();
+	}
+
+
+	/**
+	 * Liefert die gesammelten Ereignisse aus.
+	 * @return false, falls der Listener das Durchstoebern abbrechen will
+	 */
+	boolean flush() {
+		if (batch.isEmpty()) return !stopped;
+		List<ConflictEvent> events = new ArrayList<ConflictEvent>(batch);
+		batch.clear();
+		publishedCount += events.size();
+		boolean proceed;
+		try {
+			proceed = listener.conflictsFound(Collections.unmodifiableList(events));
+		}
+		catch (RuntimeException e) {
+			throw new ListenerException(e);
+		}
+		if (!proceed) {
+			stopped = true;
+		}
+		return !stopped;
+	}
+
+
+	/**
+	 * Anzahl der bereits ausgelieferten Ereignisse
+	 */
+	int getPublishedCount() {
+		return publishedCount;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Transportiert eine Exception des Listeners durch das Durchstoebern hindurch, damit
+	 * <code>ClassPathChecker.run()</code> sie von anderen Fehlern unterscheiden kann.
+	 */
+	static class ListenerException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		ListenerException(RuntimeException cause) {
+			super(cause);
+		}
+	}
+
+}
@@ -0,0 +1,385 @@
+package com.javacook.classpathchecker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.javacook.util.VarInts;
+
+/**
+ * Ersatz fuer <code>resourceToOccurence</code> bei Klassenpfaden, deren Index nicht mehr in den
+ * Heap passt: Die Vorkommen (Resource, Artefakt-ID, Digest) werden nur gesammelt. Sobald ihr
+ * geschaetzter Platzbedarf <code>memoryLimit</code> erreicht, werden sie nach Namen sortiert als
+ * Lauf (<i>run</i>) in eine temporaere Datei geschrieben. <code>merge</code> mischt alle Laeufe und
+ * den Rest im Speicher (k-Wege-Mischen) und liefert die mehrfach vorkommenden Resourcen nach
+ * Namen sortiert, ohne den ganzen Index je im Speicher zu halten.
+ * <p>
+ * Die Vorkommen einer Resource stehen in der Reihenfolge des Einfuegens, da ein Lauf stabil
+ * sortiert wird und bei gleichen Namen der fruehere Lauf gewinnt. Ein wiederholtes Vorkommen
+ * desselben Artefakts zaehlt wie im <code>ResourceIndex</code> nur einmal.
+ * <p>
+ * Lauf-Format (Zahlen als VarInt): pro Vorkommen varint gemeinsamerPrefix, varint suffixLaenge,
+ * byte[] suffix (UTF-8), varint artefaktId, varlong digest + 1. Eine Endemarke gibt es nicht,
+ * der Lauf endet mit der Datei.
+ * <p>
+ * Die Klasse ist nicht thread-sicher.
+ */
+class ExternalSortIndex {
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Geschaetzter Platzbedarf eines Vorkommens ohne die Zeichen des Namens (inkl. Sortier-Puffer) */
+	private final static int RECORD_OVERHEAD = 64;
+
+	private final long memoryLimit;
+	private final File directory;
+
+	private String[] names = new String[1024];
+	private int[] artifactIds = new int[1024];
+	private long[] digests = new long[1024];
+	private int size;
+	private long memoryUsed;
+	private boolean sorted = true;
+
+	/** Sortier-Puffer (Permutation und Hilfsarray des Mergesort), werden wiederverwendet */
+	private int[] order = new int[0];
+	private int[] scratch = new int[0];
+
+	private final List<File> runs = new ArrayList<File>();
+	private long occurrenceCount;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Konstruktor
+	 * @param memoryLimit geschaetzter Platzbedarf in Bytes, ab dem ein Lauf geschrieben wird
+	 * @param parentDirectory Verzeichnis, in dem ein eigenes temporaeres Verzeichnis fuer die
+	 * Laeufe angelegt wird (null = <tt>java.io.tmpdir</tt>)
+	 */
+	ExternalSortIndex(long memoryLimit, File parentDirectory) throws IOException {
+		if (memoryLimit <= 0) throw new IllegalArgumentException("Argument 'memoryLimit' must be positive.");
+		this.memoryLimit = memoryLimit;
+		if (parentDirectory != null && !parentDirectory.exists()) {
+			parentDirectory.mkdirs();
+		}
+		this.directory = (parentDirectory == null)?
+				Files.createTempDirectory("cpc-sort").toFile() : Files.createTempDirectory(parentDirectory.toPath(), "cpc-sort").toFile();
+		this.directory.deleteOnExit();
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * package methods                                                       *
+	\*-----------------------------------------------------------------------*/
+
+	void put(String name, int artifactId, long digest) throws IOException {
+		if (size == names.length) {
+			names 		= Arrays.copyOf(names, size * 2);
+			artifactIds = Arrays.copyOf(artifactIds, size * 2);
+			digests 	= Arrays.copyOf(digests, size * 2);
+		}
+		names[size] 	  = name;
+		artifactIds[size] = artifactId;
+		digests[size] 	  = digest;
+		size++;
+		sorted = false;
+		occurrenceCount++;
+		memoryUsed += RECORD_OVERHEAD + 2L * name.length();
+		if (memoryUsed >= memoryLimit) {
+			spill();
+		}
+	}
+
+
+	/**
+	 * Anzahl aller eingefuegten Vorkommen
+	 */
+	long getOccurrenceCount() {
+		return occurrenceCount;
+	}
+
+	int getRunCount() {
+		return runs.size();
+	}
+
+	File getDirectory() {
+		return directory;
+	}
+
+
+	/**
+	 * Mischt alle Laeufe und uebergibt jede Resource mit mindestens zwei verschiedenen
+	 * Vorkommen an <code>handler</code>, nach Namen sortiert. Kann beliebig oft aufgerufen werden.
+	 * @return Anzahl der gelieferten Resourcen
+	 */
+	int merge(Handler handler) throws IOException {
+		sortBuffer();
+		PriorityQueue<Source> queue = new PriorityQueue<Source>(runs.size() + 1);
+		try {
+			for (int i = 0; i < runs.size(); i++) {
+				Source source = new RunSource(runs.get(i), i);
+				if (source.next()) queue.add(source); else source.close();
+			}
+			Source memory = new MemorySource(runs.size());
+			if (memory.next()) queue.add(memory);
+
+			int duplicates = 0;
+			int[] groupIds = new int[16];
+			long[] groupDigests = new long[16];
+			while (!queue.isEmpty()) {
+				String name = queue.peek().name;
+				int count = 0;
+				while (!queue.isEmpty() && queue.peek().name.equals(name)) {
+					Source source = queue.poll();
+					if (!contains(groupIds, count, source.artifactId)) {
+						if (count == groupIds.length) {
+							groupIds 	 = Arrays.copyOf(groupIds, count * 2);
+							groupDigests = Arrays.copyOf(groupDigests, count * 2);
+						}
+						groupIds[count] 	= source.artifactId;
+						groupDigests[count] = source.digest;
+						count++;
+					}
+					if (source.next()) queue.add(source); else source.close();
+				}
+				if (count > 1) {
+					handler.duplicate(name, groupIds, groupDigests, count);
+					duplicates++;
+				}
+			}
+			return duplicates;
+		}
+		finally {
+			for (Source source : queue) {
+				source.close();
+			}
+		}
+	}
+
+
+	/**
+	 * Loescht alle Laeufe samt Verzeichnis.
+	 */
+	void delete() {
+		for (File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+		directory.delete();
+		names = new String[0];
+		order = scratch = new int[0];
+		size = 0;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	private static boolean contains(int[] ids, int count, int id) {
+		for (int i = 0; i < count; i++) {
+			if (ids[i] == id) return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Schreibt den Puffer sortiert als neuen Lauf und leert ihn.
+	 */
+	private void spill() throws IOException {
+		sortBuffer();
+		File run = new File(directory, "run" + runs.size() + ".tmp");
+		run.deleteOnExit();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16));
+		try {
+			byte[] previous = new byte[0];
+			for (int i = 0; i < size; i++) {
+				byte[] name = names[i].getBytes(UTF_8);
+				int shared = 0;
+				int max = Math.min(previous.length, name.length);
+				while (shared < max && previous[shared] == name[shared]) shared++;
+				VarInts.writeVarInt(out, shared);
+				VarInts.writeVarInt(out, name.length - shared);
+				out.write(name, shared, name.length - shared);
+				VarInts.writeVarInt(out, artifactIds[i]);
+				VarInts.writeVarLong(out, digests[i] + 1);
+				previous = name;
+			}
+		}
+		finally {
+			out.close();
+		}
+		runs.add(run);
+		Arrays.fill(names, 0, size, null);
+		size = 0;
+		memoryUsed = 0;
+	}
+
+
+	/**
+	 * Sortiert den Puffer stabil nach Namen: Mergesort ueber eine Index-Permutation, die dann
+	 * zyklenweise auf die Puffer angewendet wird. Ausser den (wiederverwendeten) int-Arrays
+	 * <code>order</code> und <code>scratch</code> wird kein Speicher angelegt.
+	 */
+	private void sortBuffer() {
+		if (sorted) return;
+		if (order.length < size) {
+			order = new int[names.length];
+			scratch = new int[names.length];
+		}
+		for (int i = 0; i < size; i++) order[i] = i;
+		mergeSort(order, scratch, 0, size);
+
+		// Position i bekommt das Element order[i]; erledigte Positionen zeigen auf sich selbst:
+		for (int i = 0; i < size; i++) {
+			if (order[i] == i) continue;
+			String name = names[i];
+			int artifactId = artifactIds[i];
+			long digest = digests[i];
+			int j = i;
+			while (order[j] != i) {
+				int k = order[j];
+				names[j] 		= names[k];
+				artifactIds[j] 	= artifactIds[k];
+				digests[j] 		= digests[k];
+				order[j] = j;
+				j = k;
+			}
+			names[j] 		= name;
+			artifactIds[j] 	= artifactId;
+			digests[j] 		= digest;
+			order[j] = j;
+		}
+		sorted = true;
+	}
+
+
+	private void mergeSort(int[] order, int[] temp, int from, int to) {
+		if (to - from < 2) return;
+		int middle = (from + to) >>> 1;
+		mergeSort(order, temp, from, middle);
+		mergeSort(order, temp, middle, to);
+		if (names[order[middle - 1]].compareTo(names[order[middle]]) <= 0) return;
+		System.arraycopy(order, from, temp, from, to - from);
+		int left = from, right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to || (left < middle && names[temp[left]].compareTo(names[temp[right]]) <= 0)) {
+				order[i] = temp[left++];
+			}
+			else {
+				order[i] = temp[right++];
+			}
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Empfaengt die mehrfach vorkommenden Resourcen. Die Arrays werden wiederverwendet.
+	 */
+	interface Handler {
+		void duplicate(String name, int[] artifactIds, long[] digests, int count) throws IOException;
+	}
+
+
+	/**
+	 * Ein Lauf beim Mischen; bei gleichen Namen kommt der mit der kleineren Nummer zuerst.
+	 */
+	private abstract static class Source implements Comparable<Source> {
+		final int number;
+		String name;
+		int artifactId;
+		long digest;
+
+		Source(int number) {
+			this.number = number;
+		}
+
+		abstract boolean next() throws IOException;
+
+		void close() throws IOException {
+		}
+
+		public int compareTo(Source other) {
+			int result = name.compareTo(other.name);
+			return (result != 0)? result : (number < other.number)? -1 : (number == other.number)? 0 : 1;
+		}
+	}
+
+
+	private static class RunSource extends Source {
+		private final DataInputStream in;
+		private byte[] buffer = new byte[256];
+
+		RunSource(File run, int number) throws IOException {
+			super(number);
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+		}
+
+		@Override
+		boolean next() throws IOException {
+			int shared;
+			try {
+				shared = VarInts.readVarInt(in);
+			}
+			catch (EOFException e) {
+				return false;
+			}
+			int suffixLength = VarInts.readVarInt(in);
+			if (shared + suffixLength > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, shared + suffixLength));
+			}
+			in.readFully(buffer, shared, suffixLength);
+			name 		= new String(buffer, 0, shared + suffixLength, UTF_8);
+			artifactId 	= VarInts.readVarInt(in);
+			digest 		= VarInts.readVarLong(in) - 1;
+			return true;
+		}
+
+		@Override
+		void close() throws IOException {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * Der (sortierte) Rest im Speicher als letzter Lauf
+	 */
+	private class MemorySource extends Source {
+		private int index = -1;
+
+		MemorySource(int number) {
+			super(number);
+		}
+
+		@Override
+		boolean next() {
+			if (++index >= size) return false;
+			name 		= names[index];
+			artifactId 	= artifactIds[index];
+			digest 		= digests[index];
+			return true;
+		}
+	}
+
+}
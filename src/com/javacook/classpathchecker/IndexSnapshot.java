@@ -0,0 +1,490 @@
+package com.javacook.classpathchecker;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.javacook.util.ArtifactTable;
+import com.javacook.util.FileUtils;
+import com.javacook.util.ResourceIndex;
+import com.javacook.util.VarInts;
+
+/**
+ * Kompakter binaerer Schnappschuss des kompletten Index eines Scans (Artefakte, Resource-Namen,
+ * Vorkommen und Digests). Die Datei wird nur gemappt, nicht auf den Heap geladen; Abfragen wie
+ * "welche Artefakte enthalten <tt>X</tt>?" dekodieren nur einen kleinen Block.
+ * <p>
+ * Dateiformat (feste Felder big-endian, sonst VarInt):
+ * <pre>
+ * Header:     int MAGIC, int VERSION, int anzahlArtefakte, int anzahlResourcen,
+ *             int blockGroesse, int anzahlBloecke, long artefakteOffset, long namenOffset, long blockIndexOffset
+ * Artefakte:  pro Artefakt (in ID-Reihenfolge): varint laenge, byte[] pfad (UTF-8)
+ * Namen:      pro Resource, sortiert nach den UTF-8-Bytes (vorzeichenlos):
+ *             varint gemeinsamerPrefix, varint suffixLaenge, byte[] suffix,
+ *             varint anzahlVorkommen, pro Vorkommen: varint artefaktId, varlong (digest + 1)
+ * Blockindex: pro Block ein int (Position des ersten Namens in der Datei)
+ * </pre>
+ * Die Namen sind front-codiert: Jeder Name speichert nur den vom Vorgaenger abweichenden Suffix.
+ * Der erste Name eines Blocks (<code>blockGroesse</code> Namen) ist vollstaendig abgelegt
+ * (Restart-Punkt), sodass ein Name per binaerer Suche ueber die Bloecke und anschliessendes
+ * Dekodieren eines einzigen Blocks gefunden wird. Die Vorkommen stehen in der Reihenfolge des
+ * Klassenpfads; <code>ResourceIndex.NO_DIGEST</code> wird als 0 abgelegt.
+ * <p>
+ * Geoeffnete Schnappschuesse sind unveraenderlich und thread-sicher.
+ */
+public class IndexSnapshot {
+
+	private final static int MAGIC 		= 0x43504353; // "CPCS"
+	private final static int VERSION 	= 1;
+	private final static int HEADER_SIZE = 6 * 4 + 3 * 8;
+	private final static Charset UTF_8 	= Charset.forName("UTF-8");
+
+	/** Anzahl der Namen zwischen zwei vollstaendig abgelegten Namen */
+	public final static int DEFAULT_BLOCK_SIZE = 16;
+
+	private final File file;
+	private final ByteBuffer buffer;
+	private final String[] artifactPaths;
+	private final int resourceCount;
+	private final int blockSize;
+	private final int blockCount;
+	private final int namesOffset;
+	private final int blockIndexOffset;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	private IndexSnapshot(File file, ByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		try {
+			if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+				throw new IOException("'" + file + "' is not an index snapshot.");
+			}
+			int version = buffer.getInt(4);
+			if (version != VERSION) throw new IOException("Unsupported index snapshot version " + version + ".");
+			int artifactCount 	= buffer.getInt(8);
+			resourceCount 		= buffer.getInt(12);
+			blockSize 			= buffer.getInt(16);
+			blockCount 			= buffer.getInt(20);
+			long artifactsOffset = buffer.getLong(24);
+			long namesOffset 	= buffer.getLong(32);
+			long blockIndexOffset = buffer.getLong(40);
+			if (artifactCount < 0 || resourceCount < 0 || blockSize < 1 || blockCount != (resourceCount + blockSize - 1) / blockSize
+					|| artifactsOffset != HEADER_SIZE || namesOffset < artifactsOffset || blockIndexOffset < namesOffset
+					|| blockIndexOffset + 4L * blockCount != buffer.limit()) {
+				throw new IOException("Index snapshot '" + file + "' is corrupt.");
+			}
+			this.namesOffset = (int)namesOffset;
+			this.blockIndexOffset = (int)blockIndexOffset;
+
+			ByteBuffer in = buffer.duplicate();
+			in.position((int)artifactsOffset);
+			artifactPaths = new String[artifactCount];
+			for (int i = 0; i < artifactCount; i++) {
+				byte[] path = new byte[VarInts.readVarInt(in)];
+				in.get(path);
+				artifactPaths[i] = new String(path, UTF_8);
+			}
+		}
+		catch (BufferUnderflowException e) {
+			throw new IOException("Index snapshot '" + file + "' is truncated.", e);
+		}
+		catch (IndexOutOfBoundsException e) {
+			throw new IOException("Index snapshot '" + file + "' is truncated.", e);
+		}
+	}
+
+
+	/**
+	 * Mappt den Schnappschuss <code>file</code>. Gelesen werden nur Header und Artefakt-Tabelle.
+	 */
+	public static IndexSnapshot open(File file) throws IOException {
+		if (file == null) throw new IllegalArgumentException("Argument 'file' is null.");
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			long length = raf.length();
+			if (length > Integer.MAX_VALUE) throw new IOException("Index snapshot '" + file + "' is too large.");
+			// Das Mapping bleibt nach dem Schliessen des Channels gueltig
+			return new IndexSnapshot(file, raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length));
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * writing                                                               *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Schreibt <code>index</code> samt <code>artifactTable</code> als Schnappschuss nach
+	 * <code>file</code> (ueber eine temporaere Datei, die atomar umbenannt wird).
+	 * Im Speicher werden dabei nur die (UTF-8-kodierten) Namen zum Sortieren gehalten.
+	 */
+	public static void write(File file, ArtifactTable artifactTable, ResourceIndex index) throws IOException {
+		write(file, artifactTable, index, DEFAULT_BLOCK_SIZE);
+	}
+
+
+	public static void write(File file, ArtifactTable artifactTable, ResourceIndex index, int blockSize) throws IOException {
+		if (file == null) throw new IllegalArgumentException("Argument 'file' is null.");
+		if (blockSize < 1) throw new IllegalArgumentException("Argument 'blockSize' must be positive.");
+
+		List<byte[]> names = new ArrayList<byte[]>(index.size());
+		ResourceIndex.Cursor cursor = index.cursor();
+		while (cursor.next()) {
+			names.add(cursor.name().getBytes(UTF_8));
+		}
+		Collections.sort(names, new Comparator<byte[]>() {
+			public int compare(byte[] b1, byte[] b2) {
+				return compareBytes(b1, b2);
+			}
+		});
+		int blockCount = (names.size() + blockSize - 1) / blockSize;
+		int[] blockOffsets = new int[blockCount];
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+			long namesOffset;
+			try {
+				out.write(new byte[HEADER_SIZE]); // wird am Ende ueberschrieben
+				for (int id = 0; id < artifactTable.size(); id++) {
+					byte[] path = artifactTable.getPath(id).getBytes(UTF_8);
+					VarInts.writeVarInt(out, path.length);
+					out.write(path);
+				}
+				namesOffset = out.size();
+
+				byte[] previous = new byte[0];
+				for (int i = 0; i < names.size(); i++) {
+					byte[] name = names.get(i);
+					int shared = 0;
+					if (i % blockSize == 0) {
+						blockOffsets[i / blockSize] = checkedSize(out);
+					}
+					else {
+						int max = Math.min(previous.length, name.length);
+						while (shared < max && previous[shared] == name[shared]) shared++;
+					}
+					VarInts.writeVarInt(out, shared);
+					VarInts.writeVarInt(out, name.length - shared);
+					out.write(name, shared, name.length - shared);
+
+					ResourceIndex.Cursor occurrences = index.cursor(new String(name, UTF_8));
+					VarInts.writeVarInt(out, occurrences.count());
+					for (int n = 0; n < occurrences.count(); n++) {
+						VarInts.writeVarInt(out, occurrences.occurrence(n));
+						VarInts.writeVarLong(out, occurrences.digest(n) + 1);
+					}
+					previous = name;
+				}
+				for (int blockOffset : blockOffsets) {
+					out.writeInt(blockOffset);
+				}
+				checkedSize(out);
+			}
+			finally {
+				out.close();
+			}
+
+			RandomAccessFile raf = new RandomAccessFile(tempFile, "rw");
+			try {
+				raf.writeInt(MAGIC);
+				raf.writeInt(VERSION);
+				raf.writeInt(artifactTable.size());
+				raf.writeInt(names.size());
+				raf.writeInt(blockSize);
+				raf.writeInt(blockCount);
+				raf.writeLong(HEADER_SIZE);
+				raf.writeLong(namesOffset);
+				raf.writeLong(raf.length() - 4L * blockCount);
+			}
+			finally {
+				raf.close();
+			}
+
+			FileUtils.replaceAtomically(tempFile, file);
+		}
+		finally {
+			tempFile.delete(); // nur falls das Schreiben oder Verschieben nicht geklappt hat
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getArtifactCount() {
+		return artifactPaths.length;
+	}
+
+	public String getArtifactPath(int id) {
+		if (id < 0 || id >= artifactPaths.length) throw new IllegalArgumentException("Unknown artifact id " + id + ".");
+		return artifactPaths[id];
+	}
+
+	public int getResourceCount() {
+		return resourceCount;
+	}
+
+
+	/**
+	 * Liefert einen Cursor ueber alle Resourcen in sortierter Reihenfolge (UTF-8-Bytes).
+	 */
+	public Cursor cursor() throws IOException {
+		return new Cursor(0);
+	}
+
+
+	/**
+	 * Liefert einen Cursor, der auf der Resource <code>resource</code> steht, oder null, falls
+	 * es sie nicht gibt. Es wird nur der Block dekodiert, in dem sie stehen muss.
+	 */
+	public Cursor cursor(String resource) throws IOException {
+		if (resource == null) throw new IllegalArgumentException("Argument 'resource' is null.");
+		byte[] key = resource.getBytes(UTF_8);
+
+		// Letzter Block, dessen erster Name <= key ist:
+		int low = 0;
+		int high = blockCount - 1;
+		int block = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (compareFirstName(mid, key) <= 0) {
+				block = mid;
+				low = mid + 1;
+			}
+			else {
+				high = mid - 1;
+			}
+		}
+		if (block < 0) return null;
+
+		Cursor cursor = new Cursor(block);
+		int end = Math.min(resourceCount, (block + 1) * blockSize);
+		while (cursor.index + 1 < end && cursor.next()) {
+			int cmp = compareBytes(cursor.name, cursor.nameLength, key);
+			if (cmp == 0) return cursor;
+			if (cmp > 0) return null;
+		}
+		return null;
+	}
+
+
+	/**
+	 * Liefert die Pfade der Artefakte, die <code>resource</code> enthalten (in der Reihenfolge
+	 * des Klassenpfads), bzw. eine leere Liste.
+	 */
+	public List<String> providersOf(String resource) throws IOException {
+		Cursor cursor = cursor(resource);
+		if (cursor == null) return Collections.emptyList();
+		List<String> result = new ArrayList<String>(cursor.count());
+		for (int i = 0; i < cursor.count(); i++) {
+			result.add(artifactPaths[cursor.occurrence(i)]);
+		}
+		return result;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liefert die Position von Block <code>block</code>; sie muss zwischen den Namen liegen.
+	 */
+	private int blockOffset(int block) throws IOException {
+		int offset = buffer.getInt(blockIndexOffset + 4 * block);
+		if (offset < namesOffset || offset >= blockIndexOffset) {
+			throw new IOException("Index snapshot '" + file + "' is corrupt.");
+		}
+		return offset;
+	}
+
+
+	/**
+	 * Vergleicht den (vollstaendig abgelegten) ersten Namen von Block <code>block</code> mit
+	 * <code>key</code>, direkt im Mapping.
+	 */
+	private int compareFirstName(int block, byte[] key) throws IOException {
+		ByteBuffer in = buffer.duplicate();
+		in.position(blockOffset(block));
+		try {
+			VarInts.readVarInt(in); // gemeinsamer Prefix, immer 0
+			int length = VarInts.readVarInt(in);
+			int start = in.position();
+			if (length < 0 || length > blockIndexOffset - start) {
+				throw new IOException("Index snapshot '" + file + "' is corrupt.");
+			}
+			int max = Math.min(length, key.length);
+			for (int i = 0; i < max; i++) {
+				int cmp = (in.get(start + i) & 0xFF) - (key[i] & 0xFF);
+				if (cmp != 0) return cmp;
+			}
+			return length - key.length;
+		}
+		catch (BufferUnderflowException e) {
+			throw new IOException("Index snapshot '" + file + "' is corrupt.", e);
+		}
+	}
+
+
+	private static int checkedSize(DataOutputStream out) throws IOException {
+		int size = out.size();
+		if (size < 0 || size == Integer.MAX_VALUE) throw new IOException("Index snapshot is too large.");
+		return size;
+	}
+
+
+	/**
+	 * Vergleicht vorzeichenlos, d.h. in der Reihenfolge der Unicode-Codepoints.
+	 */
+	static int compareBytes(byte[] b1, byte[] b2) {
+		return compareBytes(b1, b1.length, b2);
+	}
+
+
+	private static int compareBytes(byte[] b1, int length1, byte[] b2) {
+		int max = Math.min(length1, b2.length);
+		for (int i = 0; i < max; i++) {
+			int cmp = (b1[i] & 0xFF) - (b2[i] & 0xFF);
+			if (cmp != 0) return cmp;
+		}
+		return length1 - b2.length;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Laeuft in sortierter Reihenfolge ueber die Resourcen des Schnappschusses. Dekodiert wird
+	 * jeweils nur der aktuelle Eintrag. Ein Cursor ist nicht thread-sicher.
+	 */
+	public class Cursor {
+		private final ByteBuffer in = buffer.duplicate();
+		private int index;
+		private byte[] name = new byte[256];
+		private int nameLength;
+		private int count;
+		private int[] occurrences = new int[4];
+		private long[] digests = new long[4];
+
+		private Cursor(int block) throws IOException {
+			index = block * blockSize - 1;
+			if (block < blockCount) {
+				in.position(blockOffset(block));
+			}
+		}
+
+		/**
+		 * Geht zur naechsten Resource.
+		 * @return false, falls es keine weitere gibt
+		 */
+		public boolean next() throws IOException {
+			if (index + 1 >= resourceCount) return false;
+			try {
+				int shared = VarInts.readVarInt(in);
+				int suffixLength = VarInts.readVarInt(in);
+				if (shared > nameLength || suffixLength < 0 || shared + suffixLength < 0) {
+					throw new IOException("Index snapshot '" + file + "' is corrupt.");
+				}
+				if (shared + suffixLength > name.length) {
+					name = Arrays.copyOf(name, Math.max(name.length * 2, shared + suffixLength));
+				}
+				in.get(name, shared, suffixLength);
+				nameLength = shared + suffixLength;
+
+				count = VarInts.readVarInt(in);
+				if (count < 0 || count > artifactPaths.length) {
+					throw new IOException("Index snapshot '" + file + "' is corrupt.");
+				}
+				if (count > occurrences.length) {
+					occurrences = new int[count];
+					digests = new long[count];
+				}
+				for (int i = 0; i < count; i++) {
+					occurrences[i] = VarInts.readVarInt(in);
+					digests[i] = VarInts.readVarLong(in) - 1;
+					if (occurrences[i] < 0 || occurrences[i] >= artifactPaths.length) {
+						throw new IOException("Index snapshot '" + file + "' is corrupt.");
+					}
+				}
+			}
+			catch (BufferUnderflowException e) {
+				throw new IOException("Index snapshot '" + file + "' is truncated.", e);
+			}
+			index++;
+			return true;
+		}
+
+		public String name() {
+			return new String(name, 0, nameLength, UTF_8);
+		}
+
+		/**
+		 * Vergleicht den Namen der aktuellen Resource mit dem von <code>other</code> (ohne
+		 * Strings zu erzeugen), in der Sortierreihenfolge des Schnappschusses.
+		 */
+		public int compareName(Cursor other) {
+			int max = Math.min(nameLength, other.nameLength);
+			for (int i = 0; i < max; i++) {
+				int cmp = (name[i] & 0xFF) - (other.name[i] & 0xFF);
+				if (cmp != 0) return cmp;
+			}
+			return nameLength - other.nameLength;
+		}
+
+		public int count() {
+			return count;
+		}
+
+		/**
+		 * Das <code>i</code>-te Vorkommen (Artefakt-ID, siehe <code>getArtifactPath</code>)
+		 */
+		public int occurrence(int i) {
+			if (i < 0 || i >= count) throw new IndexOutOfBoundsException("i = " + i);
+			return occurrences[i];
+		}
+
+		/**
+		 * Der Digest des <code>i</code>-ten Vorkommens bzw. <code>ResourceIndex.NO_DIGEST</code>
+		 */
+		public long digest(int i) {
+			if (i < 0 || i >= count) throw new IndexOutOfBoundsException("i = " + i);
+			return digests[i];
+		}
+
+		public IndexSnapshot getSnapshot() {
+			return IndexSnapshot.this;
+		}
+	}
+
+}
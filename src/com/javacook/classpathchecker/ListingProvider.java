@@ -0,0 +1,14 @@
+package com.javacook.classpathchecker;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Liefert das Inhaltsverzeichnis eines Archivs, z.B. durch Lesen des Central Directory oder
+ * aus einem Cache.
+ */
+public interface ListingProvider {
+
+	ArchiveListing list(File archive) throws IOException;
+
+}
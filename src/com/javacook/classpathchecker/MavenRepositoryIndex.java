@@ -0,0 +1,623 @@
+package com.javacook.classpathchecker;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.javacook.util.DirectoryWalker;
+import com.javacook.util.FileUtils;
+import com.javacook.util.ResourceClassifier;
+
+/**
+ * Persistenter Index der Archive eines lokalen Maven-Repositories (z.B. <tt>~/.m2/repository</tt>).
+ * Jedes Archiv wird einmal gelesen und sein Inhaltsverzeichnis unter seinen Maven-Koordinaten
+ * (<tt>groupId:artifactId:type[:classifier]:version</tt>) samt Pruefsumme abgelegt. Danach lassen
+ * sich die Konflikte jedes Klassenpfads, der aus diesem Repository zusammengesetzt ist, allein
+ * aus dem Index berechnen, ohne ein einziges Archiv zu oeffnen.
+ * <p>
+ * Ein Eintrag gilt, solange Laenge und Aenderungszeitpunkt des Archivs unveraendert sind. Sind
+ * sie es nicht (z.B. nach einem Kopieren des Repositories), wird die Pruefsumme aus der von Maven
+ * abgelegten <tt>.sha1</tt>-Datei verglichen; nur wenn auch sie abweicht oder fehlt, wird das
+ * Archiv neu gelesen. <code>update()</code> nimmt neu hinzugekommene Archive auf und entfernt
+ * verschwundene; beim Scannen fehlende Archive werden ebenfalls nachgetragen.
+ * <p>
+ * Als <code>ListingProvider</code> ist der Index das erste Glied einer Kette: Archive ausserhalb
+ * des Repositories sowie nicht indizierte Archive gehen an <code>next</code> (im
+ * <code>ClassPathChecker</code> der <code>ScanCache</code> bzw. das Central Directory).
+ * <p>
+ * Dateiformat (alle Zahlen big-endian):
+ * <pre>
+ * int MAGIC, int VERSION, long kennung, int nestedDepth, UTF profil
+ * byte[] blobs (aneinandergereiht)
+ * Tabelle: int anzahl, pro Eintrag: UTF koordinaten, UTF relativerPfad, UTF sha1 (leer = keine),
+ *          long laenge, long lastModified, int blobOffset, int blobLaenge
+ * long tabellenOffset
+ * </pre>
+ * Die Blobs sind wie im <code>ScanCache</code> kodiert. <code>load()</code> liest nur die Tabelle;
+ * ein Blob wird erst bei einem Treffer gelesen (positionell, die Datei bleibt dazwischen weder
+ * offen noch gemappt, damit <code>save()</code> sie auch unter Windows ersetzen kann). Der Heap
+ * waechst also mit der Zahl der Archive im Repository, nicht mit ihrem Inhalt. Jede geschriebene
+ * Datei bekommt eine neue Kennung; hat ein anderer Prozess sie seit dem Laden ersetzt, passen die
+ * Offsets nicht mehr, und die Eintraege gelten als Fehltreffer.
+ * <p>
+ * Gespeichert wird unter einem <code>FileLock</code> ueber eine temporaere Datei. Dabei wird wie
+ * im <code>ScanCache</code> der aktuelle Stand auf der Platte uebernommen und nur um die in diesem
+ * Prozess gelesenen bzw. entfernten Archive ergaenzt, sodass parallele Jobs sich ihre Ergaenzungen
+ * nicht gegenseitig ueberschreiben.
+ * <p>
+ * Die Klasse ist thread-sicher.
+ */
+public class MavenRepositoryIndex implements ListingProvider {
+
+	private final static int MAGIC 		= 0x4350434D; // "CPCM"
+	private final static int VERSION 	= 4;
+	/** Position der Kennung in der Datei */
+	private final static int GENERATION_OFFSET = 8;
+
+	private final File repository;
+	private final String repositoryPrefix;
+	private final File indexFile;
+	private final int nestedDepth;
+	private final String profile;
+	private final ListingProvider next;
+
+	/** Eintraege je Koordinaten */
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	/** Koordinaten, die dieser Prozess (neu) eingetragen bzw. entfernt hat (fuer <code>save()</code>) */
+	private final Set<String> changed = new HashSet<String>();
+	private final Set<String> removed = new HashSet<String>();
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private volatile boolean modified = false;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Konstruktor
+	 * @param repository Wurzel des lokalen Repositories
+	 * @param indexFile Datei, in der der Index abgelegt wird
+	 * @param nestedDepth Tiefe, bis zu der die Listings verschachtelte Archive enthalten
+	 * @param next liest die Archive, die nicht (oder nicht mehr gueltig) im Index stehen
+	 */
+	public MavenRepositoryIndex(File repository, File indexFile, int nestedDepth, ListingProvider next) throws IOException {
+		this(repository, indexFile, nestedDepth, ResourceClassifier.ALL.toString(), next);
+	}
+
+
+	/**
+	 * Wie oben, fuer Listings, die nur die Eintraege eines Scan-Profils enthalten
+	 * @param profile Beschreibung des Profils (<code>ResourceClassifier.toString()</code>)
+	 */
+	public MavenRepositoryIndex(File repository, File indexFile, int nestedDepth, String profile, ListingProvider next) throws IOException {
+		if (repository == null) throw new IllegalArgumentException("Argument 'repository' is null.");
+		if (indexFile == null) throw new IllegalArgumentException("Argument 'indexFile' is null.");
+		if (profile == null) throw new IllegalArgumentException("Argument 'profile' is null.");
+		if (next == null) throw new IllegalArgumentException("Argument 'next' is null.");
+		this.repository = repository.getCanonicalFile();
+		this.repositoryPrefix = this.repository.getPath() + File.separator;
+		this.indexFile = indexFile;
+		this.nestedDepth = nestedDepth;
+		this.profile = profile;
+		this.next = next;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Laedt den Index von der Platte. Fehlt die Datei, wurde sie mit einer anderen Tiefe oder
+	 * einem anderen Scan-Profil erstellt oder hat sie ein unbekanntes Format, wird mit einem leeren Index begonnen.
+	 * @return false, falls eine vorhandene Index-Datei nicht gelesen werden konnte
+	 */
+	public synchronized boolean load() {
+		if (!indexFile.exists()) return true;
+		try {
+			entries.putAll(readEntries());
+			return true;
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * Liefert das Inhaltsverzeichnis von <code>archive</code>, fuer Archive des Repositories
+	 * moeglichst aus dem Index. Fehlende oder veraltete Eintraege werden nachgetragen.
+	 */
+	public ArchiveListing list(File archive) throws IOException {
+		File canonical = archive.getCanonicalFile();
+		String relativePath = relativePathOf(canonical);
+		String coordinates = (relativePath == null)? null : coordinatesOf(relativePath);
+		if (coordinates == null) {
+			return next.list(archive);
+		}
+		Entry entry = entries.get(coordinates);
+		if (entry != null && entry.relativePath.equals(relativePath) && isCurrent(entry, canonical)) {
+			byte[] blob = blobOf(entry);
+			if (blob != null) {
+				hits.incrementAndGet();
+				return ScanCache.decode(blob);
+			}
+		}
+		misses.incrementAndGet();
+		ArchiveListing listing = next.list(archive);
+		byte[] blob = ScanCache.encode(listing);
+		put(new Entry(coordinates, relativePath, readSha1(canonical), canonical.length(), canonical.lastModified(), blob));
+		return listing;
+	}
+
+
+	/**
+	 * Bringt den Index auf den Stand des Repositories: Neue und geaenderte Archive (erkannt an
+	 * den <code>archiveExtensions</code> wie <tt>jar</tt>) werden gelesen, verschwundene entfernt.
+	 * @return Anzahl der neu gelesenen Archive
+	 */
+	public int update(final Collection<String> archiveExtensions) throws Exception {
+		final Set<String> seen = new HashSet<String>();
+		final int before = misses.get();
+		new DirectoryWalker().walk(repository.getPath(), new DirectoryWalker.Visitor() {
+			public boolean preVisitDirectory(String dirPath, BasicFileAttributes attributes) {
+				return true;
+			}
+			public void visitFile(String filePath, BasicFileAttributes attributes) throws Exception {
+				if (!hasExtension(filePath, archiveExtensions)) return;
+				String relativePath = relativePathOf(new File(filePath).getCanonicalFile());
+				String coordinates = (relativePath == null)? null : coordinatesOf(relativePath);
+				if (coordinates == null) return;
+				try {
+					list(new File(filePath));
+					seen.add(coordinates);
+				}
+				catch (IOException e) {
+					// kaputtes Archiv (z.B. abgebrochener Download) => nicht indizieren
+				}
+			}
+			public void visitFailed(String path, IOException e) {
+				// nicht lesbare Teile des Repositories werden einfach nicht indiziert
+			}
+		});
+		synchronized (this) {
+			for (String coordinates : new ArrayList<String>(entries.keySet())) {
+				if (seen.contains(coordinates)) continue;
+				entries.remove(coordinates);
+				changed.remove(coordinates);
+				removed.add(coordinates);
+				modified = true;
+			}
+		}
+		return misses.get() - before;
+	}
+
+
+	/**
+	 * Schreibt den Index (falls er sich geaendert hat) zurueck auf die Platte.
+	 */
+	public synchronized void save() throws IOException {
+		if (!modified) return;
+		File parent = indexFile.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		RandomAccessFile lockFile = new RandomAccessFile(new File(indexFile.getPath() + ".lock"), "rw");
+		try {
+			FileLock lock = lockFile.getChannel().lock();
+			try {
+				// Stand anderer Prozesse uebernehmen, nur die eigenen Aenderungen gewinnen:
+				Map<String, Entry> merged;
+				try {
+					merged = indexFile.exists()? readEntries() : new LinkedHashMap<String, Entry>();
+				}
+				catch (IOException e) {
+					merged = new LinkedHashMap<String, Entry>();
+				}
+				for (String coordinates : changed) {
+					Entry entry = entries.get(coordinates);
+					if (entry != null) merged.put(coordinates, entry);
+				}
+				merged.keySet().removeAll(removed);
+				writeEntries(merged.values());
+
+				// Ab jetzt verweisen die Eintraege auf die neue Datei:
+				Map<String, Entry> written = readEntries();
+				entries.clear();
+				entries.putAll(written);
+				changed.clear();
+				removed.clear();
+				modified = false;
+			}
+			finally {
+				lock.release();
+			}
+		}
+		finally {
+			lockFile.close();
+		}
+	}
+
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public File getRepository() {
+		return repository;
+	}
+
+	public File getIndexFile() {
+		return indexFile;
+	}
+
+
+	/**
+	 * Liefert die Koordinaten <tt>groupId:artifactId:type[:classifier]:version</tt> des Archivs
+	 * mit dem Pfad <code>relativePath</code> (relativ zur Wurzel des Repositories, mit dem
+	 * Datei-Separator des Systems) bzw. null, falls der Pfad nicht dem Maven-Layout
+	 * <tt>group/artifactId/version/artifactId-version[-classifier].type</tt> entspricht. Bei
+	 * Snapshots mit Zeitstempel steht statt Classifier und Typ der Dateiname.
+	 */
+	public static String coordinatesOf(String relativePath) {
+		String[] parts = relativePath.split(File.separator.equals("\\")? "\\\\" : File.separator);
+		if (parts.length < 4) return null;
+		String fileName 	= parts[parts.length - 1];
+		String version 		= parts[parts.length - 2];
+		String artifactId 	= parts[parts.length - 3];
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < parts.length - 3; i++) {
+			if (i > 0) sb.append('.');
+			sb.append(parts[i]);
+		}
+		String groupId = sb.toString();
+
+		String baseName = artifactId + '-' + version;
+		int dot = fileName.lastIndexOf('.');
+		if (!fileName.startsWith(baseName) || dot < baseName.length()) {
+			return groupId + ':' + artifactId + ':' + version + ':' + fileName;
+		}
+		String type = fileName.substring(dot + 1);
+		String rest = fileName.substring(baseName.length(), dot);
+		if (rest.length() == 0) {
+			return groupId + ':' + artifactId + ':' + type + ':' + version;
+		}
+		if (rest.charAt(0) != '-') {
+			return groupId + ':' + artifactId + ':' + version + ':' + fileName;
+		}
+		return groupId + ':' + artifactId + ':' + type + ':' + rest.substring(1) + ':' + version;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	private String relativePathOf(File canonical) {
+		String path = canonical.getPath();
+		return path.startsWith(repositoryPrefix)? path.substring(repositoryPrefix.length()) : null;
+	}
+
+
+	/**
+	 * Liefert true, falls <code>entry</code> zum aktuellen Stand von <code>archive</code> passt.
+	 * Nur wenn sich Laenge oder Aenderungszeitpunkt geaendert haben, wird die <tt>.sha1</tt>-Datei
+	 * gelesen.
+	 */
+	private boolean isCurrent(Entry entry, File archive) throws IOException {
+		if (entry.length == archive.length() && entry.lastModified == archive.lastModified()) return true;
+		if (entry.sha1.length() == 0 || entry.length != archive.length()) return false;
+		if (!entry.sha1.equals(readSha1(archive))) return false;
+		// Pruefsumme passt => nur der Zeitpunkt hat sich geaendert, fuer das naechste Mal merken
+		// (mit dem Blob im Heap, die Index-Datei kann bis zum save() ersetzt werden):
+		byte[] blob = blobOf(entry);
+		if (blob == null) return false;
+		put(new Entry(entry.coordinates, entry.relativePath, entry.sha1, entry.length, archive.lastModified(), blob));
+		return true;
+	}
+
+
+	/**
+	 * Liefert den Blob von <code>entry</code>, notfalls aus der Index-Datei, bzw. null, falls
+	 * diese inzwischen ersetzt wurde. Synchronisiert, damit <code>save()</code> die Datei nie
+	 * ersetzt, waehrend sie hier offen ist.
+	 */
+	private synchronized byte[] blobOf(Entry entry) throws IOException {
+		if (entry.blob != null) return entry.blob;
+		RandomAccessFile raf;
+		try {
+			raf = new RandomAccessFile(indexFile, "r");
+		}
+		catch (FileNotFoundException e) {
+			return null;
+		}
+		try {
+			return readBlob(raf.getChannel(), entry);
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+
+	/**
+	 * Liest den Blob von <code>entry</code> aus <code>channel</code> bzw. liefert null, falls die
+	 * Datei eine andere Kennung hat.
+	 */
+	private byte[] readBlob(FileChannel channel, Entry entry) throws IOException {
+		ByteBuffer generation = ByteBuffer.allocate(8);
+		ByteBuffer blob = ByteBuffer.allocate(entry.blobLength);
+		try {
+			FileUtils.readFully(channel, generation, GENERATION_OFFSET);
+			if (generation.getLong(0) != entry.generation) return null;
+			FileUtils.readFully(channel, blob, entry.offset);
+		}
+		catch (EOFException e) {
+			return null;
+		}
+		return blob.array();
+	}
+
+
+	private synchronized void put(Entry entry) {
+		entries.put(entry.coordinates, entry);
+		changed.add(entry.coordinates);
+		removed.remove(entry.coordinates);
+		modified = true;
+	}
+
+
+	/**
+	 * Liefert die Pruefsumme aus der <tt>.sha1</tt>-Datei neben <code>archive</code> (kleingeschrieben,
+	 * ohne den ggf. folgenden Dateinamen) bzw. "", falls es keine gibt.
+	 */
+	private static String readSha1(File archive) throws IOException {
+		File sha1File = new File(archive.getPath() + ".sha1");
+		if (!sha1File.isFile()) return "";
+		BufferedReader reader = new BufferedReader(new FileReader(sha1File));
+		try {
+			String line = reader.readLine();
+			if (line == null) return "";
+			line = line.trim();
+			int space = line.indexOf(' ');
+			return ((space < 0)? line : line.substring(0, space)).toLowerCase();
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+
+	private static boolean hasExtension(String filePath, Collection<String> extensions) {
+		String lowerCase = filePath.toLowerCase();
+		for (String extension : extensions) {
+			if (lowerCase.endsWith('.' + extension.toLowerCase())) return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Liest die Tabelle der Index-Datei; die Blobs bleiben auf der Platte. Passen Tiefe oder
+	 * Profil nicht, ist das Ergebnis leer.
+	 */
+	private Map<String, Entry> readEntries() throws IOException {
+		Map<String, Entry> result = new LinkedHashMap<String, Entry>();
+		RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+		try {
+			if (raf.readInt() != MAGIC) throw new IOException("'" + indexFile + "' is not a Maven repository index.");
+			int version = raf.readInt();
+			if (version != VERSION) throw new IOException("Unsupported Maven repository index version " + version + ".");
+			long generation = raf.readLong();
+			// Listings mit anderer Tiefe oder anderem Profil sind unbrauchbar:
+			if (raf.readInt() != nestedDepth || !raf.readUTF().equals(profile)) return result;
+
+			long blobsStart = raf.getFilePointer();
+			long length = raf.length();
+			if (length > Integer.MAX_VALUE) throw new IOException("Maven repository index '" + indexFile + "' is too large.");
+			if (length - 8 < blobsStart) throw new IOException("Maven repository index '" + indexFile + "' is truncated.");
+			raf.seek(length - 8);
+			long tableOffset = raf.readLong();
+			if (tableOffset < blobsStart || tableOffset > length - 8) {
+				throw new IOException("Maven repository index '" + indexFile + "' is corrupt.");
+			}
+			byte[] table = new byte[(int)(length - 8 - tableOffset)];
+			raf.seek(tableOffset);
+			raf.readFully(table);
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(table));
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String coordinates 	= in.readUTF();
+				String relativePath = in.readUTF();
+				String sha1 		= in.readUTF();
+				long archiveLength 	= in.readLong();
+				long lastModified 	= in.readLong();
+				int blobOffset 		= in.readInt();
+				int blobLength 		= in.readInt();
+				if (blobOffset < blobsStart || blobLength < 0 || blobOffset > tableOffset - blobLength) {
+					throw new IOException("Maven repository index '" + indexFile + "' is corrupt.");
+				}
+				result.put(coordinates, new Entry(coordinates, relativePath, sha1, archiveLength, lastModified, generation, blobOffset, blobLength));
+			}
+			return result;
+		}
+		catch (EOFException e) {
+			throw new IOException("Maven repository index '" + indexFile + "' is truncated.", e);
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+
+	/**
+	 * Schreibt <code>toWrite</code> in eine temporaere Datei und ersetzt damit die Index-Datei.
+	 * Die Blobs aus der bisherigen Index-Datei werden dabei direkt von dort kopiert; sie ist
+	 * geschlossen, bevor sie ersetzt wird.
+	 */
+	private void writeEntries(Collection<Entry> toWrite) throws IOException {
+		File tempFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getAbsoluteFile().getParentFile());
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+			RandomAccessFile source = null;
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(new Random().nextLong());
+				out.writeInt(nestedDepth);
+				out.writeUTF(profile);
+				List<Entry> entryList = new ArrayList<Entry>(toWrite);
+				int[] offsets = new int[entryList.size()];
+				for (int i = 0; i < offsets.length; i++) {
+					Entry entry = entryList.get(i);
+					if ((long)out.size() + entry.blobLength > Integer.MAX_VALUE) {
+						throw new IOException("Maven repository index '" + indexFile + "' would be too large.");
+					}
+					offsets[i] = out.size();
+					byte[] blob = entry.blob;
+					if (blob == null) {
+						if (source == null) source = new RandomAccessFile(indexFile, "r");
+						blob = readBlob(source.getChannel(), entry);
+						if (blob == null) throw new IOException("Maven repository index '" + indexFile + "' was replaced while saving.");
+					}
+					out.write(blob);
+				}
+				long tableOffset = out.size();
+				out.writeInt(entryList.size());
+				for (int i = 0; i < offsets.length; i++) {
+					Entry entry = entryList.get(i);
+					out.writeUTF(entry.coordinates);
+					out.writeUTF(entry.relativePath);
+					out.writeUTF(entry.sha1);
+					out.writeLong(entry.length);
+					out.writeLong(entry.lastModified);
+					out.writeInt(offsets[i]);
+					out.writeInt(entry.blobLength);
+				}
+				out.writeLong(tableOffset);
+			}
+			finally {
+				out.close();
+				if (source != null) source.close();
+			}
+			FileUtils.replaceAtomically(tempFile, indexFile);
+		}
+		finally {
+			tempFile.delete(); // nur falls das Schreiben oder Verschieben nicht geklappt hat
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Ein Archiv; sein Blob steht entweder im Heap (neu gelesene Archive) oder ab
+	 * <code>offset</code> in der Index-Datei mit der Kennung <code>generation</code>.
+	 */
+	private static class Entry {
+		final String coordinates;
+		final String relativePath;
+		final String sha1;
+		final long length;
+		final long lastModified;
+		final byte[] blob;
+		final long generation;
+		final int offset;
+		final int blobLength;
+
+		Entry(String coordinates, String relativePath, String sha1, long length, long lastModified, byte[] blob) {
+			this(coordinates, relativePath, sha1, length, lastModified, blob, 0, 0, blob.length);
+		}
+
+		Entry(String coordinates, String relativePath, String sha1, long length, long lastModified, long generation, int offset, int blobLength) {
+			this(coordinates, relativePath, sha1, length, lastModified, null, generation, offset, blobLength);
+		}
+
+		private Entry(String coordinates, String relativePath, String sha1, long length, long lastModified,
+				byte[] blob, long generation, int offset, int blobLength) {
+			this.coordinates = coordinates;
+			this.relativePath = relativePath;
+			this.sha1 = sha1;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.blob = blob;
+			this.generation = generation;
+			this.offset = offset;
+			this.blobLength = blobLength;
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * main                                                                  *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Legt den Index eines Repositories an bzw. bringt ihn auf den neuesten Stand, z.B. als
+	 * eigener Schritt in der Build-Pipeline:
+	 * <pre>
+	 * java -cp cpchecker.jar com.javacook.classpathchecker.MavenRepositoryIndex ~/.m2/repository /tmp/cpc-maven.index
+	 * </pre>
+	 * Tiefe, Endungen der Archive und Scan-Profil stammen aus den <tt>cpc.properties</tt> und
+	 * muessen zu denen der spaeteren Scans passen.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: MavenRepositoryIndex <repository> <indexFile>");
+			System.exit(1);
+		}
+		PropertyHolderInterface propertyHolder = PropertyHolder.getInstance();
+		final int depth = propertyHolder.getNestedArchiveDepth();
+		final List<String> extensions = propertyHolder.getArchiveExtensions();
+		final ResourceClassifier archives = new ResourceClassifier(extensions, null);
+		final ResourceClassifier resources = ClassPathChecker.resourceClassifierOf(propertyHolder);
+		MavenRepositoryIndex index = new MavenRepositoryIndex(new File(args[0]), new File(args[1]), depth, resources.toString(), new ListingProvider() {
+			public ArchiveListing list(File archive) throws IOException {
+				return ArchiveListing.read(archive, depth, archives, resources);
+			}
+		});
+		if (!index.load()) {
+			System.err.println("WARNING: '" + args[1] + "' is not readable => starting with an empty index.");
+		}
+		long start = System.currentTimeMillis();
+		int read = index.update(extensions);
+		index.save();
+		System.out.println(index.size() + " archives indexed (" + read + " read) in " + (System.currentTimeMillis() - start) + " ms.");
+	}
+
+}
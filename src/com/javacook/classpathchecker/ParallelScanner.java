@@ -0,0 +1,373 @@
+package com.javacook.classpathchecker;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durchstoebert die Artefakte parallel in einem <code>ForkJoinPool</code>. Jedes Unterverzeichnis
+ * und jedes Archiv wird zu einer eigenen Task, sodass sich die Threads die Arbeit per
+ * Work-Stealing teilen und ein einzelnes grosses Jar die anderen nicht aufhaelt.
+ * Die Funde jeder Task werden zunaechst aufgezeichnet und anschliessend genau in der
+ * Reihenfolge wiedergegeben, in der sie ein sequentieller Durchlauf geliefert haette. Dadurch
+ * sind <code>resourceToOccurence</code> und der Report identisch zum sequentiellen Lauf.
+ * <p>
+ * Damit die Aufzeichnungen nicht den halben Klassenpfad im Heap halten, wenn ein fruehes
+ * Artefakt langsam ist, sind hoechstens <code>WINDOW_PER_THREAD</code> Artefakte je Thread
+ * (im Low-Memory-Modus eines) gleichzeitig in Arbeit; das naechste wird erst abgegeben, wenn
+ * eines wiedergegeben ist. Der Heap fuer die Aufzeichnungen waechst also mit der Anzahl der
+ * Threads, nicht mit der Laenge des Klassenpfads.
+ * <p>
+ * Wie beim sequentiellen Lauf (<code>DirectoryWalker</code>) werden Verzeichnisse, die laut
+ * <code>PathFilter</code> komplett ausgeschlossen sind, gar nicht erst betreten, und Zyklen
+ * ueber symbolische Links werden erkannt.
+ * <p>
+ * Werden Metriken erhoben, meldet <code>scan</code> je Artefakt die Summe der Laufzeiten seiner
+ * Tasks als <code>collectFinished</code>, also die Arbeitszeit ueber alle Threads, nicht die
+ * verstrichene Zeit.
+ */
+class ParallelScanner {
+
+	/**
+	 * Markiert in einer Aufzeichnung, dass der folgende Eintrag ein Archiv-Pfad ist.
+	 */
+	private final static Object ARCHIVE = new Object();
+
+	/**
+	 * Anzahl der Artefakte je Thread, die gleichzeitig durchstoebert bzw. aufgezeichnet werden
+	 */
+	private final static int WINDOW_PER_THREAD = 2;
+
+	private final ClassPathChecker checker;
+	private final ScanMetrics metrics;
+	private final int parallelism;
+	private final int window;
+
+
+	/**
+	 * Konstruktor
+	 * @param threads Anzahl der Threads; bei 0 oder negativ so viele wie Prozessoren vorhanden sind
+	 */
+	ParallelScanner(ClassPathChecker checker, int threads) {
+		this(checker, threads, false);
+	}
+
+
+	/**
+	 * Konstruktor
+	 * @param threads Anzahl der Threads; bei 0 oder negativ so viele wie Prozessoren vorhanden sind
+	 * @param lowMemory true = je Thread nur ein Artefakt gleichzeitig in Arbeit
+	 */
+	ParallelScanner(ClassPathChecker checker, int threads, boolean lowMemory) {
+		if (checker == null) throw new IllegalArgumentException("Argument 'checker' is null.");
+		this.checker = checker;
+		this.metrics = checker.getMetrics();
+		this.parallelism = (threads > 0)? threads : Runtime.getRuntime().availableProcessors();
+		this.window = (lowMemory? 1 : WINDOW_PER_THREAD) * parallelism;
+	}
+
+
+	/**
+	 * Durchstoebert alle <code>basePaths</code> parallel und gibt die Funde in sequentieller
+	 * Reihenfolge an <code>target</code> weiter.
+	 */
+	void scan(List<String> basePaths, ClassPathChecker.Collector target) throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<ForkJoinTask<Recording>> tasks = new ArrayList<ForkJoinTask<Recording>>();
+			List<AtomicLong> times = new ArrayList<AtomicLong>();
+			for (int i = 0; i < basePaths.size(); i++) {
+				while (tasks.size() < basePaths.size() && tasks.size() < i + window) {
+					String basePath = basePaths.get(tasks.size());
+					AtomicLong nanos = (metrics == null)? null : new AtomicLong();
+					times.add(nanos);
+					tasks.add(pool.submit(new DirTask(basePath, basePath, null, nanos)));
+				}
+				// nach dem Wiedergeben sind alle Tasks des Artefakts fertig:
+				replay(tasks.get(i).join(), target);
+				tasks.set(i, null);
+				if (metrics != null) metrics.collectFinished(basePaths.get(i), times.get(i).get());
+			}
+		}
+		catch (ScanException e) {
+			Throwable cause = e;
+			while (cause instanceof ScanException) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof Exception) throw (Exception)cause;
+			throw (Error)cause;
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+
+	/**
+	 * Gibt die Aufzeichnung <code>recording</code> (inkl. der Aufzeichnungen der Unter-Tasks)
+	 * an <code>target</code> weiter. Die Unter-Tasks werden ueber einen eigenen Stack statt
+	 * rekursiv abgearbeitet, damit auch sehr tiefe Verzeichnisbaeume den Thread-Stack nicht sprengen.
+	 */
+	@SuppressWarnings("unchecked")
+	private void replay(Recording recording, ClassPathChecker.Collector target) {
+		ArrayDeque<Recording> stack = new ArrayDeque<Recording>();
+		stack.push(recording);
+		while (!stack.isEmpty()) {
+			Recording current = stack.peek();
+			List<Object> ops = current.ops;
+			if (current.replayed == ops.size()) {
+				ops.clear();
+				stack.pop();
+				continue;
+			}
+			Object op = ops.get(current.replayed++);
+			if (op instanceof ForkJoinTask) {
+				stack.push(((ForkJoinTask<Recording>)op).join());
+			}
+			else if (op == ARCHIVE) {
+				target.addArchive((String)ops.get(current.replayed++));
+			}
+			else {
+				target.put((String)op, (String)ops.get(current.replayed++), current.digests[current.replayedDigests++]);
+			}
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Zeichnet die Funde einer Task sowie die abgespaltenen Unter-Tasks in ihrer Reihenfolge auf.
+	 */
+	private static class Recording implements ClassPathChecker.Collector {
+
+		private final List<Object> ops = new ArrayList<Object>();
+		private long[] digests = new long[16];
+		private int digestCount;
+
+		/**
+		 * Position beim Wiedergeben
+		 */
+		private int replayed;
+		private int replayedDigests;
+
+		public void addArchive(String archivePath) {
+			ops.add(ARCHIVE);
+			ops.add(archivePath);
+		}
+
+		public void put(String resource, String occurence, long digest) {
+			ops.add(resource);
+			ops.add(occurence);
+			if (digestCount == digests.length) {
+				digests = Arrays.copyOf(digests, digests.length * 2);
+			}
+			digests[digestCount++] = digest;
+		}
+
+		void fork(ForkJoinTask<Recording> task) {
+			ops.add(task.fork());
+		}
+	}
+
+
+	/**
+	 * Entspricht <code>ClassPathChecker.collect</code> fuer ein Verzeichnis, nur dass
+	 * Unterverzeichnisse und Archive als eigene Tasks abgespalten werden.
+	 */
+	private class DirTask extends RecursiveTask<Recording> {
+		private static final long serialVersionUID = 1L;
+
+		private final String basePath;
+		private final String actualPath;
+		private final Ancestor ancestors;
+		private final AtomicLong nanos;
+
+		/**
+		 * @param nanos summiert die Laufzeit aller Tasks von <code>basePath</code> (null = nicht messen)
+		 */
+		DirTask(String basePath, String actualPath, Ancestor ancestors, AtomicLong nanos) {
+			this.basePath = basePath;
+			this.actualPath = actualPath;
+			this.ancestors = ancestors;
+			this.nanos = nanos;
+		}
+
+		@Override
+		protected Recording compute() {
+			long start = System.nanoTime();
+			Recording recording = new Recording();
+			try {
+				Path dir = Paths.get(actualPath);
+				if (Files.isDirectory(dir)) {
+					Ancestor self = new Ancestor(dir, Files.readAttributes(dir, BasicFileAttributes.class).fileKey(), ancestors);
+					// Ein Event je Verzeichnis; die Unterverzeichnisse haben ihre eigenen
+					Object event = ScanEvents.begin(ScanEvents.DIRECTORY_WALK);
+					int fileCount = 0;
+					DirectoryStream<Path> children = null;
+					try {
+						children = Files.newDirectoryStream(dir);
+						for (Path child : children) {
+							String childPath = child.toString();
+							BasicFileAttributes attributes = readAttributes(child);
+							if (attributes.isDirectory()) {
+								if (self.contains(child, attributes.fileKey())) {
+									checker.warnUnreadable(childPath, new FileSystemLoopException(childPath));
+								}
+								else if (checker.isValidSubtree(childPath)) {
+									recording.fork(new DirTask(basePath, childPath, self, nanos));
+								}
+							}
+							else if (checker.hasArchiveExtension(childPath)) {
+								recording.fork(new FileTask(basePath, childPath, nanos));
+							}
+							else {
+								checker.collectFile(basePath, childPath, recording);
+								fileCount++;
+							}
+						}
+					}
+					catch (IOException e) {
+						checker.warnUnreadable(actualPath, e);
+					}
+					catch (DirectoryIteratorException e) {
+						checker.warnUnreadable(actualPath, e.getCause());
+					}
+					finally {
+						if (children != null) children.close();
+						ScanEvents.commit(event, actualPath, fileCount, 0);
+					}
+				}
+				else {
+					checker.collectFile(basePath, actualPath, recording);
+				}
+			}
+			catch (Exception e) {
+				throw new ScanException(e);
+			}
+			finally {
+				if (nanos != null) nanos.addAndGet(System.nanoTime() - start);
+			}
+			return recording;
+		}
+	}
+
+
+	/**
+	 * Liest die Attribute von <code>path</code> (Links werden verfolgt). Ein Link, dessen Ziel
+	 * nicht existiert, gilt - wie bei <code>Files.walkFileTree</code> - als Datei.
+	 */
+	private static BasicFileAttributes readAttributes(Path path) throws IOException {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		}
+		catch (IOException e) {
+			return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		}
+	}
+
+
+	/**
+	 * Die Verzeichnisse oberhalb einer <code>DirTask</code> (zur Erkennung von Zyklen). Verglichen
+	 * wird ueber den <code>fileKey</code>; liefert das Dateisystem keinen (z.B. unter Windows),
+	 * wie bei <code>Files.walkFileTree</code> ueber <code>Files.isSameFile</code>.
+	 */
+	private static class Ancestor {
+		private final Path path;
+		private final Object fileKey;
+		private final Ancestor parent;
+
+		Ancestor(Path path, Object fileKey, Ancestor parent) {
+			this.path = path;
+			this.fileKey = fileKey;
+			this.parent = parent;
+		}
+
+		/**
+		 * @param key der <code>fileKey</code> von <code>dir</code> (kann null sein)
+		 */
+		boolean contains(Path dir, Object key) {
+			for (Ancestor ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+				if (key != null && ancestor.fileKey != null) {
+					if (key.equals(ancestor.fileKey)) return true;
+				}
+				else if (isSameFile(dir, ancestor.path)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static boolean isSameFile(Path path1, Path path2) {
+			try {
+				return Files.isSameFile(path1, path2);
+			}
+			catch (IOException e) {
+				return false;
+			}
+		}
+	}
+
+
+	/**
+	 * Behandelt eine einzelne Datei (in der Regel ein Archiv) als eigene Task.
+	 */
+	private class FileTask extends RecursiveTask<Recording> {
+		private static final long serialVersionUID = 1L;
+
+		private final String basePath;
+		private final String filePath;
+		private final AtomicLong nanos;
+
+		FileTask(String basePath, String filePath, AtomicLong nanos) {
+			this.basePath = basePath;
+			this.filePath = filePath;
+			this.nanos = nanos;
+		}
+
+		@Override
+		protected Recording compute() {
+			long start = System.nanoTime();
+			Recording recording = new Recording();
+			try {
+				checker.collectFile(basePath, filePath, recording);
+			}
+			catch (Exception e) {
+				throw new ScanException(e);
+			}
+			finally {
+				if (nanos != null) nanos.addAndGet(System.nanoTime() - start);
+			}
+			return recording;
+		}
+	}
+
+
+	/**
+	 * Transportiert eine (checked) Exception aus einer Task heraus.
+	 */
+	private static class ScanException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		ScanException(Throwable cause) {
+			super(cause);
+		}
+	}
+
+}
@@ -1,38 +1,95 @@
 package com.javacook.classpathchecker;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import com.javacook.util.CanonicalPathCache;
 import com.javacook.util.FileUtils;
+import com.javacook.util.GlobMatcher;
+import com.javacook.util.PrefixTrie;
 
+/**
+ * Filtert Pfade anhand der Properties <tt>excludeArtifacts</tt>, <tt>excludePatterns</tt> und
+ * <tt>additionalArtifacts</tt>. Die Regeln werden einmalig uebersetzt: Die Pfade aus
+ * <tt>excludeArtifacts</tt> in einen <code>PrefixTrie</code>, alle Glob-Muster aus
+ * <tt>excludePatterns</tt> in einen gemeinsamen DFA (<code>GlobMatcher</code>). Fuer beide haengt
+ * der Aufwand pro Pfad nur von dessen Laenge ab, nicht von der Anzahl der Regeln. Die
+ * <tt>regex:</tt>-Muster bleiben ein gemeinsamer regulaerer Ausdruck, dessen Aufwand mit der
+ * Anzahl der Alternativen waechst (ebenso die Globs, falls der DFA zu gross wuerde).
+ * Kanonisiert wird ueber einen <code>CanonicalPathCache</code>, d.h. Verzeichnisse nur einmal,
+ * Dateien nur mit einem <tt>lstat</tt> (symbolische Links werden wie bisher aufgeloest); das
+ * Normalisieren des Pfads selbst erzeugt aber weiterhin einen String.
+ * <p>
+ * Muster sind Globs (<tt>**</tt> ueber Verzeichnisgrenzen hinweg, <tt>*</tt> und <tt>?</tt>
+ * innerhalb eines Pfad-Segments) oder, mit dem Prefix <tt>regex:</tt>, regulaere Ausdruecke fuer
+ * den ganzen Pfad. Ein relatives Glob-Muster passt an jeder Verzeichnisgrenze, ein Muster ohne
+ * '/' also auf den Dateinamen, z.B. <tt>**&#47;test-classes/**</tt> oder <tt>*-sources.jar</tt>.
+ */
 public class PathFilter implements PathFilterInterface {
 
-	private Collection<String> excludeArtifacts;
-	private Collection<String> includeArtifacts;
+	/**
+	 * Prefix fuer Muster, die ein regulaerer Ausdruck statt eines Globs sind
+	 */
+	public final static String REGEX_PREFIX = "regex:";
+
+	/**
+	 * Ein Pfad-Trenner, egal ob Slash oder Backslash
+	 */
+	private final static String SEPARATOR = "[/\\\\]";
+
+	private final PrefixTrie excludeArtifacts = new PrefixTrie();
+	private final Collection<String> includeArtifacts = new HashSet<String>();
+	private final CanonicalPathCache canonicalPaths = new CanonicalPathCache();
+
+	/**
+	 * Alle Glob-Muster; null, falls es keine gibt (oder der DFA zu gross wuerde)
+	 */
+	private final GlobMatcher excludeGlobs;
+
+	/**
+	 * Die uebrigen Muster in einem Ausdruck, mit einem <code>Matcher</code> pro Thread, der fuer
+	 * jeden Pfad nur zurueckgesetzt wird; null, falls es keine gibt
+	 */
+	private final ThreadLocal<Matcher> excludeMatcher;
+
+	/**
+	 * Aus den Mustern der Form <tt>xyz/**</tt> der Teil <tt>xyz</tt>: Passt ein Verzeichnis darauf,
+	 * ist alles darunter ausgeschlossen. null, falls es keine solchen Muster gibt
+	 */
+	private final GlobMatcher subtreeGlobs;
+	private final ThreadLocal<Matcher> subtreeMatcher;
 
 
 	public PathFilter(PropertyHolderInterface propertyHolder) {
 
 		List<String> origExcludeArtifacts = propertyHolder.getExcludeArtifacts();
-		excludeArtifacts = new HashSet<String>();
-
 		if (origExcludeArtifacts != null) {
 			for (String path : origExcludeArtifacts) {
 				path = FileUtils.normalizePath(path);
-				excludeArtifacts.add(path);
+				if (path != null) excludeArtifacts.add(path);
 			}
 		}
 
 		List<String> origIncludeArtifacts = propertyHolder.getAdditionalArtifacts();
-		includeArtifacts = new HashSet<String>();
-
 		if (origIncludeArtifacts != null) {
 			for (String path : origIncludeArtifacts) {
 				path = FileUtils.normalizePath(path);
 				includeArtifacts.add(path);
 			}
 		}
+
+		List<String> excludePatterns = select(propertyHolder.getExcludePatterns(), false);
+		excludeGlobs 	= compileGlobs(excludePatterns);
+		excludeMatcher 	= matcherFor(compile(excludePatterns, excludeGlobs == null));
+
+		List<String> subtreePatterns = select(propertyHolder.getExcludePatterns(), true);
+		subtreeGlobs 	= compileGlobs(subtreePatterns);
+		subtreeMatcher 	= matcherFor(compile(subtreePatterns, subtreeGlobs == null));
 	}
 
 
@@ -40,20 +97,174 @@ public class PathFilter implements PathFilterInterface {
 	 * Liefert true, falls <code>path</code> mit aufgenommen werden soll. Das ist
 	 * stets der Fall, falls er in <code>includeArtifacts</code> enthalten ist;
 	 * ansonsten, falls er nicht eine Verlngerung eines Pfads aus
-	 * <code>excludeArtifacts</code> ist.
+	 * <code>excludeArtifacts</code> ist und auf keines der <code>excludePatterns</code> passt.
+	 * Das Pruefen gegen die Regeln selbst erzeugt keine Objekte (wohl aber das Normalisieren).
 	 */
 	public boolean isValid(String path) {
-		path = FileUtils.normalizePath(path);
+		path = FileUtils.normalizePath(path, canonicalPaths);
 
-		if (includeArtifacts != null && includeArtifacts.contains(path)) {
+		if (includeArtifacts.contains(path)) {
 			return true;
 		}
-		if (excludeArtifacts != null) {
-			for (String artifact : excludeArtifacts) {
-				if (path.startsWith(artifact)) return false;
+		if (excludeArtifacts.matchesPrefixOf(path)) {
+			return false;
+		}
+		if (excludeGlobs != null && excludeGlobs.matches(path)) {
+			return false;
+		}
+		if (excludeMatcher != null && excludeMatcher.get().reset(path).matches()) {
+			return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Liefert false, falls alles unterhalb des Verzeichnisses <code>dirPath</code> ausgeschlossen
+	 * ist, es also gar nicht erst durchsucht werden muss. Das ist der Fall, wenn es eine Verlaengerung
+	 * eines Pfads aus <code>excludeArtifacts</code> ist oder auf ein Muster der Form <tt>xyz/**</tt>
+	 * passt - es sei denn, darunter liegt eines der <code>includeArtifacts</code>.
+	 * (Unterverzeichnisse, die per Link an eine andere Stelle zeigen, werden dabei mit ausgelassen.)
+	 */
+	public boolean isValidSubtree(String dirPath) {
+		String path = FileUtils.normalizePath(dirPath, canonicalPaths);
+
+		if (excludeArtifacts.matchesPrefixOf(path)
+				|| (subtreeGlobs != null && subtreeGlobs.matches(path))
+				|| (subtreeMatcher != null && subtreeMatcher.get().reset(path).matches())) {
+			String prefix = path + File.separator;
+			for (String includeArtifact : includeArtifacts) {
+				if (includeArtifact.startsWith(prefix)) return true;
 			}
+			return false;
 		}
 		return true;
 	}
 
-}
\ No newline at end of file
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	private static ThreadLocal<Matcher> matcherFor(final Pattern pattern) {
+		if (pattern == null) return null;
+		return new ThreadLocal<Matcher>() {
+			@Override
+			protected Matcher initialValue() {
+				return pattern.matcher("");
+			}
+		};
+	}
+
+
+	/**
+	 * Liefert die (getrimmten) Muster, leere entfallen.
+	 * @param subtrees true = nur die Glob-Muster der Form <tt>xyz/**</tt>, und zwar ohne die
+	 * Endung <tt>/**</tt> (passt ein Verzeichnis darauf, passt alles darunter auf das ganze Muster)
+	 */
+	static List<String> select(List<String> patterns, boolean subtrees) {
+		List<String> result = new ArrayList<String>();
+		if (patterns == null) return result;
+		for (String pattern : patterns) {
+			if (pattern == null) continue;
+			pattern = pattern.trim();
+			if (pattern.length() == 0) continue;
+			if (subtrees) {
+				if (pattern.startsWith(REGEX_PREFIX) || !pattern.endsWith("/**") || pattern.length() == 3) continue;
+				pattern = pattern.substring(0, pattern.length() - 3);
+			}
+			result.add(pattern);
+		}
+		return result;
+	}
+
+
+	/**
+	 * Uebersetzt alle Glob-Muster in einen gemeinsamen DFA.
+	 * @return null, falls es keine Glob-Muster gibt oder der DFA zu gross wuerde
+	 */
+	static GlobMatcher compileGlobs(List<String> patterns) {
+		List<String> globs = new ArrayList<String>();
+		for (String pattern : patterns) {
+			if (!pattern.startsWith(REGEX_PREFIX)) globs.add(pattern);
+		}
+		return globs.isEmpty()? null : GlobMatcher.compile(globs);
+	}
+
+
+	/**
+	 * Fasst die Muster zu einem einzigen Ausdruck <tt>(?:m1)|(?:m2)|...</tt> zusammen.
+	 * @param withGlobs false = nur die <tt>regex:</tt>-Muster
+	 * @return null, falls es keine (passenden) Muster gibt
+	 */
+	static Pattern compile(List<String> patterns, boolean withGlobs) {
+		StringBuilder regex = new StringBuilder();
+		for (String pattern : patterns) {
+			boolean isRegex = pattern.startsWith(REGEX_PREFIX);
+			if (!isRegex && !withGlobs) continue;
+			if (regex.length() > 0) regex.append('|');
+			regex.append("(?:");
+			if (isRegex) {
+				regex.append(pattern.substring(REGEX_PREFIX.length()));
+			}
+			else {
+				regex.append(globToRegex(pattern));
+			}
+			regex.append(')');
+		}
+		return (regex.length() == 0)? null : Pattern.compile(regex.toString());
+	}
+
+
+	/**
+	 * Uebersetzt ein Glob-Muster in einen regulaeren Ausdruck fuer den ganzen Pfad.
+	 * @param glob z.B. "**&#47;test-classes/**"
+	 * @return z.B. "(?:.*[/\\])?test-classes[/\\].*"
+	 */
+	static String globToRegex(String glob) {
+		StringBuilder regex = new StringBuilder();
+		boolean absolute = glob.startsWith("/") || glob.startsWith("\\") || (glob.length() > 1 && glob.charAt(1) == ':');
+		if (!absolute) {
+			// relative Muster passen an jeder Verzeichnisgrenze
+			while (glob.startsWith("**/")) {
+				glob = glob.substring(3);
+			}
+			regex.append("(?:.*").append(SEPARATOR).append(")?");
+		}
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			switch (c) {
+				case '*':
+					if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+						regex.append(".*");
+						i++;
+					}
+					else {
+						regex.append("[^/\\\\]*");
+					}
+					break;
+				case '?':
+					regex.append("[^/\\\\]");
+					break;
+				case '/':
+				case '\\':
+					regex.append(SEPARATOR);
+					if (glob.startsWith("**/", i + 1) || glob.startsWith("**\\", i + 1)) {
+						// "a/**/b" passt auch auf "a/b"
+						regex.append("(?:.*").append(SEPARATOR).append(")?");
+						i += 3;
+					}
+					break;
+				default:
+					if (Character.isLetterOrDigit(c)) {
+						regex.append(c);
+					}
+					else {
+						regex.append('\\').append(c);
+					}
+			}
+		}
+		return regex.toString();
+	}
+
+}
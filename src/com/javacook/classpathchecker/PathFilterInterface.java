@@ -4,4 +4,11 @@ public interface PathFilterInterface {
 
 	boolean isValid(String path);
 
+	/**
+	 * Wird vor dem Durchsuchen eines Verzeichnisses aufgerufen.
+	 * @return false, falls ohnehin alles unterhalb von <code>dirPath</code> ungueltig ist
+	 * und das Verzeichnis daher uebersprungen werden kann
+	 */
+	boolean isValidSubtree(String dirPath);
+
 }
\ No newline at end of file
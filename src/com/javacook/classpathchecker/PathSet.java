@@ -81,6 +81,10 @@ public class PathSet extends TreeSet<String> {
 			public boolean isValid(String path) {
 				return true;
 			}
+
+			public boolean isValidSubtree(String dirPath) {
+				return true;
+			}
 		});
 		pathSet.add("null.jar");
 		pathSet.add("WEB-INF/lib/eins.jar");
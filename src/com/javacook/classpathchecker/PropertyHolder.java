@@ -6,6 +6,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
+import com.javacook.util.JavaCookLogger;
+
 
 public class PropertyHolder implements PropertyHolderInterface {
 
@@ -16,16 +18,69 @@ public class PropertyHolder implements PropertyHolderInterface {
 	public final static String PROP_KEY_OUTPUT_EXTENSIONS 	= "outputExtensions";
 	public final static String PROP_KEY_ADDITIONAL_ARTIFACTS 	= "additionalArtifacts";
 	public final static String PROP_KEY_EXCLUDE_ARTIFACTS 	= "excludeArtifacts";
+	public final static String PROP_KEY_EXCLUDE_PATTERNS 	= "excludePatterns";
 	public final static String PROP_KEY_LOG_TO_CONSOLE 		= "logToConsole";
 	public final static String PROP_KEY_LOG_FILE_NAME 		= "logFileName";
+	public final static String PROP_KEY_SCAN_THREADS 		= "scanThreads";
+	public final static String PROP_KEY_SCAN_CACHE_FILE 	= "scanCacheFile";
+	public final static String PROP_KEY_SCAN_CACHE_MAX_SIZE = "scanCacheMaxSize";
+	public final static String PROP_KEY_SCAN_CACHE_HASH 	= "scanCacheHash";
+	public final static String PROP_KEY_NESTED_ARCHIVE_DEPTH = "nestedArchiveDepth";
+	public final static String PROP_KEY_MAX_LOG_ENTRIES 	= "maxLogEntries";
+	public final static String PROP_KEY_WATCH_DEBOUNCE_MILLIS 	= "watchDebounceMillis";
+	public final static String PROP_KEY_METRICS_ENABLED 	= "metricsEnabled";
+	public final static String PROP_KEY_METRICS_SLOWEST_ARTIFACTS 	= "metricsSlowestArtifacts";
+	public final static String PROP_KEY_METRICS_IN_REPORT 	= "metricsInReport";
+	public final static String PROP_KEY_SNAPSHOT_FILE 	= "snapshotFile";
+	public final static String PROP_KEY_SHARED_ARTIFACTS 	= "sharedArtifacts";
+	public final static String PROP_KEY_MAVEN_REPOSITORY_INDEX 	= "mavenRepositoryIndex";
+	public final static String PROP_KEY_MAVEN_REPOSITORY 	= "mavenRepository";
+	public final static String PROP_KEY_LOW_MEMORY 	= "lowMemory";
+	public final static String PROP_KEY_LOW_MEMORY_EXPECTED_RESOURCES 	= "lowMemoryExpectedResources";
+	public final static String PROP_KEY_SCAN_PROFILE 	= "scanProfile";
+	public final static String PROP_KEY_RESOURCE_EXCLUDE_PATTERNS 	= "resourceExcludePatterns";
+	public final static String PROP_KEY_EXTERNAL_SORT_MEMORY_LIMIT 	= "externalSortMemoryLimit";
+	public final static String PROP_KEY_EXTERNAL_SORT_DIRECTORY 	= "externalSortDirectory";
+	public final static String PROP_KEY_CONFLICT_BATCH_SIZE 	= "conflictBatchSize";
+
+	public final static long DEFAULT_SCAN_CACHE_MAX_SIZE	= 64L * 1024 * 1024;
+	public final static long DEFAULT_WATCH_DEBOUNCE_MILLIS	= 500;
+	public final static int DEFAULT_METRICS_SLOWEST_ARTIFACTS	= 10;
+	public final static int DEFAULT_LOW_MEMORY_EXPECTED_RESOURCES	= 1000000;
+	public final static int DEFAULT_CONFLICT_BATCH_SIZE	= 100;
+
+	public final static String SCAN_PROFILE_ALL 		= "all";
+	public final static String SCAN_PROFILE_OUTPUT 	= "output";
 
 	private List<String> 	classPathKeys 			= new ArrayList<String>();
 	private List<String> 	archiveExtensions 		= new ArrayList<String>();
 	private List<String> 	outputExtensions 		= new ArrayList<String>();
 	private List<String>	additionalArtifacts		= new ArrayList<String>();
 	private List<String>	excludeArtifacts		= new ArrayList<String>();
+	private List<String>	excludePatterns			= new ArrayList<String>();
+	private List<String>	resourceExcludePatterns	= new ArrayList<String>();
 	private boolean			logToConsole			= true;
 	private String			logFileName;
+	private int				scanThreads				= 1;
+	private String			scanCacheFile;
+	private long			scanCacheMaxSize		= DEFAULT_SCAN_CACHE_MAX_SIZE;
+	private boolean			scanCacheHash			= false;
+	private int				nestedArchiveDepth		= 0;
+	private int				maxLogEntries			= JavaCookLogger.DEFAULT_MAX_LOG_ENTRIES;
+	private long			watchDebounceMillis		= DEFAULT_WATCH_DEBOUNCE_MILLIS;
+	private boolean			metricsEnabled			= true;
+	private int				metricsSlowestArtifacts	= DEFAULT_METRICS_SLOWEST_ARTIFACTS;
+	private boolean			metricsInReport			= false;
+	private String			snapshotFile;
+	private boolean			sharedArtifacts			= false;
+	private String			mavenRepositoryIndex;
+	private String			mavenRepository;
+	private boolean			lowMemory				= false;
+	private int				lowMemoryExpectedResources	= DEFAULT_LOW_MEMORY_EXPECTED_RESOURCES;
+	private String			scanProfile				= SCAN_PROFILE_ALL;
+	private long			externalSortMemoryLimit	= 0;
+	private String			externalSortDirectory;
+	private int				conflictBatchSize		= DEFAULT_CONFLICT_BATCH_SIZE;
 	private boolean			usingDefaults			= true;
 	private String			propFileName;
 
@@ -93,6 +148,14 @@ public class PropertyHolder implements PropertyHolderInterface {
 		return excludeArtifacts;
 	}
 
+	public List<String> getExcludePatterns() {
+		return excludePatterns;
+	}
+
+	public List<String> getResourceExcludePatterns() {
+		return resourceExcludePatterns;
+	}
+
 	public List<String> getOutputExtensions() {
 		return outputExtensions;
 	}
@@ -113,6 +176,166 @@ public class PropertyHolder implements PropertyHolderInterface {
 		this.logFileName = logFileName;
 	}
 
+	public int getScanThreads() {
+		return scanThreads;
+	}
+
+	public void setScanThreads(int scanThreads) {
+		this.scanThreads = scanThreads;
+	}
+
+	public String getScanCacheFile() {
+		return scanCacheFile;
+	}
+
+	public void setScanCacheFile(String scanCacheFile) {
+		this.scanCacheFile = scanCacheFile;
+	}
+
+	public long getScanCacheMaxSize() {
+		return scanCacheMaxSize;
+	}
+
+	public void setScanCacheMaxSize(long scanCacheMaxSize) {
+		this.scanCacheMaxSize = scanCacheMaxSize;
+	}
+
+	public boolean isScanCacheHash() {
+		return scanCacheHash;
+	}
+
+	public void setScanCacheHash(boolean scanCacheHash) {
+		this.scanCacheHash = scanCacheHash;
+	}
+
+	public int getNestedArchiveDepth() {
+		return nestedArchiveDepth;
+	}
+
+	public void setNestedArchiveDepth(int nestedArchiveDepth) {
+		this.nestedArchiveDepth = nestedArchiveDepth;
+	}
+
+	public int getMaxLogEntries() {
+		return maxLogEntries;
+	}
+
+	public void setMaxLogEntries(int maxLogEntries) {
+		this.maxLogEntries = maxLogEntries;
+	}
+
+	public long getWatchDebounceMillis() {
+		return watchDebounceMillis;
+	}
+
+	public void setWatchDebounceMillis(long watchDebounceMillis) {
+		this.watchDebounceMillis = watchDebounceMillis;
+	}
+
+	public boolean isMetricsEnabled() {
+		return metricsEnabled;
+	}
+
+	public void setMetricsEnabled(boolean metricsEnabled) {
+		this.metricsEnabled = metricsEnabled;
+	}
+
+	public int getMetricsSlowestArtifacts() {
+		return metricsSlowestArtifacts;
+	}
+
+	public void setMetricsSlowestArtifacts(int metricsSlowestArtifacts) {
+		this.metricsSlowestArtifacts = metricsSlowestArtifacts;
+	}
+
+	public boolean isMetricsInReport() {
+		return metricsInReport;
+	}
+
+	public void setMetricsInReport(boolean metricsInReport) {
+		this.metricsInReport = metricsInReport;
+	}
+
+	public String getSnapshotFile() {
+		return snapshotFile;
+	}
+
+	public void setSnapshotFile(String snapshotFile) {
+		this.snapshotFile = snapshotFile;
+	}
+
+	public boolean isSharedArtifacts() {
+		return sharedArtifacts;
+	}
+
+	public void setSharedArtifacts(boolean sharedArtifacts) {
+		this.sharedArtifacts = sharedArtifacts;
+	}
+
+	public String getMavenRepositoryIndex() {
+		return mavenRepositoryIndex;
+	}
+
+	public void setMavenRepositoryIndex(String mavenRepositoryIndex) {
+		this.mavenRepositoryIndex = mavenRepositoryIndex;
+	}
+
+	public String getMavenRepository() {
+		return mavenRepository;
+	}
+
+	public void setMavenRepository(String mavenRepository) {
+		this.mavenRepository = mavenRepository;
+	}
+
+	public boolean isLowMemory() {
+		return lowMemory;
+	}
+
+	public void setLowMemory(boolean lowMemory) {
+		this.lowMemory = lowMemory;
+	}
+
+	public int getLowMemoryExpectedResources() {
+		return lowMemoryExpectedResources;
+	}
+
+	public void setLowMemoryExpectedResources(int lowMemoryExpectedResources) {
+		this.lowMemoryExpectedResources = lowMemoryExpectedResources;
+	}
+
+	public String getScanProfile() {
+		return scanProfile;
+	}
+
+	public void setScanProfile(String scanProfile) {
+		this.scanProfile = scanProfile;
+	}
+
+	public long getExternalSortMemoryLimit() {
+		return externalSortMemoryLimit;
+	}
+
+	public void setExternalSortMemoryLimit(long externalSortMemoryLimit) {
+		this.externalSortMemoryLimit = externalSortMemoryLimit;
+	}
+
+	public String getExternalSortDirectory() {
+		return externalSortDirectory;
+	}
+
+	public void setExternalSortDirectory(String externalSortDirectory) {
+		this.externalSortDirectory = externalSortDirectory;
+	}
+
+	public int getConflictBatchSize() {
+		return conflictBatchSize;
+	}
+
+	public void setConflictBatchSize(int conflictBatchSize) {
+		this.conflictBatchSize = conflictBatchSize;
+	}
+
 	public boolean usingDefaults() {
 		return usingDefaults;
 	}
@@ -160,6 +383,8 @@ public class PropertyHolder implements PropertyHolderInterface {
 
 		excludeArtifacts = getProperties(PROP_KEY_EXCLUDE_ARTIFACTS);
 
+		excludePatterns = getProperties(PROP_KEY_EXCLUDE_PATTERNS);
+
 		additionalArtifacts = getProperties(PROP_KEY_ADDITIONAL_ARTIFACTS);
 
 		String logToConsoleStr = properties.getProperty(PROP_KEY_LOG_TO_CONSOLE);
@@ -169,6 +394,55 @@ public class PropertyHolder implements PropertyHolderInterface {
 		logFileName = properties.getProperty(PROP_KEY_LOG_FILE_NAME);
 		if (logFileName != null) logFileName = logFileName.trim();
 
+		scanThreads = getIntProperty(PROP_KEY_SCAN_THREADS, 1);
+
+		scanCacheFile = properties.getProperty(PROP_KEY_SCAN_CACHE_FILE);
+		if (scanCacheFile != null) scanCacheFile = scanCacheFile.trim();
+
+		scanCacheMaxSize = getLongProperty(PROP_KEY_SCAN_CACHE_MAX_SIZE, DEFAULT_SCAN_CACHE_MAX_SIZE);
+
+		String scanCacheHashStr = properties.getProperty(PROP_KEY_SCAN_CACHE_HASH);
+		if (scanCacheHashStr != null) scanCacheHashStr = scanCacheHashStr.trim();
+		scanCacheHash = Boolean.parseBoolean(scanCacheHashStr);
+
+		nestedArchiveDepth = getIntProperty(PROP_KEY_NESTED_ARCHIVE_DEPTH, 0);
+
+		maxLogEntries = getIntProperty(PROP_KEY_MAX_LOG_ENTRIES, JavaCookLogger.DEFAULT_MAX_LOG_ENTRIES);
+
+		watchDebounceMillis = getLongProperty(PROP_KEY_WATCH_DEBOUNCE_MILLIS, DEFAULT_WATCH_DEBOUNCE_MILLIS);
+
+		metricsEnabled = getBooleanProperty(PROP_KEY_METRICS_ENABLED, true);
+
+		metricsSlowestArtifacts = getIntProperty(PROP_KEY_METRICS_SLOWEST_ARTIFACTS, DEFAULT_METRICS_SLOWEST_ARTIFACTS);
+
+		metricsInReport = getBooleanProperty(PROP_KEY_METRICS_IN_REPORT, false);
+
+		snapshotFile = properties.getProperty(PROP_KEY_SNAPSHOT_FILE);
+		if (snapshotFile != null) snapshotFile = snapshotFile.trim();
+
+		sharedArtifacts = getBooleanProperty(PROP_KEY_SHARED_ARTIFACTS, false);
+
+		mavenRepositoryIndex = properties.getProperty(PROP_KEY_MAVEN_REPOSITORY_INDEX);
+		if (mavenRepositoryIndex != null) mavenRepositoryIndex = mavenRepositoryIndex.trim();
+
+		mavenRepository = properties.getProperty(PROP_KEY_MAVEN_REPOSITORY);
+		if (mavenRepository != null) mavenRepository = mavenRepository.trim();
+
+		lowMemory = getBooleanProperty(PROP_KEY_LOW_MEMORY, false);
+
+		lowMemoryExpectedResources = getIntProperty(PROP_KEY_LOW_MEMORY_EXPECTED_RESOURCES, DEFAULT_LOW_MEMORY_EXPECTED_RESOURCES);
+
+		scanProfile = properties.getProperty(PROP_KEY_SCAN_PROFILE, SCAN_PROFILE_ALL).trim();
+
+		resourceExcludePatterns = getProperties(PROP_KEY_RESOURCE_EXCLUDE_PATTERNS);
+
+		externalSortMemoryLimit = getLongProperty(PROP_KEY_EXTERNAL_SORT_MEMORY_LIMIT, 0);
+
+		externalSortDirectory = properties.getProperty(PROP_KEY_EXTERNAL_SORT_DIRECTORY);
+		if (externalSortDirectory != null) externalSortDirectory = externalSortDirectory.trim();
+
+		conflictBatchSize = getIntProperty(PROP_KEY_CONFLICT_BATCH_SIZE, DEFAULT_CONFLICT_BATCH_SIZE);
+
 	}// analyseProperties
 
 
@@ -202,6 +476,46 @@ public class PropertyHolder implements PropertyHolderInterface {
 	}
 
 
+	/**
+	 * Liefert den Wert der Property <code>key</code> als boolean bzw. <code>defaultValue</code>,
+	 * falls sie nicht gesetzt ist.
+	 */
+	private boolean getBooleanProperty(String key, boolean defaultValue) {
+		String value = properties.getProperty(key);
+		if (value == null || value.trim().length() == 0) return defaultValue;
+		return Boolean.parseBoolean(value.trim());
+	}
+
+
+	/**
+	 * Liefert den Wert der Property <code>key</code> als int bzw. <code>defaultValue</code>,
+	 * falls sie nicht gesetzt ist.
+	 */
+	private int getIntProperty(String key, int defaultValue) {
+		long value = getLongProperty(key, defaultValue);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Property '" + key + "' is out of range: " + value);
+		}
+		return (int)value;
+	}
+
+
+	/**
+	 * Liefert den Wert der Property <code>key</code> als long bzw. <code>defaultValue</code>,
+	 * falls sie nicht gesetzt ist.
+	 */
+	private long getLongProperty(String key, long defaultValue) {
+		String value = properties.getProperty(key);
+		if (value == null || value.trim().length() == 0) return defaultValue;
+		try {
+			return Long.parseLong(value.trim());
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Property '" + key + "' is not a number: '" + value + "'", e);
+		}
+	}
+
+
 	/*-----------------------------------------------------------------------*\
 	 * main                                                                  *
 	\*-----------------------------------------------------------------------*/
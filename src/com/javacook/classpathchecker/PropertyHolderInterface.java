@@ -14,6 +14,10 @@ public interface PropertyHolderInterface {
 
 	List<String> getExcludeArtifacts();
 
+	List<String> getExcludePatterns();
+
+	List<String> getResourceExcludePatterns();
+
 	boolean logToConsole();
 
 	void setLogToConsole(boolean logToConsole);
@@ -22,6 +26,86 @@ public interface PropertyHolderInterface {
 
 	void setLogFileName(String logFileName);
 
+	int getScanThreads();
+
+	void setScanThreads(int scanThreads);
+
+	String getScanCacheFile();
+
+	void setScanCacheFile(String scanCacheFile);
+
+	long getScanCacheMaxSize();
+
+	void setScanCacheMaxSize(long scanCacheMaxSize);
+
+	boolean isScanCacheHash();
+
+	void setScanCacheHash(boolean scanCacheHash);
+
+	int getNestedArchiveDepth();
+
+	void setNestedArchiveDepth(int nestedArchiveDepth);
+
+	int getMaxLogEntries();
+
+	void setMaxLogEntries(int maxLogEntries);
+
+	long getWatchDebounceMillis();
+
+	void setWatchDebounceMillis(long watchDebounceMillis);
+
+	boolean isMetricsEnabled();
+
+	void setMetricsEnabled(boolean metricsEnabled);
+
+	int getMetricsSlowestArtifacts();
+
+	void setMetricsSlowestArtifacts(int metricsSlowestArtifacts);
+
+	boolean isMetricsInReport();
+
+	void setMetricsInReport(boolean metricsInReport);
+
+	String getSnapshotFile();
+
+	void setSnapshotFile(String snapshotFile);
+
+	boolean isSharedArtifacts();
+
+	void setSharedArtifacts(boolean sharedArtifacts);
+
+	String getMavenRepositoryIndex();
+
+	void setMavenRepositoryIndex(String mavenRepositoryIndex);
+
+	String getMavenRepository();
+
+	void setMavenRepository(String mavenRepository);
+
+	boolean isLowMemory();
+
+	void setLowMemory(boolean lowMemory);
+
+	int getLowMemoryExpectedResources();
+
+	void setLowMemoryExpectedResources(int lowMemoryExpectedResources);
+
+	String getScanProfile();
+
+	void setScanProfile(String scanProfile);
+
+	long getExternalSortMemoryLimit();
+
+	void setExternalSortMemoryLimit(long externalSortMemoryLimit);
+
+	String getExternalSortDirectory();
+
+	void setExternalSortDirectory(String externalSortDirectory);
+
+	int getConflictBatchSize();
+
+	void setConflictBatchSize(int conflictBatchSize);
+
 	boolean usingDefaults();
 
 	void loadProperties(String propFileName) throws Exception;
@@ -0,0 +1,438 @@
+package com.javacook.classpathchecker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import com.javacook.util.FileUtils;
+import com.javacook.util.ResourceClassifier;
+import com.javacook.util.VarInts;
+
+/**
+ * Persistenter Cache fuer die Inhaltsverzeichnisse von Archiven. Schluessel ist der kanonische
+ * Pfad des Archivs zusammen mit Tiefe und Profil (s.u.); ein Eintrag ist nur gueltig, solange Laenge und Aenderungszeitpunkt (und
+ * optional eine CRC-32 ueber den gesamten Dateiinhalt) unveraendert sind.
+ * <p>
+ * Dateiformat (alle Zahlen big-endian bzw. als VarInt):
+ * <pre>
+ * int MAGIC, int VERSION, int anzahl
+ * pro Eintrag: UTF pfad, long laenge, long lastModified, long hash, int nestedDepth, UTF profil, long lastUsed, int blobLaenge, byte[] blob
+ * blob: varint anzahl, pro Name: varint gemeinsamerPrefix, varint suffixLaenge, byte[] suffix (UTF-8), int crc, varlong groesse
+ *       varint anzahlVerschachtelt, pro verschachteltem Archiv: varint namensIndex, blob (rekursiv)
+ * </pre>
+ * Da der Inhalt eines Listings von der Tiefe abhaengt, bis zu der verschachtelte Archive gelesen
+ * werden, und vom Scan-Profil (dem <code>ResourceClassifier</code>, der die Eintraege auswaehlt),
+ * sind beide Teil des Schluessels: Konfigurationen, die sich eine Cache-Datei teilen, verdraengen
+ * sich also nicht gegenseitig.
+ * <p>
+ * Ein Treffer vermerkt den Zeitpunkt der Benutzung nur, wenn der gespeicherte aelter als
+ * <code>LAST_USED_RESOLUTION</code> ist; ein Cache, der nur Treffer liefert, wird also hoechstens
+ * einmal am Tag neu geschrieben statt bei jedem Lauf.
+ * Die Blobs werden erst bei einem Treffer dekodiert. Beim Speichern wird die Cache-Datei unter
+ * einem <code>FileLock</code> neu eingelesen, mit dem eigenen Stand zusammengefuehrt (der zuletzt
+ * benutzte Eintrag gewinnt), auf <code>maxSize</code> Bytes beschnitten (die am laengsten nicht
+ * benutzten Eintraege fliegen raus) und ueber eine temporaere Datei atomar ersetzt. So koennen
+ * mehrere Prozesse denselben Cache verwenden.
+ */
+public class ScanCache {
+
+	private final static int MAGIC 		= 0x43504343; // "CPCC"
+	private final static int VERSION 	= 3;
+	private final static long NO_HASH 	= -1;
+	private final static Charset UTF_8 	= Charset.forName("UTF-8");
+
+	/** Aufloesung von <code>lastUsed</code> fuer Treffer (ms) */
+	private final static long LAST_USED_RESOLUTION = 24L * 60 * 60 * 1000;
+
+	/** Geschaetzter Platzbedarf eines Eintrags ohne Pfad, Profil und Blob */
+	private final static int ENTRY_OVERHEAD = 40;
+
+	private final File cacheFile;
+	private final long maxSize;
+	private final boolean useHash;
+	private final int nestedDepth;
+	private final String profile;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private volatile boolean modified = false;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Konstruktor
+	 * @param cacheFile Datei, in der der Cache abgelegt wird
+	 * @param maxSize maximale Groesse der Cache-Datei in Bytes
+	 * @param useHash falls true, wird zusaetzlich eine CRC-32 ueber den Inhalt jedes Archivs
+	 * verglichen (sicherer, kostet aber das Lesen der ganzen Datei)
+	 * @param nestedDepth Tiefe, bis zu der die Listings verschachtelte Archive enthalten
+	 */
+	public ScanCache(File cacheFile, long maxSize, boolean useHash, int nestedDepth) {
+		this(cacheFile, maxSize, useHash, nestedDepth, ResourceClassifier.ALL.toString());
+	}
+
+
+	/**
+	 * Wie oben, fuer Listings, die nur die Eintraege eines Scan-Profils enthalten
+	 * @param profile Beschreibung des Profils (<code>ResourceClassifier.toString()</code>)
+	 */
+	public ScanCache(File cacheFile, long maxSize, boolean useHash, int nestedDepth, String profile) {
+		if (cacheFile == null) throw new IllegalArgumentException("Argument 'cacheFile' is null.");
+		if (profile == null) throw new IllegalArgumentException("Argument 'profile' is null.");
+		this.cacheFile = cacheFile;
+		this.maxSize = maxSize;
+		this.useHash = useHash;
+		this.nestedDepth = nestedDepth;
+		this.profile = profile;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Laedt den Cache von der Platte. Fehlt die Datei oder hat sie ein unbekanntes Format,
+	 * wird mit einem leeren Cache begonnen.
+	 * @return false, falls eine vorhandene Cache-Datei nicht gelesen werden konnte
+	 */
+	public boolean load() {
+		try {
+			entries.putAll(readEntries());
+			return true;
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+
+	/**
+	 * Liefert das gecachte Inhaltsverzeichnis von <code>archive</code> oder null, falls es keins
+	 * gibt oder das Archiv sich seitdem geaendert hat.
+	 */
+	public ArchiveListing get(File archive) throws IOException {
+		Entry entry = entries.get(key(archive.getCanonicalPath(), nestedDepth, profile));
+		if (entry != null && entry.length == archive.length() && entry.lastModified == archive.lastModified()
+				&& (!useHash || entry.hash == hash(archive))) {
+			ArchiveListing listing = decode(entry.blob);
+			long now = System.currentTimeMillis();
+			if (now - entry.lastUsed >= LAST_USED_RESOLUTION) {
+				entry.lastUsed = now;
+				modified = true;
+			}
+			hits.incrementAndGet();
+			return listing;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+
+	/**
+	 * Legt das Inhaltsverzeichnis <code>listing</code> von <code>archive</code> im Cache ab.
+	 */
+	public void put(File archive, ArchiveListing listing) throws IOException {
+		if (listing == null) throw new IllegalArgumentException("Argument 'listing' is null.");
+		String path = archive.getCanonicalPath();
+		entries.put(key(path, nestedDepth, profile), new Entry(path, archive.length(), archive.lastModified(),
+				useHash? hash(archive) : NO_HASH, nestedDepth, profile, System.currentTimeMillis(), encode(listing)));
+		modified = true;
+	}
+
+
+	/**
+	 * Schreibt den Cache (falls er sich geaendert hat) zurueck auf die Platte.
+	 */
+	public void save() throws IOException {
+		if (!modified) return;
+		File parent = cacheFile.getAbsoluteFile().getParentFile();
+		if (parent != null && !parent.exists()) {
+			parent.mkdirs();
+		}
+		RandomAccessFile lockFile = new RandomAccessFile(new File(cacheFile.getPath() + ".lock"), "rw");
+		try {
+			FileLock lock = lockFile.getChannel().lock();
+			try {
+				// Stand anderer Prozesse uebernehmen, der zuletzt benutzte Eintrag gewinnt:
+				Map<String, Entry> onDisk;
+				try {
+					onDisk = readEntries();
+				}
+				catch (IOException e) {
+					onDisk = Collections.emptyMap();
+				}
+				for (Map.Entry<String, Entry> diskEntry : onDisk.entrySet()) {
+					Entry entry = entries.get(diskEntry.getKey());
+					if (entry == null || entry.lastUsed < diskEntry.getValue().lastUsed) {
+						entries.put(diskEntry.getKey(), diskEntry.getValue());
+					}
+				}
+				writeEntries(evict());
+				modified = false;
+			}
+			finally {
+				lock.release();
+			}
+		}
+		finally {
+			lockFile.close();
+		}
+	}
+
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+	public File getCacheFile() {
+		return cacheFile;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liefert die Eintraege, die in <code>maxSize</code> passen, die zuletzt benutzten zuerst.
+	 */
+	private List<Entry> evict() {
+		List<Entry> sorted = new ArrayList<Entry>(entries.values());
+		Collections.sort(sorted, new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				return (e1.lastUsed < e2.lastUsed)? 1 : (e1.lastUsed > e2.lastUsed)? -1 : 0;
+			}
+		});
+		List<Entry> result = new ArrayList<Entry>();
+		long total = 12;
+		for (Entry entry : sorted) {
+			total += ENTRY_OVERHEAD + entry.path.length() + entry.profile.length() + entry.blob.length;
+			if (total > maxSize) {
+				entries.remove(key(entry.path, entry.nestedDepth, entry.profile));
+			}
+			else {
+				result.add(entry);
+			}
+		}
+		return result;
+	}
+
+
+	private Map<String, Entry> readEntries() throws IOException {
+		Map<String, Entry> result = new ConcurrentHashMap<String, Entry>();
+		if (!cacheFile.exists()) return result;
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC) throw new IOException("'" + cacheFile + "' is not a scan cache.");
+			int version = in.readInt();
+			if (version != VERSION) throw new IOException("Unsupported scan cache version " + version + ".");
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path 		= in.readUTF();
+				long length 		= in.readLong();
+				long lastModified 	= in.readLong();
+				long hash 			= in.readLong();
+				int depth 			= in.readInt();
+				String entryProfile = in.readUTF();
+				long lastUsed 		= in.readLong();
+				byte[] blob 		= new byte[in.readInt()];
+				in.readFully(blob);
+				result.put(key(path, depth, entryProfile), new Entry(path, length, lastModified, hash, depth, entryProfile, lastUsed, blob));
+			}
+		}
+		catch (EOFException e) {
+			throw new IOException("Scan cache '" + cacheFile + "' is truncated.", e);
+		}
+		finally {
+			in.close();
+		}
+		return result;
+	}
+
+
+	private void writeEntries(List<Entry> toWrite) throws IOException {
+		File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(toWrite.size());
+				for (Entry entry : toWrite) {
+					out.writeUTF(entry.path);
+					out.writeLong(entry.length);
+					out.writeLong(entry.lastModified);
+					out.writeLong(entry.hash);
+					out.writeInt(entry.nestedDepth);
+					out.writeUTF(entry.profile);
+					out.writeLong(entry.lastUsed);
+					out.writeInt(entry.blob.length);
+					out.write(entry.blob);
+				}
+			}
+			finally {
+				out.close();
+			}
+			FileUtils.replaceAtomically(tempFile, cacheFile);
+		}
+		finally {
+			tempFile.delete(); // nur falls das Schreiben oder Verschieben nicht geklappt hat
+		}
+	}
+
+
+	/**
+	 * Schluessel eines Eintrags in <code>entries</code>
+	 */
+	private static String key(String path, int nestedDepth, String profile) {
+		return path + '\n' + nestedDepth + '\n' + profile;
+	}
+
+
+	/**
+	 * Kodiert die Namen mit Front-Coding, d.h. pro Name wird nur der vom Vorgaenger abweichende
+	 * Suffix abgelegt.
+	 */
+	static byte[] encode(ArchiveListing listing) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(listing.size() * 16 + 8);
+		DataOutputStream out = new DataOutputStream(bytes);
+		encode(listing, out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+
+	private static void encode(ArchiveListing listing, DataOutputStream out) throws IOException {
+		VarInts.writeVarInt(out, listing.size());
+		byte[] previous = new byte[0];
+		for (int i = 0; i < listing.size(); i++) {
+			byte[] name = listing.getName(i).getBytes(UTF_8);
+			int shared = 0;
+			int max = Math.min(previous.length, name.length);
+			while (shared < max && previous[shared] == name[shared]) shared++;
+			VarInts.writeVarInt(out, shared);
+			VarInts.writeVarInt(out, name.length - shared);
+			out.write(name, shared, name.length - shared);
+			out.writeInt((int)listing.getCrc(i));
+			VarInts.writeVarLong(out, listing.getSize(i));
+			previous = name;
+		}
+		VarInts.writeVarInt(out, listing.getNestedCount());
+		for (int n = 0; n < listing.getNestedCount(); n++) {
+			VarInts.writeVarInt(out, listing.getNestedEntry(n));
+			encode(listing.getNested(n), out);
+		}
+	}
+
+
+	static ArchiveListing decode(byte[] blob) throws IOException {
+		return decode(new DataInputStream(new ByteArrayInputStream(blob)));
+	}
+
+
+	private static ArchiveListing decode(DataInputStream in) throws IOException {
+		int count = VarInts.readVarInt(in);
+		ArchiveListing listing = new ArchiveListing(count);
+		byte[] name = new byte[256];
+		for (int i = 0; i < count; i++) {
+			int shared = VarInts.readVarInt(in);
+			int suffixLength = VarInts.readVarInt(in);
+			if (shared + suffixLength > name.length) {
+				byte[] newName = new byte[Math.max(name.length * 2, shared + suffixLength)];
+				System.arraycopy(name, 0, newName, 0, shared);
+				name = newName;
+			}
+			in.readFully(name, shared, suffixLength);
+			long crc = in.readInt() & 0xFFFFFFFFL;
+			long size = VarInts.readVarLong(in);
+			listing.add(new String(name, 0, shared + suffixLength, UTF_8), crc, size);
+		}
+		int nestedCount = VarInts.readVarInt(in);
+		for (int n = 0; n < nestedCount; n++) {
+			int entry = VarInts.readVarInt(in);
+			if (entry < 0 || entry >= count) throw new IOException("Invalid nested entry index " + entry + " (" + count + " entries).");
+			listing.addNested(entry, decode(in));
+		}
+		return listing;
+	}
+
+
+	/**
+	 * CRC-32 ueber den gesamten Inhalt von <code>file</code>
+	 */
+	private static long hash(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		FileChannel channel = new FileInputStream(file).getChannel();
+		try {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+		finally {
+			channel.close();
+		}
+		return crc.getValue();
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	private static class Entry {
+		final String path;
+		final long length;
+		final long lastModified;
+		final long hash;
+		final int nestedDepth;
+		final String profile;
+		final byte[] blob;
+		volatile long lastUsed;
+
+		Entry(String path, long length, long lastModified, long hash, int nestedDepth, String profile, long lastUsed, byte[] blob) {
+			this.path = path;
+			this.length = length;
+			this.lastModified = lastModified;
+			this.hash = hash;
+			this.nestedDepth = nestedDepth;
+			this.profile = profile;
+			this.lastUsed = lastUsed;
+			this.blob = blob;
+		}
+	}
+
+}
@@ -0,0 +1,167 @@
+package com.javacook.classpathchecker;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR-Events fuer die Phasen eines Scans, damit sich ein langsamer Lauf in einer Flight Recording
+ * neben GC und I/O einordnen laesst:
+ * <ul>
+ * <li><tt>com.javacook.classpathchecker.ClassPaths</tt>: Zusammenstellen der Artefakt-Pfade in
+ *     <code>handleClassPaths</code> (Anzahl der Pfade)</li>
+ * <li><tt>com.javacook.classpathchecker.DirectoryWalk</tt>: Durchwandern eines Verzeichnisses
+ *     (Anzahl der Dateien; Archive haben ein eigenes Event). Beim sequentiellen Scan umfasst es
+ *     den ganzen Baum eines Artefakts, und seine Dauer enthaelt die ArchiveListing-Events der
+ *     Archive darin; beim parallelen jeweils ein einzelnes Verzeichnis ohne dessen Archive. Das
+ *     Event wird auch abgeschlossen, wenn das Durchwandern mit einem Fehler endet.</li>
+ * <li><tt>com.javacook.classpathchecker.ArchiveListing</tt>: Lesen eines Archivs samt
+ *     verschachtelter Archive (Anzahl der Eintraege, gelesene Bytes)</li>
+ * <li><tt>com.javacook.classpathchecker.Report</tt>: Schreiben des Reports (Anzahl der Duplikate)</li>
+ * </ul>
+ * Alle Events sind per Default abgeschaltet und werden ueber die JFR-Settings eingeschaltet, z.B.
+ * mit <tt>-XX:StartFlightRecording:settings=default,settings=cpc.jfc</tt> (siehe <tt>cpc.jfc</tt>).
+ * Solange sie abgeschaltet sind, kostet jede Phase nur eine Abfrage von <code>EventType.isEnabled()</code>;
+ * es wird nichts erzeugt.
+ * <p>
+ * Die Klassen aus <code>jdk.jfr</code> werden nur angefasst, wenn sie vorhanden sind; auf einer
+ * JVM ohne JFR liefert <code>begin</code> immer null.
+ */
+final class ScanEvents {
+
+	static final int CLASS_PATHS 		= 0;
+	static final int DIRECTORY_WALK 	= 1;
+	static final int ARCHIVE_LISTING 	= 2;
+	static final int REPORT 			= 3;
+
+	private final static boolean AVAILABLE = isJfrAvailable();
+
+
+	private ScanEvents() {
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * package methods                                                       *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Beginnt eine Phase der Art <code>kind</code>.
+	 * @return das laufende Event oder null, falls es nicht aufgezeichnet wird
+	 */
+	static Object begin(int kind) {
+		return (AVAILABLE)? Jfr.begin(kind) : null;
+	}
+
+
+	/**
+	 * Beendet das mit <code>begin</code> begonnene <code>event</code> (null wird ignoriert) und
+	 * schreibt es, falls es die Settings (z.B. <tt>threshold</tt>) erfuellt.
+	 */
+	static void commit(Object event, String path, long entryCount, long bytes) {
+		if (event != null) {
+			Jfr.commit(event, path, entryCount, bytes);
+		}
+	}
+
+
+	private static boolean isJfrAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event", false, ScanEvents.class.getClassLoader());
+			return true;
+		}
+		catch (Throwable e) {
+			return false;
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Kapselt alle Zugriffe auf <code>jdk.jfr</code>; wird erst beim ersten Event geladen.
+	 */
+	private static class Jfr {
+
+		private final static EventType[] TYPES = {
+			EventType.getEventType(ClassPathsEvent.class),
+			EventType.getEventType(DirectoryWalkEvent.class),
+			EventType.getEventType(ArchiveListingEvent.class),
+			EventType.getEventType(ReportEvent.class)
+		};
+
+		static Object begin(int kind) {
+			if (!TYPES[kind].isEnabled()) return null;
+			ScanEvent event;
+			switch (kind) {
+				case CLASS_PATHS: 		event = new ClassPathsEvent(); break;
+				case DIRECTORY_WALK: 	event = new DirectoryWalkEvent(); break;
+				case ARCHIVE_LISTING: 	event = new ArchiveListingEvent(); break;
+				case REPORT: 			event = new ReportEvent(); break;
+				default: throw new IllegalArgumentException("Unknown event kind " + kind);
+			}
+			event.begin();
+			return event;
+		}
+
+		static void commit(Object event, String path, long entryCount, long bytes) {
+			ScanEvent scanEvent = (ScanEvent)event;
+			scanEvent.end();
+			if (scanEvent.shouldCommit()) {
+				scanEvent.path 		 = path;
+				scanEvent.entryCount = entryCount;
+				scanEvent.bytes 	 = bytes;
+				scanEvent.commit();
+			}
+		}
+	}
+
+
+	@Category("ClassPathChecker")
+	@Enabled(false)
+	@StackTrace(false)
+	abstract static class ScanEvent extends Event {
+		@Label("Path")
+		String path;
+
+		@Label("Entries")
+		long entryCount;
+
+		@Label("Bytes")
+		@DataAmount
+		long bytes;
+	}
+
+	@Name("com.javacook.classpathchecker.ClassPaths")
+	@Label("Class Path Collection")
+	@Description("Collecting the artifact paths to scan; Entries = number of paths")
+	static class ClassPathsEvent extends ScanEvent {
+	}
+
+	@Name("com.javacook.classpathchecker.DirectoryWalk")
+	@Label("Directory Walk")
+	@Description("Walking a directory (sequential scan: whole tree including its archive listings, parallel scan: single directory without its archives); Entries = files except archives")
+	static class DirectoryWalkEvent extends ScanEvent {
+	}
+
+	@Name("com.javacook.classpathchecker.ArchiveListing")
+	@Label("Archive Listing")
+	@Description("Listing an archive including nested archives; Bytes = bytes read (0 if cached)")
+	static class ArchiveListingEvent extends ScanEvent {
+	}
+
+	@Name("com.javacook.classpathchecker.Report")
+	@Label("Report Rendering")
+	@Description("Writing the XML report; Entries = number of duplicate resources")
+	static class ReportEvent extends ScanEvent {
+	}
+
+}
@@ -0,0 +1,367 @@
+package com.javacook.classpathchecker;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.javacook.util.LatencyHistogram;
+
+/**
+ * Kennzahlen eines Laufs von <code>ClassPathChecker.run()</code>: Zaehler (Artefakte, Archive,
+ * Dateien, Eintraege, gelesene Bytes), Laufzeit-Histogramme fuer <code>collect</code> (je Artefakt
+ * beim sequentiellen Scan) und <code>unpackArchiveAndCollect</code> (je Archiv), die langsamsten
+ * Artefakte sowie die Groesse des Index.
+ * <p>
+ * Das Erfassen besteht nur aus atomaren Additionen (die Liste der langsamsten Artefakte wird
+ * erst gesperrt, wenn ein Artefakt langsamer als das bisher langsamste N-te ist) und kann daher
+ * immer eingeschaltet bleiben. Ausgelesen wird ueber <code>snapshot()</code> oder per JMX.
+ * <p>
+ * Die Klasse ist thread-sicher.
+ */
+public class ScanMetrics implements ScanMetricsMBean {
+
+	public final static String OBJECT_NAME = "com.javacook.classpathchecker:type=ScanMetrics";
+
+	private final AtomicLong artifactsScanned 	= new AtomicLong();
+	private final AtomicLong archivesScanned 	= new AtomicLong();
+	private final AtomicLong filesScanned 		= new AtomicLong();
+	private final AtomicLong entriesScanned 	= new AtomicLong();
+	private final AtomicLong bytesRead 			= new AtomicLong();
+
+	private final LatencyHistogram collectTimes = new LatencyHistogram();
+	private final LatencyHistogram archiveTimes = new LatencyHistogram();
+
+	private volatile long scanStart;
+	private volatile long scanNanos;
+	private volatile long reportNanos;
+
+	private volatile int resourceCount;
+	private volatile int duplicateCount;
+	private volatile int artifactCount;
+
+	/**
+	 * Die langsamsten Artefakte (Min-Heap, das schnellste vorne)
+	 */
+	private final PriorityQueue<Timing> slowest;
+	private final int slowestCount;
+	private volatile long slowestThreshold = -1;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Konstruktor
+	 * @param slowestCount Anzahl der langsamsten Artefakte, die festgehalten werden
+	 */
+	public ScanMetrics(int slowestCount) {
+		if (slowestCount < 0) throw new IllegalArgumentException("Argument 'slowestCount' is negative.");
+		this.slowestCount = slowestCount;
+		this.slowest = new PriorityQueue<Timing>(Math.max(slowestCount, 1) + 1);
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * recording                                                             *
+	\*-----------------------------------------------------------------------*/
+
+	void scanStarted() {
+		scanStart = System.nanoTime();
+	}
+
+
+	void scanFinished(int resourceCount, int duplicateCount, int artifactCount) {
+		this.scanNanos 		= System.nanoTime() - scanStart;
+		this.resourceCount 	= resourceCount;
+		this.duplicateCount = duplicateCount;
+		this.artifactCount 	= artifactCount;
+	}
+
+
+	void artifactScanned() {
+		artifactsScanned.incrementAndGet();
+	}
+
+
+	/**
+	 * Ein Aufruf von <code>collect</code> fuer das Artefakt <code>basePath</code> ist fertig.
+	 */
+	void collectFinished(String basePath, long nanos) {
+		collectTimes.record(nanos);
+		recordSlowest(basePath, nanos);
+	}
+
+
+	/**
+	 * Eine Datei in einem Verzeichnis wurde als Resource erfasst.
+	 */
+	void fileScanned() {
+		filesScanned.incrementAndGet();
+		entriesScanned.incrementAndGet();
+	}
+
+
+	/**
+	 * Ein Aufruf von <code>unpackArchiveAndCollect</code> ist fertig.
+	 * @param bytes tatsaechlich gelesene Bytes (0, falls das Inhaltsverzeichnis aus dem Cache kam)
+	 */
+	void archiveFinished(String archivePath, long nanos, int entries, long bytes) {
+		archivesScanned.incrementAndGet();
+		entriesScanned.addAndGet(entries);
+		bytesRead.addAndGet(bytes);
+		archiveTimes.record(nanos);
+		recordSlowest(archivePath, nanos);
+	}
+
+
+	void reportRendered(long nanos) {
+		reportNanos = nanos;
+	}
+
+
+	private void recordSlowest(String path, long nanos) {
+		if (slowestCount == 0 || nanos <= slowestThreshold) return;
+		synchronized (slowest) {
+			slowest.add(new Timing(path, nanos));
+			if (slowest.size() > slowestCount) {
+				slowest.poll();
+			}
+			if (slowest.size() == slowestCount) {
+				slowestThreshold = slowest.peek().nanos;
+			}
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liefert eine Momentaufnahme aller Kennzahlen.
+	 */
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+
+	/**
+	 * Registriert <code>metrics</code> beim Platform-MBeanServer unter <code>OBJECT_NAME</code>.
+	 * Eine dort bereits registrierte Instanz (eines frueheren Laufs) wird ersetzt.
+	 */
+	public static void register(ScanMetrics metrics) throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		synchronized (ScanMetrics.class) {
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(metrics, name);
+		}
+	}
+
+
+	public long getArtifactsScanned() {
+		return artifactsScanned.get();
+	}
+
+	public long getArchivesScanned() {
+		return archivesScanned.get();
+	}
+
+	public long getFilesScanned() {
+		return filesScanned.get();
+	}
+
+	public long getEntriesScanned() {
+		return entriesScanned.get();
+	}
+
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	/**
+	 * Eintraege pro Sekunde ueber den ganzen Scan (waehrend des Scans bis jetzt)
+	 */
+	public long getEntriesPerSecond() {
+		long nanos = scanNanos;
+		if (nanos == 0 && scanStart != 0) nanos = System.nanoTime() - scanStart;
+		return (nanos <= 0)? 0 : entriesScanned.get() * TimeUnit.SECONDS.toNanos(1) / nanos;
+	}
+
+	public long getScanMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(scanNanos);
+	}
+
+	public long getReportMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(reportNanos);
+	}
+
+	public long getCollectCount() {
+		return collectTimes.getCount();
+	}
+
+	public long getCollectMeanMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(collectTimes.getMeanNanos());
+	}
+
+	public long getCollectP99Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(collectTimes.getPercentileNanos(0.99));
+	}
+
+	public long getCollectMaxMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(collectTimes.getMaxNanos());
+	}
+
+	public long getArchiveCount() {
+		return archiveTimes.getCount();
+	}
+
+	public long getArchiveMeanMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(archiveTimes.getMeanNanos());
+	}
+
+	public long getArchiveP99Micros() {
+		return TimeUnit.NANOSECONDS.toMicros(archiveTimes.getPercentileNanos(0.99));
+	}
+
+	public long getArchiveMaxMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(archiveTimes.getMaxNanos());
+	}
+
+	/**
+	 * Die langsamsten Artefakte, das langsamste zuerst, als <tt>"path (n ms)"</tt>
+	 */
+	public String[] getSlowestArtifacts() {
+		List<Timing> timings = slowestTimings();
+		String[] result = new String[timings.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = timings.get(i).toString();
+		}
+		return result;
+	}
+
+	public int getResourceCount() {
+		return resourceCount;
+	}
+
+	public int getDuplicateCount() {
+		return duplicateCount;
+	}
+
+	public int getArtifactCount() {
+		return artifactCount;
+	}
+
+
+	private List<Timing> slowestTimings() {
+		List<Timing> result;
+		synchronized (slowest) {
+			result = new ArrayList<Timing>(slowest);
+		}
+		Collections.sort(result, Collections.reverseOrder());
+		return result;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Laufzeit eines Artefakts
+	 */
+	private static class Timing implements Comparable<Timing> {
+		private final String path;
+		private final long nanos;
+
+		Timing(String path, long nanos) {
+			this.path = path;
+			this.nanos = nanos;
+		}
+
+		public int compareTo(Timing other) {
+			return (nanos < other.nanos)? -1 : (nanos == other.nanos)? 0 : 1;
+		}
+
+		@Override
+		public String toString() {
+			return path + " (" + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms)";
+		}
+	}
+
+
+	/**
+	 * Momentaufnahme der Kennzahlen. <code>asMap()</code> liefert sie unter den Namen, unter denen
+	 * sie auch im Report erscheinen.
+	 */
+	public static class Snapshot {
+		private final Map<String, Object> values = new LinkedHashMap<String, Object>();
+		private final List<String> slowestArtifacts;
+
+		private Snapshot(ScanMetrics metrics) {
+			values.put("artifactsScanned", 	metrics.getArtifactsScanned());
+			values.put("archivesScanned", 	metrics.getArchivesScanned());
+			values.put("filesScanned", 		metrics.getFilesScanned());
+			values.put("entriesScanned", 	metrics.getEntriesScanned());
+			values.put("bytesRead", 		metrics.getBytesRead());
+			values.put("entriesPerSecond", 	metrics.getEntriesPerSecond());
+			values.put("scanMillis", 		metrics.getScanMillis());
+			values.put("reportMillis", 		metrics.getReportMillis());
+			values.put("collectCount", 		metrics.getCollectCount());
+			values.put("collectMeanMicros", metrics.getCollectMeanMicros());
+			values.put("collectP99Micros", 	metrics.getCollectP99Micros());
+			values.put("collectMaxMicros", 	metrics.getCollectMaxMicros());
+			values.put("archiveCount", 		metrics.getArchiveCount());
+			values.put("archiveMeanMicros", metrics.getArchiveMeanMicros());
+			values.put("archiveP99Micros", 	metrics.getArchiveP99Micros());
+			values.put("archiveMaxMicros", 	metrics.getArchiveMaxMicros());
+			values.put("resourceCount", 	metrics.getResourceCount());
+			values.put("duplicateCount", 	metrics.getDuplicateCount());
+			values.put("artifactCount", 	metrics.getArtifactCount());
+			List<String> slowest = new ArrayList<String>();
+			Collections.addAll(slowest, metrics.getSlowestArtifacts());
+			slowestArtifacts = Collections.unmodifiableList(slowest);
+		}
+
+		public Map<String, Object> asMap() {
+			return Collections.unmodifiableMap(values);
+		}
+
+		public long get(String name) {
+			Object value = values.get(name);
+			if (value == null) throw new IllegalArgumentException("Unknown metric '" + name + "'.");
+			return ((Number)value).longValue();
+		}
+
+		/**
+		 * Die langsamsten Artefakte, das langsamste zuerst
+		 */
+		public List<String> getSlowestArtifacts() {
+			return slowestArtifacts;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			for (Map.Entry<String, Object> entry : values.entrySet()) {
+				if (sb.length() > 0) sb.append(", ");
+				sb.append(entry.getKey()).append('=').append(entry.getValue());
+			}
+			return sb.append(", slowestArtifacts=").append(slowestArtifacts).toString();
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.javacook.classpathchecker;
+
+/**
+ * JMX-Schnittstelle von <code>ScanMetrics</code> (registriert unter <code>ScanMetrics.OBJECT_NAME</code>).
+ * Zeiten in Millisekunden bzw. Mikrosekunden, Groessen in Bytes.
+ */
+public interface ScanMetricsMBean {
+
+	long getArtifactsScanned();
+
+	long getArchivesScanned();
+
+	long getFilesScanned();
+
+	long getEntriesScanned();
+
+	long getBytesRead();
+
+	long getEntriesPerSecond();
+
+	long getScanMillis();
+
+	long getReportMillis();
+
+	long getCollectCount();
+
+	long getCollectMeanMicros();
+
+	long getCollectP99Micros();
+
+	long getCollectMaxMicros();
+
+	long getArchiveCount();
+
+	long getArchiveMeanMicros();
+
+	long getArchiveP99Micros();
+
+	long getArchiveMaxMicros();
+
+	String[] getSlowestArtifacts();
+
+	int getResourceCount();
+
+	int getDuplicateCount();
+
+	int getArtifactCount();
+
+}
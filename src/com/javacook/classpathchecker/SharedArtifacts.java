@@ -0,0 +1,254 @@
+package com.javacook.classpathchecker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.javacook.util.ArtifactTable;
+import com.javacook.util.ResourceClassifier;
+import com.javacook.util.ResourceIndex;
+
+/**
+ * Gemeinsamer Index der Archive mehrerer Anwendungen in einer JVM (z.B. aller Webapps eines
+ * Tomcat, die sich <tt>common/lib</tt> und die JDK-Jars teilen). Jedes Archiv wird nur einmal
+ * gelesen und in einen gemeinsamen <code>ResourceIndex</code> eingetragen, Schluessel ist der
+ * kanonische Pfad zusammen mit Groesse und Aenderungszeitpunkt. Jede Anwendung haelt nur noch
+ * die Reihenfolge ihrer Artefakte und einen kleinen Index ihrer Verzeichnisse (siehe
+ * <code>ApplicationView</code>); ihre Konflikte werden aus den mehrfachen Vorkommen des
+ * gemeinsamen Index berechnet. Zeit und Speicher wachsen so mit der Anzahl der verschiedenen
+ * Archive, nicht mit Anwendungen mal Archive.
+ * <p>
+ * Eingeschaltet wird der Modus mit <tt>sharedArtifacts = true</tt>; alle Checker verwenden dann
+ * <code>getInstance()</code>. Damit sich die Anwendungen diese Instanz wirklich teilen, muss
+ * <tt>cpchecker.jar</tt> von einem gemeinsamen Class-Loader geladen werden (z.B. aus <tt>common/lib</tt>).
+ * Hat sich ein Archiv seit dem Einlesen geaendert, wird es beim naechsten Zugriff neu eingelesen,
+ * ebenso wenn es mit einer anderen Tiefe der verschachtelten Archive oder einem anderen
+ * Scan-Profil verlangt wird.
+ * <p>
+ * Die Klasse ist thread-sicher; ein Archiv, das gerade gelesen wird, wird von anderen Threads
+ * nicht noch einmal gelesen, sondern abgewartet. Zugriffe auf Index und Artefakt-Tabelle
+ * synchronisieren auf dieser Instanz.
+ */
+public class SharedArtifacts {
+
+	private final static SharedArtifacts INSTANCE = new SharedArtifacts();
+
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final ArtifactTable artifactTable = new ArtifactTable();
+	private final ResourceIndex index = new ResourceIndex(1 << 16);
+	private final AtomicInteger listingsRead = new AtomicInteger();
+	private final AtomicInteger listingsShared = new AtomicInteger();
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Die gemeinsame Instanz der JVM (bzw. des Class-Loaders)
+	 */
+	public static SharedArtifacts getInstance() {
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Traegt das Archiv <code>archive</code> ein, falls es noch nicht (oder in einem anderen
+	 * Stand) eingetragen ist.
+	 * @param provider liefert das Inhaltsverzeichnis, falls das Archiv gelesen werden muss
+	 * @return die Pfade des Archivs und der darin verschachtelten Archive, wie sie auch im
+	 * Report erscheinen (das Archiv selbst zuerst)
+	 */
+	public String[] register(File archive, int nestedDepth, ListingProvider provider) throws IOException {
+		return register(archive, nestedDepth, ResourceClassifier.ALL.toString(), provider);
+	}
+
+
+	/**
+	 * Wie oben, fuer Listings, die nur die Eintraege eines Scan-Profils enthalten. Die
+	 * Anwendungen sollten dieselbe Tiefe und dasselbe Profil verwenden: Ein Archiv ist nur in
+	 * einer Variante eingetragen, eine andere ersetzt sie wie ein geaendertes Archiv.
+	 * @param profile Beschreibung des Profils (<code>ResourceClassifier.toString()</code>)
+	 */
+	public String[] register(File archive, int nestedDepth, String profile, ListingProvider provider) throws IOException {
+		if (archive == null) throw new IllegalArgumentException("Argument 'archive' is null.");
+		if (provider == null) throw new IllegalArgumentException("Argument 'provider' is null.");
+		final String path = archive.getCanonicalPath();
+		String variant = nestedDepth + "|" + profile;
+		long length = archive.length();
+		long lastModified = archive.lastModified();
+
+		while (true) {
+			Entry entry = entries.get(path);
+			if (entry != null && entry.length == length && entry.lastModified == lastModified && entry.variant.equals(variant)) {
+				listingsShared.incrementAndGet();
+				return entry.await();
+			}
+			Entry fresh = new Entry(length, lastModified, variant, path, archive, provider);
+			boolean inserted = (entry == null)? entries.putIfAbsent(path, fresh) == null : entries.replace(path, entry, fresh);
+			if (!inserted) continue; // ein anderer Thread war schneller
+
+			if (entry != null) {
+				retire(entry);
+			}
+			fresh.task.run();
+			try {
+				return fresh.await();
+			}
+			catch (IOException e) {
+				entries.remove(path, fresh);
+				throw e;
+			}
+		}
+	}
+
+
+	/**
+	 * Anzahl der tatsaechlich gelesenen Archive
+	 */
+	public int getListingsRead() {
+		return listingsRead.get();
+	}
+
+	/**
+	 * Anzahl der Zugriffe, die ein bereits eingetragenes Archiv verwendet haben
+	 */
+	public int getListingsShared() {
+		return listingsShared.get();
+	}
+
+	public synchronized int getArtifactCount() {
+		return artifactTable.size();
+	}
+
+	public synchronized int getResourceCount() {
+		return index.size();
+	}
+
+
+	/**
+	 * Vergisst alle Archive.
+	 */
+	public void clear() {
+		for (String key : entries.keySet()) {
+			Entry entry = entries.remove(key);
+			if (entry != null) retire(entry);
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * package methods (nur unter synchronized (this) verwenden)            *
+	\*-----------------------------------------------------------------------*/
+
+	ResourceIndex getIndex() {
+		return index;
+	}
+
+	ArtifactTable getArtifactTable() {
+		return artifactTable;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liest das Archiv ausserhalb der Sperre und traegt es dann in den Index ein.
+	 */
+	private String[] load(String path, File archive, ListingProvider provider) throws IOException {
+		ArchiveListing listing = provider.list(archive);
+		listingsRead.incrementAndGet();
+		List<String> paths = new ArrayList<String>();
+		synchronized (this) {
+			add(path, listing, paths);
+		}
+		return paths.toArray(new String[paths.size()]);
+	}
+
+
+	/**
+	 * Wie <code>ClassPathChecker.collectListing</code>: erst die Resourcen des Archivs, dann
+	 * rekursiv die verschachtelten Archive.
+	 */
+	private void add(String path, ArchiveListing listing, List<String> paths) {
+		int id = artifactTable.register(path);
+		paths.add(path);
+		for (int i = 0; i < listing.size(); i++) {
+			index.put(listing.getName(i), id, ResourceIndex.digest(listing.getCrc(i), listing.getSize(i)));
+		}
+		for (int n = 0; n < listing.getNestedCount(); n++) {
+			add(path + ClassPathChecker.NESTED_SEPARATOR + listing.getNestedName(n), listing.getNested(n), paths);
+		}
+	}
+
+
+	/**
+	 * Entfernt die Vorkommen eines veralteten Eintrags aus dem Index. Die IDs bleiben vergeben
+	 * und werden beim erneuten Einlesen wiederverwendet. Ein noch laufendes Einlesen wird
+	 * ausserhalb der Sperre abgewartet, da es sie selbst braucht.
+	 */
+	private void retire(Entry entry) {
+		String[] paths;
+		try {
+			paths = entry.await();
+		}
+		catch (IOException e) {
+			return; // wurde nie eingetragen
+		}
+		synchronized (this) {
+			for (String path : paths) {
+				int id = artifactTable.getId(path);
+				if (id >= 0) index.removeAll(id, null, null);
+			}
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	private class Entry {
+		final long length;
+		final long lastModified;
+		final String variant;
+		final FutureTask<String[]> task;
+
+		Entry(long length, long lastModified, String variant, final String path, final File archive, final ListingProvider provider) {
+			this.length = length;
+			this.lastModified = lastModified;
+			this.variant = variant;
+			this.task = new FutureTask<String[]>(new Callable<String[]>() {
+				public String[] call() throws IOException {
+					return load(path, archive, provider);
+				}
+			});
+		}
+
+		String[] await() throws IOException {
+			try {
+				return task.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for the listing.", e);
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) throw (IOException)cause;
+				if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+				if (cause instanceof Error) throw (Error)cause;
+				throw new IOException(cause);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,405 @@
+package com.javacook.classpathchecker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.javacook.util.StringUtils;
+
+/**
+ * Vergleicht zwei Schnappschuesse (<code>IndexSnapshot</code>) eines Klassenpfads, z.B. vor und
+ * nach einem Deployment, und liefert die Aenderungen:
+ * <ul>
+ * <li><code>NEW_DUPLICATE</code>: Die Resource kommt jetzt mehrfach vor, vorher hoechstens einmal.</li>
+ * <li><code>RESOLVED_DUPLICATE</code>: Die Resource kam mehrfach vor, jetzt hoechstens einmal.</li>
+ * <li><code>WINNER_CHANGED</code>: Die Resource gibt es vorher und nachher, aber das erste Vorkommen
+ *     im Klassenpfad (das, aus dem sie geladen wird) stammt aus einem anderen Artefakt.</li>
+ * </ul>
+ * Beide Schnappschuesse sind nach Namen sortiert, daher genuegt ein einziger Durchlauf, der die
+ * beiden Cursor wie beim Merge-Sort im Gleichschritt weiterschaltet. Im Speicher liegen nur die
+ * beiden aktuellen Eintraege; die Aenderungen gehen sofort an einen <code>Handler</code> (bzw.
+ * werden direkt als XML oder JSON geschrieben), sodass der Speicherbedarf hoechstens mit der
+ * Anzahl der Aenderungen waechst, nicht mit der Groesse des Klassenpfads.
+ * <p>
+ * Wie im Report werden nur Resourcen mit einer der <code>outputExtensions</code> beruecksichtigt.
+ * Verglichen werden die Pfade der Artefakte, nicht deren IDs.
+ */
+public class SnapshotDiff {
+
+	public enum Kind {
+		NEW_DUPLICATE("newDuplicate", "newDuplicates"),
+		RESOLVED_DUPLICATE("resolvedDuplicate", "resolvedDuplicates"),
+		WINNER_CHANGED("winnerChanged", "winnerChanges");
+
+		private final String label;
+		private final String summaryLabel;
+
+		private Kind(String label, String summaryLabel) {
+			this.label = label;
+			this.summaryLabel = summaryLabel;
+		}
+
+		/**
+		 * Bezeichnung in XML und JSON
+		 */
+		public String getLabel() {
+			return label;
+		}
+	}
+
+
+	/**
+	 * Nimmt die Aenderungen in der Reihenfolge der Resource-Namen entgegen.
+	 */
+	public interface Handler {
+		void change(Change change) throws IOException;
+	}
+
+
+	private final static String CRLF = System.getProperty("line.separator");
+
+	private final IndexSnapshot before;
+	private final IndexSnapshot after;
+	private final Collection<String> outputExtensions;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Konstruktor
+	 * @param outputExtensions Endungen der zu vergleichenden Resourcen (null = alle)
+	 */
+	public SnapshotDiff(IndexSnapshot before, IndexSnapshot after, Collection<String> outputExtensions) {
+		if (before == null) throw new IllegalArgumentException("Argument 'before' is null.");
+		if (after == null) throw new IllegalArgumentException("Argument 'after' is null.");
+		this.before = before;
+		this.after = after;
+		this.outputExtensions = outputExtensions;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Vergleicht die Schnappschuesse in einem Durchlauf und gibt jede Aenderung an <code>handler</code>.
+	 * @return Anzahl der Aenderungen
+	 */
+	public int diff(Handler handler) throws IOException {
+		if (handler == null) throw new IllegalArgumentException("Argument 'handler' is null.");
+		IndexSnapshot.Cursor b = before.cursor();
+		IndexSnapshot.Cursor a = after.cursor();
+		boolean hasBefore = b.next();
+		boolean hasAfter = a.next();
+		int changes = 0;
+		while (hasBefore || hasAfter) {
+			int cmp = (!hasBefore)? 1 : (!hasAfter)? -1 : b.compareName(a);
+			IndexSnapshot.Cursor current = (cmp <= 0)? b : a;
+			int countBefore = (cmp <= 0)? b.count() : 0;
+			int countAfter  = (cmp >= 0)? a.count() : 0;
+
+			Kind kind = null;
+			if (countBefore < 2 && countAfter >= 2) {
+				kind = Kind.NEW_DUPLICATE;
+			}
+			else if (countBefore >= 2 && countAfter < 2) {
+				kind = Kind.RESOLVED_DUPLICATE;
+			}
+			else if (countBefore > 0 && countAfter > 0
+					&& !before.getArtifactPath(b.occurrence(0)).equals(after.getArtifactPath(a.occurrence(0)))) {
+				kind = Kind.WINNER_CHANGED;
+			}
+			if (kind != null) {
+				String resource = current.name();
+				if (hasOutputExtension(resource)) {
+					handler.change(new Change(kind, resource,
+							(countBefore > 0)? pathsOf(b) : Collections.<String>emptyList(),
+							(countAfter > 0)? pathsOf(a) : Collections.<String>emptyList()));
+					changes++;
+				}
+			}
+
+			if (cmp <= 0) hasBefore = b.next();
+			if (cmp >= 0) hasAfter = a.next();
+		}
+		return changes;
+	}
+
+
+	/**
+	 * Liefert alle Aenderungen als Liste.
+	 */
+	public List<Change> changes() throws IOException {
+		final List<Change> result = new ArrayList<Change>();
+		diff(new Handler() {
+			public void change(Change change) {
+				result.add(change);
+			}
+		});
+		return result;
+	}
+
+
+	/**
+	 * Erzeugt die Aenderungen als XML; sie werden erst beim Schreiben ermittelt:
+	 * <pre>
+	 * &lt;diff before="..." after="..."&gt;
+	 * 	&lt;resource path="..." change="newDuplicate"&gt;
+	 * 		&lt;before&gt;artefakt&lt;/before&gt; ... &lt;after&gt;artefakt&lt;/after&gt; ...
+	 * 	&lt;/resource&gt; ...
+	 * 	&lt;summary newDuplicates="1" resolvedDuplicates="0" winnerChanges="0"/&gt;
+	 * &lt;/diff&gt;
+	 * </pre>
+	 */
+	public XMLReport xmlReport() {
+		return new XMLReport(new XMLReport.Source() {
+			public void writeTo(Writer writer) throws IOException {
+				writeXml(writer);
+			}
+		});
+	}
+
+
+	public void writeXml(final Writer out) throws IOException {
+		out.write("<diff before=\"");
+		XMLReportWriter.writeEscaped(out, before.getFile().getPath());
+		out.write("\" after=\"");
+		XMLReportWriter.writeEscaped(out, after.getFile().getPath());
+		out.write("\">");
+		out.write(CRLF);
+
+		final int[] counts = new int[Kind.values().length];
+		diff(new Handler() {
+			public void change(Change change) throws IOException {
+				counts[change.getKind().ordinal()]++;
+				out.write("\t<resource path=\"");
+				XMLReportWriter.writeEscaped(out, change.getResource());
+				out.write("\" change=\"");
+				out.write(change.getKind().getLabel());
+				out.write("\">");
+				out.write(CRLF);
+				writeXmlPaths(out, "before", change.getBefore());
+				writeXmlPaths(out, "after", change.getAfter());
+				out.write("\t</resource>");
+				out.write(CRLF);
+			}
+		});
+
+		out.write("\t<summary");
+		for (Kind kind : Kind.values()) {
+			out.write(" ");
+			out.write(kind.summaryLabel);
+			out.write("=\"");
+			out.write(String.valueOf(counts[kind.ordinal()]));
+			out.write("\"");
+		}
+		out.write("/>");
+		out.write(CRLF);
+		out.write("</diff>");
+		out.write(CRLF);
+		out.flush();
+	}
+
+
+	/**
+	 * Schreibt die Aenderungen als JSON:
+	 * <pre>
+	 * {"before": "...", "after": "...",
+	 *  "changes": [{"resource": "...", "change": "newDuplicate", "before": ["..."], "after": ["...", "..."]}, ...],
+	 *  "summary": {"newDuplicates": 1, "resolvedDuplicates": 0, "winnerChanges": 0}}
+	 * </pre>
+	 */
+	public void writeJson(final Writer out) throws IOException {
+		out.write("{\"before\": ");
+		writeJsonString(out, before.getFile().getPath());
+		out.write(", \"after\": ");
+		writeJsonString(out, after.getFile().getPath());
+		out.write(",");
+		out.write(CRLF);
+		out.write(" \"changes\": [");
+
+		final int[] counts = new int[Kind.values().length];
+		final boolean[] first = {true};
+		diff(new Handler() {
+			public void change(Change change) throws IOException {
+				counts[change.getKind().ordinal()]++;
+				out.write(first[0]? "" : ",");
+				out.write(CRLF);
+				first[0] = false;
+				out.write("  {\"resource\": ");
+				writeJsonString(out, change.getResource());
+				out.write(", \"change\": \"");
+				out.write(change.getKind().getLabel());
+				out.write("\", \"before\": ");
+				writeJsonPaths(out, change.getBefore());
+				out.write(", \"after\": ");
+				writeJsonPaths(out, change.getAfter());
+				out.write("}");
+			}
+		});
+		if (!first[0]) {
+			out.write(CRLF);
+			out.write(" ");
+		}
+		out.write("],");
+		out.write(CRLF);
+
+		out.write(" \"summary\": {");
+		for (Kind kind : Kind.values()) {
+			if (kind.ordinal() > 0) out.write(", ");
+			out.write("\"");
+			out.write(kind.summaryLabel);
+			out.write("\": ");
+			out.write(String.valueOf(counts[kind.ordinal()]));
+		}
+		out.write("}}");
+		out.write(CRLF);
+		out.flush();
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	private boolean hasOutputExtension(String resource) {
+		if (outputExtensions == null) return true;
+		String extension = StringUtils.suffixOf(resource, '.');
+		return extension != null && outputExtensions.contains(extension);
+	}
+
+
+	private static List<String> pathsOf(IndexSnapshot.Cursor cursor) {
+		List<String> result = new ArrayList<String>(cursor.count());
+		for (int i = 0; i < cursor.count(); i++) {
+			result.add(cursor.getSnapshot().getArtifactPath(cursor.occurrence(i)));
+		}
+		return result;
+	}
+
+
+	private static void writeXmlPaths(Writer out, String element, List<String> paths) throws IOException {
+		for (String path : paths) {
+			out.write("\t\t<");
+			out.write(element);
+			out.write(">");
+			XMLReportWriter.writeEscaped(out, path);
+			out.write("</");
+			out.write(element);
+			out.write(">");
+			out.write(CRLF);
+		}
+	}
+
+
+	private static void writeJsonPaths(Writer out, List<String> paths) throws IOException {
+		out.write("[");
+		for (int i = 0; i < paths.size(); i++) {
+			if (i > 0) out.write(", ");
+			writeJsonString(out, paths.get(i));
+		}
+		out.write("]");
+	}
+
+
+	private static void writeJsonString(Writer out, String text) throws IOException {
+		out.write('"');
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+				case '"':	out.write("\\\""); break;
+				case '\\':	out.write("\\\\"); break;
+				case '\n':	out.write("\\n"); break;
+				case '\r':	out.write("\\r"); break;
+				case '\t':	out.write("\\t"); break;
+				default:
+					if (c < 0x20) {
+						out.write(String.format("\\u%04x", (int)c));
+					}
+					else {
+						out.write(c);
+					}
+			}
+		}
+		out.write('"');
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Eine Aenderung: die Resource mit ihren Vorkommen (Artefakt-Pfade in der Reihenfolge des
+	 * Klassenpfads) vorher und nachher.
+	 */
+	public static class Change {
+		private final Kind kind;
+		private final String resource;
+		private final List<String> before;
+		private final List<String> after;
+
+		public Change(Kind kind, String resource, List<String> before, List<String> after) {
+			this.kind = kind;
+			this.resource = resource;
+			this.before = Collections.unmodifiableList(before);
+			this.after = Collections.unmodifiableList(after);
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		public String getResource() {
+			return resource;
+		}
+
+		public List<String> getBefore() {
+			return before;
+		}
+
+		public List<String> getAfter() {
+			return after;
+		}
+
+		@Override
+		public String toString() {
+			return kind.getLabel() + " " + resource + ": " + before + " -> " + after;
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * main                                                                  *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Aufruf: <tt>SnapshotDiff before.snapshot after.snapshot [xml|json]</tt>. Die Ausgabe geht
+	 * nach <tt>System.out</tt>; verglichen werden die <code>outputExtensions</code> aus den Properties.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Usage: SnapshotDiff <before snapshot> <after snapshot> [xml|json]");
+			System.exit(2);
+		}
+		SnapshotDiff diff = new SnapshotDiff(IndexSnapshot.open(new File(args[0])), IndexSnapshot.open(new File(args[1])),
+				PropertyHolder.getInstance().getOutputExtensions());
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"), 1 << 16);
+		if (args.length == 3 && args[2].equalsIgnoreCase("json")) {
+			diff.writeJson(out);
+		}
+		else {
+			diff.writeXml(out);
+		}
+	}// main
+
+}
@@ -1,21 +1,67 @@
 package com.javacook.classpathchecker;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 
 public class XMLReport {
 
 	public final String DEFAULT_REPORT_NAME = "cpc_report.xml";
 
 	private final static String FILE_SEPARATOR = System.getProperty("file.separator"); // Bei Windows Backslash, ansonsten Slash:
+	private final static String ENCODING = "UTF-8";
+
+	/**
+	 * Erzeugt den Inhalt des Reports erst beim Schreiben, sodass er nie komplett im Speicher liegt.
+	 */
+	public interface Source {
+		void writeTo(Writer writer) throws IOException;
+	}
+
 	private String content;
+	private Source source;
 
 	public XMLReport(String content) {
 		this.content = content;
 	}
 
 
+	public XMLReport(Source source) {
+		if (source == null) throw new IllegalArgumentException("Argument 'source' is null.");
+		this.source = source;
+	}
+
+
+	/**
+	 * Schreibt den Report (streamend) nach <code>writer</code>.
+	 */
+	public XMLReport writeTo(Writer writer) throws IOException {
+		if (writer == null) throw new IllegalArgumentException("Argument 'writer' is null.");
+		if (source != null) {
+			source.writeTo(writer);
+		}
+		else if (content != null) {
+			writer.write(content);
+		}
+		writer.flush();
+		return this;
+	}
+
+
+	/**
+	 * Schreibt den Report (streamend, UTF-8) nach <code>outputStream</code>.
+	 */
+	public XMLReport writeTo(OutputStream outputStream) throws IOException {
+		if (outputStream == null) throw new IllegalArgumentException("Argument 'outputStream' is null.");
+		return writeTo(new BufferedWriter(new OutputStreamWriter(outputStream, ENCODING), 1 << 16));
+	}
+
+
 	public XMLReport save(String fileName, boolean override) throws IOException {
 		if (fileName == null) throw new IllegalArgumentException("Argument 'fileName' ist null,");
 
@@ -27,15 +73,15 @@ public class XMLReport {
 			throw new IOException("The file '" + file + "' already exists.");
 		}
 
-		FileWriter fileWriter = null;
+		OutputStream outputStream = null;
 		try {
-			fileWriter = new FileWriter(file);
-			fileWriter.write(content);
+			outputStream = new FileOutputStream(file);
+			writeTo(outputStream);
 		} catch (IOException e) {
 			throw e;
 		} finally {
-			if (fileWriter != null) {
-				fileWriter.close();
+			if (outputStream != null) {
+				outputStream.close();
 			}
 		}
 		return this;
@@ -47,8 +93,22 @@ public class XMLReport {
 	}
 
 
+	/**
+	 * Achtung: Hier wird der komplette Report im Speicher erzeugt. Fuer grosse Reports besser
+	 * <code>save</code> oder <code>writeTo</code> verwenden.
+	 */
 	@Override
 	public String toString() {
+		if (source != null) {
+			StringWriter writer = new StringWriter();
+			try {
+				source.writeTo(writer);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Could not render report.", e);
+			}
+			return writer.toString();
+		}
 		return (content == null)? "null" : content;
 	}
 
@@ -0,0 +1,211 @@
+package com.javacook.classpathchecker;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import com.javacook.util.ResourceIndex;
+
+/**
+ * Schreibt den Report Element fuer Element direkt in einen <code>Writer</code>, d.h. der Report
+ * wird nie als Ganzes im Speicher gehalten. Texte und Attribute werden XML-konform maskiert.
+ * Das Format entspricht dem bisherigen Report:
+ * <pre>
+ * &lt;report&gt;
+ * 	&lt;artifacts&gt; &lt;path accessable="true"&gt;...&lt;/path&gt; ... &lt;/artifacts&gt;
+ * 	&lt;archives&gt; &lt;path&gt;...&lt;/path&gt; ... &lt;/archives&gt;
+ * 	&lt;problems&gt; &lt;resource path="..."&gt; &lt;occurence crc="..."&gt;...&lt;/occurence&gt; ... &lt;/resource&gt; ... &lt;/problems&gt;
+ * 	&lt;identicalDuplicates&gt; &lt;resource path="..."&gt; ... &lt;/resource&gt; ... &lt;/identicalDuplicates&gt;
+ * &lt;/report&gt;
+ *
+ * &lt;logs&gt; &lt;entry&gt;...&lt;/entry&gt; ... &lt;/logs&gt;
+ * </pre>
+ * Im Report des Agenten (<code>ClassPathAgent</code>) steht in jeder <tt>resource</tt> vor den
+ * Vorkommen noch, woher die Klasse geladen wurde: <tt>&lt;loadedFrom&gt;...&lt;/loadedFrom&gt;</tt>.
+ */
+public class XMLReportWriter {
+
+	private final static String CRLF = System.getProperty("line.separator");
+
+	private final Writer out;
+
+
+	public XMLReportWriter(Writer out) {
+		if (out == null) throw new IllegalArgumentException("Argument 'out' is null.");
+		this.out = out;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	public void startReport() throws IOException {
+		out.write("<report>");
+		out.write(CRLF);
+	}
+
+	public void endReport() throws IOException {
+		out.write("</report>");
+		out.write(CRLF);
+		out.write(CRLF);
+	}
+
+
+	/**
+	 * Oeffnet einen Abschnitt des Reports wie <tt>artifacts</tt>, <tt>archives</tt> oder <tt>problems</tt>.
+	 */
+	public void startSection(String name) throws IOException {
+		out.write("\t<");
+		out.write(name);
+		out.write(">");
+		out.write(CRLF);
+	}
+
+	public void endSection(String name) throws IOException {
+		out.write("\t</");
+		out.write(name);
+		out.write(">");
+		out.write(CRLF);
+	}
+
+
+	public void artifact(String path, boolean accessable) throws IOException {
+		out.write("\t\t<path accessable=\"");
+		out.write(String.valueOf(accessable));
+		out.write("\">");
+		writeEscaped(path);
+		out.write("</path>");
+		out.write(CRLF);
+	}
+
+
+	public void archive(String path) throws IOException {
+		out.write("\t\t<path>");
+		writeEscaped(path);
+		out.write("</path>");
+		out.write(CRLF);
+	}
+
+
+	public void startResource(String path) throws IOException {
+		out.write("\t\t<resource path=\"");
+		writeEscaped(path);
+		out.write("\">");
+		out.write(CRLF);
+	}
+
+	public void occurence(String path) throws IOException {
+		occurence(path, ResourceIndex.NO_DIGEST);
+	}
+
+	/**
+	 * Schreibt ein Vorkommen; ist der Digest bekannt, wird die CRC-32 als Attribut ausgegeben.
+	 */
+	public void occurence(String path, long digest) throws IOException {
+		if (digest == ResourceIndex.NO_DIGEST) {
+			out.write("\t\t\t<occurence>");
+		}
+		else {
+			out.write("\t\t\t<occurence crc=\"");
+			out.write(String.format("%08x", digest & 0xFFFFFFFFL));
+			out.write("\">");
+		}
+		writeEscaped(path);
+		out.write("</occurence>");
+		out.write(CRLF);
+	}
+
+	/**
+	 * Schreibt das Artefakt, aus dem eine Klasse zur Laufzeit geladen wurde.
+	 */
+	public void loadedFrom(String path) throws IOException {
+		out.write("\t\t\t<loadedFrom>");
+		writeEscaped(path);
+		out.write("</loadedFrom>");
+		out.write(CRLF);
+	}
+
+	/**
+	 * Schreibt eine Kennzahl (Abschnitt <tt>metrics</tt>, siehe <code>ScanMetrics</code>).
+	 */
+	public void metric(String name, String value) throws IOException {
+		out.write("\t\t<metric name=\"");
+		writeEscaped(name);
+		out.write("\">");
+		writeEscaped(value);
+		out.write("</metric>");
+		out.write(CRLF);
+	}
+
+	public void endResource() throws IOException {
+		out.write("\t\t</resource>");
+		out.write(CRLF);
+	}
+
+
+	public void startLogs() throws IOException {
+		out.write("<logs>");
+		out.write(CRLF);
+	}
+
+	public void logEntry(String entry) throws IOException {
+		out.write("\t<entry>");
+		writeEscaped(entry);
+		out.write("</entry>");
+		out.write(CRLF);
+	}
+
+	public void endLogs() throws IOException {
+		out.write("</logs>");
+	}
+
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Schreibt <code>text</code> maskiert (fuer Texte und Attributwerte). Zeichen, die in XML 1.0
+	 * nicht erlaubt sind, werden durch '?' ersetzt.
+	 */
+	private void writeEscaped(String text) throws IOException {
+		writeEscaped(out, text);
+	}
+
+
+	/**
+	 * Schreibt <code>text</code> XML-konform maskiert (auch fuer Attributwerte) nach <code>out</code>.
+	 */
+	static void writeEscaped(Writer out, String text) throws IOException {
+		if (text == null) {
+			out.write("null");
+			return;
+		}
+		int length = text.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			String replacement;
+			switch (c) {
+				case '&':	replacement = "&amp;"; break;
+				case '<':	replacement = "&lt;"; break;
+				case '>':	replacement = "&gt;"; break;
+				case '"':	replacement = "&quot;"; break;
+				default:
+					replacement = (c < 0x20 && c != '\t' && c != '\n' && c != '\r')? "?" : null;
+			}
+			if (replacement != null) {
+				out.write(text, start, i - start);
+				out.write(replacement);
+				start = i + 1;
+			}
+		}
+		out.write(text, start, length - start);
+	}
+
+}
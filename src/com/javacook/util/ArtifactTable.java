@@ -0,0 +1,54 @@
+package com.javacook.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vergibt fuer Artefakt-Pfade (Jars, Verzeichnisse) fortlaufende int-IDs, beginnend bei 0.
+ * So muss nicht an jeder Resource der komplette Pfad gespeichert werden; zurueck in einen
+ * Pfad uebersetzt wird erst bei der Ausgabe.
+ * Die Klasse ist nicht thread-sicher.
+ */
+public class ArtifactTable {
+
+	private final List<String> paths = new ArrayList<String>();
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+
+	/**
+	 * Liefert die ID von <code>path</code>; beim ersten Aufruf wird eine neue ID vergeben.
+	 */
+	public int register(String path) {
+		if (path == null) throw new IllegalArgumentException("Argument 'path' is null.");
+		Integer id = ids.get(path);
+		if (id == null) {
+			id = paths.size();
+			paths.add(path);
+			ids.put(path, id);
+		}
+		return id;
+	}
+
+
+	/**
+	 * Liefert die ID von <code>path</code> oder -1, falls er nicht registriert ist.
+	 */
+	public int getId(String path) {
+		Integer id = ids.get(path);
+		return (id == null)? -1 : id;
+	}
+
+
+	public String getPath(int id) {
+		if (id < 0 || id >= paths.size()) throw new IllegalArgumentException("Unknown artifact id " + id + ".");
+		return paths.get(id);
+	}
+
+
+	public int size() {
+		return paths.size();
+	}
+
+}
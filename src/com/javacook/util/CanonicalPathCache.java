@@ -0,0 +1,156 @@
+package com.javacook.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ermittelt kanonische Pfade, ohne fuer jede Datei <code>File.getCanonicalPath()</code> (und damit
+ * ein <tt>lstat</tt>/<tt>readlink</tt> pro Pfad-Segment) aufzurufen: Kanonisiert wird nur das
+ * Verzeichnis, in dem die Datei liegt, und dieses Ergebnis wird gecacht. Der Pfad der Datei
+ * ergibt sich dann durch Anhaengen ihres Namens; pro Datei bleibt nur ein <tt>lstat</tt>, um
+ * symbolische Links zu erkennen, die wie bei <code>getCanonicalPath()</code> aufgeloest werden.
+ * Ein noch unbekanntes Verzeichnis wird seinerseits aus seinem Vater zusammengesetzt, sofern es
+ * kein symbolischer Link ist.
+ * <p>
+ * Der Cache ist beschraenkt (die am laengsten nicht benutzten Verzeichnisse fallen heraus).
+ * <p>
+ * Die Klasse ist thread-sicher.
+ */
+public class CanonicalPathCache {
+
+	public final static int DEFAULT_MAX_SIZE = 4096;
+
+	private final static char SEPARATOR = '/';
+
+	private final Map<String, String> canonicalDirs;
+
+	private long hits;
+	private long misses;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	public CanonicalPathCache(final int maxSize) {
+		if (maxSize < 1) throw new IllegalArgumentException("Argument 'maxSize' must be positive.");
+		canonicalDirs = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	public CanonicalPathCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liefert den kanonischen Pfad zu <code>path</code>.
+	 * @param path Pfad mit Slashes als Trenner (wie nach <code>FileUtils.normalizePath</code>)
+	 */
+	public String getCanonicalPath(String path) throws IOException {
+		if (!isComposable(path) || Files.isSymbolicLink(Paths.get(path))) {
+			return new File(path).getCanonicalPath();
+		}
+		int lastSeparator = path.lastIndexOf(SEPARATOR);
+		return join(getCanonicalDir(path.substring(0, lastSeparator)), path, lastSeparator + 1);
+	}
+
+
+	public long getHits() {
+		synchronized (canonicalDirs) {
+			return hits;
+		}
+	}
+
+	public long getMisses() {
+		synchronized (canonicalDirs) {
+			return misses;
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liefert den kanonischen Pfad des Verzeichnisses <code>dir</code>. Ist er nicht im Cache,
+	 * geht es aufwaerts bis zu einem bekannten Vorfahren und von dort wieder abwaerts. Dabei
+	 * muessen nur symbolische Links wirklich aufgeloest werden; fuer alle anderen Verzeichnisse
+	 * reicht ein <tt>lstat</tt> und das Anhaengen des Namens (sonst kostet jedes Verzeichnis
+	 * eines tiefen Baums so viele Aufrufe, wie es tief liegt).
+	 */
+	private String getCanonicalDir(String dir) throws IOException {
+		List<String> unknownDirs = new ArrayList<String>();
+		String canonical = null;
+		String current = dir;
+		while (true) {
+			synchronized (canonicalDirs) {
+				canonical = canonicalDirs.get(current);
+				if (canonical != null) hits++;
+			}
+			if (canonical != null) break;
+			unknownDirs.add(current);
+			if (!isComposable(current)) break;
+			current = current.substring(0, current.lastIndexOf(SEPARATOR));
+		}
+
+		for (int i = unknownDirs.size() - 1; i >= 0; i--) {
+			current = unknownDirs.get(i);
+			if (canonical == null || Files.isSymbolicLink(Paths.get(current))) {
+				canonical = new File(current).getCanonicalPath();
+			}
+			else {
+				canonical = join(canonical, current, current.lastIndexOf(SEPARATOR) + 1);
+			}
+			synchronized (canonicalDirs) {
+				canonicalDirs.put(current, canonical);
+				misses++;
+			}
+		}
+		return canonical;
+	}
+
+
+	/**
+	 * Liefert true, falls sich der kanonische Pfad von <code>path</code> aus dem seines
+	 * Verzeichnisses und seinem Namen zusammensetzen laesst.
+	 */
+	private static boolean isComposable(String path) {
+		int lastSeparator = path.lastIndexOf(SEPARATOR);
+		if (lastSeparator <= 0 || lastSeparator == path.length() - 1) return false;
+		// "C:" waere relativ zum aktuellen Verzeichnis des Laufwerks
+		if (path.charAt(lastSeparator - 1) == ':') return false;
+		int nameLength = path.length() - lastSeparator - 1;
+		if (nameLength <= 2 && path.startsWith(".", lastSeparator + 1)
+				&& (nameLength == 1 || path.charAt(lastSeparator + 2) == '.')) {
+			return false; // "." oder ".."
+		}
+		return true;
+	}
+
+
+	private static String join(String canonicalDir, String path, int nameStart) {
+		StringBuilder sb = new StringBuilder(canonicalDir.length() + 1 + path.length() - nameStart);
+		sb.append(canonicalDir);
+		if (!canonicalDir.endsWith(File.separator)) sb.append(File.separator);
+		return sb.append(path, nameStart, path.length()).toString();
+	}
+
+}
@@ -0,0 +1,105 @@
+package com.javacook.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Liste, an die beliebig viele Threads ohne Sperren anhaengen koennen: Ein <code>add</code>
+ * besteht aus einem <code>getAndIncrement</code> und einem Schreiben in ein Array (nur beim ersten
+ * Element eines Blocks kommt ein <code>compareAndSet</code> dazu). Entfernen ist nicht moeglich.
+ * <p>
+ * Die Elemente stehen in Bloecken zu <code>CHUNK_SIZE</code>, die erst bei Bedarf angelegt werden.
+ * Ist die Kapazitaet erschoepft, werden weitere Elemente verworfen und nur gezaehlt.
+ * Ein Leser sieht ein Element erst, wenn es fertig geschrieben ist; bis dahin liefert
+ * <code>get</code> an dieser Stelle null.
+ */
+public class ConcurrentLog<E> {
+
+	public final static int CHUNK_BITS = 12;
+	public final static int CHUNK_SIZE = 1 << CHUNK_BITS;
+	public final static int DEFAULT_MAX_CHUNKS = 4096;
+
+	private final AtomicReferenceArray<AtomicReferenceArray<E>> chunks;
+	private final int capacity;
+	private final AtomicInteger reserved = new AtomicInteger();
+	private final AtomicLong droppedCount = new AtomicLong();
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Konstruktor
+	 * @param maxChunks maximale Anzahl der Bloecke (Kapazitaet = <code>maxChunks * CHUNK_SIZE</code>)
+	 */
+	public ConcurrentLog(int maxChunks) {
+		if (maxChunks < 1 || maxChunks > (Integer.MAX_VALUE >> CHUNK_BITS)) {
+			throw new IllegalArgumentException("Argument 'maxChunks' is out of range: " + maxChunks);
+		}
+		chunks = new AtomicReferenceArray<AtomicReferenceArray<E>>(maxChunks);
+		capacity = maxChunks << CHUNK_BITS;
+	}
+
+
+	public ConcurrentLog() {
+		this(DEFAULT_MAX_CHUNKS);
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Haengt <code>element</code> an.
+	 * @return false, falls die Kapazitaet erschoepft ist (das Element wird verworfen)
+	 */
+	public boolean add(E element) {
+		if (element == null) throw new IllegalArgumentException("Argument 'element' is null.");
+		int index = reserved.getAndIncrement();
+		if (index >= capacity || index < 0) {
+			reserved.set(capacity); // kein Ueberlauf bei sehr vielen weiteren Aufrufen
+			droppedCount.incrementAndGet();
+			return false;
+		}
+		int chunkIndex = index >>> CHUNK_BITS;
+		AtomicReferenceArray<E> chunk = chunks.get(chunkIndex);
+		if (chunk == null) {
+			chunk = new AtomicReferenceArray<E>(CHUNK_SIZE);
+			if (!chunks.compareAndSet(chunkIndex, null, chunk)) {
+				chunk = chunks.get(chunkIndex);
+			}
+		}
+		chunk.lazySet(index & (CHUNK_SIZE - 1), element);
+		return true;
+	}
+
+
+	/**
+	 * Anzahl der angehaengten Elemente (inkl. derer, die gerade noch geschrieben werden)
+	 */
+	public int size() {
+		return Math.min(reserved.get(), capacity);
+	}
+
+
+	/**
+	 * Liefert das Element <code>index</code> bzw. null, falls es gerade noch geschrieben wird.
+	 */
+	public E get(int index) {
+		if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("index = " + index);
+		AtomicReferenceArray<E> chunk = chunks.get(index >>> CHUNK_BITS);
+		return (chunk == null)? null : chunk.get(index & (CHUNK_SIZE - 1));
+	}
+
+
+	/**
+	 * Anzahl der wegen erschoepfter Kapazitaet verworfenen Elemente
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+}
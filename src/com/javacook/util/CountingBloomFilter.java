@@ -0,0 +1,154 @@
+package com.javacook.util;
+
+/**
+ * Zaehlender Bloom-Filter fuer Strings: Statt eines Bits gibt es je Position einen 4-Bit-Zaehler
+ * (16 Zaehler pro <code>long</code>), der bei 15 stehen bleibt. <code>count</code> liefert eine
+ * obere Schranke fuer die Anzahl der Aufrufe von <code>add</code> mit demselben String; zu klein
+ * ist sie nie (solange nichts entfernt wurde, was nicht hinzugefuegt war). So laesst sich mit
+ * festem, kleinem Speicher feststellen, welche Strings <em>vielleicht</em> mehrfach vorkommen.
+ * <p>
+ * Die Positionen werden per Double-Hashing aus einem 64-Bit-Hash (FNV-1a ueber die Zeichen,
+ * danach durchmischt) gebildet; es werden keine Objekte erzeugt.
+ * <p>
+ * Die Klasse ist nicht thread-sicher.
+ */
+public class CountingBloomFilter {
+
+	public final static int MAX_COUNT = 15;
+
+	/** Zaehler pro erwartetem Element; mit 5 Hashes ergibt das ca. 2% falsche Kandidaten */
+	private final static int COUNTERS_PER_ELEMENT = 8;
+	private final static int DEFAULT_HASHES = 5;
+
+	private final long[] counters;
+	private final int counterCount;
+	private final int hashCount;
+	private final int[] positions;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Konstruktor
+	 * @param expectedElements Anzahl der (verschiedenen) Strings, fuer die der Filter ausgelegt ist.
+	 * Werden es mehr, steigt nur die Zahl der falschen Kandidaten.
+	 */
+	public CountingBloomFilter(int expectedElements) {
+		this((int)Math.min(Integer.MAX_VALUE - 15, Math.max(64L, (long)expectedElements * COUNTERS_PER_ELEMENT)), DEFAULT_HASHES);
+	}
+
+
+	/**
+	 * Konstruktor
+	 * @param counterCount Anzahl der Zaehler
+	 * @param hashCount Anzahl der Zaehler je String
+	 */
+	public CountingBloomFilter(int counterCount, int hashCount) {
+		if (counterCount <= 0) throw new IllegalArgumentException("Argument 'counterCount' must be positive.");
+		if (hashCount <= 0) throw new IllegalArgumentException("Argument 'hashCount' must be positive.");
+		this.counterCount = counterCount;
+		this.hashCount = hashCount;
+		this.counters = new long[(counterCount + 15) >>> 4];
+		this.positions = new int[hashCount];
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	public void add(CharSequence s) {
+		computePositions(s);
+		for (int i = 0; i < hashCount; i++) {
+			int position = positions[i];
+			if (get(position) < MAX_COUNT) increment(position, 1);
+		}
+	}
+
+
+	/**
+	 * Nimmt ein mit <code>add</code> hinzugefuegtes <code>s</code> wieder heraus. Zaehler, die
+	 * bereits bei <code>MAX_COUNT</code> stehen, bleiben dort (ihr wahrer Wert ist unbekannt).
+	 */
+	public void remove(CharSequence s) {
+		computePositions(s);
+		for (int i = 0; i < hashCount; i++) {
+			int position = positions[i];
+			int value = get(position);
+			if (value > 0 && value < MAX_COUNT) increment(position, -1);
+		}
+	}
+
+
+	/**
+	 * Obere Schranke (hoechstens <code>MAX_COUNT</code>) fuer die Anzahl der Vorkommen von <code>s</code>
+	 */
+	public int count(CharSequence s) {
+		computePositions(s);
+		int min = MAX_COUNT;
+		for (int i = 0; i < hashCount && min > 0; i++) {
+			min = Math.min(min, get(positions[i]));
+		}
+		return min;
+	}
+
+
+	public int getCounterCount() {
+		return counterCount;
+	}
+
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	public long getMemoryBytes() {
+		return counters.length * 8L;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	private int get(int position) {
+		return (int)(counters[position >>> 4] >>> ((position & 15) << 2)) & 0xF;
+	}
+
+
+	private void increment(int position, int delta) {
+		counters[position >>> 4] += (long)delta << ((position & 15) << 2);
+	}
+
+
+	/**
+	 * Kirsch/Mitzenmacher: Position i = h1 + i * h2 mit den beiden Haelften eines 64-Bit-Hashs
+	 */
+	private void computePositions(CharSequence s) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < s.length(); i++) {
+			hash = (hash ^ s.charAt(i)) * 0x100000001b3L;
+		}
+		hash = mix(hash);
+		int h1 = (int)hash;
+		int h2 = (int)(hash >>> 32) | 1;
+		for (int i = 0; i < hashCount; i++) {
+			positions[i] = ((h1 + i * h2) & Integer.MAX_VALUE) % counterCount;
+		}
+	}
+
+
+	/**
+	 * Finalizer von MurmurHash3
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+}
@@ -0,0 +1,131 @@
+package com.javacook.util;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+
+/**
+ * Durchwandert einen Verzeichnisbaum mit <code>Files.walkFileTree</code>. Anders als die
+ * Rekursion ueber <code>File.list()</code> arbeitet <code>walkFileTree</code> mit einem eigenen
+ * Stack (keine Begrenzung durch die Rekursionstiefe), liefert die <code>BasicFileAttributes</code>
+ * gleich beim Lesen des Verzeichnisses mit und erlaubt es, ganze Unterbaeume auszulassen:
+ * Liefert <code>Visitor.preVisitDirectory</code> false, wird das Verzeichnis nicht betreten.
+ * <p>
+ * Symbolischen Links wird wie bei <code>java.io.File</code> gefolgt; Zyklen werden erkannt und
+ * wie ein nicht lesbares Verzeichnis an <code>Visitor.visitFailed</code> gemeldet.
+ * Die Reihenfolge entspricht der des Verzeichnisses (wie bei <code>File.list()</code>).
+ */
+public class DirectoryWalker {
+
+	public interface Visitor {
+
+		/**
+		 * Wird vor dem Betreten eines Verzeichnisses aufgerufen (nicht fuer <code>basePath</code> selbst).
+		 * @return false, falls das Verzeichnis samt Inhalt uebersprungen werden soll
+		 */
+		boolean preVisitDirectory(String dirPath, BasicFileAttributes attributes) throws Exception;
+
+		/**
+		 * Wird fuer jede Datei aufgerufen, die kein Verzeichnis ist.
+		 */
+		void visitFile(String filePath, BasicFileAttributes attributes) throws Exception;
+
+		/**
+		 * Wird aufgerufen, falls eine Datei oder ein Verzeichnis nicht gelesen werden kann.
+		 */
+		void visitFailed(String path, IOException e) throws Exception;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Durchwandert <code>basePath</code> (ein Verzeichnis oder eine einzelne Datei).
+	 * Exceptions des <code>visitor</code> werden unveraendert weitergereicht.
+	 */
+	public void walk(String basePath, final Visitor visitor) throws Exception {
+		if (basePath == null) throw new IllegalArgumentException("Argument 'basePath' is null.");
+		if (visitor == null) throw new IllegalArgumentException("Argument 'visitor' is null.");
+		final Path base = Paths.get(basePath);
+		try {
+			Files.walkFileTree(base, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+					if (dir.equals(base)) return FileVisitResult.CONTINUE;
+					try {
+						return visitor.preVisitDirectory(dir.toString(), attributes)?
+								FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+					}
+					catch (Exception e) {
+						throw new VisitorException(e);
+					}
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+					try {
+						visitor.visitFile(file.toString(), attributes);
+					}
+					catch (Exception e) {
+						throw new VisitorException(e);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+					try {
+						visitor.visitFailed(file.toString(), exc);
+					}
+					catch (Exception e) {
+						throw new VisitorException(e);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+					if (exc != null) {
+						// Verzeichnis konnte nicht (vollstaendig) gelesen werden
+						visitFileFailed(dir, exc);
+					}
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		catch (VisitorException e) {
+			throw e.getCause();
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Transportiert eine Exception des Visitors durch <code>walkFileTree</code> hindurch.
+	 */
+	private static class VisitorException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		VisitorException(Exception cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized Exception getCause() {
+			return (Exception)super.getCause();
+		}
+	}
+
+}
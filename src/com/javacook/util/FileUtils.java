@@ -1,353 +1,449 @@
-package com.javacook.util;
-
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.Closeable;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
-
-/**
- *
- * Diese Klasse stellt Routinen zum (zeilenweisen) Lesen und Schreiben von Dateien zur Verfuegung.
- * Es ist sogar moeglich, den Java-Wert <code>null</code> abzuspeichern (siehe Konstruktoren).
- * Default-Verhalten: <code>null</code> wird nicht abgespeichert.
- * @author vollmer
- */
-public class FileUtils
-{
-	private final static String CRLF 				= System.getProperty("line.separator");
-	private final static String FILE_SEPARATOR 	= System.getProperty("file.separator"); // Bei Windows Backslash, ansonsten Slash:
-	protected String nullCoding;
-
-	/**
-	 * Standard-Konstruktor
-	 */
-	public FileUtils()
-	{
-		nullCoding = null;
-	}
-
-
-	/**
-	 * Konstruktor, der definiert, welcher String als Kodierung von <code>null</code> verwendet werden soll.
-	 * @param nullCoding
-	 */
-	public FileUtils(String nullCoding)
-	{
-		this.nullCoding = nullCoding;
-	}
-
-
-	/**
-	 * Eigene Exception-Klasse, die allerdings von <code>RuntimeException</code> abgeleitet ist und nicht
-	 * von <code>Excpetion</code>. Semantisch hat sie die gleiche Bedeutung wie die
-	 * <code>java.io.IOException</code>.
-	 */
-	public static class IOException extends RuntimeException
-	{
-		private static final long serialVersionUID = 4787999770693259907L;
-
-		public IOException(java.io.IOException e) {
-			super(e);
-		}
-
-		@Override
-		public String getMessage() {
-			return getCause().getMessage();
-		}
-	};
-
-
-	// ---------- r e a d -----------------------------------------------------
-
-	/**
-	 * Private innnere Klasse, die dazu dient, eine Datei zeilenweise durchzuiterieren.
-	 * Der Vorteil ist, dass die IO-technischen Belange in der Klasse <code>FileUtils</code>
-	 * gekapselt bleiben. Der Iterator arbeitet so, dass erst beim Aufruf von <code>next</code>
-	 * eine neue Zeile aus der Datei gelesen wird. Die Datei wird automtisch geschlossen,
-	 * wenn der letzte Eintrag gelesen worden ist.
-	 */
-	private class TextFileIterator implements Iterator<String> {
-
-		private BufferedReader reader;
-		private String line;
-
-		/**
-		 * Konstruktor, der eine Iterator zur Datei <code>file</code> erstellt. Innerhalb des
-		 * Konstruktors wird die Datei bereits geoeffnet, und es wird versucht, die erste Zeile
-		 * zu lesen.
-		 * @param file Datei, fuer den der Iterator erstellt wird
-		 * @throws IOException, falls beim Oeffnen der Datei oder beim Lesen der ersten Zeile
-		 * ein IOException auftritt.
-		 */
-		public TextFileIterator(File file) throws IOException
-		{
-			if (file == null) { throw new IllegalArgumentException("Argument 'file' is null."); }
-			try
-			{
-	         	reader = new BufferedReader(new FileReader(file));
-	         	// Sicherheitscheck:
-	         	if (reader == null) { throw new IllegalStateException("Value of 'reader' is null."); }
-	         	line = reader.readLine();
-	         	if (line == null) {	reader.close();	}
-			}
-			catch (java.io.IOException e)
-			{
-				close(reader);
-				throw new IOException(e);
-			}
-		}// Constructor
-
-
-		/**
-		 * Wie <code>TextFileIterator(File)</code>, nur dass der Datei-Pfad die Datei festlegt
-		 * @param filePath
-		 * @see #TextFileIterator(File)
-		 */
-		public TextFileIterator(String filePath)
-		{
-			this(new File(filePath));
-		}
-
-
-		/**
-		 * Gibt aus, ob noch eine weitere Zeile zum Lesen bereit steht.
-		 * @Override
-		 */
-		public boolean hasNext()
-		{
-			return line != null;
-		}
-
-
-		/**
-		 * Dient dazu, die Zeilen der Datei iterativ auszulesen. Jeder Aufruf liefert
-		 * jeweils die naechste Zeile.</br>
-		 * Hinweis: Falls die Datei den Wert <code>null</code> zureuckgibt, bedeutet das
-		 * nicht, dass das Ende der Datei erreicht ist.
-		 * @NoSuchElementException falls versucht wird eine Zeile auszulesen, obwohl die
-		 * Methode <code>hasNext</code> den Wert <code>false</code> ausgibt.
-		 * @Override
-		 */
-		public String next() throws IOException
-		{
-			if (line == null) { throw new  NoSuchElementException(); }
-			String temp = line;
-			try
-			{
-				if (reader == null) { throw new IllegalStateException("Value of 'reader' is null."); }
-				line = reader.readLine();
-				// Ist man am Ende angelangt, wird die Datei geschlossen:
-				if (line == null) {	reader.close();	}
-				if (nullCoding != null && nullCoding.equals(temp)) { temp = null; }
-				return temp;
-			}
-			catch (java.io.IOException e)
-			{
-				close(reader);
-				throw new IOException(e);
-			}
-		}// next
-
-
-		/**
-		 * Wurde noch nicht implementiert.
-		 * @throws IllegalStateException, immer
-		 * @Override
-		 */
-		public void remove()
-		{
-			throw new IllegalStateException("remove is not implemented here.");
-		}
-
-	}// TextFileIterator
-
-
-
-	/**
-	 *
-	 * @param filePath
-	 * @return
-	 * @throws IOException
-	 */
-	public Iterable<String> read(final String filePath) throws IOException
-	{
-		if (filePath == null) { throw new IllegalArgumentException("Argument 'filePath' is null."); }
-		return new Iterable<String>()
-		{
-			public Iterator<String> iterator()
-			{
-				return new TextFileIterator(filePath);
-			}
-		};
-	}
-
-
-	// ---------- w r i t e -----------------------------------------------------
-
-	/**
-	 * Schreibt eine Iteration von String-Werte zeilenweise in eine Datei mit dem Namen
-	 * <code>filePath</code>. Die Werte der Iteration darf durchaus auch den Wert <code>null</code>
-	 * annehmen. Wurde der Kunstruktor <code>FileUtils(String nullCoding)</code> verwendet,
-	 * wird fuer <code>null</code> der Wert <code>nullCoding</code> verwendet (als eigene Zeile).
-	 * Ansonsten wird der Wert <code>null</code> einfach uebergangen.
-	 * @throws IOException falls bei der Operaton ein <code>java.io.IOException</code> aufgetreten
-	 * ist.
-	 */
-	public void write(Iterator<?> iter, String filePath) throws IOException
-	{
-		if (filePath == null) { throw new IllegalArgumentException("Argument 'filePath' is null."); }
-		BufferedWriter wr = null;
-		try
-		{
-			File file = new File(filePath);
-			wr = new BufferedWriter(new FileWriter(file));
-
-			while (iter.hasNext())
-			{
-				Object temp = iter.next();
-				if (temp == null)
-				{
-					if (nullCoding != null) { wr.write(nullCoding); }
-				}
-				else { wr.write(temp.toString()); }
-				if (iter.hasNext()) { wr.write(CRLF); }
-			}
-			if (wr != null) { wr.close(); }
-		}
-		catch (java.io.IOException e)
-		{
-			close(wr);
-			throw new IOException(e);
-		}
-	}// write
-
-
-	/**
-	 * Schliesst <code>cl</code>.
-	 * @param cl Zu schliessende Datei.
-	 * @throws IOException, falls beim Schliessen eine <code>java.io.IOException</code> aufgetreten ist.
-	 */
-	protected void close(Closeable cl) throws IOException
-	{
-		try
-		{
-			if (cl != null) { cl.close(); }
-		}
-		catch (java.io.IOException e) { throw new IOException(e); }
-	}// close
-
-
-	/**
-	 * Moegliche Rueckgabe-Werte der Methode <code>rename</code>
-	 */
-	public enum RenameErrorCode {OK, SOURCE_FILE_DOES_NOT_EXIST, DEST_FILE_ALREADY_EXISTS, OTHER_REASON};
-
-	/**
-	 * Benennt die Datei mit dem Dateinamen <code>sourceFileName</code> um in <code><destFileName/code>.
-	 * Ist die Datei mit dem Namen <code>destFileName</code> bereits vorhanden, bestimmt
-	 * <code>overwriteDest</code>, ob die Zieldatei ueberschreiben, d.h. zuvor geloescht wird.
-	 * Ist dies nicht der Fall, bliebt alles beim Alten, und es wird der Wert
-	 * <code>DEST_FILE_ALREADY_EXISTS</code> zurueckgeliefert.
-	 * @param sourceFileName Dateiname der umzubenennenden Datei
-	 * @param destFileName Ziel der umzubenennenden Datei
-	 * @param overwriteDest bestimmt, ob eine evtl. existierende Datei ueberschrieben wird.
-	 * @return <code>RenameErrorCode.OK</code>, falls die Umbennung fehlerfrei erfolgte;
-	 * <code>SOURCE_FILE_DOES_NOT_EXIST</code>, falls keine Datei unter dem Dateinamen
-	 * <code>sourceFileName</code> existiert; <code>DEST_FILE_ALREADY_EXISTS</code>, falls bereits
-	 * eine Datei mit dem Namen <code>DEST_FILE_ALREADY_EXISTS</code> existiert und
-	 * <code>overwriteDest</code> false ist;  <code>OTHER_REASON</code>, falls es andere
-	 * Gruende gab, warum die Umbenennung nicht erfolgreich gewesen ist.
-	 * <code></code>
-	 */
-	public RenameErrorCode rename(String sourceFileName, String destFileName, boolean overwriteDest) {
-		File sourceFile = new File(sourceFileName);
-		if (!sourceFile.exists()) {
-			return RenameErrorCode.SOURCE_FILE_DOES_NOT_EXIST;
-		}
-
-		File destFile = new File(destFileName);
-
-		if (destFile.exists()) {
-			if (overwriteDest) {
-				destFile.delete();
-			} else {
-				return RenameErrorCode.DEST_FILE_ALREADY_EXISTS;
-			}
-		}
-
-		return sourceFile.renameTo(destFile)? RenameErrorCode.OK : RenameErrorCode.OTHER_REASON;
-	}// rename
-
-
-
-
-	public interface CallBack {
-		public void action(String actualPath) throws Exception;
-	}
-
-
-	/**
-	 * Wandert rekursiv das Verzeichnis <code>basePath</code> durch und ruft fuer jede Datei (die kein Verzeichnis ist)
-	 * <code>callBack</code> auf.
-	 */
-	public void browseDirTree(String basePath, CallBack callBack) throws Exception {
-		browseRecursively(basePath, basePath, callBack);
-	}
-
-	private void browseRecursively(String basePath, String actualPath, CallBack callBack) throws Exception {
-		File file = new File(actualPath);
-		if (file.isDirectory()) {
-			for (String fileName : file.list()) {
-				browseRecursively(basePath, file.getAbsolutePath() + FILE_SEPARATOR + fileName, callBack);
-			}
-		}
-		else {
-			callBack.action(actualPath);
-		}
-	}
-
-
-	/**
-	 * Vervollstaendigt relative Pfad und entfernt z.B. auch (Back-)Slashes
-	 * am Ende.
-	 * @param path z.B. "Vollmer/"
-	 * @return z.B. "/Volumes/Braeburn/Entwicklung/Software/javacook/ClassPathChecker/Vollmer"
-	 */
-	public static String normalizePath(String path) {
-		if (path == null) return null;
-		path = path.trim();
-		if (path.length() == 0) return null;
-		try {
-			path = path.replace('\\', '/');
-			return new File(path).getCanonicalPath();
-		} catch (java.io.IOException e) {
-			throw new RuntimeException("Fehler bei der Normierung des Pfads '" + path + "'", e);
-		}
-	}
-
-
-
-	/*----------------------------------------------------------------------------*\
-	 * main                                                                       *
-	\*----------------------------------------------------------------------------*/
-
-	public static void main(String[] args) throws IOException
-	{
-
-		FileUtils fileUtils = new FileUtils();
-		System.out.println(fileUtils.rename("/Users/vollmer/leute.csv", "/Users/vollmer/guck.csv", true));
-
-//		long start = System.currentTimeMillis();
-//		Iterable<String> lines = fileUtils.read("G:/jiowa/trunk/msearch/src/test/resources/samples/vornamen50.txt");
-//		Iterator<String> iter = lines.iterator();
-//		while (iter.hasNext()) { System.out.println("Element: " + iter.next()); }
-//		System.out.println("Ausfuehrungszeit: " + (System.currentTimeMillis() - start));
-//		fileUtils.write(lines.iterator(), "F:/vornamen50.txt");
-
-   }// main
-
-}// FileUtils
+package com.javacook.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ *
+ * Diese Klasse stellt Routinen zum (zeilenweisen) Lesen und Schreiben von Dateien zur Verfuegung.
+ * Es ist sogar moeglich, den Java-Wert <code>null</code> abzuspeichern (siehe Konstruktoren).
+ * Default-Verhalten: <code>null</code> wird nicht abgespeichert.
+ * @author vollmer
+ */
+public class FileUtils
+{
+	private final static String CRLF 				= System.getProperty("line.separator");
+	protected String nullCoding;
+
+	/**
+	 * Standard-Konstruktor
+	 */
+	public FileUtils()
+	{
+		nullCoding = null;
+	}
+
+
+	/**
+	 * Konstruktor, der definiert, welcher String als Kodierung von <code>null</code> verwendet werden soll.
+	 * @param nullCoding
+	 */
+	public FileUtils(String nullCoding)
+	{
+		this.nullCoding = nullCoding;
+	}
+
+
+	/**
+	 * Eigene Exception-Klasse, die allerdings von <code>RuntimeException</code> abgeleitet ist und nicht
+	 * von <code>Excpetion</code>. Semantisch hat sie die gleiche Bedeutung wie die
+	 * <code>java.io.IOException</code>.
+	 */
+	public static class IOException extends RuntimeException
+	{
+		private static final long serialVersionUID = 4787999770693259907L;
+
+		public IOException(java.io.IOException e) {
+			super(e);
+		}
+
+		@Override
+		public String getMessage() {
+			return getCause().getMessage();
+		}
+	};
+
+
+	// ---------- r e a d -----------------------------------------------------
+
+	/**
+	 * Private innnere Klasse, die dazu dient, eine Datei zeilenweise durchzuiterieren.
+	 * Der Vorteil ist, dass die IO-technischen Belange in der Klasse <code>FileUtils</code>
+	 * gekapselt bleiben. Der Iterator arbeitet so, dass erst beim Aufruf von <code>next</code>
+	 * eine neue Zeile aus der Datei gelesen wird. Die Datei wird automtisch geschlossen,
+	 * wenn der letzte Eintrag gelesen worden ist.
+	 */
+	private class TextFileIterator implements Iterator<String> {
+
+		private BufferedReader reader;
+		private String line;
+
+		/**
+		 * Konstruktor, der eine Iterator zur Datei <code>file</code> erstellt. Innerhalb des
+		 * Konstruktors wird die Datei bereits geoeffnet, und es wird versucht, die erste Zeile
+		 * zu lesen.
+		 * @param file Datei, fuer den der Iterator erstellt wird
+		 * @throws IOException, falls beim Oeffnen der Datei oder beim Lesen der ersten Zeile
+		 * ein IOException auftritt.
+		 */
+		public TextFileIterator(File file) throws IOException
+		{
+			if (file == null) { throw new IllegalArgumentException("Argument 'file' is null."); }
+			try
+			{
+	         	reader = new BufferedReader(new FileReader(file));
+	         	// Sicherheitscheck:
+	         	if (reader == null) { throw new IllegalStateException("Value of 'reader' is null."); }
+	         	line = reader.readLine();
+	         	if (line == null) {	reader.close();	}
+			}
+			catch (java.io.IOException e)
+			{
+				close(reader);
+				throw new IOException(e);
+			}
+		}// Constructor
+
+
+		/**
+		 * Wie <code>TextFileIterator(File)</code>, nur dass der Datei-Pfad die Datei festlegt
+		 * @param filePath
+		 * @see #TextFileIterator(File)
+		 */
+		public TextFileIterator(String filePath)
+		{
+			this(new File(filePath));
+		}
+
+
+		/**
+		 * Gibt aus, ob noch eine weitere Zeile zum Lesen bereit steht.
+		 * @Override
+		 */
+		public boolean hasNext()
+		{
+			return line != null;
+		}
+
+
+		/**
+		 * Dient dazu, die Zeilen der Datei iterativ auszulesen. Jeder Aufruf liefert
+		 * jeweils die naechste Zeile.</br>
+		 * Hinweis: Falls die Datei den Wert <code>null</code> zureuckgibt, bedeutet das
+		 * nicht, dass das Ende der Datei erreicht ist.
+		 * @NoSuchElementException falls versucht wird eine Zeile auszulesen, obwohl die
+		 * Methode <code>hasNext</code> den Wert <code>false</code> ausgibt.
+		 * @Override
+		 */
+		public String next() throws IOException
+		{
+			if (line == null) { throw new  NoSuchElementException(); }
+			String temp = line;
+			try
+			{
+				if (reader == null) { throw new IllegalStateException("Value of 'reader' is null."); }
+				line = reader.readLine();
+				// Ist man am Ende angelangt, wird die Datei geschlossen:
+				if (line == null) {	reader.close();	}
+				if (nullCoding != null && nullCoding.equals(temp)) { temp = null; }
+				return temp;
+			}
+			catch (java.io.IOException e)
+			{
+				close(reader);
+				throw new IOException(e);
+			}
+		}// next
+
+
+		/**
+		 * Wurde noch nicht implementiert.
+		 * @throws IllegalStateException, immer
+		 * @Override
+		 */
+		public void remove()
+		{
+			throw new IllegalStateException("remove is not implemented here.");
+		}
+
+	}// TextFileIterator
+
+
+
+	/**
+	 *
+	 * @param filePath
+	 * @return
+	 * @throws IOException
+	 */
+	public Iterable<String> read(final String filePath) throws IOException
+	{
+		if (filePath == null) { throw new IllegalArgumentException("Argument 'filePath' is null."); }
+		return new Iterable<String>()
+		{
+			public Iterator<String> iterator()
+			{
+				return new TextFileIterator(filePath);
+			}
+		};
+	}
+
+
+	// ---------- w r i t e -----------------------------------------------------
+
+	/**
+	 * Schreibt eine Iteration von String-Werte zeilenweise in eine Datei mit dem Namen
+	 * <code>filePath</code>. Die Werte der Iteration darf durchaus auch den Wert <code>null</code>
+	 * annehmen. Wurde der Kunstruktor <code>FileUtils(String nullCoding)</code> verwendet,
+	 * wird fuer <code>null</code> der Wert <code>nullCoding</code> verwendet (als eigene Zeile).
+	 * Ansonsten wird der Wert <code>null</code> einfach uebergangen.
+	 * @throws IOException falls bei der Operaton ein <code>java.io.IOException</code> aufgetreten
+	 * ist.
+	 */
+	public void write(Iterator<?> iter, String filePath) throws IOException
+	{
+		if (filePath == null) { throw new IllegalArgumentException("Argument 'filePath' is null."); }
+		BufferedWriter wr = null;
+		try
+		{
+			File file = new File(filePath);
+			wr = new BufferedWriter(new FileWriter(file));
+
+			while (iter.hasNext())
+			{
+				Object temp = iter.next();
+				if (temp == null)
+				{
+					if (nullCoding != null) { wr.write(nullCoding); }
+				}
+				else { wr.write(temp.toString()); }
+				if (iter.hasNext()) { wr.write(CRLF); }
+			}
+			if (wr != null) { wr.close(); }
+		}
+		catch (java.io.IOException e)
+		{
+			close(wr);
+			throw new IOException(e);
+		}
+	}// write
+
+
+	/**
+	 * Schliesst <code>cl</code>.
+	 * @param cl Zu schliessende Datei.
+	 * @throws IOException, falls beim Schliessen eine <code>java.io.IOException</code> aufgetreten ist.
+	 */
+	protected void close(Closeable cl) throws IOException
+	{
+		try
+		{
+			if (cl != null) { cl.close(); }
+		}
+		catch (java.io.IOException e) { throw new IOException(e); }
+	}// close
+
+
+	/**
+	 * Moegliche Rueckgabe-Werte der Methode <code>rename</code>
+	 */
+	public enum RenameErrorCode {OK, SOURCE_FILE_DOES_NOT_EXIST, DEST_FILE_ALREADY_EXISTS, OTHER_REASON};
+
+	/**
+	 * Benennt die Datei mit dem Dateinamen <code>sourceFileName</code> um in <code><destFileName/code>.
+	 * Ist die Datei mit dem Namen <code>destFileName</code> bereits vorhanden, bestimmt
+	 * <code>overwriteDest</code>, ob die Zieldatei ueberschreiben, d.h. zuvor geloescht wird.
+	 * Ist dies nicht der Fall, bliebt alles beim Alten, und es wird der Wert
+	 * <code>DEST_FILE_ALREADY_EXISTS</code> zurueckgeliefert.
+	 * @param sourceFileName Dateiname der umzubenennenden Datei
+	 * @param destFileName Ziel der umzubenennenden Datei
+	 * @param overwriteDest bestimmt, ob eine evtl. existierende Datei ueberschrieben wird.
+	 * @return <code>RenameErrorCode.OK</code>, falls die Umbennung fehlerfrei erfolgte;
+	 * <code>SOURCE_FILE_DOES_NOT_EXIST</code>, falls keine Datei unter dem Dateinamen
+	 * <code>sourceFileName</code> existiert; <code>DEST_FILE_ALREADY_EXISTS</code>, falls bereits
+	 * eine Datei mit dem Namen <code>DEST_FILE_ALREADY_EXISTS</code> existiert und
+	 * <code>overwriteDest</code> false ist;  <code>OTHER_REASON</code>, falls es andere
+	 * Gruende gab, warum die Umbenennung nicht erfolgreich gewesen ist.
+	 * <code></code>
+	 */
+	public RenameErrorCode rename(String sourceFileName, String destFileName, boolean overwriteDest) {
+		File sourceFile = new File(sourceFileName);
+		if (!sourceFile.exists()) {
+			return RenameErrorCode.SOURCE_FILE_DOES_NOT_EXIST;
+		}
+
+		File destFile = new File(destFileName);
+
+		if (destFile.exists()) {
+			if (overwriteDest) {
+				destFile.delete();
+			} else {
+				return RenameErrorCode.DEST_FILE_ALREADY_EXISTS;
+			}
+		}
+
+		return sourceFile.renameTo(destFile)? RenameErrorCode.OK : RenameErrorCode.OTHER_REASON;
+	}// rename
+
+
+
+
+	public interface CallBack {
+		public void action(String actualPath) throws Exception;
+	}
+
+
+	/**
+	 * Wandert das Verzeichnis <code>basePath</code> durch und ruft fuer jede Datei (die kein Verzeichnis ist)
+	 * <code>callBack</code> auf. Nicht lesbare Verzeichnisse fuehren zu einer <code>java.io.IOException</code>.
+	 * @see DirectoryWalker
+	 */
+	public void browseDirTree(String basePath, final CallBack callBack) throws Exception {
+		new DirectoryWalker().walk(basePath, new DirectoryWalker.Visitor() {
+			public boolean preVisitDirectory(String dirPath, BasicFileAttributes attributes) {
+				return true;
+			}
+			public void visitFile(String filePath, BasicFileAttributes attributes) throws Exception {
+				callBack.action(filePath);
+			}
+			public void visitFailed(String path, java.io.IOException e) throws Exception {
+				throw e;
+			}
+		});
+	}
+
+
+	/**
+	 * Vervollstaendigt relative Pfad und entfernt z.B. auch (Back-)Slashes
+	 * am Ende.
+	 * @param path z.B. "Vollmer/"
+	 * @return z.B. "/Volumes/Braeburn/Entwicklung/Software/javacook/ClassPathChecker/Vollmer"
+	 */
+	public static String normalizePath(String path) {
+		if (path == null) return null;
+		path = path.trim();
+		if (path.length() == 0) return null;
+		try {
+			path = path.replace('\\', '/');
+			return new File(path).getCanonicalPath();
+		} catch (java.io.IOException e) {
+			throw new RuntimeException("Fehler bei der Normierung des Pfads '" + path + "'", e);
+		}
+	}
+
+
+	/**
+	 * Wie <code>normalizePath(String)</code>, nur dass das Verzeichnis des Pfads ueber
+	 * <code>cache</code> kanonisiert wird (fuer die Datei selbst bleibt nur ein <tt>lstat</tt>).
+	 */
+	public static String normalizePath(String path, CanonicalPathCache cache) {
+		if (path == null) return null;
+		path = path.trim();
+		if (path.length() == 0) return null;
+		try {
+			path = path.replace('\\', '/');
+			return cache.getCanonicalPath(path);
+		} catch (java.io.IOException e) {
+			throw new RuntimeException("Fehler bei der Normierung des Pfads '" + path + "'", e);
+		}
+	}
+
+
+
+	/**
+	 * Liefert den Digest (CRC-32 und Groesse, siehe <code>ResourceIndex.digest</code>) des Inhalts
+	 * von <code>file</code>.
+	 */
+	public static long digest(File file) throws java.io.IOException {
+		CRC32 crc = new CRC32();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[8192];
+			long size = 0;
+			for (int read; (read = in.read(buffer)) >= 0; ) {
+				crc.update(buffer, 0, read);
+				size += read;
+			}
+			return ResourceIndex.digest(crc.getValue(), size);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+
+	/**
+	 * Ersetzt <code>target</code> durch die (fertig geschriebene) Datei <code>temp</code>, und zwar
+	 * atomar, sodass Leser stets die alte oder die neue Datei sehen; kann das Dateisystem das
+	 * nicht, wird <code>target</code> einfach ueberschrieben. <code>temp</code> sollte daher im
+	 * selben Verzeichnis wie <code>target</code> liegen; scheitert das Verschieben, bleibt sie liegen.
+	 */
+	public static void replaceAtomically(File temp, File target) throws java.io.IOException {
+		try {
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+
+	/**
+	 * Liefert true, falls alle <code>count</code> Vorkommen von <code>resource</code> den gleichen
+	 * Digest haben. Fehlt einer (<code>ResourceIndex.NO_DIGEST</code>, Dateien in Verzeichnissen),
+	 * wird die Datei <code>resource</code> unterhalb von <code>paths[i]</code> erst hier gelesen
+	 * und ihr Digest in <code>digests</code> eingetragen. Beim ersten Unterschied wird abgebrochen.
+	 */
+	public static boolean isIdentical(String resource, String[] paths, long[] digests, int count) throws java.io.IOException {
+		for (int i = 0; i < count; i++) {
+			if (digests[i] == ResourceIndex.NO_DIGEST) {
+				File file = new File(paths[i], resource);
+				if (!file.isFile()) return false;
+				digests[i] = digest(file);
+			}
+			if (digests[i] != digests[0]) return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Liest ab <code>position</code> aus <code>channel</code>, bis <code>buffer</code> voll ist
+	 * (ohne die Position des Channels zu veraendern).
+	 * @throws java.io.EOFException falls die Datei vorher endet
+	 */
+	public static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws java.io.IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) throw new java.io.EOFException("Unexpected end of file at position " + position + ".");
+			position += read;
+		}
+	}
+
+
+
+	/*----------------------------------------------------------------------------*\
+	 * main                                                                       *
+	\*----------------------------------------------------------------------------*/
+
+	public static void main(String[] args) throws IOException
+	{
+
+		FileUtils fileUtils = new FileUtils();
+		System.out.println(fileUtils.rename("/Users/vollmer/leute.csv", "/Users/vollmer/guck.csv", true));
+
+//		long start = System.currentTimeMillis();
+//		Iterable<String> lines = fileUtils.read("G:/jiowa/trunk/msearch/src/test/resources/samples/vornamen50.txt");
+//		Iterator<String> iter = lines.iterator();
+//		while (iter.hasNext()) { System.out.println("Element: " + iter.next()); }
+//		System.out.println("Ausfuehrungszeit: " + (System.currentTimeMillis() - start));
+//		fileUtils.write(lines.iterator(), "F:/vornamen50.txt");
+
+   }// main
+
+}// FileUtils
@@ -0,0 +1,469 @@
+package com.javacook.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Prueft einen Pfad in einem einzigen Durchlauf gegen beliebig viele Glob-Muster: Die Muster
+ * werden einmalig in einen gemeinsamen NFA uebersetzt und dieser per Teilmengenkonstruktion in
+ * einen DFA. Der Aufwand pro Pfad haengt damit nur von dessen Laenge ab, nicht von der Anzahl der
+ * Muster, und beim Pruefen werden keine Objekte erzeugt.
+ * <p>
+ * Syntax: <tt>**</tt> passt ueber Verzeichnisgrenzen hinweg, <tt>*</tt> und <tt>?</tt> nur innerhalb
+ * eines Pfad-Segments; Slash und Backslash sind gleichwertige Trenner. Ein relatives Muster passt an
+ * jeder Verzeichnisgrenze, <tt>a/**&#47;b</tt> auch auf <tt>a/b</tt>. Ein Muster muss den ganzen
+ * Pfad abdecken.
+ * <p>
+ * Das Alphabet des DFA sind Zeichenklassen: der Trenner, jedes in den Mustern vorkommende Zeichen
+ * und "alle uebrigen". Die Uebergaenge stehen in einer einzigen int-Tabelle (Zustand x Klasse).
+ * <p>
+ * Die Klasse ist nach dem Erzeugen unveraenderlich und damit thread-sicher.
+ */
+public class GlobMatcher {
+
+	/**
+	 * Obergrenze fuer die Anzahl der DFA-Zustaende bei <code>compile(Collection)</code>
+	 */
+	public final static int DEFAULT_MAX_STATES = 1 << 14;
+
+	// Zeichenklassen:
+	private final static int SEPARATOR_CLASS = 0;
+	private final static int OTHER_CLASS = 1;
+
+	// Arten der verbrauchenden NFA-Uebergaenge:
+	private final static int NONE 	= 0;
+	private final static int CHAR 	= 1;
+	private final static int SEP 	= 2;
+	private final static int NONSEP = 3;
+	private final static int ANY 	= 4;
+
+	/** In den Mustern vorkommende Zeichen (ohne Trenner), sortiert; Klasse = Index + 2 */
+	private final char[] literals;
+	/** Klasse je ASCII-Zeichen */
+	private final int[] asciiClasses;
+	private final int classCount;
+
+	/** Uebergaenge: <code>transitions[zustand * classCount + klasse]</code> */
+	private final int[] transitions;
+	private final boolean[] accepting;
+	/** Senken: von hier aus passt kein Pfad mehr bzw. jeder (-1 = gibt es nicht) */
+	private final int deadState;
+	private final int acceptAllState;
+
+
+	private GlobMatcher(char[] literals, int[] transitions, boolean[] accepting, int deadState, int acceptAllState) {
+		this.literals = literals;
+		this.classCount = literals.length + 2;
+		this.asciiClasses = new int[128];
+		for (int c = 0; c < 128; c++) {
+			asciiClasses[c] = classOf(literals, (char)c);
+		}
+		this.transitions = transitions;
+		this.accepting = accepting;
+		this.deadState = deadState;
+		this.acceptAllState = acceptAllState;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Wie <code>compile(Collection, int)</code> mit <code>DEFAULT_MAX_STATES</code>
+	 */
+	public static GlobMatcher compile(Collection<String> globs) {
+		return compile(globs, DEFAULT_MAX_STATES);
+	}
+
+
+	/**
+	 * Uebersetzt <code>globs</code> in einen DFA.
+	 * @return null, falls der DFA mehr als <code>maxStates</code> Zustaende braeuchte (der
+	 * Aufrufer muss dann auf ein anderes Verfahren ausweichen)
+	 */
+	public static GlobMatcher compile(Collection<String> globs, int maxStates) {
+		if (globs == null) throw new IllegalArgumentException("Argument 'globs' is null.");
+		return new Builder(globs).build(maxStates);
+	}
+
+
+	/**
+	 * Liefert true, falls eines der Muster auf den ganzen <code>path</code> passt.
+	 */
+	public boolean matches(CharSequence path) {
+		int state = 0;
+		int length = path.length();
+		for (int i = 0; i < length && state != deadState && state != acceptAllState; i++) {
+			char c = path.charAt(i);
+			int charClass = (c < 128)? asciiClasses[c] : classOf(literals, c);
+			state = transitions[state * classCount + charClass];
+		}
+		return accepting[state];
+	}
+
+
+	/**
+	 * Anzahl der Zustaende des DFA
+	 */
+	public int getStateCount() {
+		return accepting.length;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	private static int classOf(char[] literals, char c) {
+		if (c == '/' || c == '\\') return SEPARATOR_CLASS;
+		int index = Arrays.binarySearch(literals, c);
+		return (index < 0)? OTHER_CLASS : index + 2;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Baut den NFA aller Muster und daraus den DFA. Jeder NFA-Zustand hat hoechstens einen
+	 * verbrauchenden Uebergang (<code>kinds</code>/<code>chars</code>/<code>targets</code>), dazu
+	 * hoechstens einen weiteren ueber einen Trenner (<code>separatorTargets</code>) und beliebig
+	 * viele spontane (<code>epsilons</code>). Alle relativen Muster teilen sich den vorangestellten
+	 * Teil <tt>(?:.*[/\\])?</tt>, damit nicht jede Teilmenge eine Schleife pro Muster mitschleppt.
+	 * <p>
+	 * Enthaelt eine Teilmenge einen Zustand, ab dem jeder Rest passt (ein abschliessendes
+	 * <tt>**</tt>), steht sie fuer eine einzige Senke. Ohne das merkte sich der DFA, welche der
+	 * Muster schon gepasst haben, und wuerde bei vielen Mustern der Form <tt>xyz/**</tt>
+	 * exponentiell gross.
+	 */
+	private static class Builder {
+		private int[] kinds 			= new int[64];
+		private char[] chars 			= new char[64];
+		private int[] targets 			= new int[64];
+		private int[] separatorTargets 	= new int[64];
+		private int[][] epsilons 		= new int[64][];
+		private boolean[] finals 		= new boolean[64];
+		private int stateCount;
+
+		private final char[] literals;
+		private final int classCount;
+		/** Zeichenklasse der CHAR-Uebergaenge je NFA-Zustand */
+		private final int[] charClasses;
+		private final int start;
+
+		// Arbeitsfelder der Teilmengenkonstruktion:
+		private boolean[] marks;
+		private int[] stack;
+		private int[] closure;
+
+		Builder(Collection<String> globs) {
+			TreeSet<Character> literalSet = new TreeSet<Character>();
+			start = newState();
+			List<Integer> starts = new ArrayList<Integer>();
+			List<Integer> relativeStarts = new ArrayList<Integer>();
+			for (String glob : globs) {
+				if (glob == null) continue;
+				boolean absolute = glob.startsWith("/") || glob.startsWith("\\") || (glob.length() > 1 && glob.charAt(1) == ':');
+				if (absolute) {
+					starts.add(Integer.valueOf(addGlob(glob, literalSet)));
+				}
+				else {
+					// relative Muster passen an jeder Verzeichnisgrenze
+					while (glob.startsWith("**/")) {
+						glob = glob.substring(3);
+					}
+					relativeStarts.add(Integer.valueOf(addGlob(glob, literalSet)));
+				}
+			}
+			if (!relativeStarts.isEmpty()) {
+				int relative = newState();
+				epsilons[addOptionalDirectories(relative)] = toArray(relativeStarts);
+				starts.add(Integer.valueOf(relative));
+			}
+			epsilons[start] = toArray(starts);
+
+			literals = new char[literalSet.size()];
+			int i = 0;
+			for (Character c : literalSet) {
+				literals[i++] = c.charValue();
+			}
+			classCount = literals.length + 2;
+			charClasses = new int[stateCount];
+			for (int state = 0; state < stateCount; state++) {
+				if (kinds[state] == CHAR) charClasses[state] = classOf(literals, chars[state]);
+			}
+		}
+
+		/**
+		 * Haengt den NFA von <code>glob</code> an (wie <code>PathFilter.globToRegex</code>, aber
+		 * ohne den Teil fuer relative Muster).
+		 * @return der Startzustand
+		 */
+		private int addGlob(String glob, TreeSet<Character> literalSet) {
+			int start = newState();
+			int state = start;
+			for (int i = 0; i < glob.length(); i++) {
+				char c = glob.charAt(i);
+				int next = newState();
+				switch (c) {
+					case '*':
+						if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+							kinds[state] = ANY;
+							i++;
+						}
+						else {
+							kinds[state] = NONSEP;
+						}
+						targets[state] = state; // Schleife
+						epsilons[state] = new int[] {next};
+						break;
+					case '?':
+						kinds[state] = NONSEP;
+						targets[state] = next;
+						break;
+					case '/':
+					case '\\':
+						kinds[state] = SEP;
+						targets[state] = next;
+						if (glob.startsWith("**/", i + 1) || glob.startsWith("**\\", i + 1)) {
+							// "a/**/b" passt auch auf "a/b"
+							next = addOptionalDirectories(next);
+							i += 3;
+						}
+						break;
+					default:
+						kinds[state] = CHAR;
+						chars[state] = c;
+						targets[state] = next;
+						literalSet.add(Character.valueOf(c));
+				}
+				state = next;
+			}
+			finals[state] = true;
+			return start;
+		}
+
+		/**
+		 * Haengt <tt>(?:.*[/\\])?</tt> an <code>state</code> an.
+		 * @return der Zustand danach
+		 */
+		private int addOptionalDirectories(int state) {
+			int loop = newState();
+			int next = newState();
+			epsilons[state] = new int[] {loop, next};
+			kinds[loop] = ANY;
+			targets[loop] = loop;
+			separatorTargets[loop] = next;
+			return next;
+		}
+
+		private int newState() {
+			if (stateCount == kinds.length) {
+				int newLength = kinds.length * 2;
+				kinds 			 = Arrays.copyOf(kinds, newLength);
+				chars 			 = Arrays.copyOf(chars, newLength);
+				targets 		 = Arrays.copyOf(targets, newLength);
+				separatorTargets = Arrays.copyOf(separatorTargets, newLength);
+				epsilons 		 = Arrays.copyOf(epsilons, newLength);
+				finals 			 = Arrays.copyOf(finals, newLength);
+			}
+			separatorTargets[stateCount] = -1;
+			return stateCount++;
+		}
+
+		/**
+		 * Teilmengenkonstruktion; Zustand 0 des DFA ist der Start.
+		 */
+		GlobMatcher build(int maxStates) {
+			marks = new boolean[stateCount];
+			stack = new int[stateCount];
+			closure = new int[stateCount];
+
+			// Zustaende, ab denen jeder Rest passt:
+			boolean[] acceptsAll = new boolean[stateCount];
+			int[] acceptAll = null;
+			for (int state = 0; state < stateCount; state++) {
+				if (kinds[state] != ANY || targets[state] != state) continue;
+				int[] set = closure(new int[] {state}, 1);
+				for (int nfaState : set) {
+					if (finals[nfaState]) acceptsAll[state] = true;
+				}
+				if (acceptsAll[state] && acceptAll == null) acceptAll = set;
+			}
+
+			Map<StateSet, Integer> ids = new HashMap<StateSet, Integer>();
+			List<int[]> sets = new ArrayList<int[]>();
+			int[] startSet = canonical(closure(new int[] {start}, 1), acceptsAll, acceptAll);
+			ids.put(new StateSet(startSet), Integer.valueOf(0));
+			sets.add(startSet);
+
+			int[] transitions = new int[64 * classCount];
+			int[] moved = new int[stateCount];
+			int[] byClass = new int[stateCount];
+			int[] others = new int[stateCount];
+			int[] classStarts = new int[classCount + 1];
+			for (int dfaState = 0; dfaState < sets.size(); dfaState++) {
+				int[] set = sets.get(dfaState);
+				if (transitions.length < (dfaState + 1) * classCount) {
+					transitions = Arrays.copyOf(transitions, Math.max(transitions.length * 2, (dfaState + 1) * classCount));
+				}
+
+				// die CHAR-Uebergaenge nach Klasse sortieren (Counting Sort), die uebrigen sammeln:
+				Arrays.fill(classStarts, 0);
+				int otherCount = 0;
+				for (int nfaState : set) {
+					if (kinds[nfaState] == CHAR) classStarts[charClasses[nfaState] + 1]++;
+					else if (kinds[nfaState] != NONE || separatorTargets[nfaState] >= 0) others[otherCount++] = nfaState;
+				}
+				for (int c = 0; c < classCount; c++) {
+					classStarts[c + 1] += classStarts[c];
+				}
+				for (int nfaState : set) {
+					if (kinds[nfaState] == CHAR) byClass[classStarts[charClasses[nfaState]]++] = nfaState;
+				}
+				for (int c = classCount; c > 0; c--) {
+					classStarts[c] = classStarts[c - 1];
+				}
+				classStarts[0] = 0;
+
+				for (int charClass = 0; charClass < classCount; charClass++) {
+					int charCount = classStarts[charClass + 1] - classStarts[charClass];
+					if (charClass > OTHER_CLASS && charCount == 0) {
+						// das Zeichen kommt hier in keinem Uebergang vor, verhaelt sich also wie alle uebrigen
+						transitions[dfaState * classCount + charClass] = transitions[dfaState * classCount + OTHER_CLASS];
+						continue;
+					}
+					int count = 0;
+					for (int i = 0; i < otherCount; i++) {
+						int nfaState = others[i];
+						int kind = kinds[nfaState];
+						if (kind == ANY || (kind == NONSEP && charClass != SEPARATOR_CLASS) || (kind == SEP && charClass == SEPARATOR_CLASS)) {
+							count = addMoved(targets[nfaState], moved, count);
+						}
+						if (charClass == SEPARATOR_CLASS && separatorTargets[nfaState] >= 0) {
+							count = addMoved(separatorTargets[nfaState], moved, count);
+						}
+					}
+					for (int i = classStarts[charClass]; i < classStarts[charClass + 1]; i++) {
+						count = addMoved(targets[byClass[i]], moved, count);
+					}
+					for (int i = 0; i < count; i++) {
+						marks[moved[i]] = false;
+					}
+					int[] next = canonical(closure(moved, count), acceptsAll, acceptAll);
+					StateSet key = new StateSet(next);
+					Integer id = ids.get(key);
+					if (id == null) {
+						if (sets.size() == maxStates) return null;
+						id = Integer.valueOf(sets.size());
+						ids.put(key, id);
+						sets.add(next);
+					}
+					transitions[dfaState * classCount + charClass] = id.intValue();
+				}
+			}
+
+			boolean[] accepting = new boolean[sets.size()];
+			int deadState = -1;
+			int acceptAllState = -1;
+			for (int dfaState = 0; dfaState < sets.size(); dfaState++) {
+				for (int nfaState : sets.get(dfaState)) {
+					if (finals[nfaState]) accepting[dfaState] = true;
+				}
+				if (sets.get(dfaState).length == 0) deadState = dfaState;
+				if (sets.get(dfaState) == acceptAll) acceptAllState = dfaState;
+			}
+			return new GlobMatcher(literals, Arrays.copyOf(transitions, sets.size() * classCount), accepting, deadState, acceptAllState);
+		}
+
+		private int addMoved(int nfaState, int[] moved, int count) {
+			if (!marks[nfaState]) {
+				marks[nfaState] = true;
+				moved[count++] = nfaState;
+			}
+			return count;
+		}
+
+		/**
+		 * Liefert <code>acceptAll</code>, falls <code>set</code> einen Zustand enthaelt, ab dem jeder Rest passt.
+		 */
+		private int[] canonical(int[] set, boolean[] acceptsAll, int[] acceptAll) {
+			if (acceptAll == null) return set;
+			for (int nfaState : set) {
+				if (acceptsAll[nfaState]) return acceptAll;
+			}
+			return set;
+		}
+
+		/**
+		 * Liefert die sortierte Menge aller von <code>states[0..count)</code> spontan erreichbaren Zustaende.
+		 */
+		private int[] closure(int[] states, int count) {
+			int size = 0;
+			int top = 0;
+			for (int i = 0; i < count; i++) {
+				if (!marks[states[i]]) {
+					marks[states[i]] = true;
+					stack[top++] = states[i];
+				}
+			}
+			while (top > 0) {
+				int state = stack[--top];
+				closure[size++] = state;
+				if (epsilons[state] == null) continue;
+				for (int target : epsilons[state]) {
+					if (!marks[target]) {
+						marks[target] = true;
+						stack[top++] = target;
+					}
+				}
+			}
+			int[] set = Arrays.copyOf(closure, size);
+			for (int state : set) {
+				marks[state] = false;
+			}
+			Arrays.sort(set);
+			return set;
+		}
+
+		private static int[] toArray(List<Integer> list) {
+			int[] array = new int[list.size()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = list.get(i).intValue();
+			}
+			return array;
+		}
+	}
+
+
+	/**
+	 * Menge von NFA-Zustaenden als Schluessel
+	 */
+	private static class StateSet {
+		private final int[] states;
+		private final int hash;
+
+		StateSet(int[] states) {
+			this.states = states;
+			this.hash = Arrays.hashCode(states);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof StateSet) && Arrays.equals(states, ((StateSet)obj).states);
+		}
+	}
+
+}
@@ -1,28 +1,95 @@
 package com.javacook.util;
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
+/**
+ * Logger fuer Konsole und Log-Datei. Die Ausgabe erfolgt asynchron durch einen eigenen Thread:
+ * <code>log</code> stellt die Meldung nur in eine beschraenkte Warteschlange, der Thread schreibt
+ * sie stapelweise ueber einen einzigen, offen gehaltenen <code>BufferedWriter</code> und flusht erst,
+ * wenn die Warteschlange leer ist. Ist die Warteschlange voll, wartet <code>log</code>, bis wieder
+ * Platz ist; verloren geht keine Meldung. Dabei haelt <code>log</code> nicht den Monitor des Loggers,
+ * andere Threads werden also nur durch die volle Warteschlange selbst gebremst.
+ * <p>
+ * Fuer den Report werden nur die letzten <code>maxLogEntries</code> Meldungen in einem Ringpuffer
+ * gehalten; aeltere werden verdraengt und ebenfalls gezaehlt (<code>getSuppressedCount()</code>).
+ * <p>
+ * <code>flush()</code> wartet, bis alle bisherigen Meldungen geschrieben sind, <code>close()</code>
+ * beendet zusaetzlich den Thread und entfernt den Shutdown-Hook, der sonst beim Beenden der JVM
+ * alles Ausstehende schreibt. Ohne <code>close()</code> bleiben Thread und Hook (und damit der
+ * Class-Loader des Loggers) bis zum Ende der JVM erhalten.
+ */
 public class JavaCookLogger {
 
 	private final static String CRLF = System.getProperty("line.separator");
+
+	public final static int DEFAULT_MAX_LOG_ENTRIES = 10000;
+
+	/**
+	 * Kapazitaet der Warteschlange zum Schreib-Thread
+	 */
+	private final static int QUEUE_CAPACITY = 16384;
+
+	/**
+	 * Maximale Anzahl Meldungen, die am Stueck geschrieben werden
+	 */
+	private final static int MAX_BATCH = 512;
+
 	private boolean logToConsole = true;
 	private String logFileName;
-	private List<String> logEntries;
+
+	private final String[] logEntries;
+	private int logEntriesStart;
+	private int logEntriesCount;
+	private long suppressedCount;
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final BlockingQueue<Record> queue = new ArrayBlockingQueue<Record>(QUEUE_CAPACITY);
+	private Thread writerThread;
+	private Thread shutdownHook;
+	/**
+	 * <code>log</code> stellt unter der Lese-Sperre ein, <code>close</code> setzt <code>closed</code>
+	 * unter der Schreib-Sperre => nach der Marke CLOSE landet keine Meldung mehr in der Warteschlange
+	 */
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+	private volatile boolean closed;
+
+	// Nur vom Schreib-Thread benutzt:
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd.MM.yyyy HH:mm:ss");
+	private long formattedSecond = -1;
+	private String formattedDate;
+	private final StringBuilder consoleBuffer = new StringBuilder();
+	private Writer fileWriter;
+	private boolean fileFailed;
 
 	/*-----------------------------------------------------------------------*\
 	 * constructors                                                          *
 	\*-----------------------------------------------------------------------*/
 
-	public JavaCookLogger(boolean logToConsole, String logFileName) {
+	public JavaCookLogger(boolean logToConsole, String logFileName, int maxLogEntries) {
+		if (maxLogEntries < 1) throw new IllegalArgumentException("Argument 'maxLogEntries' must be positive.");
 		this.logToConsole = logToConsole;
 		this.logFileName = logFileName;
-		this.logEntries = new ArrayList<String>();
+		this.logEntries = new String[maxLogEntries];
+	}
+
+	public JavaCookLogger(boolean logToConsole, String logFileName) {
+		this(logToConsole, logFileName, DEFAULT_MAX_LOG_ENTRIES);
 	}
 
 	public JavaCookLogger() {
@@ -35,22 +102,117 @@ public class JavaCookLogger {
 	\*-----------------------------------------------------------------------*/
 
 	public void log(String mess) {
-		if (logToConsole) {
-			System.out.println(mess);
+		if (logToConsole || logFileName != null) {
+			closeLock.readLock().lock();
+			try {
+				if (closed || !ensureWriterThread()) {
+					droppedCount.incrementAndGet();
+				}
+				else {
+					enqueue(new Record(System.currentTimeMillis(), mess));
+				}
+			}
+			finally {
+				closeLock.readLock().unlock();
+			}
+		}
+		synchronized (this) {
+			addLogEntry(mess);
 		}
-		if (logFileName != null) {
-			append(logFileName, mess);
+	}
+
+
+	/**
+	 * Liefert die Meldungen fuer den Report (die letzten <code>maxLogEntries</code>). Wurden
+	 * aeltere Meldungen verdraengt, steht ein entsprechender Hinweis an erster Stelle.
+	 */
+	public synchronized List<String> getLogEntries() {
+		List<String> result = new ArrayList<String>(logEntriesCount + 1);
+		if (suppressedCount > 0) {
+			result.add("(" + suppressedCount + " earlier log entries suppressed)");
 		}
-		logEntries.add(mess);
+		for (int i = 0; i < logEntriesCount; i++) {
+			result.add(logEntries[(logEntriesStart + i) % logEntries.length]);
+		}
+		return result;
+	}
+
+	public synchronized void reset() {
+		logEntriesStart = 0;
+		logEntriesCount = 0;
+		suppressedCount = 0;
+		droppedCount.set(0);
+	}
+
+
+	/**
+	 * Anzahl der Meldungen, die nach <code>close()</code> geloggt und daher weder auf die
+	 * Konsole noch in die Log-Datei geschrieben wurden
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Anzahl der Meldungen, die aus dem Ringpuffer fuer den Report verdraengt wurden
+	 */
+	public synchronized long getSuppressedCount() {
+		return suppressedCount;
 	}
 
 
-	public List<String> getLogEntries() {
-		return logEntries;
+	/**
+	 * Wartet, bis alle bisher geloggten Meldungen geschrieben und geflusht sind.
+	 */
+	public void flush() {
+		Thread thread;
+		Record marker = new Record(Record.FLUSH);
+		closeLock.readLock().lock();
+		try {
+			if (closed) return;
+			synchronized (this) {
+				thread = writerThread;
+			}
+			if (thread == null) return;
+			enqueue(marker);
+		}
+		finally {
+			closeLock.readLock().unlock();
+		}
+		await(thread, marker);
 	}
 
-	public void reset() {
-		logEntries.clear();
+
+	/**
+	 * Schreibt alle ausstehenden Meldungen, schliesst die Log-Datei, beendet den Schreib-Thread
+	 * und entfernt den Shutdown-Hook. Danach geloggte Meldungen landen nur noch im Report.
+	 */
+	public void close() {
+		Thread thread;
+		Record marker = new Record(Record.CLOSE);
+		closeLock.writeLock().lock();
+		try {
+			if (closed) return;
+			closed = true;
+			synchronized (this) {
+				thread = writerThread;
+				if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+					try {
+						Runtime.getRuntime().removeShutdownHook(shutdownHook);
+					}
+					catch (IllegalStateException e) {
+						// JVM wird gerade beendet
+					}
+				}
+				shutdownHook = null;
+			}
+			// Die letzte Marke; solange der Schreib-Thread laeuft, wird dabei nicht ewig gewartet
+			if (thread != null) enqueue(marker);
+		}
+		finally {
+			closeLock.writeLock().unlock();
+		}
+		await(thread, marker);
 	}
 
 
@@ -59,27 +221,221 @@ public class JavaCookLogger {
 	 * internal methods                                                      *
 	\*-----------------------------------------------------------------------*/
 
-	private void append(String logFileName, String mess) {
-		if (logFileName == null)  throw new IllegalArgumentException("Argument 'logFileName' is null.");
-		File logFile = new File(logFileName);
-		FileWriter fileWriter = null;
+	private void addLogEntry(String mess) {
+		if (logEntriesCount < logEntries.length) {
+			logEntries[(logEntriesStart + logEntriesCount) % logEntries.length] = mess;
+			logEntriesCount++;
+		}
+		else {
+			logEntries[logEntriesStart] = mess;
+			logEntriesStart = (logEntriesStart + 1) % logEntries.length;
+			suppressedCount++;
+		}
+	}
+
+
+	/**
+	 * Stellt <code>record</code> in die Warteschlange und wartet dazu notfalls, bis der
+	 * Schreib-Thread Platz geschaffen hat. Eine Unterbrechung wird erst danach weitergegeben.
+	 * Nur unter der Lese- bzw. Schreib-Sperre aufzurufen, solange <code>closed</code> false war.
+	 */
+	private void enqueue(Record record) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(record);
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+
+	/**
+	 * Startet bei Bedarf den Schreib-Thread.
+	 * @return false, falls es keinen (mehr) gibt
+	 */
+	private synchronized boolean ensureWriterThread() {
+		if (closed) return false;
+		if (writerThread == null) {
+			writerThread = new Thread(new Runnable() {
+				public void run() {
+					writeLoop();
+				}
+			}, "JavaCookLogger");
+			writerThread.setDaemon(true);
+			writerThread.start();
+			shutdownHook = new Thread(new Runnable() {
+				public void run() {
+					close();
+				}
+			}, "JavaCookLogger-shutdown");
+			try {
+				Runtime.getRuntime().addShutdownHook(shutdownHook);
+			}
+			catch (IllegalStateException e) {
+				// JVM wird gerade beendet
+				shutdownHook = null;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Wartet, bis der Schreib-Thread die Marke <code>marker</code> erreicht hat.
+	 */
+	private void await(Thread thread, Record marker) {
+		if (thread == null) return;
 		try {
-			if (logFile.isDirectory()) {
-				logFileName = logFile.getCanonicalPath() + "/cpc.log";
+			// Falls der Thread zwischenzeitlich beendet wurde (close), wird nicht ewig gewartet:
+			while (!marker.done.await(100, TimeUnit.MILLISECONDS)) {
+				if (!thread.isAlive()) return;
 			}
-			fileWriter = new FileWriter(new File(logFileName), true); // true fuer append
-			fileWriter.append(new SimpleDateFormat("dd.MM.yyyy HH:mm:ss").format(new Date())).append(" - ");
-			fileWriter.append((mess == null)? "null" : mess).append(CRLF);
-		} catch (IOException e) {
-			System.err.println(e);
-		} finally {
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/**
+	 * Rumpf des Schreib-Threads: holt die Meldungen stapelweise und schreibt sie in einem Rutsch.
+	 */
+	private void writeLoop() {
+		List<Record> batch = new ArrayList<Record>(MAX_BATCH);
+		try {
+			while (true) {
+				batch.clear();
+				batch.add(queue.take());
+				queue.drainTo(batch, MAX_BATCH - 1);
+
+				boolean hasMarker = false;
+				boolean close = false;
+				for (Record record : batch) {
+					if (record.type == Record.MESSAGE) {
+						write(record.time, record.mess);
+					}
+					else {
+						hasMarker = true;
+						close |= (record.type == Record.CLOSE);
+					}
+				}
+				// Geflusht wird erst, wenn gerade nichts mehr ansteht bzw. eine Marke es verlangt:
+				if (hasMarker || queue.isEmpty()) {
+					flushOutput(close);
+				}
+				for (Record record : batch) {
+					if (record.done != null) record.done.countDown();
+				}
+				if (close) return;
+			}
+		}
+		catch (InterruptedException e) {
+			// Thread wird beendet
+		}
+	}
+
+
+	/**
+	 * Schreibt eine Meldung in die Puffer (nur vom Schreib-Thread aufzurufen).
+	 */
+	private void write(long time, String mess) {
+		if (mess == null) mess = "null";
+		if (logToConsole) {
+			consoleBuffer.append(mess).append(CRLF);
+		}
+		if (logFileName != null && !fileFailed) {
 			try {
-				if (fileWriter != null) {
+				if (fileWriter == null) {
+					fileWriter = openLogFile();
+				}
+				// Der Zeitstempel hat Sekunden-Aufloesung => nur einmal pro Sekunde formatieren
+				if (time / 1000 != formattedSecond) {
+					formattedSecond = time / 1000;
+					formattedDate = dateFormat.format(new Date(time));
+				}
+				fileWriter.append(formattedDate).append(" - ");
+				fileWriter.append(mess).append(CRLF);
+			}
+			catch (IOException e) {
+				System.err.println(e);
+				fileFailed = true;
+			}
+		}
+	}
+
+
+	/**
+	 * Gibt die Puffer aus (nur vom Schreib-Thread aufzurufen).
+	 * @param close true = die Log-Datei wird anschliessend geschlossen
+	 */
+	private void flushOutput(boolean close) {
+		if (consoleBuffer.length() > 0) {
+			System.out.print(consoleBuffer);
+			System.out.flush();
+			consoleBuffer.setLength(0);
+		}
+		if (fileWriter != null) {
+			try {
+				if (close) {
 					fileWriter.close();
+					fileWriter = null;
+				}
+				else {
+					fileWriter.flush();
 				}
-			} catch (IOException e) {
-				e.printStackTrace();
 			}
+			catch (IOException e) {
+				System.err.println(e);
+				fileFailed = true;
+			}
+		}
+	}
+
+
+	private Writer openLogFile() throws IOException {
+		File logFile = new File(logFileName);
+		if (logFile.isDirectory()) {
+			logFile = new File(logFile.getCanonicalPath() + "/cpc.log");
+		}
+		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile, true)), 64 * 1024); // true fuer append
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * inner classes                                                         *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Eintrag der Warteschlange: eine Meldung oder eine Marke (flush/close), auf deren
+	 * Bearbeitung der Aufrufer wartet
+	 */
+	private static class Record {
+		final static int MESSAGE 	= 0;
+		final static int FLUSH 		= 1;
+		final static int CLOSE 		= 2;
+
+		final int type;
+		final long time;
+		final String mess;
+		final CountDownLatch done;
+
+		Record(long time, String mess) {
+			this.type = MESSAGE;
+			this.time = time;
+			this.mess = mess;
+			this.done = null;
+		}
+
+		Record(int type) {
+			this.type = type;
+			this.time = 0;
+			this.mess = null;
+			this.done = new CountDownLatch(1);
 		}
 	}
 
@@ -91,8 +447,9 @@ public class JavaCookLogger {
 	public static void main(String[] args) {
 		JavaCookLogger logger = new JavaCookLogger(true, "/Volumes/Braeburn/Entwicklung/Software/Sonstiges/ClassPathChecker/log/cpc.log");
 		logger.log("Hallo Welt");
+		logger.close();
 	}
 
 
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package com.javacook.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramm von Laufzeiten mit Zweierpotenzen als Klassengrenzen: Klasse <code>i</code> zaehlt
+ * die Werte aus <code>[2^i, 2^(i+1))</code> Nanosekunden. Das Erfassen kostet nur ein paar atomare
+ * Additionen und erzeugt keine Objekte; Perzentile sind dafuer nur auf einen Faktor 2 genau
+ * (geliefert wird die Obergrenze der jeweiligen Klasse, hoechstens aber das Maximum).
+ * <p>
+ * Die Klasse ist thread-sicher.
+ */
+public class LatencyHistogram {
+
+	private final AtomicLongArray buckets = new AtomicLongArray(64);
+	private final AtomicLong count 		= new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos 	= new AtomicLong();
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxNanos.get())) {
+			if (maxNanos.compareAndSet(max, nanos)) break;
+		}
+	}
+
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	public long getMeanNanos() {
+		long n = count.get();
+		return (n == 0)? 0 : totalNanos.get() / n;
+	}
+
+
+	/**
+	 * Liefert (eine obere Schranke fuer) das <code>percentile</code>-Perzentil, z.B. 0.99.
+	 */
+	public long getPercentileNanos(double percentile) {
+		if (percentile < 0 || percentile > 1) throw new IllegalArgumentException("Argument 'percentile' must be in [0, 1].");
+		long n = count.get();
+		if (n == 0) return 0;
+		long rank = Math.max(1, (long)Math.ceil(percentile * n));
+		long cumulated = 0;
+		for (int i = 0; i < 64; i++) {
+			cumulated += buckets.get(i);
+			if (cumulated >= rank) {
+				long upperBound = (i >= 62)? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+				return Math.min(upperBound, maxNanos.get());
+			}
+		}
+		return maxNanos.get();
+	}
+
+}
@@ -0,0 +1,145 @@
+package com.javacook.util;
+
+import java.util.Arrays;
+
+/**
+ * Menge von Prefixen, gegen die sich ein Text in einem einzigen Durchlauf pruefen laesst:
+ * <code>matchesPrefixOf(text)</code> ist genau dann true, wenn <code>text.startsWith(p)</code> fuer
+ * einen der Prefixe <code>p</code> gilt. Der Aufwand haengt nur von der Laenge des Textes ab,
+ * nicht von der Anzahl der Prefixe, und beim Pruefen werden keine Objekte erzeugt.
+ * <p>
+ * Die Prefixe bilden einen Trie ueber ihre Zeichen (nicht ueber Pfad-Segmente, damit die
+ * <code>startsWith</code>-Semantik erhalten bleibt). Die Knoten stehen in parallelen Arrays, die
+ * Kinder werden ueber eine einzige Hash-Tabelle (Vater, Zeichen) -&gt; Knoten gefunden.
+ * <p>
+ * Die Klasse ist nicht thread-sicher; nach dem Befuellen darf aber beliebig parallel gelesen werden.
+ */
+public class PrefixTrie {
+
+	private final static int ROOT = 0;
+
+	private int[] parents 		= new int[16];
+	private char[] chars 		= new char[16];
+	private boolean[] terminal 	= new boolean[16];
+	private int nodeCount 		= 1;
+
+	/**
+	 * Offene Adressierung; 0 = frei (der Wurzelknoten ist nie Kind)
+	 */
+	private int[] table 		= new int[32];
+
+	private int size;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Fuegt den Prefix <code>prefix</code> hinzu.
+	 * @return false, falls er schon enthalten war
+	 */
+	public boolean add(String prefix) {
+		if (prefix == null) throw new IllegalArgumentException("Argument 'prefix' is null.");
+		int node = ROOT;
+		for (int i = 0; i < prefix.length(); i++) {
+			node = findOrCreateChild(node, prefix.charAt(i));
+		}
+		if (terminal[node]) return false;
+		terminal[node] = true;
+		size++;
+		return true;
+	}
+
+
+	/**
+	 * Liefert true, falls einer der Prefixe ein Prefix von <code>text</code> ist.
+	 */
+	public boolean matchesPrefixOf(CharSequence text) {
+		if (text == null) return false;
+		int node = ROOT;
+		if (terminal[node]) return true;
+		int length = text.length();
+		for (int i = 0; i < length; i++) {
+			node = findChild(node, text.charAt(i));
+			if (node < 0) return false;
+			if (terminal[node]) return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Anzahl der Prefixe
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	private int findChild(int parent, char c) {
+		int mask = table.length - 1;
+		for (int slot = hash(parent, c) & mask; ; slot = (slot + 1) & mask) {
+			int node = table[slot];
+			if (node == 0) return -1;
+			if (parents[node] == parent && chars[node] == c) return node;
+		}
+	}
+
+
+	private int findOrCreateChild(int parent, char c) {
+		int mask = table.length - 1;
+		int slot = hash(parent, c) & mask;
+		for (; ; slot = (slot + 1) & mask) {
+			int node = table[slot];
+			if (node == 0) break;
+			if (parents[node] == parent && chars[node] == c) return node;
+		}
+
+		// neuen Knoten anlegen:
+		if (nodeCount == parents.length) {
+			int newLength = parents.length * 2;
+			parents 	= Arrays.copyOf(parents, newLength);
+			chars 		= Arrays.copyOf(chars, newLength);
+			terminal 	= Arrays.copyOf(terminal, newLength);
+		}
+		int node = nodeCount++;
+		parents[node] 	= parent;
+		chars[node] 	= c;
+		table[slot] 	= node;
+
+		if (nodeCount * 2 > table.length) {
+			rehash();
+		}
+		return node;
+	}
+
+
+	private void rehash() {
+		int[] newTable = new int[table.length * 2];
+		int mask = newTable.length - 1;
+		for (int node = 1; node < nodeCount; node++) {
+			int slot = hash(parents[node], chars[node]) & mask;
+			while (newTable[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			newTable[slot] = node;
+		}
+		table = newTable;
+	}
+
+
+	private static int hash(int parent, char c) {
+		int h = parent * 0x9E3779B1 + c;
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -0,0 +1,241 @@
+package com.javacook.util;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Vorkompilierter Filter fuer Resource-Namen wie <tt>com/javacook/util/ResourceIndex.class</tt>:
+ * Ein Name wird angenommen, wenn seine Endung (alles hinter dem letzten '.', wie bei
+ * <code>StringUtils.suffixOf</code>) in <code>extensions</code> steht und er auf keines der
+ * <code>excludePatterns</code> passt.
+ * <p>
+ * Die Muster sind Globs: <tt>**</tt> passt ueber Verzeichnisgrenzen hinweg, <tt>*</tt> und
+ * <tt>?</tt> nur innerhalb eines Segments. Ein Muster mit '/' muss auf den ganzen Namen passen
+ * (z.B. <tt>META-INF/*.SF</tt>, <tt>**&#47;*.html</tt>, wobei <tt>**&#47;</tt> auch null
+ * Verzeichnisse umfasst), eines ohne '/' auf den Dateinamen (z.B. <tt>*.png</tt>).
+ * <p>
+ * Mit <code>accepts(ZipCentralDirectory)</code> wird direkt auf den Bytes des aktuellen Eintrags
+ * im Central Directory entschieden; abgelehnte Eintraege werden nie zu einem <code>String</code>.
+ * Die Pruefung erzeugt keine Objekte. Die Muster werden dort gegen die UTF-8-Bytes verglichen,
+ * sonst gegen die Zeichen.
+ * <p>
+ * Die Klasse ist unveraenderlich und damit thread-sicher.
+ */
+public class ResourceClassifier {
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Nimmt alles an
+	 */
+	public final static ResourceClassifier ALL = new ResourceClassifier(null, null);
+
+	/** null = jede Endung */
+	private final byte[][] extensionBytes;
+	private final String[] extensions;
+	private final byte[][] patternBytes;
+	private final String[] patterns;
+	/** Muster mit '/' gelten fuer den ganzen Namen, die anderen nur fuer den Dateinamen */
+	private final boolean[] wholeName;
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Konstruktor
+	 * @param extensions angenommene Endungen ohne Punkt (z.B. "class"); null = alle
+	 * @param excludePatterns Muster abgelehnter Namen (null = keine)
+	 */
+	public ResourceClassifier(Collection<String> extensions, Collection<String> excludePatterns) {
+		if (extensions == null) {
+			this.extensions = null;
+			this.extensionBytes = null;
+		}
+		else {
+			this.extensions = extensions.toArray(new String[extensions.size()]);
+			this.extensionBytes = toBytes(this.extensions);
+		}
+		List<String> patternList = new ArrayList<String>();
+		if (excludePatterns != null) {
+			for (String pattern : excludePatterns) {
+				if (pattern != null && pattern.trim().length() > 0) patternList.add(pattern.trim());
+			}
+		}
+		this.patterns = patternList.toArray(new String[patternList.size()]);
+		this.patternBytes = toBytes(this.patterns);
+		this.wholeName = new boolean[patterns.length];
+		for (int i = 0; i < patterns.length; i++) {
+			wholeName[i] = patterns[i].indexOf('/') >= 0;
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Entscheidet ueber den aktuellen Eintrag von <code>centralDirectory</code>, ohne dessen
+	 * Namen zu dekodieren.
+	 */
+	public boolean accepts(ZipCentralDirectory centralDirectory) {
+		if (isAll()) return true;
+		int length = centralDirectory.nameLength();
+		if (extensionBytes != null && !hasExtension(centralDirectory, length)) return false;
+		for (int i = 0; i < patternBytes.length; i++) {
+			int start = wholeName[i]? 0 : lastSegmentStart(centralDirectory, length);
+			if (matches(patternBytes[i], 0, centralDirectory, start, length)) return false;
+		}
+		return true;
+	}
+
+
+	public boolean accepts(String name) {
+		if (isAll()) return true;
+		if (extensions != null && !hasExtension(name)) return false;
+		for (int i = 0; i < patterns.length; i++) {
+			int start = wholeName[i]? 0 : name.lastIndexOf('/') + 1;
+			if (matches(patterns[i], 0, name, start)) return false;
+		}
+		return true;
+	}
+
+
+	/**
+	 * Liefert true, falls alle Namen angenommen werden.
+	 */
+	public boolean isAll() {
+		return extensions == null && patterns.length == 0;
+	}
+
+
+	/**
+	 * Eindeutige Beschreibung des Filters, z.B. als Teil des Schluessels gecachter Listings
+	 */
+	@Override
+	public String toString() {
+		if (isAll()) return "all";
+		StringBuilder sb = new StringBuilder();
+		if (extensions != null) {
+			sb.append("extensions=").append(Arrays.toString(extensions));
+		}
+		if (patterns.length > 0) {
+			if (sb.length() > 0) sb.append(' ');
+			sb.append("excludes=").append(Arrays.toString(patterns));
+		}
+		return sb.toString();
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	private boolean hasExtension(ZipCentralDirectory centralDirectory, int length) {
+		int dot = length - 1;
+		while (dot >= 0 && centralDirectory.nameByteAt(dot) != '.') dot--;
+		if (dot < 0) return false;
+		int extensionLength = length - dot - 1;
+		for (byte[] extension : extensionBytes) {
+			if (extension.length != extensionLength) continue;
+			int i = 0;
+			while (i < extensionLength && extension[i] == centralDirectory.nameByteAt(dot + 1 + i)) i++;
+			if (i == extensionLength) return true;
+		}
+		return false;
+	}
+
+
+	private boolean hasExtension(String name) {
+		int dot = name.lastIndexOf('.');
+		if (dot < 0) return false;
+		int extensionLength = name.length() - dot - 1;
+		for (String extension : extensions) {
+			if (extension.length() == extensionLength && name.regionMatches(dot + 1, extension, 0, extensionLength)) return true;
+		}
+		return false;
+	}
+
+
+	private static int lastSegmentStart(ZipCentralDirectory centralDirectory, int length) {
+		int i = length - 1;
+		while (i >= 0 && centralDirectory.nameByteAt(i) != '/') i--;
+		return i + 1;
+	}
+
+
+	/**
+	 * Glob-Vergleich von <code>pattern</code> ab <code>p</code> mit dem Namen ab <code>n</code>
+	 */
+	private static boolean matches(byte[] pattern, int p, ZipCentralDirectory name, int n, int length) {
+		while (p < pattern.length) {
+			byte c = pattern[p];
+			if (c == '*') {
+				boolean anyDirectory = p + 1 < pattern.length && pattern[p + 1] == '*';
+				p += anyDirectory? 2 : 1;
+				if (p == pattern.length) {
+					if (anyDirectory) return true;
+					while (n < length) if (name.nameByteAt(n++) == '/') return false;
+					return true;
+				}
+				// "**/" am Segmentanfang darf auch null Verzeichnisse umfassen:
+				if (anyDirectory && pattern[p] == '/' && (n == 0 || name.nameByteAt(n - 1) == '/')
+						&& matches(pattern, p + 1, name, n, length)) return true;
+				for (int i = n; i <= length; i++) {
+					if (matches(pattern, p, name, i, length)) return true;
+					if (i < length && !anyDirectory && name.nameByteAt(i) == '/') return false;
+				}
+				return false;
+			}
+			if (n == length) return false;
+			byte b = name.nameByteAt(n);
+			if (c == '?' ? b == '/' : b != c) return false;
+			p++;
+			n++;
+		}
+		return n == length;
+	}
+
+
+	private static boolean matches(String pattern, int p, String name, int n) {
+		int length = name.length();
+		while (p < pattern.length()) {
+			char c = pattern.charAt(p);
+			if (c == '*') {
+				boolean anyDirectory = p + 1 < pattern.length() && pattern.charAt(p + 1) == '*';
+				p += anyDirectory? 2 : 1;
+				if (p == pattern.length()) {
+					return anyDirectory || name.indexOf('/', n) < 0;
+				}
+				if (anyDirectory && pattern.charAt(p) == '/' && (n == 0 || name.charAt(n - 1) == '/')
+						&& matches(pattern, p + 1, name, n)) return true;
+				for (int i = n; i <= length; i++) {
+					if (matches(pattern, p, name, i)) return true;
+					if (i < length && !anyDirectory && name.charAt(i) == '/') return false;
+				}
+				return false;
+			}
+			if (n == length) return false;
+			char ch = name.charAt(n);
+			if (c == '?' ? ch == '/' : ch != c) return false;
+			p++;
+			n++;
+		}
+		return n == length;
+	}
+
+
+	private static byte[][] toBytes(String[] strings) {
+		byte[][] result = new byte[strings.length][];
+		for (int i = 0; i < strings.length; i++) {
+			result[i] = strings[i].getBytes(UTF_8);
+		}
+		return result;
+	}
+
+}
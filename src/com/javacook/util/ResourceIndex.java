@@ -0,0 +1,862 @@
+package com.javacook.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Speicherschonender Ersatz fuer <code>KeyToSetHashMap&lt;String, String&gt;</code> fuer Resource-Namen
+ * wie <tt>com/javacook/util/ResourceIndex.class</tt>. Die Vorkommen sind int-IDs von Artefakten
+ * (siehe <code>ArtifactTable</code>).
+ * <p>
+ * Die Namen werden nicht als eigene Strings abgelegt, sondern als Trie ueber ihre Pfad-Segmente
+ * (getrennt durch '/'): Jeder Knoten kennt nur seinen Vater und sein Segment, Verzeichnis-Segmente
+ * werden ueber alle Knoten hinweg geteilt. Die Knoten stehen in parallelen Arrays, die Kinder
+ * werden ueber eine einzige Hash-Tabelle (Vater, Segment) -&gt; Knoten gefunden.
+ * <p>
+ * Da fast alle Resourcen genau einmal vorkommen, wird ein einzelnes Vorkommen direkt im
+ * int-Array <code>occurrences</code> gespeichert; erst beim zweiten (verschiedenen) Vorkommen wird
+ * eine Liste (ein <code>int[]</code>) angelegt. Die Iteration liefert die Namen in der Reihenfolge
+ * ihres ersten Einfuegens, genau wie die <code>KeyToSetHashMap</code>.
+ * <p>
+ * Vorkommen lassen sich auch wieder entfernen (fuer die inkrementelle Aktualisierung im
+ * Watch-Modus). Die Knoten bleiben dabei erhalten; Resourcen ohne Vorkommen werden beim
+ * Iterieren uebersprungen und erst aus der Reihenfolge entfernt, wenn sie die Haelfte ausmachen.
+ * Fuer <code>removeAll</code> wird beim ersten Aufruf je Artefakt eine Liste seiner Knoten
+ * angelegt und danach mitgefuehrt; ein reiner Scan bezahlt diesen Speicher also nicht.
+ * <p>
+ * Zu jedem Vorkommen kann ein Digest (CRC-32 und Groesse, siehe <code>digest(long, long)</code>)
+ * gespeichert werden, anhand dessen sich identische von abweichenden Kopien unterscheiden lassen.
+ * <p>
+ * Die Klasse ist nicht thread-sicher.
+ */
+public class ResourceIndex {
+
+	/**
+	 * Digest eines Vorkommens, dessen Inhalt (noch) nicht bekannt ist
+	 */
+	public final static long NO_DIGEST = -1L;
+
+	private final static char SEPARATOR = '/';
+	private final static int ROOT = 0;
+
+	// Knoten-Arrays (Index = Knotennummer, 0 ist die Wurzel):
+	private int[] parents;
+	private String[] segments;
+	private int nodeCount;
+
+	/**
+	 * Vorkommen je Knoten: 0 = keine Resource, &gt; 0 = genau ein Vorkommen (Artefakt-ID + 1),
+	 * &lt; 0 = mehrere Vorkommen, stehen in <code>multis[-value - 1]</code>.
+	 */
+	private int[] occurrences;
+
+	/** Digest des einzelnen Vorkommens je Knoten */
+	private long[] digests;
+
+	/** Listen mehrfacher Vorkommen: Element 0 ist die Anzahl, danach die Artefakt-IDs */
+	private int[][] multis = new int[16][];
+
+	/** Digests zu <code>multis</code> (gleiche Indizes, Element 0 unbenutzt) */
+	private long[][] multiDigests = new long[16][];
+
+	/** Knoten zu <code>multis</code> (gleiche Indizes) */
+	private int[] multiNodes = new int[16];
+	private int multiCount;
+
+	/** Offene Hash-Tabelle mit Knotennummern (0 = frei) */
+	private int[] table;
+
+	/** Resource-Knoten in der Reihenfolge ihres ersten Einfuegens */
+	private int[] resourceOrder;
+	private int resourceCount;
+
+	/** true, falls der Knoten in <code>resourceOrder</code> steht (evtl. ohne Vorkommen) */
+	private boolean[] ordered;
+
+	/** Anzahl der Eintraege in <code>resourceOrder</code>, deren Vorkommen alle entfernt wurden */
+	private int removedCount;
+
+	/**
+	 * Resource-Knoten je Artefakt-ID fuer <code>removeAll</code> (null, solange es nicht aufgerufen
+	 * wurde). Eine Liste kann Knoten enthalten, deren Vorkommen schon entfernt wurde, auch doppelt;
+	 * sie wird vor dem Vergroessern und in <code>removeAll</code> bereinigt.
+	 */
+	private int[][] artifactNodes;
+	private int[] artifactNodeCounts;
+
+	/** Gemeinsam genutzte Verzeichnis-Segmente */
+	private final Map<String, String> segmentPool = new HashMap<String, String>();
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	public ResourceIndex() {
+		this(1024);
+	}
+
+
+	public ResourceIndex(int expectedResources) {
+		int capacity = Math.max(expectedResources, 16);
+		parents 		= new int[capacity];
+		segments 		= new String[capacity];
+		occurrences 	= new int[capacity];
+		digests 		= new long[capacity];
+		ordered 		= new boolean[capacity];
+		resourceOrder 	= new int[capacity];
+		table 			= new int[Integer.highestOneBit(capacity * 2 - 1) * 2];
+		nodeCount 		= 1; // Wurzel
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Packt CRC-32 und (unkomprimierte) Groesse einer Resource in einen long. Zwei Kopien mit
+	 * gleichem Digest werden als identisch angesehen.
+	 * <p>
+	 * Fuer die Groesse bleiben 31 Bit, das oberste Bit ist immer 0: Ein Digest ist damit nie
+	 * negativ und kann nicht mit <code>NO_DIGEST</code> zusammenfallen. Groessen ab 2 GiB werden
+	 * (XOR der hohen Bits) auf 31 Bit gefaltet; darunter bleibt der Digest wie bisher.
+	 */
+	public static long digest(long crc, long size) {
+		long foldedSize = (size ^ (size >>> 31)) & 0x7FFFFFFFL;
+		return (foldedSize << 32) | (crc & 0xFFFFFFFFL);
+	}
+
+
+	/**
+	 * Fuegt das Vorkommen <code>artifactId</code> (ohne Digest) zur Resource <code>key</code> hinzu.
+	 * @return Anzahl der (verschiedenen) Vorkommen von <code>key</code> nach dem Einfuegen
+	 */
+	public int put(String key, int artifactId) {
+		return put(key, artifactId, NO_DIGEST);
+	}
+
+
+	/**
+	 * Fuegt das Vorkommen <code>artifactId</code> mit dem Digest <code>digest</code> zur Resource
+	 * <code>key</code> hinzu.
+	 * @return Anzahl der (verschiedenen) Vorkommen von <code>key</code> nach dem Einfuegen
+	 */
+	public int put(String key, int artifactId, long digest) {
+		if (key == null) throw new IllegalArgumentException("Argument 'key' is null.");
+		if (artifactId < 0) throw new IllegalArgumentException("Argument 'artifactId' is negative.");
+
+		int node = ROOT;
+		int start = 0;
+		while (true) {
+			int end = key.indexOf(SEPARATOR, start);
+			boolean last = (end < 0);
+			if (last) end = key.length();
+			node = findOrCreateChild(node, key, start, end, last);
+			if (last) break;
+			start = end + 1;
+		}
+		return addOccurrence(node, artifactId, digest, false);
+	}
+
+
+	/**
+	 * Wie <code>put(String, int, long)</code>, nur dass das Vorkommen nicht angehaengt, sondern
+	 * vor allen Vorkommen mit groesserer ID einsortiert wird. Da die IDs in der Reihenfolge des
+	 * Durchstoeberns vergeben werden, behaelt so ein erneut eingelesenes Artefakt seinen Platz.
+	 * @return Anzahl der (verschiedenen) Vorkommen von <code>key</code> nach dem Einfuegen
+	 */
+	public int putSorted(String key, int artifactId, long digest) {
+		if (key == null) throw new IllegalArgumentException("Argument 'key' is null.");
+		if (artifactId < 0) throw new IllegalArgumentException("Argument 'artifactId' is negative.");
+
+		int node = ROOT;
+		int start = 0;
+		while (true) {
+			int end = key.indexOf(SEPARATOR, start);
+			boolean last = (end < 0);
+			if (last) end = key.length();
+			node = findOrCreateChild(node, key, start, end, last);
+			if (last) break;
+			start = end + 1;
+		}
+		return addOccurrence(node, artifactId, digest, true);
+	}
+
+
+	/**
+	 * Entfernt das Vorkommen <code>artifactId</code> der Resource <code>key</code>.
+	 * @return Anzahl der verbleibenden Vorkommen von <code>key</code> bzw. -1, falls das
+	 * Vorkommen nicht enthalten war
+	 */
+	public int remove(String key, int artifactId) {
+		int node = find(key);
+		if (node < 0 || !removeOccurrence(node, artifactId)) return -1;
+		int count = countOf(node);
+		compactResourceOrder();
+		return count;
+	}
+
+
+	/**
+	 * Entfernt das Vorkommen <code>artifactId</code> aus allen Resourcen, deren Name mit
+	 * <code>prefix</code> beginnt (null = aus allen). Es werden nur die Knoten des Artefakts
+	 * betrachtet; endet <code>prefix</code> auf '/', wird der Name auch nur fuer die betroffenen
+	 * zusammengesetzt (sonst fuer alle des Artefakts). Der erste Aufruf legt die Knotenlisten
+	 * aller Artefakte an und geht dazu einmal ueber den ganzen Index.
+	 * @param removedKeys nimmt die Namen der betroffenen Resourcen auf (darf null sein)
+	 * @return Anzahl der entfernten Vorkommen
+	 */
+	public int removeAll(int artifactId, String prefix, Collection<String> removedKeys) {
+		if (artifactNodes == null) createArtifactNodes();
+		if (artifactId < 0 || artifactId >= artifactNodes.length || artifactNodes[artifactId] == null) return 0;
+		int directory = ROOT;
+		if (prefix != null && prefix.length() > 0 && prefix.charAt(prefix.length() - 1) == SEPARATOR) {
+			directory = findDirectory(prefix);
+			if (directory < 0) return 0;
+			prefix = null;
+		}
+		int count = artifactNodeCounts[artifactId];
+		int[] nodes = artifactNodes[artifactId];
+		StringBuilder sb = new StringBuilder(128);
+		int removed = 0;
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			int node = nodes[i];
+			if (directory != ROOT && !isBelow(node, directory)) {
+				nodes[kept++] = node;
+				continue;
+			}
+			if (occurrences[node] == 0 || indexOf(node, artifactId) < 0) continue; // veraltet oder doppelt
+			String key = null;
+			if (prefix != null) {
+				key = keyOf(node, sb);
+				if (!key.startsWith(prefix)) {
+					nodes[kept++] = node;
+					continue;
+				}
+			}
+			removeOccurrence(node, artifactId);
+			if (removedKeys != null) removedKeys.add((key != null)? key : keyOf(node, sb));
+			removed++;
+		}
+		artifactNodeCounts[artifactId] = kept;
+		if (kept == 0) artifactNodes[artifactId] = null;
+		compactResourceOrder();
+		return removed;
+	}
+
+
+	/**
+	 * Liefert die Vorkommen von <code>key</code> (in der Reihenfolge des Einfuegens) oder null,
+	 * falls <code>key</code> nicht enthalten ist.
+	 */
+	public int[] get(String key) {
+		int node = find(key);
+		return (node < 0)? null : occurrencesOf(node);
+	}
+
+
+	/**
+	 * Liefert die Anzahl der Vorkommen von <code>key</code> (0, falls nicht enthalten).
+	 */
+	public int count(String key) {
+		int node = find(key);
+		return (node < 0)? 0 : countOf(node);
+	}
+
+
+	/**
+	 * Returns true iff <code>artifactId</code> belongs to the key <code>key</code>.
+	 */
+	public boolean contains(String key, int artifactId) {
+		int node = find(key);
+		return node >= 0 && indexOf(node, artifactId) >= 0;
+	}
+
+
+	/**
+	 * Anzahl der Resourcen, die in mehr als einem Artefakt vorkommen
+	 */
+	public int duplicateCount() {
+		return multiCount;
+	}
+
+
+	/**
+	 * Anzahl der Resourcen, die sowohl in <code>artifactA</code> als auch in <code>artifactB</code>
+	 * vorkommen. Es werden nur die mehrfachen Vorkommen betrachtet, nicht der ganze Index.
+	 */
+	public int overlap(int artifactA, int artifactB) {
+		if (artifactA == artifactB) throw new IllegalArgumentException("Arguments 'artifactA' and 'artifactB' are equal.");
+		int result = 0;
+		for (int m = 0; m < multiCount; m++) {
+			int[] multi = multis[m];
+			boolean a = false, b = false;
+			for (int i = 1; i <= multi[0]; i++) {
+				a |= (multi[i] == artifactA);
+				b |= (multi[i] == artifactB);
+			}
+			if (a && b) result++;
+		}
+		return result;
+	}
+
+
+	/**
+	 * Anzahl der Resourcen
+	 */
+	public int size() {
+		return resourceCount - removedCount;
+	}
+
+
+	/**
+	 * Liefert die Resource-Namen in der Reihenfolge ihres ersten Einfuegens. Die Namen werden
+	 * erst beim Iterieren aus dem Trie zusammengesetzt.
+	 */
+	public Set<String> keySet() {
+		return new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return new Iterator<String>() {
+					private int index = 0;
+					private final StringBuilder sb = new StringBuilder(128);
+
+					public boolean hasNext() {
+						while (index < resourceCount && occurrences[resourceOrder[index]] == 0) {
+							index++; // entfernte Resource
+						}
+						return index < resourceCount;
+					}
+
+					public String next() {
+						if (!hasNext()) throw new NoSuchElementException();
+						return keyOf(resourceOrder[index++], sb);
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException("remove is not implemented here.");
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return ResourceIndex.this.size();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return (o instanceof String) && find((String)o) >= 0;
+			}
+		};
+	}
+
+
+	/**
+	 * Liefert einen Cursor ueber alle Resourcen (in der Reihenfolge ihres ersten Einfuegens).
+	 * Im Gegensatz zu <code>keySet()</code> wird der Name nur auf Anfrage zusammengesetzt, sodass
+	 * man z.B. zuerst nach der Anzahl der Vorkommen filtern kann.
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+
+	/**
+	 * Liefert einen Cursor, der bereits auf der Resource <code>key</code> steht, bzw. null, falls
+	 * <code>key</code> nicht enthalten ist. <code>next()</code> liefert bei diesem Cursor immer false.
+	 */
+	public Cursor cursor(String key) {
+		int node = find(key);
+		if (node < 0) return null;
+		Cursor cursor = new Cursor();
+		cursor.node = node;
+		cursor.positioned = true;
+		return cursor;
+	}
+
+
+	/**
+	 * Liefert einen Cursor nur ueber die Resourcen mit mehr als einem Vorkommen (in keiner
+	 * bestimmten Reihenfolge). Die uebrigen Resourcen werden dabei gar nicht erst betrachtet.
+	 */
+	public Cursor duplicateCursor() {
+		Cursor cursor = new Cursor();
+		cursor.duplicatesOnly = true;
+		return cursor;
+	}
+
+
+	public class Cursor {
+		private int index = -1;
+		private int node;
+		private boolean positioned;
+		private boolean duplicatesOnly;
+		private final StringBuilder sb = new StringBuilder(128);
+
+		private Cursor() {
+		}
+
+		public boolean next() {
+			if (positioned) return false;
+			if (duplicatesOnly) {
+				if (index + 1 >= multiCount) return false;
+				node = multiNodes[++index];
+				return true;
+			}
+			while (index + 1 < resourceCount) {
+				node = resourceOrder[++index];
+				if (occurrences[node] != 0) return true;
+			}
+			return false;
+		}
+
+		public String name() {
+			return keyOf(node, sb);
+		}
+
+		public int count() {
+			return countOf(node);
+		}
+
+		/**
+		 * Das <code>i</code>-te Vorkommen (Artefakt-ID) der aktuellen Resource
+		 */
+		public int occurrence(int i) {
+			int value = occurrences[node];
+			if (value > 0) {
+				if (i != 0) throw new IndexOutOfBoundsException("i = " + i);
+				return value - 1;
+			}
+			int[] multi = multis[-value - 1];
+			if (i < 0 || i >= multi[0]) throw new IndexOutOfBoundsException("i = " + i);
+			return multi[i + 1];
+		}
+
+		/**
+		 * Der Digest des <code>i</code>-ten Vorkommens der aktuellen Resource bzw. <code>NO_DIGEST</code>
+		 */
+		public long digest(int i) {
+			int value = occurrences[node];
+			if (value > 0) {
+				if (i != 0) throw new IndexOutOfBoundsException("i = " + i);
+				return digests[node];
+			}
+			int m = -value - 1;
+			if (i < 0 || i >= multis[m][0]) throw new IndexOutOfBoundsException("i = " + i);
+			return multiDigests[m][i + 1];
+		}
+
+		/**
+		 * Setzt den (nachtraeglich ermittelten) Digest des <code>i</code>-ten Vorkommens.
+		 */
+		public void setDigest(int i, long digest) {
+			int value = occurrences[node];
+			if (value > 0) {
+				if (i != 0) throw new IndexOutOfBoundsException("i = " + i);
+				digests[node] = digest;
+				return;
+			}
+			int m = -value - 1;
+			if (i < 0 || i >= multis[m][0]) throw new IndexOutOfBoundsException("i = " + i);
+			multiDigests[m][i + 1] = digest;
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liefert den Resource-Knoten zu <code>key</code> oder -1.
+	 */
+	private int find(String key) {
+		if (key == null) return -1;
+		int node = ROOT;
+		int start = 0;
+		while (true) {
+			int end = key.indexOf(SEPARATOR, start);
+			boolean last = (end < 0);
+			if (last) end = key.length();
+			node = findChild(node, key, start, end);
+			if (node < 0) return -1;
+			if (last) break;
+			start = end + 1;
+		}
+		return (occurrences[node] == 0)? -1 : node;
+	}
+
+
+	private int findChild(int parent, String key, int start, int end) {
+		int mask = table.length - 1;
+		for (int slot = hash(parent, key, start, end) & mask; ; slot = (slot + 1) & mask) {
+			int node = table[slot];
+			if (node == 0) return -1;
+			if (parents[node] == parent && segmentEquals(segments[node], key, start, end)) return node;
+		}
+	}
+
+
+	private int findOrCreateChild(int parent, String key, int start, int end, boolean last) {
+		int mask = table.length - 1;
+		int slot = hash(parent, key, start, end) & mask;
+		for (; ; slot = (slot + 1) & mask) {
+			int node = table[slot];
+			if (node == 0) break;
+			if (parents[node] == parent && segmentEquals(segments[node], key, start, end)) return node;
+		}
+
+		// neuen Knoten anlegen:
+		if (nodeCount == parents.length) {
+			int newLength = parents.length * 2;
+			parents 	= Arrays.copyOf(parents, newLength);
+			segments 	= Arrays.copyOf(segments, newLength);
+			occurrences = Arrays.copyOf(occurrences, newLength);
+			digests 	= Arrays.copyOf(digests, newLength);
+			ordered 	= Arrays.copyOf(ordered, newLength);
+		}
+		int node = nodeCount++;
+		String segment = key.substring(start, end);
+		if (!last) {
+			// Verzeichnis-Segmente wiederholen sich (z.B. "impl", "util") => teilen
+			String pooled = segmentPool.get(segment);
+			if (pooled == null) {
+				segmentPool.put(segment, segment);
+			}
+			else {
+				segment = pooled;
+			}
+		}
+		parents[node] 	= parent;
+		segments[node] 	= segment;
+		table[slot] 	= node;
+
+		if (nodeCount * 2 > table.length) {
+			rehash();
+		}
+		return node;
+	}
+
+
+	private void rehash() {
+		int[] newTable = new int[table.length * 2];
+		int mask = newTable.length - 1;
+		for (int node = 1; node < nodeCount; node++) {
+			String segment = segments[node];
+			int slot = hash(parents[node], segment, 0, segment.length()) & mask;
+			while (newTable[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			newTable[slot] = node;
+		}
+		table = newTable;
+	}
+
+
+	/**
+	 * @param sorted true: vor allen Vorkommen mit groesserer ID einsortieren, sonst anhaengen
+	 */
+	private int addOccurrence(int node, int artifactId, long digest, boolean sorted) {
+		int value = occurrences[node];
+		if (value == 0) {
+			occurrences[node] = artifactId + 1;
+			digests[node] = digest;
+			if (ordered[node]) {
+				removedCount--; // war entfernt und steht noch in der Reihenfolge
+			}
+			else {
+				addToResourceOrder(node);
+			}
+			addArtifactNode(artifactId, node);
+			return 1;
+		}
+		if (value > 0) {
+			if (value - 1 == artifactId) return 1;
+			if (multiCount == multis.length) {
+				multis 		 = Arrays.copyOf(multis, multis.length * 2);
+				multiDigests = Arrays.copyOf(multiDigests, multiDigests.length * 2);
+				multiNodes 	 = Arrays.copyOf(multiNodes, multiNodes.length * 2);
+			}
+			if (sorted && artifactId < value - 1) {
+				multis[multiCount] 		 = new int[] {2, artifactId, value - 1, 0};
+				multiDigests[multiCount] = new long[] {0, digest, digests[node], NO_DIGEST};
+			}
+			else {
+				multis[multiCount] 		 = new int[] {2, value - 1, artifactId, 0};
+				multiDigests[multiCount] = new long[] {0, digests[node], digest, NO_DIGEST};
+			}
+			multiNodes[multiCount] = node;
+			occurrences[node] = -(++multiCount);
+			addArtifactNode(artifactId, node);
+			return 2;
+		}
+		int m = -value - 1;
+		int[] multi = multis[m];
+		int count = multi[0];
+		for (int i = 1; i <= count; i++) {
+			if (multi[i] == artifactId) return count;
+		}
+		if (count + 1 == multi.length) {
+			multi = multis[m] 	= Arrays.copyOf(multi, multi.length * 2);
+			multiDigests[m] 	= Arrays.copyOf(multiDigests[m], multi.length);
+		}
+		int position = count + 1;
+		if (sorted) {
+			while (position > 1 && multi[position - 1] > artifactId) {
+				position--;
+			}
+			System.arraycopy(multi, position, multi, position + 1, count + 1 - position);
+			System.arraycopy(multiDigests[m], position, multiDigests[m], position + 1, count + 1 - position);
+		}
+		multi[position] = artifactId;
+		multiDigests[m][position] = digest;
+		multi[0] = ++count;
+		addArtifactNode(artifactId, node);
+		return count;
+	}
+
+
+	/**
+	 * Entfernt das Vorkommen <code>artifactId</code> des Knotens <code>node</code>. Bleibt nur
+	 * noch ein Vorkommen uebrig, wird es wieder direkt in <code>occurrences</code> gespeichert.
+	 * @return false, falls das Vorkommen nicht enthalten war
+	 */
+	private boolean removeOccurrence(int node, int artifactId) {
+		int value = occurrences[node];
+		if (value == 0) return false;
+		if (value > 0) {
+			if (value - 1 != artifactId) return false;
+			occurrences[node] = 0;
+			digests[node] = NO_DIGEST;
+			removedCount++;
+			return true;
+		}
+		int m = -value - 1;
+		int[] multi = multis[m];
+		long[] multiDigest = multiDigests[m];
+		int count = multi[0];
+		int i = 1;
+		while (i <= count && multi[i] != artifactId) {
+			i++;
+		}
+		if (i > count) return false;
+		System.arraycopy(multi, i + 1, multi, i, count - i);
+		System.arraycopy(multiDigest, i + 1, multiDigest, i, count - i);
+		multi[0] = --count;
+		if (count == 1) {
+			occurrences[node] = multi[1] + 1;
+			digests[node] = multiDigest[1];
+			// Luecke mit der letzten Liste fuellen:
+			int last = --multiCount;
+			if (m != last) {
+				multis[m] 		= multis[last];
+				multiDigests[m] = multiDigests[last];
+				multiNodes[m] 	= multiNodes[last];
+				occurrences[multiNodes[m]] = -(m + 1);
+			}
+			multis[last] 		= null;
+			multiDigests[last] 	= null;
+		}
+		return true;
+	}
+
+
+	private int countOf(int node) {
+		int value = occurrences[node];
+		return (value > 0)? 1 : (value < 0)? multis[-value - 1][0] : 0;
+	}
+
+
+	private int[] occurrencesOf(int node) {
+		int value = occurrences[node];
+		if (value > 0) return new int[] {value - 1};
+		int[] multi = multis[-value - 1];
+		return Arrays.copyOfRange(multi, 1, multi[0] + 1);
+	}
+
+
+	private int indexOf(int node, int artifactId) {
+		int value = occurrences[node];
+		if (value > 0) return (value - 1 == artifactId)? 0 : -1;
+		int[] multi = multis[-value - 1];
+		for (int i = 1; i <= multi[0]; i++) {
+			if (multi[i] == artifactId) return i - 1;
+		}
+		return -1;
+	}
+
+
+	private void addToResourceOrder(int node) {
+		if (resourceCount == resourceOrder.length) {
+			resourceOrder = Arrays.copyOf(resourceOrder, resourceOrder.length * 2);
+		}
+		resourceOrder[resourceCount++] = node;
+		ordered[node] = true;
+	}
+
+
+	/**
+	 * Entfernt die Resourcen ohne Vorkommen aus <code>resourceOrder</code>, sobald sie die
+	 * Haelfte ausmachen (so bleibt das Entfernen im Mittel billig).
+	 */
+	private void compactResourceOrder() {
+		if (removedCount < 16 || removedCount * 2 < resourceCount) return;
+		int count = 0;
+		for (int i = 0; i < resourceCount; i++) {
+			int node = resourceOrder[i];
+			if (occurrences[node] == 0) {
+				ordered[node] = false;
+			}
+			else {
+				resourceOrder[count++] = node;
+			}
+		}
+		resourceCount = count;
+		removedCount = 0;
+	}
+
+
+	/**
+	 * Legt die Knotenlisten aller Artefakte aus dem aktuellen Inhalt an.
+	 */
+	private void createArtifactNodes() {
+		artifactNodes = new int[16][];
+		artifactNodeCounts = new int[16];
+		for (int i = 0; i < resourceCount; i++) {
+			int node = resourceOrder[i];
+			int value = occurrences[node];
+			if (value > 0) {
+				addArtifactNode(value - 1, node);
+			}
+			else if (value < 0) {
+				int[] multi = multis[-value - 1];
+				for (int j = 1; j <= multi[0]; j++) {
+					addArtifactNode(multi[j], node);
+				}
+			}
+		}
+	}
+
+
+	private void addArtifactNode(int artifactId, int node) {
+		if (artifactNodes == null) return;
+		if (artifactId >= artifactNodes.length) {
+			int newLength = Math.max(artifactId + 1, artifactNodes.length * 2);
+			artifactNodes 		= Arrays.copyOf(artifactNodes, newLength);
+			artifactNodeCounts 	= Arrays.copyOf(artifactNodeCounts, newLength);
+		}
+		int[] nodes = artifactNodes[artifactId];
+		int count = artifactNodeCounts[artifactId];
+		if (nodes == null) {
+			nodes = artifactNodes[artifactId] = new int[4];
+		}
+		else if (count == nodes.length) {
+			// erst bereinigen, nur bei mehr als halb voller Liste vergroessern:
+			count = compactArtifactNodes(artifactId);
+			if (count * 2 > nodes.length) {
+				nodes = artifactNodes[artifactId] = Arrays.copyOf(nodes, nodes.length * 2);
+			}
+		}
+		nodes[count] = node;
+		artifactNodeCounts[artifactId] = count + 1;
+	}
+
+
+	/**
+	 * Sortiert die Knotenliste von <code>artifactId</code> und entfernt daraus doppelte Knoten
+	 * sowie solche, die das Vorkommen nicht mehr haben.
+	 * @return die neue Laenge der Liste
+	 */
+	private int compactArtifactNodes(int artifactId) {
+		int[] nodes = artifactNodes[artifactId];
+		int count = artifactNodeCounts[artifactId];
+		Arrays.sort(nodes, 0, count);
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			int node = nodes[i];
+			if ((kept == 0 || nodes[kept - 1] != node) && occurrences[node] != 0 && indexOf(node, artifactId) >= 0) {
+				nodes[kept++] = node;
+			}
+		}
+		artifactNodeCounts[artifactId] = kept;
+		return kept;
+	}
+
+
+	/**
+	 * Liefert den Knoten des Verzeichnisses <code>prefix</code> (mit abschliessendem '/') oder -1.
+	 */
+	private int findDirectory(String prefix) {
+		int node = ROOT;
+		int start = 0;
+		int end;
+		while ((end = prefix.indexOf(SEPARATOR, start)) >= 0) {
+			node = findChild(node, prefix, start, end);
+			if (node < 0) return -1;
+			start = end + 1;
+		}
+		return node;
+	}
+
+
+	private boolean isBelow(int node, int directory) {
+		for (int n = parents[node]; n != ROOT; n = parents[n]) {
+			if (n == directory) return true;
+		}
+		return false;
+	}
+
+
+	/**
+	 * Setzt den Namen des Knotens <code>node</code> aus den Segmenten seiner Vorfahren zusammen.
+	 */
+	private String keyOf(int node, StringBuilder sb) {
+		sb.setLength(0);
+		appendKey(node, sb);
+		return sb.toString();
+	}
+
+
+	private void appendKey(int node, StringBuilder sb) {
+		// Von hinten nach vorne auffuellen (iterativ, damit auch sehr tiefe Pfade keinen Stack kosten):
+		int length = -1;
+		for (int n = node; n != ROOT; n = parents[n]) {
+			length += segments[n].length() + 1;
+		}
+		int end = sb.length() + length;
+		sb.setLength(end);
+		for (int n = node; n != ROOT; n = parents[n]) {
+			String segment = segments[n];
+			int start = end - segment.length();
+			sb.replace(start, end, segment);
+			if (parents[n] != ROOT) {
+				sb.setCharAt(start - 1, SEPARATOR);
+			}
+			end = start - 1;
+		}
+	}
+
+
+	private static int hash(int parent, String key, int start, int end) {
+		int h = parent * 0x9E3779B1;
+		for (int i = start; i < end; i++) {
+			h = 31 * h + key.charAt(i);
+		}
+		return h ^ (h >>> 16);
+	}
+
+
+	private static boolean segmentEquals(String segment, String key, int start, int end) {
+		return segment.length() == end - start && key.regionMatches(start, segment, 0, end - start);
+	}
+
+}
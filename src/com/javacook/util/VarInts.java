@@ -0,0 +1,70 @@
+package com.javacook.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Kodierung von (nicht negativen) Ganzzahlen mit variabler Laenge: 7 Bit pro Byte, das
+ * hoechste Bit markiert, dass noch ein weiteres Byte folgt. Kleine Werte brauchen so nur ein Byte.
+ */
+public class VarInts {
+
+	private VarInts() {
+	}
+
+
+	public static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+
+	public static void writeVarInt(DataOutput out, int value) throws IOException {
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+
+	public static long readVarLong(DataInput in) throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			result |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return result;
+		}
+		throw new IOException("Malformed variable-length integer.");
+	}
+
+
+	public static int readVarInt(DataInput in) throws IOException {
+		long value = readVarLong(in);
+		if (value > 0xFFFFFFFFL) throw new IOException("Variable-length integer too large: " + value);
+		return (int)value;
+	}
+
+
+	/**
+	 * Liest ab der aktuellen Position von <code>buffer</code> (z.B. einer gemappten Datei).
+	 */
+	public static long readVarLong(ByteBuffer buffer) throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			result |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return result;
+		}
+		throw new IOException("Malformed variable-length integer.");
+	}
+
+
+	public static int readVarInt(ByteBuffer buffer) throws IOException {
+		long value = readVarLong(buffer);
+		if (value > 0xFFFFFFFFL) throw new IOException("Variable-length integer too large: " + value);
+		return (int)value;
+	}
+
+}
@@ -0,0 +1,430 @@
+package com.javacook.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.ZipException;
+
+/**
+ * Liest das Inhaltsverzeichnis (Central Directory) eines Zip-Archivs, ohne die Datei komplett
+ * zu oeffnen. Es werden nur der End-of-Central-Directory-Record (ggf. inkl. Zip64) und das
+ * Central Directory selbst gelesen, und zwar positionell (<code>FileChannel.read</code>) in einen
+ * Puffer, der fuer alle drei wiederverwendet wird; Local Header und komprimierte Daten werden
+ * nie angefasst. Gemappt wird bewusst nicht: Ein Mapping bliebe bis zur Garbage Collection
+ * bestehen und wuerde die Datei unter Windows auch nach <code>close()</code> sperren.
+ * <p>
+ * Die Eintraege werden wie mit einem Cursor durchlaufen, d.h. pro Eintrag wird kein Objekt
+ * erzeugt. Name, Groessen und CRC des aktuellen Eintrags liefern die entsprechenden Getter:
+ * <pre>
+ * ZipCentralDirectory cd = ZipCentralDirectory.open(file);
+ * try {
+ *     while (cd.next()) {
+ *         if (!cd.nameEndsWith('/')) System.out.println(cd.name() + " " + cd.crc());
+ *     }
+ * } finally {
+ *     cd.close();
+ * }
+ * </pre>
+ * Ein Archiv muss nicht die ganze Datei ausfuellen: mit <code>open(FileChannel, long, long)</code>
+ * kann z.B. ein unkomprimiert (stored) in einem anderen Archiv liegendes Jar direkt an seinem
+ * Offset gelesen werden.
+ * <p>
+ * Die Klasse ist nicht thread-sicher.
+ */
+public class ZipCentralDirectory implements Closeable {
+
+	private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final static int END_SIG 			= 0x06054b50;
+	private final static int ZIP64_LOCATOR_SIG 	= 0x07064b50;
+	private final static int ZIP64_END_SIG 		= 0x06064b50;
+	private final static int CEN_SIG 			= 0x02014b50;
+	private final static int LOC_SIG 			= 0x04034b50;
+
+	private final static int END_HEADER_SIZE 		= 22;
+	private final static int ZIP64_LOCATOR_SIZE 	= 20;
+	private final static int ZIP64_END_HEADER_SIZE 	= 56;
+	private final static int CEN_HEADER_SIZE 		= 46;
+	private final static int LOC_HEADER_SIZE 		= 30;
+	private final static int MAX_COMMENT_SIZE 		= 0xFFFF;
+	private final static long ZIP64_MAGIC 			= 0xFFFFFFFFL;
+	private final static int ZIP64_EXTRA_ID 		= 0x0001;
+
+	/** Kompressionsmethoden */
+	public final static int STORED 		= 0;
+	public final static int DEFLATED 	= 8;
+
+	private final FileChannel channel;
+	private final boolean ownsChannel;
+	private final long entryCount;
+	/** Das Central Directory (zuvor auch Ende und Zip64-Ende, siehe <code>read</code>) */
+	private ByteBuffer cen;
+
+	/** Position (im Channel), auf die sich die Offsets der Local Header beziehen */
+	private final long archiveStart;
+
+	/** Position des aktuellen Eintrags in <code>cen</code>, -1 vor dem ersten <code>next()</code> */
+	private int pos = -1;
+	private int nextPos = 0;
+	private long entriesRead = 0;
+
+	/** Summe der gelesenen Bytes (Ende, ggf. Zip64-Ende, Central Directory) */
+	private long bytesRead = 0;
+
+	// Felder des aktuellen Eintrags:
+	private int nameLength;
+	private long crc;
+	private long compressedSize;
+	private long uncompressedSize;
+	private long localHeaderOffset;
+	private int method;
+
+	// Puffer zum Dekodieren der Namen, werden wiederverwendet:
+	private char[] charBuffer = new char[256];
+	private byte[] byteBuffer = new byte[256];
+
+
+	/*-----------------------------------------------------------------------*\
+	 * constructors                                                          *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liest das Central Directory des Archivs, das im Bereich <code>[offset, offset + length)</code>
+	 * von <code>channel</code> liegt.
+	 */
+	private ZipCentralDirectory(FileChannel channel, long offset, long length, boolean ownsChannel) throws IOException {
+		this.channel = channel;
+		this.ownsChannel = ownsChannel;
+
+		// End-of-Central-Directory-Record suchen (steht am Ende, gefolgt von max. 64k Kommentar):
+		int tailSize = (int)Math.min(length, END_HEADER_SIZE + MAX_COMMENT_SIZE + ZIP64_LOCATOR_SIZE);
+		if (tailSize < END_HEADER_SIZE) {
+			throw new ZipException("zip file is empty");
+		}
+		long tailStart = offset + length - tailSize;
+		ByteBuffer tail = read(tailStart, tailSize);
+
+		int endPos = -1;
+		int lenientEndPos = -1; // falls hinter dem Kommentar noch weitere Bytes stehen
+		for (int i = tailSize - END_HEADER_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == END_SIG) {
+				if (i + END_HEADER_SIZE + unsignedShort(tail, i + 20) == tailSize) {
+					endPos = i;
+					break;
+				}
+				if (lenientEndPos < 0) lenientEndPos = i;
+			}
+		}
+		if (endPos < 0) {
+			endPos = lenientEndPos;
+		}
+		if (endPos < 0) {
+			throw new ZipException("zip END header not found");
+		}
+
+		long entries 	= unsignedShort(tail, endPos + 10);
+		long cenSize 	= unsignedInt(tail, endPos + 12);
+		long cenOffset 	= unsignedInt(tail, endPos + 16);
+		long cenEnd 	= tailStart + endPos; // das Central Directory endet direkt vor dem END-Header
+
+		// Zip64: Locator steht direkt vor dem END-Header (ab hier wird tail ueberschrieben)
+		int locatorPos = endPos - ZIP64_LOCATOR_SIZE;
+		if (locatorPos >= 0 && tail.getInt(locatorPos) == ZIP64_LOCATOR_SIG) {
+			ByteBuffer zip64End = null;
+			long locatorStart = tailStart + locatorPos;
+			long zip64EndOffset = tail.getLong(locatorPos + 8);
+			long zip64EndPos = offset + zip64EndOffset;
+			if (zip64EndOffset >= 0 && zip64EndPos <= locatorStart - ZIP64_END_HEADER_SIZE) {
+				zip64End = read(zip64EndPos, ZIP64_END_HEADER_SIZE);
+				if (zip64End.getInt(0) != ZIP64_END_SIG) zip64End = null;
+			}
+			if (zip64End == null && locatorStart - ZIP64_END_HEADER_SIZE >= offset) {
+				// Steht vor dem Archiv noch etwas, ist auch die Position im Locator verschoben.
+				// Dann muss der Record (ohne erweiterte Daten) direkt vor dem Locator enden:
+				zip64EndPos = locatorStart - ZIP64_END_HEADER_SIZE;
+				zip64End = read(zip64EndPos, ZIP64_END_HEADER_SIZE);
+				if (zip64End.getInt(0) != ZIP64_END_SIG || zip64End.getLong(4) != ZIP64_END_HEADER_SIZE - 12) zip64End = null;
+			}
+			if (zip64End != null) {
+				entries = zip64End.getLong(32);
+				cenSize = zip64End.getLong(40);
+				cenOffset = zip64End.getLong(48);
+				cenEnd 	= zip64EndPos;
+			}
+		}
+
+		if (cenSize > Integer.MAX_VALUE || cenEnd - cenSize < offset) {
+			throw new ZipException("invalid END header (bad central directory size)");
+		}
+		this.entryCount = entries;
+		this.cen = read(cenEnd - cenSize, (int)cenSize);
+		// Steht vor dem Archiv noch etwas (z.B. ein Skript), sind die Offsets entsprechend verschoben:
+		this.archiveStart = cenEnd - cenSize - cenOffset;
+	}
+
+
+	/**
+	 * Oeffnet das Archiv <code>file</code>.
+	 */
+	public static ZipCentralDirectory open(File file) throws IOException {
+		if (file == null) throw new IllegalArgumentException("Argument 'file' is null.");
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return new ZipCentralDirectory(raf.getChannel(), 0, raf.length(), true);
+		}
+		catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+		catch (RuntimeException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Oeffnet das Archiv, das im Bereich <code>[offset, offset + length)</code> von <code>channel</code>
+	 * liegt. <code>close()</code> schliesst den Channel in diesem Fall nicht.
+	 */
+	public static ZipCentralDirectory open(FileChannel channel, long offset, long length) throws IOException {
+		if (channel == null) throw new IllegalArgumentException("Argument 'channel' is null.");
+		return new ZipCentralDirectory(channel, offset, length, false);
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * public methods                                                        *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Anzahl der Eintraege laut End-of-Central-Directory-Record
+	 */
+	public long getEntryCount() {
+		return entryCount;
+	}
+
+
+	/**
+	 * Springt zum naechsten Eintrag.
+	 * @return false, falls es keinen weiteren Eintrag gibt
+	 * @throws ZipException falls das Central Directory fehlerhaft ist
+	 */
+	public boolean next() throws ZipException {
+		if (entriesRead >= entryCount || nextPos >= cen.limit()) {
+			return false;
+		}
+		pos = nextPos;
+		if (pos + CEN_HEADER_SIZE > cen.limit() || cen.getInt(pos) != CEN_SIG) {
+			throw new ZipException("invalid CEN header (bad signature)");
+		}
+		method 				= unsignedShort(cen, pos + 10);
+		crc 				= unsignedInt(cen, pos + 16);
+		compressedSize 		= unsignedInt(cen, pos + 20);
+		uncompressedSize 	= unsignedInt(cen, pos + 24);
+		nameLength 			= unsignedShort(cen, pos + 28);
+		int extraLength 	= unsignedShort(cen, pos + 30);
+		int commentLength 	= unsignedShort(cen, pos + 32);
+		localHeaderOffset 	= unsignedInt(cen, pos + 42);
+
+		nextPos = pos + CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+		if (nextPos > cen.limit()) {
+			throw new ZipException("invalid CEN header (bad header size)");
+		}
+		if (uncompressedSize == ZIP64_MAGIC || compressedSize == ZIP64_MAGIC || localHeaderOffset == ZIP64_MAGIC) {
+			readZip64Extra(pos + CEN_HEADER_SIZE + nameLength, extraLength);
+		}
+		entriesRead++;
+		return true;
+	}
+
+
+	/**
+	 * Laenge des Namens des aktuellen Eintrags in Bytes
+	 */
+	public int nameLength() {
+		return nameLength;
+	}
+
+
+	/**
+	 * Liefert true, falls der Name des aktuellen Eintrags mit dem (ASCII-)Zeichen <code>c</code>
+	 * endet. Verzeichnisse erkennt man z.B. an <code>nameEndsWith('/')</code>.
+	 */
+	public boolean nameEndsWith(char c) {
+		return nameLength > 0 && cen.get(pos + CEN_HEADER_SIZE + nameLength - 1) == (byte)c;
+	}
+
+
+	/**
+	 * Liefert das Byte an Position <code>index</code> des Namens des aktuellen Eintrags.
+	 */
+	public byte nameByteAt(int index) {
+		if (index < 0 || index >= nameLength) throw new IndexOutOfBoundsException("index = " + index);
+		return cen.get(pos + CEN_HEADER_SIZE + index);
+	}
+
+
+	/**
+	 * Dekodiert den Namen des aktuellen Eintrags (UTF-8).
+	 */
+	public String name() {
+		int start = pos + CEN_HEADER_SIZE;
+		if (charBuffer.length < nameLength) {
+			charBuffer = new char[nameLength];
+		}
+		// Schneller Weg fuer reine ASCII-Namen (der Normalfall):
+		for (int i = 0; i < nameLength; i++) {
+			byte b = cen.get(start + i);
+			if (b < 0) {
+				return decodeUtf8(start);
+			}
+			charBuffer[i] = (char)b;
+		}
+		return new String(charBuffer, 0, nameLength);
+	}
+
+
+	public long crc() {
+		return crc;
+	}
+
+	public long compressedSize() {
+		return compressedSize;
+	}
+
+	public long uncompressedSize() {
+		return uncompressedSize;
+	}
+
+	public long localHeaderOffset() {
+		return localHeaderOffset;
+	}
+
+	/**
+	 * Kompressionsmethode (0 = stored, 8 = deflated)
+	 */
+	public int method() {
+		return method;
+	}
+
+
+	/**
+	 * Liefert die Position (im Channel), an der die Daten des aktuellen Eintrags beginnen. Dazu
+	 * muss (als einzige Methode) der Local Header des Eintrags gelesen werden.
+	 */
+	public long dataOffset() throws IOException {
+		long headerPos = archiveStart + localHeaderOffset;
+		ByteBuffer header = ByteBuffer.allocate(LOC_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		while (header.hasRemaining()) {
+			if (channel.read(header, headerPos + header.position()) < 0) {
+				throw new ZipException("invalid LOC header (unexpected end of file)");
+			}
+		}
+		if (header.getInt(0) != LOC_SIG) {
+			throw new ZipException("invalid LOC header (bad signature)");
+		}
+		return headerPos + LOC_HEADER_SIZE + unsignedShort(header, 26) + unsignedShort(header, 28);
+	}
+
+
+	/**
+	 * Anzahl der bisher gelesenen Bytes des Archivs. Die von <code>dataOffset()</code> gelesenen
+	 * Local Header zaehlen nicht mit.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+
+	public void close() throws IOException {
+		if (ownsChannel) {
+			channel.close();
+		}
+	}
+
+
+	/*-----------------------------------------------------------------------*\
+	 * internal methods                                                      *
+	\*-----------------------------------------------------------------------*/
+
+	/**
+	 * Liest <code>size</code> Bytes ab <code>position</code> in <code>cen</code>, das nur bei Bedarf
+	 * vergroessert wird. Der vorherige Inhalt ist danach ungueltig.
+	 */
+	private ByteBuffer read(long position, int size) throws IOException {
+		if (cen == null || cen.capacity() < size) {
+			cen = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		cen.clear().limit(size);
+		while (cen.hasRemaining()) {
+			if (channel.read(cen, position + cen.position()) < 0) {
+				throw new ZipException("unexpected end of file");
+			}
+		}
+		bytesRead += size;
+		cen.flip();
+		return cen;
+	}
+
+
+	private String decodeUtf8(int start) {
+		if (byteBuffer.length < nameLength) {
+			byteBuffer = new byte[nameLength];
+		}
+		for (int i = 0; i < nameLength; i++) {
+			byteBuffer[i] = cen.get(start + i);
+		}
+		return new String(byteBuffer, 0, nameLength, UTF_8);
+	}
+
+
+	/**
+	 * Liest die Zip64-Extra-Daten, in denen die Werte stehen, die im Header mit 0xFFFFFFFF
+	 * markiert sind (in genau dieser Reihenfolge).
+	 */
+	private void readZip64Extra(int extraStart, int extraLength) throws ZipException {
+		int p = extraStart;
+		int extraEnd = extraStart + extraLength;
+		while (p + 4 <= extraEnd) {
+			int id 		= unsignedShort(cen, p);
+			int size 	= unsignedShort(cen, p + 2);
+			p += 4;
+			if (p + size > extraEnd) break;
+			if (id == ZIP64_EXTRA_ID) {
+				int q = p;
+				if (uncompressedSize == ZIP64_MAGIC) {
+					if (q + 8 > p + size) throw new ZipException("invalid zip64 extra data field size");
+					uncompressedSize = cen.getLong(q);
+					q += 8;
+				}
+				if (compressedSize == ZIP64_MAGIC) {
+					if (q + 8 > p + size) throw new ZipException("invalid zip64 extra data field size");
+					compressedSize = cen.getLong(q);
+					q += 8;
+				}
+				if (localHeaderOffset == ZIP64_MAGIC) {
+					if (q + 8 > p + size) throw new ZipException("invalid zip64 extra data field size");
+					localHeaderOffset = cen.getLong(q);
+				}
+				return;
+			}
+			p += size;
+		}
+	}
+
+
+	private static int unsignedShort(ByteBuffer buffer, int index) {
+		return buffer.getShort(index) & 0xFFFF;
+	}
+
+	private static long unsignedInt(ByteBuffer buffer, int index) {
+		return buffer.getInt(index) & 0xFFFFFFFFL;
+	}
+
+}